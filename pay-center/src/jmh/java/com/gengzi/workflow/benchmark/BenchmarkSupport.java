@@ -0,0 +1,143 @@
+package com.gengzi.workflow.benchmark;
+
+import com.gengzi.workflow.cluster.MemoryRunStateStore;
+import com.gengzi.workflow.config.WorkflowClusterProperties;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.dto.Edge;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.engine.CallbackRegistry;
+import com.gengzi.workflow.engine.ClusterScheduler;
+import com.gengzi.workflow.engine.DagEngine;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.engine.NodeReadyQueue;
+import com.gengzi.workflow.engine.WorkflowMetrics;
+import com.gengzi.workflow.engine.WorkflowTemplateRegistry;
+import com.gengzi.workflow.executor.AsyncHttpExecutor;
+import com.gengzi.workflow.executor.HttpBatcher;
+import com.gengzi.workflow.executor.HttpExecutor;
+import com.gengzi.workflow.model.HttpConfig;
+import com.gengzi.workflow.model.JoinMode;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.WorkflowStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基准测试公共构造: 图定义、引擎装配与完成等待
+ *
+ * @author gengzi
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 装配 DagEngine (各组件直接构造，不启动 Spring 容器)
+     */
+    static DagEngine newEngine(ExecutorService executorService, HttpExecutor httpExecutor,
+            NodeConcurrencyLimiter concurrencyLimiter, WorkflowExecutorProperties properties) {
+        AsyncHttpExecutor asyncHttpExecutor = new AsyncHttpExecutor(httpExecutor);
+        return new DagEngine(executorService, httpExecutor, asyncHttpExecutor, concurrencyLimiter,
+                properties, new CallbackRegistry(properties), new NodeReadyQueue(properties),
+                new WorkflowMetrics(new SimpleMeterRegistry()), new WorkflowTemplateRegistry(new GraphCompiler(1)),
+                new ClusterScheduler(properties, new WorkflowClusterProperties(), new MemoryRunStateStore(1)),
+                new HttpBatcher(httpExecutor, asyncHttpExecutor));
+    }
+
+    /**
+     * 自旋等待执行结束
+     */
+    static WorkflowStatus await(WorkflowContext context) {
+        while (context.getWorkflowStatus() == WorkflowStatus.RUNNING) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        }
+        return context.getWorkflowStatus();
+    }
+
+    /**
+     * 1 个根节点扇出 leaves 个叶子节点
+     */
+    static GraphRequest fanOut(int leaves) {
+        List<Node> nodes = new ArrayList<>(leaves + 1);
+        List<Edge> edges = new ArrayList<>(leaves);
+
+        nodes.add(httpNode("root"));
+        for (int i = 0; i < leaves; i++) {
+            String id = "leaf-" + i;
+            nodes.add(httpNode(id));
+            edges.add(new Edge("root", id));
+        }
+        return new GraphRequest(nodes, edges);
+    }
+
+    /**
+     * 根节点扇出 parents 个节点，再全部汇聚到一个 joinMode 节点
+     */
+    static GraphRequest fanIn(int parents, JoinMode joinMode) {
+        List<Node> nodes = new ArrayList<>(parents + 2);
+        List<Edge> edges = new ArrayList<>(parents * 2);
+
+        nodes.add(httpNode("root"));
+        for (int i = 0; i < parents; i++) {
+            String id = "parent-" + i;
+            nodes.add(httpNode(id));
+            edges.add(new Edge("root", id));
+            edges.add(new Edge(id, "join"));
+        }
+
+        Node join = httpNode("join");
+        join.setJoinMode(joinMode);
+        nodes.add(join);
+        return new GraphRequest(nodes, edges);
+    }
+
+    /**
+     * length 个节点串行
+     */
+    static GraphRequest chain(int length) {
+        List<Node> nodes = new ArrayList<>(length);
+        List<Edge> edges = new ArrayList<>(length);
+
+        for (int i = 0; i < length; i++) {
+            nodes.add(httpNode("step-" + i));
+            if (i > 0) {
+                edges.add(new Edge("step-" + (i - 1), "step-" + i));
+            }
+        }
+        return new GraphRequest(nodes, edges);
+    }
+
+    /**
+     * 分层图: 每层 width 个节点，每个节点依赖上一层同位置与左侧相邻的节点
+     */
+    static GraphRequest layered(int nodeCount, int width) {
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        List<Edge> edges = new ArrayList<>(nodeCount * 2);
+
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(httpNode("node-" + i));
+            if (i >= width) {
+                edges.add(new Edge("node-" + (i - width), "node-" + i));
+                if (i % width != 0) {
+                    edges.add(new Edge("node-" + (i - width - 1), "node-" + i));
+                }
+            }
+        }
+        return new GraphRequest(nodes, edges);
+    }
+
+    static Node httpNode(String id) {
+        return Node.builder()
+                .id(id)
+                .config(HttpConfig.builder().url("http://localhost/" + id).build())
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.gengzi.workflow.benchmark;
+
+import com.gengzi.workflow.config.ThreadPoolConfig;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.engine.DagEngine;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.model.WorkflowStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完成检测基准
+ *
+ * 每个节点结束都会释放活跃计数，归零时检查整体状态，
+ * 两种极端形状分别测量:
+ * - fanOut: 大量节点并发结束，活跃计数频繁争用，只在最后归零一次
+ * - chain: 节点逐个结束，每一步活跃计数都会短暂归零并触发检查
+ *
+ * 使用零延迟桩执行器，测量结果只包含调度与完成检测的开销
+ *
+ * @author gengzi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompletionBenchmark {
+
+    @Param({"10000"})
+    public int nodeCount;
+
+    @Param({"1000"})
+    public int chainLength;
+
+    private ExecutorService executorService;
+    private DagEngine dagEngine;
+    private NodeConcurrencyLimiter concurrencyLimiter;
+    private CompiledGraph fanOutGraph;
+    private CompiledGraph chainGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkflowExecutorProperties properties = new WorkflowExecutorProperties();
+        properties.setQueueCapacity(nodeCount + 1);
+        properties.setAsyncHttp(false);
+
+        executorService = new ThreadPoolConfig().workflowExecutorService(properties);
+        concurrencyLimiter = new NodeConcurrencyLimiter(properties);
+        dagEngine = BenchmarkSupport.newEngine(executorService, new StubHttpExecutor(0), concurrencyLimiter,
+                properties);
+
+        GraphCompiler compiler = new GraphCompiler(2);
+        fanOutGraph = compiler.compile(BenchmarkSupport.fanOut(nodeCount));
+        chainGraph = compiler.compile(BenchmarkSupport.chain(chainLength));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public WorkflowStatus fanOut() {
+        return run(fanOutGraph);
+    }
+
+    @Benchmark
+    public WorkflowStatus chain() {
+        return run(chainGraph);
+    }
+
+    private WorkflowStatus run(CompiledGraph graph) {
+        WorkflowContext context = new WorkflowContext(
+                UUID.randomUUID().toString(), graph, concurrencyLimiter.newRunPermits());
+        dagEngine.executeWorkflow(context);
+        return BenchmarkSupport.await(context);
+    }
+}
@@ -0,0 +1,73 @@
+package com.gengzi.workflow.benchmark;
+
+import com.gengzi.workflow.config.ThreadPoolConfig;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.engine.DagEngine;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.model.WorkflowStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 执行模式对比基准: PLATFORM 线程池 vs VIRTUAL 每节点虚拟线程
+ *
+ * 场景: 1 个根节点扇出 nodeCount 个 I/O 密集型叶子节点，
+ * 叶子节点以阻塞 sleep 模拟 ioLatencyMs 的网络等待，测量整个工作流完成耗时
+ * (关闭 async-http，对比的是阻塞式节点在两种线程模型下的表现)
+ *
+ * 注意: VIRTUAL 模式需在 JDK 21+ 上运行才会使用真正的虚拟线程
+ *
+ * @author gengzi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutorModeBenchmark {
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public WorkflowExecutorProperties.Mode mode;
+
+    @Param({"10000"})
+    public int nodeCount;
+
+    @Param({"50"})
+    public long ioLatencyMs;
+
+    private ExecutorService executorService;
+    private DagEngine dagEngine;
+    private NodeConcurrencyLimiter concurrencyLimiter;
+    private CompiledGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkflowExecutorProperties properties = new WorkflowExecutorProperties();
+        properties.setMode(mode);
+        properties.setMaxConcurrentNodes(nodeCount);
+        properties.setAsyncHttp(false);
+
+        executorService = new ThreadPoolConfig().workflowExecutorService(properties);
+        concurrencyLimiter = new NodeConcurrencyLimiter(properties);
+        dagEngine = BenchmarkSupport.newEngine(executorService, new StubHttpExecutor(ioLatencyMs),
+                concurrencyLimiter, properties);
+        graph = new GraphCompiler(1).compile(BenchmarkSupport.fanOut(nodeCount));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public WorkflowStatus fanOutIoBound() {
+        WorkflowContext context = new WorkflowContext(
+                UUID.randomUUID().toString(), graph, concurrencyLimiter.newRunPermits());
+        dagEngine.executeWorkflow(context);
+        return BenchmarkSupport.await(context);
+    }
+}
@@ -0,0 +1,73 @@
+package com.gengzi.workflow.benchmark;
+
+import com.gengzi.workflow.config.ThreadPoolConfig;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.engine.DagEngine;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.model.JoinMode;
+import com.gengzi.workflow.model.WorkflowStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 汇聚触发基准: JOIN_ALL vs JOIN_ANY
+ *
+ * 场景: 根节点扇出 parents 个节点，再全部汇聚到同一个节点，
+ * 所有工作线程同时对汇聚节点做入度递减 (JOIN_ALL) 或 CAS 竞争 (JOIN_ANY)
+ *
+ * 使用零延迟桩执行器，测量结果只包含调度、触发与完成检测的开销
+ *
+ * @author gengzi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JoinTriggerBenchmark {
+
+    @Param({"ALL", "ANY"})
+    public JoinMode joinMode;
+
+    @Param({"1000", "10000"})
+    public int parents;
+
+    @Param({"FIFO", "PRIORITY"})
+    public WorkflowExecutorProperties.Scheduling scheduling;
+
+    private ExecutorService executorService;
+    private DagEngine dagEngine;
+    private NodeConcurrencyLimiter concurrencyLimiter;
+    private CompiledGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkflowExecutorProperties properties = new WorkflowExecutorProperties();
+        properties.setScheduling(scheduling);
+        properties.setQueueCapacity(parents + 2);
+        properties.setAsyncHttp(false);
+
+        executorService = new ThreadPoolConfig().workflowExecutorService(properties);
+        concurrencyLimiter = new NodeConcurrencyLimiter(properties);
+        dagEngine = BenchmarkSupport.newEngine(executorService, new StubHttpExecutor(0), concurrencyLimiter,
+                properties);
+        graph = new GraphCompiler(1).compile(BenchmarkSupport.fanIn(parents, joinMode));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public WorkflowStatus fanInJoin() {
+        WorkflowContext context = new WorkflowContext(
+                UUID.randomUUID().toString(), graph, concurrencyLimiter.newRunPermits());
+        dagEngine.executeWorkflow(context);
+        return BenchmarkSupport.await(context);
+    }
+}
@@ -0,0 +1,94 @@
+package com.gengzi.workflow.benchmark;
+
+import com.gengzi.workflow.config.ThreadPoolConfig;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.engine.DagEngine;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.model.WorkflowStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 就绪调度策略对比基准: FIFO vs PRIORITY vs DISTRIBUTED
+ *
+ * 场景: 混合负载，固定大小线程池上同时启动两个执行
+ * - 链式执行: chainLength 个节点串行，每步都要重新排队
+ * - 宽执行: 根节点扇出 width 个叶子节点，一次性占满线程池队列
+ *
+ * FIFO 下链式执行的每一步都排在宽执行剩余叶子之后；
+ * PRIORITY 下两个执行轮转取节点，链式执行与宽执行并行推进；
+ * DISTRIBUTED 下经进程内 RunStateStore 的分区队列与租约领取，衡量共享调度状态的额外开销。
+ * 测量两个执行全部完成的总耗时 (makespan)
+ *
+ * @author gengzi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SchedulingBenchmark {
+
+    @Param({"FIFO", "PRIORITY", "DISTRIBUTED"})
+    public WorkflowExecutorProperties.Scheduling scheduling;
+
+    @Param({"8"})
+    public int poolSize;
+
+    @Param({"20"})
+    public int chainLength;
+
+    @Param({"400"})
+    public int width;
+
+    @Param({"10"})
+    public long ioLatencyMs;
+
+    private ExecutorService executorService;
+    private DagEngine dagEngine;
+    private NodeConcurrencyLimiter concurrencyLimiter;
+    private CompiledGraph chainGraph;
+    private CompiledGraph wideGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkflowExecutorProperties properties = new WorkflowExecutorProperties();
+        properties.setScheduling(scheduling);
+        properties.setCorePoolSize(poolSize);
+        properties.setMaxPoolSize(poolSize);
+        properties.setQueueCapacity(chainLength + width + 1);
+        properties.setAsyncHttp(false);
+
+        executorService = new ThreadPoolConfig().workflowExecutorService(properties);
+        concurrencyLimiter = new NodeConcurrencyLimiter(properties);
+        dagEngine = BenchmarkSupport.newEngine(executorService, new StubHttpExecutor(ioLatencyMs),
+                concurrencyLimiter, properties);
+
+        GraphCompiler compiler = new GraphCompiler(2);
+        chainGraph = compiler.compile(BenchmarkSupport.chain(chainLength));
+        wideGraph = compiler.compile(BenchmarkSupport.fanOut(width));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public WorkflowStatus mixedMakespan() {
+        WorkflowContext wide = new WorkflowContext(
+                UUID.randomUUID().toString(), wideGraph, concurrencyLimiter.newRunPermits());
+        WorkflowContext chain = new WorkflowContext(
+                UUID.randomUUID().toString(), chainGraph, concurrencyLimiter.newRunPermits());
+
+        dagEngine.executeWorkflow(wide);
+        dagEngine.executeWorkflow(chain);
+
+        BenchmarkSupport.await(wide);
+        return BenchmarkSupport.await(chain);
+    }
+}
@@ -0,0 +1,108 @@
+package com.gengzi.workflow.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gengzi.workflow.cluster.MemoryRunStateStore;
+import com.gengzi.workflow.config.ResultStoreProperties;
+import com.gengzi.workflow.config.ThreadPoolConfig;
+import com.gengzi.workflow.config.WorkflowClusterProperties;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.config.WorkflowStorageProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.dto.WorkflowStatusResponse;
+import com.gengzi.workflow.engine.CallbackRegistry;
+import com.gengzi.workflow.engine.ClusterScheduler;
+import com.gengzi.workflow.engine.DagEngine;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.IdempotencyIndex;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.engine.TriggerScheduler;
+import com.gengzi.workflow.engine.WorkflowEventBus;
+import com.gengzi.workflow.engine.WorkflowTemplateRegistry;
+import com.gengzi.workflow.service.WorkflowService;
+import com.gengzi.workflow.storage.MemoryWorkflowPersistence;
+import com.gengzi.workflow.storage.ResultBodyStore;
+import com.gengzi.workflow.storage.WorkflowStorageService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 状态快照基准
+ *
+ * 对一个已完成的执行调用 WorkflowService.getStatus:
+ * - full: 复制全部节点状态与结果
+ * - delta: 只返回最近 deltaNodes 个状态迁移的节点 (仍需扫描节点序号)
+ *
+ * @author gengzi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatusSnapshotBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    @Param({"16"})
+    public int deltaNodes;
+
+    private ExecutorService executorService;
+    private WorkflowEventBus eventBus;
+    private TriggerScheduler triggerScheduler;
+    private WorkflowService workflowService;
+    private String runId;
+    private long since;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WorkflowExecutorProperties properties = new WorkflowExecutorProperties();
+        properties.setQueueCapacity(nodeCount + 1);
+        properties.setAsyncHttp(false);
+
+        executorService = new ThreadPoolConfig().workflowExecutorService(properties);
+        NodeConcurrencyLimiter concurrencyLimiter = new NodeConcurrencyLimiter(properties);
+        DagEngine dagEngine = BenchmarkSupport.newEngine(executorService, new StubHttpExecutor(0),
+                concurrencyLimiter, properties);
+        GraphCompiler compiler = new GraphCompiler(1);
+        CallbackRegistry callbackRegistry = new CallbackRegistry(properties);
+        WorkflowStorageService storageService = new WorkflowStorageService(new MemoryWorkflowPersistence(),
+                new WorkflowStorageProperties(), compiler, concurrencyLimiter, callbackRegistry);
+        eventBus = new WorkflowEventBus(1024, 1);
+
+        WorkflowTemplateRegistry templateRegistry = new WorkflowTemplateRegistry(compiler);
+        triggerScheduler = new TriggerScheduler(templateRegistry, 100L, 1, 0L);
+        workflowService = new WorkflowService(dagEngine, compiler, concurrencyLimiter, storageService,
+                callbackRegistry, eventBus, new ResultBodyStore(new ResultStoreProperties()),
+                templateRegistry, new IdempotencyIndex(1, 0), new ObjectMapper(),
+                new ClusterScheduler(properties, new WorkflowClusterProperties(), new MemoryRunStateStore(1)),
+                triggerScheduler);
+
+        WorkflowContext context = new WorkflowContext(UUID.randomUUID().toString(),
+                compiler.compile(BenchmarkSupport.fanOut(nodeCount - 1)), concurrencyLimiter.newRunPermits());
+        storageService.save(context);
+        dagEngine.executeWorkflow(context);
+        BenchmarkSupport.await(context);
+
+        runId = context.getRunId();
+        since = context.getSequence() - deltaNodes;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+        eventBus.shutdown();
+        triggerScheduler.shutdown();
+    }
+
+    @Benchmark
+    public WorkflowStatusResponse full() {
+        return workflowService.getStatus(runId);
+    }
+
+    @Benchmark
+    public WorkflowStatusResponse delta() {
+        return workflowService.getStatus(runId, since);
+    }
+}
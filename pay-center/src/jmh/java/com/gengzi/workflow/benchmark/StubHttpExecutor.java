@@ -0,0 +1,42 @@
+package com.gengzi.workflow.benchmark;
+
+import com.gengzi.workflow.config.HttpClientProperties;
+import com.gengzi.workflow.config.ResultStoreProperties;
+import com.gengzi.workflow.executor.ExecutionControl;
+import com.gengzi.workflow.executor.HttpExecutor;
+import com.gengzi.workflow.expression.Condition;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.storage.ResultBodyStore;
+
+/**
+ * 进程内桩执行器，替代真实 HTTP 调用
+ *
+ * - latencyMs = 0: 立即返回成功结果，测量结果只反映调度开销
+ * - latencyMs > 0: 以阻塞 sleep 模拟 I/O 等待
+ *
+ * 只覆盖同步路径，使用时需关闭 async-http
+ *
+ * @author gengzi
+ */
+class StubHttpExecutor extends HttpExecutor {
+
+    private final long latencyMs;
+
+    StubHttpExecutor(long latencyMs) {
+        super(new ResultBodyStore(new ResultStoreProperties()), new HttpClientProperties());
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public NodeResult execute(Node node, Condition successCondition, ExecutionControl control) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return NodeResult.builder().statusCode(200).build();
+    }
+}
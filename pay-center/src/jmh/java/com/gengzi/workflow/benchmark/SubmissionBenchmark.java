@@ -0,0 +1,60 @@
+package com.gengzi.workflow.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.engine.GraphCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 重复提交基准
+ *
+ * 同一图定义重复提交时的解析与编译开销:
+ * - parseAndCompile: 反序列化后按 GraphRequest 内容命中缓存 (需完整反序列化与深度判等)
+ * - hashHit: 按请求体哈希命中缓存，只计算 SHA-256
+ *
+ * 场景: 每层 100 个节点的分层图
+ *
+ * @author gengzi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubmissionBenchmark {
+
+    @Param({"1000", "10000"})
+    public int nodeCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] definition;
+    private GraphCompiler compiler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        definition = objectMapper.writeValueAsBytes(BenchmarkSupport.layered(nodeCount, 100));
+        compiler = new GraphCompiler(16);
+        compiler.compile(GraphCompiler.hash(definition), this::parse);
+    }
+
+    @Benchmark
+    public CompiledGraph parseAndCompile() {
+        return compiler.compile(parse());
+    }
+
+    @Benchmark
+    public CompiledGraph hashHit() {
+        return compiler.compile(GraphCompiler.hash(definition), this::parse);
+    }
+
+    private GraphRequest parse() {
+        try {
+            return objectMapper.readValue(definition, GraphRequest.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
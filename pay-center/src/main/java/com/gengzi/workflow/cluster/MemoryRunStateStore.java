@@ -0,0 +1,234 @@
+package com.gengzi.workflow.cluster;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内共享调度状态
+ *
+ * - 调度数组: 每次执行一组 AtomicIntegerArray
+ * - 分区队列: 每个分区一个优先队列 (关键路径降序，相同时按入队先后)，分区内加锁
+ * - 租约: 以 (runId, 节点下标) 为键，过期时间由心跳续约
+ *
+ * 同一进程内的多个 ClusterScheduler 共享一个实例即可模拟多实例部署
+ *
+ * @author gengzi
+ */
+public class MemoryRunStateStore implements RunStateStore {
+
+    private static final Comparator<Queued> BY_PRIORITY = Comparator
+            .comparingInt((Queued queued) -> queued.task.getRank()).reversed()
+            .thenComparingLong(queued -> queued.sequence);
+
+    /**
+     * 调度数组
+     * Key: runId, Value: 入度 / 触发标记 / 跳过标记
+     */
+    private final ConcurrentHashMap<String, RunState> runs = new ConcurrentHashMap<>();
+
+    /**
+     * 分区队列 (按分区号下标，创建后不再增减)
+     */
+    private final List<PriorityQueue<Queued>> partitions;
+
+    /**
+     * 租约
+     * Key: runId + "#" + 节点下标, Value: 租约
+     */
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * 存活实例
+     * Key: 实例 ID, Value: 过期时间
+     */
+    private final ConcurrentHashMap<String, Long> instances = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    public MemoryRunStateStore(int partitionCount) {
+        int count = Math.max(1, partitionCount);
+        List<PriorityQueue<Queued>> queues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queues.add(new PriorityQueue<>(BY_PRIORITY));
+        }
+        this.partitions = List.copyOf(queues);
+    }
+
+    @Override
+    public boolean createRun(String runId, int[] indegrees, int[] anyTriggered, int[] skipMarks) {
+        return runs.putIfAbsent(runId, new RunState(indegrees, anyTriggered, skipMarks)) == null;
+    }
+
+    @Override
+    public int decrementIndegree(String runId, int index) {
+        return run(runId).indegrees.decrementAndGet(index);
+    }
+
+    @Override
+    public boolean markTriggered(String runId, int index) {
+        return run(runId).anyTriggered.compareAndSet(index, 0, 1);
+    }
+
+    @Override
+    public void markSkipped(String runId, int index) {
+        run(runId).skipMarks.set(index, 1);
+    }
+
+    @Override
+    public boolean isSkipped(String runId, int index) {
+        return run(runId).skipMarks.get(index) == 1;
+    }
+
+    @Override
+    public void removeRun(String runId) {
+        runs.remove(runId);
+    }
+
+    private RunState run(String runId) {
+        RunState state = runs.get(runId);
+        if (state == null) {
+            throw new IllegalStateException("Unknown run in state store: " + runId);
+        }
+        return state;
+    }
+
+    @Override
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    @Override
+    public void offer(int partition, ReadyTask task) {
+        PriorityQueue<Queued> queue = partitions.get(partition);
+        synchronized (queue) {
+            queue.add(new Queued(task, sequence.incrementAndGet()));
+        }
+    }
+
+    @Override
+    public ReadyTask claim(int partition, String instanceId, long leaseMs) {
+        PriorityQueue<Queued> queue = partitions.get(partition);
+        Queued queued;
+        synchronized (queue) {
+            queued = queue.poll();
+        }
+        if (queued == null) {
+            return null;
+        }
+
+        leases.put(key(queued.task.getRunId(), queued.task.getIndex()),
+                new Lease(queued.task, partition, instanceId, System.currentTimeMillis() + leaseMs));
+        return queued.task;
+    }
+
+    @Override
+    public void release(ReadyTask task) {
+        Lease lease = leases.remove(key(task.getRunId(), task.getIndex()));
+        if (lease != null) {
+            offer(lease.partition, task);
+        }
+    }
+
+    @Override
+    public void complete(String runId, int index) {
+        leases.remove(key(runId, index));
+    }
+
+    @Override
+    public List<ReadyTask> removeQueued(int partition, String rootRunId) {
+        List<ReadyTask> removed = new ArrayList<>();
+        PriorityQueue<Queued> queue = partitions.get(partition);
+        synchronized (queue) {
+            Iterator<Queued> it = queue.iterator();
+            while (it.hasNext()) {
+                Queued queued = it.next();
+                if (queued.task.getRootRunId().equals(rootRunId)) {
+                    removed.add(queued.task);
+                    it.remove();
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public List<String> heartbeat(String instanceId, long leaseMs) {
+        long nowMs = System.currentTimeMillis();
+        instances.put(instanceId, nowMs + leaseMs);
+        instances.values().removeIf(expireAtMs -> expireAtMs <= nowMs);
+
+        for (Lease lease : leases.values()) {
+            if (lease.owner.equals(instanceId)) {
+                lease.expireAtMs = nowMs + leaseMs;
+            }
+        }
+
+        List<String> live = new ArrayList<>(instances.keySet());
+        live.sort(null);
+        return live;
+    }
+
+    @Override
+    public List<ReadyTask> reclaimExpired(long nowMs) {
+        List<ReadyTask> reclaimed = new ArrayList<>();
+        for (Map.Entry<String, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.expireAtMs <= nowMs && leases.remove(entry.getKey(), lease)) {
+                ReadyTask task = lease.task.reclaimed();
+                offer(lease.partition, task);
+                reclaimed.add(task);
+            }
+        }
+        return reclaimed;
+    }
+
+    private static String key(String runId, int index) {
+        return runId + "#" + index;
+    }
+
+    private static final class RunState {
+
+        private final AtomicIntegerArray indegrees;
+        private final AtomicIntegerArray anyTriggered;
+        private final AtomicIntegerArray skipMarks;
+
+        private RunState(int[] indegrees, int[] anyTriggered, int[] skipMarks) {
+            this.indegrees = new AtomicIntegerArray(indegrees);
+            this.anyTriggered = new AtomicIntegerArray(anyTriggered);
+            this.skipMarks = new AtomicIntegerArray(skipMarks);
+        }
+    }
+
+    private static final class Queued {
+
+        private final ReadyTask task;
+        private final long sequence;
+
+        private Queued(ReadyTask task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Lease {
+
+        private final ReadyTask task;
+        private final int partition;
+        private final String owner;
+        private volatile long expireAtMs;
+
+        private Lease(ReadyTask task, int partition, String owner, long expireAtMs) {
+            this.task = task;
+            this.partition = partition;
+            this.owner = owner;
+            this.expireAtMs = expireAtMs;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.gengzi.workflow.cluster;
+
+import lombok.Value;
+
+/**
+ * 分区队列中的就绪节点
+ *
+ * 只包含可序列化的标识，执行方按 runId 找到 (或加载) 执行上下文后再执行
+ *
+ * @author gengzi
+ */
+@Value
+public class ReadyTask {
+
+    /**
+     * 执行 ID (子执行为 "父 runId:节点 ID")
+     */
+    String runId;
+
+    /**
+     * 顶层执行 ID (决定所在分区)
+     */
+    String rootRunId;
+
+    /**
+     * 节点下标
+     */
+    int index;
+
+    /**
+     * 关键路径长度 (分区内按此降序取出)
+     */
+    int rank;
+
+    /**
+     * 就绪时间
+     */
+    long readyAtMs;
+
+    /**
+     * 租约过期被回收的次数 (0 表示首次入队)
+     */
+    int reclaims;
+
+    /**
+     * 租约过期后重新入队的副本
+     */
+    public ReadyTask reclaimed() {
+        return new ReadyTask(runId, rootRunId, index, rank, readyAtMs, reclaims + 1);
+    }
+}
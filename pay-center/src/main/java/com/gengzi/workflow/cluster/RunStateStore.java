@@ -0,0 +1,120 @@
+package com.gengzi.workflow.cluster;
+
+import java.util.List;
+
+/**
+ * 共享调度状态 SPI (集群模式)
+ *
+ * 多个实例通过同一个存储协调一次执行的调度:
+ * - 入度、JOIN_ANY 触发标记、JOIN_ALL 跳过标记按 (runId, 节点下标) 原子更新
+ * - 就绪节点按顶层执行哈希进入分区队列，实例领取节点时获得带过期时间的租约
+ * - 实例通过心跳续约自身与所持租约，失联实例的租约过期后节点重新入队
+ *
+ * 内置实现:
+ * - MemoryRunStateStore: 进程内实现 (单实例部署与测试)
+ *
+ * @author gengzi
+ */
+public interface RunStateStore {
+
+    /**
+     * 创建执行的调度状态 (已存在时不覆盖)
+     *
+     * @param runId        执行 ID
+     * @param indegrees    当前入度
+     * @param anyTriggered JOIN_ANY 触发标记
+     * @param skipMarks    JOIN_ALL 跳过标记
+     * @return 是否新建
+     */
+    boolean createRun(String runId, int[] indegrees, int[] anyTriggered, int[] skipMarks);
+
+    /**
+     * 原子递减入度
+     *
+     * @return 递减后的入度
+     */
+    int decrementIndegree(String runId, int index);
+
+    /**
+     * JOIN_ANY 触发标记 CAS (0 -> 1)
+     *
+     * @return 是否本次调用置位
+     */
+    boolean markTriggered(String runId, int index);
+
+    /**
+     * 置 JOIN_ALL 跳过标记
+     */
+    void markSkipped(String runId, int index);
+
+    /**
+     * 是否有上游被跳过
+     */
+    boolean isSkipped(String runId, int index);
+
+    /**
+     * 删除执行的调度状态 (执行结束时调用)
+     */
+    void removeRun(String runId);
+
+    /**
+     * 分区数
+     */
+    int partitionCount();
+
+    /**
+     * 就绪节点入队
+     *
+     * @param partition 分区
+     * @param task      就绪节点
+     */
+    void offer(int partition, ReadyTask task);
+
+    /**
+     * 领取分区中优先级最高的节点
+     *
+     * @param partition  分区
+     * @param instanceId 领取实例
+     * @param leaseMs    租约时长
+     * @return 就绪节点，分区为空返回 null
+     */
+    ReadyTask claim(int partition, String instanceId, long leaseMs);
+
+    /**
+     * 放弃已领取的节点 (重新入队，不计为回收)
+     *
+     * @param task 已领取的节点
+     */
+    void release(ReadyTask task);
+
+    /**
+     * 结束节点租约 (节点已开始执行、已结束或已取消)
+     */
+    void complete(String runId, int index);
+
+    /**
+     * 移出一个顶层执行在分区中排队的节点 (执行取消时调用，已领取的节点不受影响)
+     *
+     * @param partition 分区
+     * @param rootRunId 顶层执行 ID
+     * @return 被移出的节点
+     */
+    List<ReadyTask> removeQueued(int partition, String rootRunId);
+
+    /**
+     * 实例心跳: 续约实例自身及其持有的全部租约
+     *
+     * @param instanceId 实例 ID
+     * @param leaseMs    租约时长
+     * @return 存活实例 (按 ID 排序)
+     */
+    List<String> heartbeat(String instanceId, long leaseMs);
+
+    /**
+     * 回收过期租约，节点重新入队
+     *
+     * @param nowMs 当前时间
+     * @return 重新入队的节点
+     */
+    List<ReadyTask> reclaimExpired(long nowMs);
+}
@@ -0,0 +1,113 @@
+package com.gengzi.workflow.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTTP 节点客户端配置
+ * 
+ * 配置前缀: workflow.http
+ * 
+ * - 全局: 超时、OkHttp Dispatcher 并发上限、默认连接池、HTTP/2 偏好
+ * - hosts: 按主机覆盖连接池与最大在途请求数，并配置令牌桶限流与熔断
+ * 
+ * 示例:
+ * workflow.http.hosts.api.example.com.max-in-flight=20
+ * workflow.http.hosts.api.example.com.rate-per-second=50
+ * 
+ * @author gengzi
+ */
+@Data
+@ConfigurationProperties(prefix = "workflow.http")
+public class HttpClientProperties {
+
+    private long connectTimeoutMs = 10000L;
+
+    private long readTimeoutMs = 30000L;
+
+    private long writeTimeoutMs = 30000L;
+
+    /**
+     * 所有主机合计最大在途请求数 (OkHttp Dispatcher.maxRequests)
+     */
+    private int maxRequests = 256;
+
+    /**
+     * 单个主机默认最大在途请求数 (OkHttp Dispatcher.maxRequestsPerHost)
+     */
+    private int maxRequestsPerHost = 32;
+
+    /**
+     * 默认连接池最大空闲连接数
+     */
+    private int maxIdleConnections = 32;
+
+    /**
+     * 空闲连接保活时间 (毫秒)
+     */
+    private long keepAliveMs = 300000L;
+
+    /**
+     * 是否优先使用 HTTP/2 (TLS 下通过 ALPN 协商，同一主机的请求复用一个连接多路传输)
+     */
+    private boolean http2 = true;
+
+    /**
+     * 未单独配置的主机的默认限流 (每秒请求数，0 表示不限流)
+     */
+    private double defaultRatePerSecond = 0;
+
+    /**
+     * 熔断: 连续失败 (I/O 错误或 5xx) 次数阈值，达到后熔断该主机 (0 表示不熔断)
+     * 熔断期间请求直接失败，不发起调用、不占用工作线程
+     */
+    private int circuitFailureThreshold = 0;
+
+    /**
+     * 熔断: 打开时长 (毫秒)，之后放行一个探测请求，成功则恢复
+     */
+    private long circuitOpenMs = 10000L;
+
+    /**
+     * 按主机配置
+     * Key: 主机名
+     */
+    private Map<String, Host> hosts = new HashMap<>();
+
+    @Data
+    public static class Host {
+
+        /**
+         * 最大在途请求数 (0 表示使用 maxRequestsPerHost)
+         */
+        private int maxInFlight = 0;
+
+        /**
+         * 独立连接池最大空闲连接数 (0 表示使用默认连接池)
+         */
+        private int maxIdleConnections = 0;
+
+        /**
+         * 限流: 每秒请求数 (0 表示不限流)
+         */
+        private double ratePerSecond = 0;
+
+        /**
+         * 限流: 桶容量，允许的突发请求数 (0 表示等于 ratePerSecond)
+         */
+        private int burst = 0;
+
+        /**
+         * 熔断: 连续失败次数阈值 (0 表示使用 circuitFailureThreshold)
+         */
+        private int circuitFailureThreshold = 0;
+
+        /**
+         * 熔断: 打开时长 (毫秒，0 表示使用 circuitOpenMs)
+         */
+        private long circuitOpenMs = 0L;
+    }
+}
@@ -0,0 +1,44 @@
+package com.gengzi.workflow.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 节点结果存储配置
+ * 
+ * 配置前缀: workflow.result
+ * 
+ * 响应体不超过 inlineThresholdBytes 时保存在内存 (NodeResult.body)，
+ * 超过时流式写入 dir 下的文件，NodeResult 只保留 BodyRef
+ * 
+ * @author gengzi
+ */
+@Data
+@ConfigurationProperties(prefix = "workflow.result")
+public class ResultStoreProperties {
+
+    /**
+     * 内存保存的响应体上限 (字节)
+     */
+    private int inlineThresholdBytes = 64 * 1024;
+
+    /**
+     * 溢写目录
+     */
+    private String dir = "data/results";
+
+    /**
+     * 溢写文件是否 GZIP 压缩
+     */
+    private boolean compress = false;
+
+    /**
+     * 溢写文件保留时间 (毫秒)，过期后由定时任务删除
+     */
+    private long retentionMs = 86400000L;
+
+    /**
+     * 过期文件清理间隔 (毫秒)
+     */
+    private long cleanupIntervalMs = 3600000L;
+}
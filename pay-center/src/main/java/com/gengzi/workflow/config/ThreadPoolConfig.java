@@ -1,40 +1,83 @@
 package com.gengzi.workflow.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 线程池配置
  * 
- * 配置说明:
+ * PLATFORM 模式配置说明:
  * - corePoolSize: 核心线程数 = CPU 核数 * 2 (I/O 密集型)
  * - maxPoolSize: 最大线程数 = 50
  * - keepAliveTime: 空闲线程存活时间 = 60s
  * - queue: LinkedBlockingQueue (容量 1000)
+ * - 队列满时: 工作线程提交的任务由调用者运行，OkHttp / 调度线程提交的任务进入溢出队列 (见 WorkflowThreadPoolExecutor)
+ * 
+ * VIRTUAL 模式:
+ * - 每个节点任务一个虚拟线程 (Executors.newVirtualThreadPerTaskExecutor)
+ * - 运行在 JDK 21 以下时退化为每任务一个平台线程 (线程数不设上限)，
+ *   此时必须配置 max-concurrent-nodes > 0，由全局许可限制同时执行的节点数，否则启动失败
  * 
  * @author gengzi
  */
+@Slf4j
 @Configuration
+@EnableConfigurationProperties({WorkflowExecutorProperties.class, HttpClientProperties.class})
 public class ThreadPoolConfig {
 
     @Bean
-    public ExecutorService workflowExecutorService() {
-        int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
-        int maxPoolSize = 50;
+    public ExecutorService workflowExecutorService(WorkflowExecutorProperties properties) {
+        if (properties.getMode() == WorkflowExecutorProperties.Mode.VIRTUAL) {
+            return newVirtualThreadExecutor(properties);
+        }
+
         long keepAliveTime = 60L;
 
-        return new ThreadPoolExecutor(
-                corePoolSize,
-                maxPoolSize,
+        return new WorkflowThreadPoolExecutor(
+                properties.getCorePoolSize(),
+                properties.getMaxPoolSize(),
                 keepAliveTime,
                 TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(1000),
-                new ThreadPoolExecutor.CallerRunsPolicy() // 拒绝策略: 调用者运行
+                properties.getQueueCapacity() // 拒绝策略: 工作线程提交时调用者运行，其他线程提交时进入溢出队列
         );
     }
+
+    /**
+     * 创建每任务一个虚拟线程的执行器
+     * 
+     * 项目以 JDK 17 为编译目标，因此通过反射获取 JDK 21 的工厂方法
+     *
+     * @throws IllegalStateException 虚拟线程不可用且未配置全局并发上限
+     */
+    private ExecutorService newVirtualThreadExecutor(WorkflowExecutorProperties properties) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            log.info("Workflow executor mode: VIRTUAL (virtual thread per node)");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            if (properties.getMaxConcurrentNodes() <= 0) {
+                throw new IllegalStateException("Virtual threads are not available on Java "
+                        + Runtime.version().feature() + ": workflow.executor.mode=VIRTUAL falls back to an unbounded"
+                        + " platform thread per node, set workflow.executor.max-concurrent-nodes > 0 or use PLATFORM");
+            }
+            log.warn("Virtual threads are not available on Java {}, falling back to a platform thread per node"
+                    + " (bounded by max-concurrent-nodes={}); use PLATFORM mode on this JDK",
+                    Runtime.version().feature(), properties.getMaxConcurrentNodes());
+
+            AtomicInteger sequence = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "workflow-node-" + sequence.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
 }
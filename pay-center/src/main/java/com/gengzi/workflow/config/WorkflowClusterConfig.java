@@ -0,0 +1,37 @@
+package com.gengzi.workflow.config;
+
+import com.gengzi.workflow.cluster.MemoryRunStateStore;
+import com.gengzi.workflow.cluster.RunStateStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 集群调度配置
+ *
+ * 默认使用进程内 MemoryRunStateStore，调度状态只在本 JVM 内共享；
+ * 多实例部署需要提供网络共享存储实现的 RunStateStore Bean 替换它，
+ * 且执行上下文与节点结果也需要实例间共享的持久化 (当前 WorkflowStorageService 仍按实例保存)
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(WorkflowClusterProperties.class)
+public class WorkflowClusterConfig {
+
+    @Bean
+    @ConditionalOnMissingBean(RunStateStore.class)
+    public RunStateStore runStateStore(WorkflowClusterProperties properties,
+            WorkflowExecutorProperties executorProperties) {
+        if (executorProperties.getScheduling() == WorkflowExecutorProperties.Scheduling.DISTRIBUTED) {
+            log.warn("DISTRIBUTED scheduling is using the in-process run state store: scheduling state, contexts "
+                    + "and results are not shared between instances, so work is only spread within this JVM. "
+                    + "Provide a networked RunStateStore bean and shared persistence for multi-instance deployments");
+        }
+        log.info("Using in-process run state store: partitions={}", properties.getPartitions());
+        return new MemoryRunStateStore(properties.getPartitions());
+    }
+}
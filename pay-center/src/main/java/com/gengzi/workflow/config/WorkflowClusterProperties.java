@@ -0,0 +1,39 @@
+package com.gengzi.workflow.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 集群调度配置 (workflow.executor.scheduling = DISTRIBUTED 时生效)
+ * 
+ * 配置前缀: workflow.cluster
+ * 
+ * 就绪节点按顶层执行哈希进入分区队列，各实例优先领取自己负责的分区，
+ * 空闲时从其他分区窃取；领取的节点持有租约，实例失联后租约过期、节点重新入队
+ * 
+ * @author gengzi
+ */
+@Data
+@ConfigurationProperties(prefix = "workflow.cluster")
+public class WorkflowClusterProperties {
+
+    /**
+     * 实例 ID (为空时启动时随机生成)
+     */
+    private String instanceId;
+
+    /**
+     * 就绪队列分区数 (所有实例必须一致)
+     */
+    private int partitions = 16;
+
+    /**
+     * 租约时长 (毫秒)，超过该时长未心跳的实例视为失联
+     */
+    private long leaseMs = 30000L;
+
+    /**
+     * 心跳间隔 (毫秒)，应明显小于 leaseMs
+     */
+    private long heartbeatIntervalMs = 5000L;
+}
@@ -0,0 +1,135 @@
+package com.gengzi.workflow.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 工作流执行器配置
+ * 
+ * 配置前缀: workflow.executor
+ * 
+ * 执行模式:
+ * - PLATFORM: 有界平台线程池 (默认)，队列满时由提交任务的工作线程执行 (见 WorkflowThreadPoolExecutor)
+ * - VIRTUAL: 每个节点一个虚拟线程 (JDK 21+)，阻塞 I/O 不占用平台线程
+ * 
+ * 无论哪种模式，HTTP 节点调用前都需依次获取单次执行许可与全局许可，
+ * 背压由信号量显式控制，而不是依赖队列容量和拒绝策略
+ * 
+ * 调度策略:
+ * - PRIORITY: 就绪节点进入 NodeReadyQueue，按关键路径优先、执行间轮转公平的顺序取出 (默认)
+ * - FIFO: 就绪节点按提交顺序直接进入线程池队列
+ * - DISTRIBUTED: 入度等调度状态与就绪节点放在共享 RunStateStore 中，各实例按分区租约领取节点 (见 workflow.cluster)；
+ * 跨实例运行需要网络共享的 RunStateStore 实现与实例间共享的持久化，
+ * 默认的进程内 MemoryRunStateStore 只在单个 JVM 内生效 (启动时告警)
+ * 
+ * @author gengzi
+ */
+@Data
+@ConfigurationProperties(prefix = "workflow.executor")
+public class WorkflowExecutorProperties {
+
+    /**
+     * 执行模式
+     */
+    private Mode mode = Mode.PLATFORM;
+
+    /**
+     * 就绪节点调度策略
+     */
+    private Scheduling scheduling = Scheduling.PRIORITY;
+
+    /**
+     * 核心线程数 (仅 PLATFORM 模式)
+     * 默认: CPU 核数 * 2 (I/O 密集型)
+     */
+    private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 最大线程数 (仅 PLATFORM 模式)
+     */
+    private int maxPoolSize = 50;
+
+    /**
+     * 任务队列容量 (仅 PLATFORM 模式)
+     */
+    private int queueCapacity = 1000;
+
+    /**
+     * 全局最大并发节点数 (所有执行共享，0 表示不限制)
+     */
+    private int maxConcurrentNodes = 0;
+
+    /**
+     * 单次执行最大并发节点数 (0 表示不限制)
+     */
+    private int maxConcurrentNodesPerRun = 0;
+
+    /**
+     * HTTP 节点是否使用 AsyncHttpExecutor 非阻塞执行
+     * 开启后轮询与重试间隔由调度器定时触发，等待期间不占用工作线程
+     */
+    private boolean asyncHttp = true;
+
+    /**
+     * CALLBACK 节点默认等待超时 (毫秒，0 表示不超时)
+     * 超时后节点置为 FAILED，下游子树跳过
+     */
+    private long callbackTimeoutMs = 0L;
+
+    /**
+     * 回调超时检查间隔 (毫秒)
+     */
+    private long callbackSweepIntervalMs = 1000L;
+
+    /**
+     * MAP 节点默认最大并行元素数 (节点可通过 mapConcurrency 单独配置)
+     * 元素请求同时受单次执行与全局并发许可约束
+     */
+    private int mapConcurrency = 8;
+
+    /**
+     * HTTP / MAP 节点默认执行超时 (毫秒，0 表示不超时，节点可通过 timeoutMs 单独配置)
+     * 包含循环等待，到期时中断在途请求，节点置为 FAILED
+     */
+    private long nodeTimeoutMs = 0L;
+
+    /**
+     * 执行默认超时 (毫秒，0 表示不超时，可通过 GraphRequest.timeoutMs 单独配置)
+     * 到期后执行被取消，所有未结束节点置为 CANCELLED
+     */
+    private long runTimeoutMs = 0L;
+
+    /**
+     * 执行截止时间检查间隔 (毫秒)
+     */
+    private long deadlineSweepIntervalMs = 1000L;
+
+    public enum Mode {
+        /**
+         * 平台线程池
+         */
+        PLATFORM,
+
+        /**
+         * 每节点一个虚拟线程
+         */
+        VIRTUAL
+    }
+
+    public enum Scheduling {
+        /**
+         * 按提交顺序
+         */
+        FIFO,
+
+        /**
+         * 关键路径优先 + 执行间公平轮转
+         */
+        PRIORITY,
+
+        /**
+         * 共享调度状态 + 分区租约 (ClusterScheduler)，跨实例需网络共享的 RunStateStore 与持久化
+         */
+        DISTRIBUTED
+    }
+}
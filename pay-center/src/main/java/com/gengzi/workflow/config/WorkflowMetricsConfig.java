@@ -0,0 +1,61 @@
+package com.gengzi.workflow.config;
+
+import com.gengzi.workflow.engine.CallbackRegistry;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.engine.NodeReadyQueue;
+import com.gengzi.workflow.storage.WorkflowStorageService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 工作流容量指标
+ *
+ * 通过 Actuator 暴露 (/actuator/prometheus):
+ * - executor.*{name=workflow}: 线程池队列深度 (executor.queued)、剩余容量 (executor.queue.remaining)、
+ * 活跃线程等，剩余容量趋近 0 说明即将触发拒绝策略
+ * - workflow.executor.overflow: 队列满时由 OkHttp / 调度线程提交、暂存在溢出队列中的任务数 (仅 PLATFORM 模式)
+ * - workflow.permits.waiting: 等待并发许可的节点数
+ * - workflow.ready.queue.depth: NodeReadyQueue 中等待调度的节点数
+ * - workflow.runs.active: 未结束的执行数
+ * - workflow.callbacks.waiting: 等待回调的节点数
+ *
+ * 节点级计时器与计数器见 WorkflowMetrics
+ *
+ * @author gengzi
+ */
+@Configuration
+public class WorkflowMetricsConfig {
+
+    @Bean
+    public MeterBinder workflowCapacityMetrics(ExecutorService workflowExecutorService, NodeReadyQueue readyQueue,
+            WorkflowStorageService storageService, CallbackRegistry callbackRegistry,
+            NodeConcurrencyLimiter concurrencyLimiter) {
+        return registry -> {
+            new ExecutorServiceMetrics(workflowExecutorService, "workflow", Tags.empty()).bindTo(registry);
+
+            if (workflowExecutorService instanceof WorkflowThreadPoolExecutor executor) {
+                Gauge.builder("workflow.executor.overflow", executor, WorkflowThreadPoolExecutor::getOverflowSize)
+                        .description("Tasks submitted by non-worker threads while the executor queue was full")
+                        .register(registry);
+            }
+            Gauge.builder("workflow.permits.waiting", concurrencyLimiter, NodeConcurrencyLimiter::waitingCount)
+                    .description("Nodes waiting for a concurrency permit")
+                    .register(registry);
+            Gauge.builder("workflow.ready.queue.depth", readyQueue, NodeReadyQueue::size)
+                    .description("Ready nodes waiting for a worker")
+                    .register(registry);
+            Gauge.builder("workflow.runs.active", storageService, WorkflowStorageService::countActive)
+                    .description("Workflow runs that are running or suspended")
+                    .register(registry);
+            Gauge.builder("workflow.callbacks.waiting", callbackRegistry, CallbackRegistry::size)
+                    .description("Callback nodes waiting for a webhook")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.gengzi.workflow.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gengzi.workflow.storage.FileWorkflowPersistence;
+import com.gengzi.workflow.storage.MemoryWorkflowPersistence;
+import com.gengzi.workflow.storage.WorkflowPersistence;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 存储配置
+ *
+ * 根据 workflow.storage.type 选择持久化实现:
+ * - MEMORY: 仅内存 (默认)
+ * - FILE: 本地追加日志 + 周期快照，支持重启恢复
+ *
+ * 节点响应体的内存阈值与溢写目录见 ResultStoreProperties (workflow.result)
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties({WorkflowStorageProperties.class, ResultStoreProperties.class})
+public class WorkflowStorageConfig {
+
+    @Bean
+    public WorkflowPersistence workflowPersistence(WorkflowStorageProperties properties, ObjectMapper objectMapper) {
+        if (properties.getType() == WorkflowStorageProperties.Type.FILE) {
+            log.info("Using FILE workflow persistence: dir={}, flushInterval={}ms",
+                    properties.getDir(), properties.getFlushIntervalMs());
+            return new FileWorkflowPersistence(properties, objectMapper);
+        }
+
+        log.info("Using MEMORY workflow persistence (runs are lost on restart)");
+        return new MemoryWorkflowPersistence();
+    }
+}
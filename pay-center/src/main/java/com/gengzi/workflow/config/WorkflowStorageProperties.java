@@ -0,0 +1,92 @@
+package com.gengzi.workflow.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 工作流存储配置
+ * 
+ * 配置前缀: workflow.storage
+ * 
+ * 存储分两层:
+ * - 热数据: 内存 ConcurrentHashMap，运行中和最近结束的执行 (结束超过 archiveAfterMs 后冻结为归档)
+ * - 持久化: WorkflowPersistence 实现 (MEMORY 不落盘 / FILE 追加日志 + 快照)
+ * 
+ * @author gengzi
+ */
+@Data
+@ConfigurationProperties(prefix = "workflow.storage")
+public class WorkflowStorageProperties {
+
+    /**
+     * 持久化类型
+     */
+    private Type type = Type.MEMORY;
+
+    /**
+     * FILE 模式数据目录
+     */
+    private String dir = "data/workflow";
+
+    /**
+     * 写后刷盘间隔 (毫秒)，期间的状态迁移合并为一批写入
+     */
+    private long flushIntervalMs = 200L;
+
+    /**
+     * 每批写入后是否 fsync
+     */
+    private boolean fsync = false;
+
+    /**
+     * 快照间隔 (毫秒)，到期后日志达到 snapshotMinLogBytes 时将日志压缩为快照并截断日志
+     */
+    private long snapshotIntervalMs = 300000L;
+
+    /**
+     * 触发快照压缩的最小日志大小 (字节)，日志较小时不重写快照 (0 表示每个间隔都压缩)
+     */
+    private long snapshotMinLogBytes = 16L * 1024 * 1024;
+
+    /**
+     * 已结束执行保持为 WorkflowContext 的时间 (毫秒)，之后冻结为紧凑的 ArchivedRun 供查询
+     */
+    private long archiveAfterMs = 30000L;
+
+    /**
+     * 已结束执行在热数据中的保留时间 (毫秒)，过期后从内存驱逐
+     */
+    private long completedTtlMs = 600000L;
+
+    /**
+     * 冷读取 (归档文件或持久化) 得到的归档在内存中缓存的数量
+     */
+    private int coldCacheSize = 1024;
+
+    /**
+     * 归档文件目录，驱逐出内存的归档以二进制格式写入该目录，按 retentionMs 清理 (为空不写盘)
+     */
+    private String archiveDir = "";
+
+    /**
+     * 已结束执行在持久化中的保留时间 (毫秒)，过期后在快照压缩时丢弃
+     */
+    private long retentionMs = 86400000L;
+
+    /**
+     * 热数据驱逐检查间隔 (毫秒)
+     */
+    private long evictionIntervalMs = 60000L;
+
+    public enum Type {
+        /**
+         * 仅内存，重启后丢失
+         */
+        MEMORY,
+
+        /**
+         * 本地文件: 追加日志 + 周期快照
+         */
+        FILE
+    }
+}
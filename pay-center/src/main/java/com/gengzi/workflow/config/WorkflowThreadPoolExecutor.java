@@ -0,0 +1,97 @@
+package com.gengzi.workflow.config;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作流线程池 (PLATFORM 模式)
+ *
+ * 队列满时按提交线程区分处理:
+ * - 本线程池的工作线程: 由提交线程直接执行 (同 CallerRunsPolicy)，对调度形成背压
+ * - 其他线程 (OkHttp 分发线程、轮询调度线程、HTTP 请求线程等): 任务放入溢出队列并立即返回，
+ *   由工作线程在任务结束后搬回线程池队列，节点完成处理不会内联在这些线程上执行
+ *
+ * @author gengzi
+ */
+public class WorkflowThreadPoolExecutor extends ThreadPoolExecutor {
+
+    /**
+     * 队列满时由非工作线程提交的任务
+     */
+    private final Queue<Runnable> overflow = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 当前线程是否为本线程池的工作线程
+     */
+    private final ThreadLocal<Boolean> workerThread = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    public WorkflowThreadPoolExecutor(int corePoolSize, int maxPoolSize, long keepAliveTime, TimeUnit unit,
+            int queueCapacity) {
+        super(corePoolSize, maxPoolSize, keepAliveTime, unit, new LinkedBlockingQueue<>(queueCapacity),
+                new WorkerThreadFactory(),
+                (task, executor) -> ((WorkflowThreadPoolExecutor) executor).onRejected(task));
+    }
+
+    /**
+     * 溢出队列中的任务数
+     */
+    public int getOverflowSize() {
+        return overflow.size();
+    }
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable task) {
+        workerThread.set(Boolean.TRUE);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable error) {
+        if (!overflow.isEmpty()) {
+            drainOverflow();
+        }
+    }
+
+    private void onRejected(Runnable task) {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Workflow executor is shut down");
+        }
+
+        if (workerThread.get()) {
+            task.run();
+            return;
+        }
+
+        overflow.add(task);
+        // 加入前工作线程可能已全部结束，补一次搬运
+        drainOverflow();
+    }
+
+    /**
+     * 溢出任务搬回线程池队列 (队列再次满时停止，由之后结束的任务继续)
+     */
+    private void drainOverflow() {
+        Runnable task;
+        while ((task = overflow.poll()) != null) {
+            if (!getQueue().offer(task)) {
+                overflow.add(task);
+                return;
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "workflow-exec-" + sequence.incrementAndGet());
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package com.gengzi.workflow.context;
 
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.executor.ExecutionControl;
+import com.gengzi.workflow.expression.ConditionContext;
 import com.gengzi.workflow.model.NodeResult;
 import com.gengzi.workflow.model.NodeStatus;
 import com.gengzi.workflow.model.WorkflowStatus;
 import lombok.Getter;
 
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Semaphore;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
 
 /**
  * 工作流执行上下文
@@ -15,20 +27,60 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 
  * 线程安全保证:
  * - 所有 Map 使用 ConcurrentHashMap
- * - 入度使用 AtomicInteger
- * - JOIN_ANY 触发使用 AtomicBoolean
+ * - 入度、JOIN_ANY 触发标记使用按节点下标索引的 AtomicIntegerArray
+ * - 图拓扑 (CompiledGraph) 不可变，多次执行共享同一实例
  * - WorkflowStatus 使用 volatile
+ * - 状态计数使用 AtomicIntegerArray，与 nodeStatus 同步维护
+ * 
+ * 子执行:
+ * - SUB_WORKFLOW 节点通过 newChild 创建子上下文，runId 为 "父 runId:节点 ID"
+ * - 子上下文与父上下文共享单次执行并发许可，只挂在父上下文的 children 上，不单独存储
+ * 
+ * 取消:
+ * - cancel 只置取消标记 (只生效一次)，中断在途请求与清理未执行节点由 DagEngine.cancelWorkflow 完成
+ * - 在途 HTTP 请求的 ExecutionControl 登记在 executionControls 中，取消后登记的控制立即被取消
  * 
  * @author gengzi
  */
 @Getter
 public class WorkflowContext {
 
+    /**
+     * 子执行 runId 分隔符
+     */
+    public static final String CHILD_SEPARATOR = ":";
+
     /**
      * 本次执行唯一 ID
      */
     private final String runId;
 
+    /**
+     * 父执行 (顶层执行为 null)
+     */
+    private final WorkflowContext parent;
+
+    /**
+     * 顶层执行 ID (顶层执行为自身 runId)
+     */
+    private final String rootRunId;
+
+    /**
+     * 子执行嵌套深度 (顶层执行为 0)
+     */
+    private final int depth;
+
+    /**
+     * 子执行
+     * Key: SUB_WORKFLOW 节点 ID, Value: 子上下文
+     */
+    private final ConcurrentHashMap<String, WorkflowContext> children = new ConcurrentHashMap<>();
+
+    /**
+     * 编译后的图拓扑 (只读共享，用于调度与回调恢复)
+     */
+    private final CompiledGraph graph;
+
     /**
      * 节点执行结果映射
      * Key: 节点 ID, Value: 执行结果
@@ -42,25 +94,34 @@ public class WorkflowContext {
     private final ConcurrentHashMap<String, NodeStatus> nodeStatus;
 
     /**
-     * 节点入度映射 (用于 DAG 调度)
-     * Key: 节点 ID, Value: 当前入度 (使用 AtomicInteger 保证原子递减)
+     * 节点入度表 (用于 DAG 调度)
+     * 下标: 节点下标 (CompiledGraph.indexOf), 值: 当前入度
      * 
      * 调度逻辑:
-     * - 初始化: 计算每个节点的入度
+     * - 初始化: 克隆 CompiledGraph 中预先计算的入度
      * - 触发条件: 入度为 0 时可以执行
      * - 更新: 节点完成后，所有下游节点入度 -1
      */
-    private final ConcurrentHashMap<String, AtomicInteger> indegreeMap;
+    private final AtomicIntegerArray indegrees;
 
     /**
-     * JOIN_ANY 模式触发锁
-     * Key: 节点 ID, Value: 是否已触发 (AtomicBoolean)
+     * JOIN_ANY 模式触发标记
+     * 下标: 节点下标, 值: 0 未触发 / 1 已触发
      * 
      * 用于实现竞争模式:
      * - 当节点的 joinMode 为 ANY 时，多个上游节点竞争触发
-     * - 使用 compareAndSet(false, true) 确保只有一个上游能成功触发
+     * - 使用 compareAndSet(i, 0, 1) 确保只有一个上游能成功触发
      */
-    private final ConcurrentHashMap<String, AtomicBoolean> anyTriggerMap;
+    private final AtomicIntegerArray anyTriggered;
+
+    /**
+     * JOIN_ALL 跳过标记
+     * 下标: 节点下标, 值: 1 表示有上游被跳过
+     * 
+     * 上游异常或被跳过时先置位再递减入度，
+     * 最后一个将入度减到 0 的上游据此决定执行还是跳过该节点
+     */
+    private final AtomicIntegerArray skipMarks;
 
     /**
      * 回调 ID 映射
@@ -73,8 +134,11 @@ public class WorkflowContext {
      */
     private final ConcurrentHashMap<String, String> callbackMap;
 
+    private static final AtomicReferenceFieldUpdater<WorkflowContext, WorkflowStatus> WORKFLOW_STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(WorkflowContext.class, WorkflowStatus.class, "workflowStatus");
+
     /**
-     * 工作流整体状态 (volatile 保证可见性)
+     * 工作流整体状态 (volatile 保证可见性，通过 WORKFLOW_STATUS 原子迁移)
      */
     private volatile WorkflowStatus workflowStatus;
 
@@ -84,39 +148,481 @@ public class WorkflowContext {
     private final long startTimeMs;
 
     /**
-     * 节点映射表 (用于回调恢复)
-     * Key: 节点 ID, Value: 节点对象
-     * 存储原始节点定义，以便 CALLBACK 节点恢复时使用
+     * 工作流结束时间 (毫秒时间戳，未结束为 0)
+     */
+    private volatile long finishTimeMs;
+
+    /**
+     * 各状态节点数量
+     * 下标: NodeStatus.ordinal(), 值: 处于该状态的节点数
+     * 
+     * 由 updateNodeStatus 在每次状态迁移时增减，完成检测无需遍历 nodeStatus
+     */
+    private final AtomicIntegerArray statusCounts;
+
+    /**
+     * 尚未进入终态的节点数
+     * 初始化为节点总数，节点首次进入终态 (SUCCESS / FAILED / SKIPPED / CANCELLED) 时 -1
+     * 归零即表示所有节点 (包括被跳过的下游) 都已结束
+     */
+    private final AtomicInteger remainingNodes;
+
+    /**
+     * 活跃任务数
+     * 已提交或正在恢复、且尚未处理完下游触发的节点数量
+     * 
+     * 归零说明当前没有任何节点能继续推进:
+     * - remainingNodes 为 0: 工作流结束
+     * - 否则若存在 WAITING_CALLBACK 节点: 工作流部分挂起
+     */
+    private final AtomicInteger activeNodes;
+
+    /**
+     * 单次执行并发许可 (null 表示不限制)
+     * 由 NodeConcurrencyLimiter 创建，节点执行前获取、执行后释放
+     */
+    private final Semaphore concurrencyPermits;
+
+    /**
+     * 状态版本号 (即事件序号)
+     * 每次节点状态迁移 +1，用于判断一次快照采集期间状态是否被并发修改，
+     * 也用于增量状态查询 ("序号 N 之后的变化")
+     */
+    private final AtomicLong stateVersion;
+
+    /**
+     * 节点最后一次状态迁移的序号
+     * 下标: 节点下标, 值: 迁移时的 stateVersion (迁移进行中为 Long.MAX_VALUE)
      */
-    private final ConcurrentHashMap<String, com.gengzi.workflow.model.Node> nodeMap;
+    private final AtomicLongArray nodeSequences;
 
     /**
-     * 邻接表 (用于回调恢复)
-     * Key: 节点 ID, Value: 下游节点 ID 列表
-     * 存储图的拓扑结构，以便 CALLBACK 节点恢复时触发下游
+     * 内存中的结果体大小 (字符数，近似字节数)
      */
-    private final ConcurrentHashMap<String, java.util.List<String>> adjacencyList;
+    private final AtomicLong resultMemoryBytes;
+
+    /**
+     * 溢写到磁盘的结果体大小 (原始字节数)
+     */
+    private final AtomicLong resultSpilledBytes;
+
+    /**
+     * 节点结果的求值上下文缓存 (边条件与请求模板共用)
+     * 下标: 节点下标, 值: 最近一次创建的求值上下文 (结果被替换后失效)
+     */
+    private final AtomicReferenceArray<ConditionContext> resultViews;
+
+    /**
+     * 取消原因 (未取消为 null)
+     */
+    private volatile String cancelReason;
+
+    /**
+     * 在途 HTTP 请求 (含 MAP 元素) 的执行控制 (按图的最大层宽预分配容量)
+     */
+    private final Set<ExecutionControl> executionControls;
+
+    /**
+     * 状态监听器 (持久化、事件推送等)，写时复制
+     */
+    private volatile WorkflowStateListener[] stateListeners = new WorkflowStateListener[0];
+
+    public WorkflowContext(String runId, CompiledGraph graph, Semaphore concurrencyPermits) {
+        this(runId, graph, concurrencyPermits, System.currentTimeMillis());
+    }
+
+    /**
+     * @param startTimeMs 开始时间 (从持久化恢复时使用原始开始时间)
+     */
+    public WorkflowContext(String runId, CompiledGraph graph, Semaphore concurrencyPermits, long startTimeMs) {
+        this(runId, graph, concurrencyPermits, startTimeMs, null);
+    }
+
+    private WorkflowContext(String runId, CompiledGraph graph, Semaphore concurrencyPermits, long startTimeMs,
+            WorkflowContext parent) {
+        int size = graph.size();
 
-    public WorkflowContext(String runId) {
         this.runId = runId;
-        this.results = new ConcurrentHashMap<>();
-        this.nodeStatus = new ConcurrentHashMap<>();
-        this.indegreeMap = new ConcurrentHashMap<>();
-        this.anyTriggerMap = new ConcurrentHashMap<>();
+        this.parent = parent;
+        this.rootRunId = parent != null ? parent.rootRunId : runId;
+        this.depth = parent != null ? parent.depth + 1 : 0;
+        this.graph = graph;
+        this.results = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+        this.nodeStatus = new ConcurrentHashMap<>(size * 4 / 3 + 1);
+        this.indegrees = graph.newIndegrees();
+        this.anyTriggered = new AtomicIntegerArray(size);
+        this.skipMarks = new AtomicIntegerArray(size);
         this.callbackMap = new ConcurrentHashMap<>();
-        this.nodeMap = new ConcurrentHashMap<>();
-        this.adjacencyList = new ConcurrentHashMap<>();
+        this.statusCounts = new AtomicIntegerArray(NodeStatus.values().length);
+        this.remainingNodes = new AtomicInteger(size);
+        this.activeNodes = new AtomicInteger(0);
+        this.concurrencyPermits = concurrencyPermits;
+        this.stateVersion = new AtomicLong();
+        this.nodeSequences = new AtomicLongArray(size);
+        this.resultMemoryBytes = new AtomicLong();
+        this.resultSpilledBytes = new AtomicLong();
+        this.resultViews = new AtomicReferenceArray<>(size);
+        this.executionControls = ConcurrentHashMap.newKeySet(graph.maxParallelism());
         this.workflowStatus = WorkflowStatus.RUNNING;
-        this.startTimeMs = System.currentTimeMillis();
+        this.startTimeMs = startTimeMs;
+
+        // 所有节点初始状态为 PENDING
+        for (int i = 0; i < size; i++) {
+            nodeStatus.put(graph.nodeId(i), NodeStatus.PENDING);
+        }
+        statusCounts.set(NodeStatus.PENDING.ordinal(), size);
+    }
+
+    /**
+     * 创建子执行上下文 (共享本执行的并发许可)
+     * 
+     * @param nodeId     SUB_WORKFLOW 节点 ID
+     * @param childGraph 子工作流模板
+     * @return 子上下文
+     */
+    public WorkflowContext newChild(String nodeId, CompiledGraph childGraph) {
+        WorkflowContext child = new WorkflowContext(runId + CHILD_SEPARATOR + nodeId, childGraph,
+                concurrencyPermits, System.currentTimeMillis(), this);
+        children.put(nodeId, child);
+        return child;
+    }
+
+    /**
+     * 按 runId 查找后代执行
+     * 
+     * @param descendantRunId 后代执行 ID
+     * @return 后代上下文，不存在返回 null
+     */
+    public WorkflowContext findDescendant(String descendantRunId) {
+        for (WorkflowContext child : children.values()) {
+            if (child.runId.equals(descendantRunId)) {
+                return child;
+            }
+            if (descendantRunId.startsWith(child.runId + CHILD_SEPARATOR)) {
+                WorkflowContext found = child.findDescendant(descendantRunId);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
     }
 
     /**
      * 更新工作流状态
      * 
+     * 状态迁移为 CAS: 进入终态 (COMPLETED / FAILED / CANCELLED) 后不再变化，
+     * 迟到的回调恢复、超时或重复的完成检测不会重写结束时间，监听器对每次终态迁移只回调一次；
+     * 与当前状态相同时不回调
+     * 
      * @param status 新状态
+     * @return 状态是否发生变化
      */
-    public void setWorkflowStatus(WorkflowStatus status) {
+    public boolean setWorkflowStatus(WorkflowStatus status) {
+        WorkflowStatus current;
+        do {
+            current = workflowStatus;
+            if (current == status || (current != null && current.isTerminal())) {
+                return false;
+            }
+        } while (!WORKFLOW_STATUS.compareAndSet(this, current, status));
+
+        if (status.isTerminal()) {
+            this.finishTimeMs = System.currentTimeMillis();
+        }
+
+        for (WorkflowStateListener listener : stateListeners) {
+            listener.onWorkflowStatusChanged(this, status);
+        }
+        return true;
+    }
+
+    /**
+     * 注册状态监听器 (同一实例只注册一次)
+     * 
+     * @param listener 监听器
+     */
+    public synchronized void addStateListener(WorkflowStateListener listener) {
+        WorkflowStateListener[] current = stateListeners;
+        for (WorkflowStateListener existing : current) {
+            if (existing == listener) {
+                return;
+            }
+        }
+
+        WorkflowStateListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        stateListeners = updated;
+    }
+
+    /**
+     * 工作流是否已结束 (COMPLETED / FAILED / CANCELLED)
+     */
+    public boolean isFinished() {
+        return finishTimeMs > 0;
+    }
+
+    /**
+     * 标记执行已取消
+     * 
+     * @param reason 取消原因
+     * @return 是否本次调用生效 (已取消时返回 false)
+     */
+    public synchronized boolean cancel(String reason) {
+        if (cancelReason != null) {
+            return false;
+        }
+        cancelReason = reason;
+        return true;
+    }
+
+    /**
+     * 执行是否已取消
+     */
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    /**
+     * 登记在途请求的执行控制，执行已取消时立即取消该控制
+     * 
+     * @param control 执行控制
+     */
+    public void registerExecution(ExecutionControl control) {
+        executionControls.add(control);
+        String reason = cancelReason;
+        if (reason != null) {
+            control.cancel(reason);
+        }
+    }
+
+    /**
+     * 移除执行控制 (请求结束时调用)
+     * 
+     * @param control 执行控制
+     */
+    public void unregisterExecution(ExecutionControl control) {
+        executionControls.remove(control);
+    }
+
+    /**
+     * 更新节点状态，并同步维护状态计数和剩余节点数
+     * 
+     * @param nodeId 节点 ID
+     * @param status 新状态
+     * @return 旧状态 (节点未初始化时为 null)
+     */
+    public NodeStatus updateNodeStatus(String nodeId, NodeStatus status) {
+        NodeStatus previous = nodeStatus.put(nodeId, status);
+        onStatusChanged(nodeId, previous, status);
+        return previous;
+    }
+
+    /**
+     * CAS 方式更新节点状态，仅当当前状态为 expect 时生效
+     * 
+     * @param nodeId 节点 ID
+     * @param expect 期望的当前状态
+     * @param status 新状态
+     * @return 是否更新成功
+     */
+    public boolean compareAndSetNodeStatus(String nodeId, NodeStatus expect, NodeStatus status) {
+        if (!nodeStatus.replace(nodeId, expect, status)) {
+            return false;
+        }
+        onStatusChanged(nodeId, expect, status);
+        return true;
+    }
+
+    private void onStatusChanged(String nodeId, NodeStatus previous, NodeStatus status) {
+        if (previous == status) {
+            return;
+        }
+
+        // 先标记迁移进行中再递增序号，保证增量查询不会漏掉并发迁移的节点
+        int index = graph.indexOf(nodeId);
+        if (index >= 0) {
+            nodeSequences.set(index, Long.MAX_VALUE);
+        }
+        long sequence = stateVersion.incrementAndGet();
+        if (index >= 0) {
+            nodeSequences.set(index, sequence);
+        }
+
+        if (previous != null) {
+            statusCounts.decrementAndGet(previous.ordinal());
+        }
+        statusCounts.incrementAndGet(status.ordinal());
+
+        // 仅统计已初始化节点的首次终态迁移
+        if (previous != null && !previous.isTerminal() && status.isTerminal()) {
+            remainingNodes.decrementAndGet();
+        }
+
+        for (WorkflowStateListener listener : stateListeners) {
+            listener.onNodeStatusChanged(this, nodeId, previous, status);
+        }
+    }
+
+    /**
+     * 从持久化快照恢复执行状态
+     * 
+     * 仅在上下文发布前 (尚未提交任何节点) 调用，不触发监听器
+     * 
+     * @param statuses     节点状态
+     * @param nodeResults  节点结果
+     * @param callbacks    回调 ID -> 节点 ID
+     * @param indegreeData 入度 (为 null 时保留初始入度)
+     * @param anyData      JOIN_ANY 触发标记 (可为 null)
+     * @param skipData     JOIN_ALL 跳过标记 (可为 null)
+     * @param status       工作流状态
+     * @param finishedAt   结束时间 (未结束为 0)
+     */
+    public void restoreState(Map<String, NodeStatus> statuses, Map<String, NodeResult> nodeResults,
+            Map<String, String> callbacks, int[] indegreeData, int[] anyData, int[] skipData,
+            WorkflowStatus status, long finishedAt) {
+        // 恢复的状态统一记为序号 1，增量查询从 0 开始即可拿到全部
+        stateVersion.set(1);
+        statuses.forEach((nodeId, restored) -> {
+            NodeStatus previous = nodeStatus.replace(nodeId, restored);
+            if (previous != null && previous != restored) {
+                nodeSequences.set(graph.indexOf(nodeId), 1);
+                statusCounts.decrementAndGet(previous.ordinal());
+                statusCounts.incrementAndGet(restored.ordinal());
+                if (restored.isTerminal()) {
+                    remainingNodes.decrementAndGet();
+                }
+            }
+        });
+        nodeResults.forEach(this::putResult);
+        callbackMap.putAll(callbacks);
+
+        for (int i = 0; i < graph.size(); i++) {
+            if (indegreeData != null) {
+                indegrees.set(i, indegreeData[i]);
+            }
+            if (anyData != null) {
+                anyTriggered.set(i, anyData[i]);
+            }
+            if (skipData != null) {
+                skipMarks.set(i, skipData[i]);
+            }
+        }
+
         this.workflowStatus = status;
+        this.finishTimeMs = finishedAt;
+    }
+
+    /**
+     * 写入节点结果，并同步维护结果体内存统计
+     * 
+     * @param nodeId 节点 ID
+     * @param result 结果
+     */
+    public void putResult(String nodeId, NodeResult result) {
+        NodeResult previous = results.put(nodeId, result);
+        if (previous != null) {
+            accountBody(previous, -1);
+        }
+        accountBody(result, 1);
+    }
+
+    /**
+     * 设置结果体 (回调数据等)，并同步维护结果体内存统计
+     * 
+     * 只作废该节点缓存的求值上下文，不扫描其他节点
+     * 
+     * @param index  节点下标
+     * @param result 已写入的结果
+     * @param body   新结果体
+     */
+    public void setResultBody(int index, NodeResult result, String body) {
+        synchronized (result) {
+            accountBody(result, -1);
+            result.setBody(body);
+            result.setBodyRef(null);
+            result.setBodySize(body != null ? body.length() : 0);
+            accountBody(result, 1);
+        }
+        ConditionContext view = resultViews.get(index);
+        if (view != null && view.getResult() == result) {
+            resultViews.compareAndSet(index, view, null);
+        }
+    }
+
+    /**
+     * 节点结果的求值上下文
+     *
+     * 同一结果实例在本执行内只创建一个，响应体最多读取、解析一次；
+     * 结果被替换 (putResult) 或结果体被改写 (setResultBody) 后重新创建
+     *
+     * @param index   节点下标
+     * @param factory 结果 -> 求值上下文
+     * @return 求值上下文 (节点没有结果时为空结果的上下文，不缓存)
+     */
+    public ConditionContext resultView(int index, Function<NodeResult, ConditionContext> factory) {
+        NodeResult result = results.get(graph.nodeId(index));
+        if (result == null) {
+            return factory.apply(new NodeResult());
+        }
+
+        ConditionContext view = resultViews.get(index);
+        if (view != null && view.getResult() == result) {
+            return view;
+        }
+        ConditionContext created = factory.apply(result);
+        return resultViews.compareAndSet(index, view, created) ? created : resultView(index, factory);
+    }
+
+    private void accountBody(NodeResult result, int sign) {
+        if (result.getBodyRef() != null) {
+            resultSpilledBytes.addAndGet(sign * result.getBodySize());
+        } else if (result.getBody() != null) {
+            resultMemoryBytes.addAndGet(sign * (long) result.getBody().length());
+        }
+    }
+
+    /**
+     * 当前事件序号
+     */
+    public long getSequence() {
+        return stateVersion.get();
+    }
+
+    /**
+     * 节点最后一次状态迁移的序号 (从未迁移为 0)
+     * 
+     * @param index 节点下标
+     * @return 序号
+     */
+    public long getNodeSequence(int index) {
+        return nodeSequences.get(index);
+    }
+
+    /**
+     * 获取处于指定状态的节点数
+     * 
+     * @param status 节点状态
+     * @return 节点数
+     */
+    public int getStatusCount(NodeStatus status) {
+        return statusCounts.get(status.ordinal());
+    }
+
+    /**
+     * 登记一个活跃任务 (节点提交或回调恢复时调用)
+     */
+    public void markNodeActive() {
+        activeNodes.incrementAndGet();
+    }
+
+    /**
+     * 释放一个活跃任务
+     * 
+     * @return 释放后是否已没有活跃任务 (调用方需检查工作流是否完成)
+     */
+    public boolean releaseActiveNode() {
+        return activeNodes.decrementAndGet() == 0;
     }
 
     /**
@@ -125,6 +631,7 @@ public class WorkflowContext {
      * @return 耗时
      */
     public long getTotalDurationMs() {
-        return System.currentTimeMillis() - startTimeMs;
+        long endMs = finishTimeMs > 0 ? finishTimeMs : System.currentTimeMillis();
+        return endMs - startTimeMs;
     }
 }
@@ -0,0 +1,35 @@
+package com.gengzi.workflow.context;
+
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+
+/**
+ * 工作流状态监听器
+ * 
+ * 由 WorkflowContext 在节点状态或工作流状态发生变化时同步回调，
+ * 回调运行在触发变化的线程上，实现方应只做轻量工作 (如入队)
+ * 
+ * @author gengzi
+ */
+public interface WorkflowStateListener {
+
+    /**
+     * 节点状态变化
+     * 
+     * @param context  上下文
+     * @param nodeId   节点 ID
+     * @param previous 旧状态
+     * @param status   新状态
+     */
+    default void onNodeStatusChanged(WorkflowContext context, String nodeId, NodeStatus previous, NodeStatus status) {
+    }
+
+    /**
+     * 工作流整体状态变化
+     * 
+     * @param context 上下文
+     * @param status  新状态
+     */
+    default void onWorkflowStatusChanged(WorkflowContext context, WorkflowStatus status) {
+    }
+}
@@ -1,21 +1,43 @@
 package com.gengzi.workflow.controller;
 
+import com.gengzi.workflow.dto.BatchCallbackResponse;
+import com.gengzi.workflow.dto.CallbackRequest;
 import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.dto.TriggerRequest;
+import com.gengzi.workflow.dto.TriggerResponse;
 import com.gengzi.workflow.dto.WorkflowRunResponse;
 import com.gengzi.workflow.dto.WorkflowStatusResponse;
+import com.gengzi.workflow.dto.WorkflowTemplateResponse;
 import com.gengzi.workflow.service.WorkflowService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 工作流 REST 控制器
  * 
  * API 端点:
- * - POST /api/workflow/run - 启动工作流
- * - GET /api/workflow/{runId}/status - 查询状态
+ * - POST /api/workflow/run - 启动工作流 (支持 Idempotency-Key)
+ * - POST /api/workflow/templates/{name} - 注册子工作流模板
+ * - GET /api/workflow/templates - 列出子工作流模板
+ * - POST /api/workflow/triggers/{name} - 注册定时触发器 (cron / 固定频率启动模板)
+ * - GET /api/workflow/triggers - 列出定时触发器
+ * - DELETE /api/workflow/triggers/{name} - 删除定时触发器
+ * - GET /api/workflow/{runId}/status - 查询状态 (支持 since 增量)
+ * - GET /api/workflow/{runId}/events - 状态事件流 (SSE)
+ * - POST /api/workflow/{runId}/cancel - 取消执行
+ * - GET /api/workflow/{runId}/nodes/{nodeId}/body - 节点响应体
  * - POST /api/hooks/{callbackId} - 异步回调
+ * - POST /api/hooks/batch - 批量异步回调
  * 
  * @author gengzi
  */
@@ -25,6 +47,11 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class WorkflowController {
 
+    /**
+     * 幂等键请求头
+     */
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final WorkflowService workflowService;
 
     /**
@@ -38,33 +65,233 @@ public class WorkflowController {
      * "edges": [...]
      * }
      * 
-     * @param graphRequest 工作流图定义
-     * @return 执行响应 (包含 runId)
+     * 请求头 Idempotency-Key (可选): 上游重试时携带相同的键，返回首次提交的 runId 而不重复执行
+     * 请求体按原始字节哈希命中编译缓存，重复提交不再反序列化
+     * 
+     * @param definition     工作流图定义 (JSON)
+     * @param idempotencyKey 幂等键 (可选)
+     * @return 执行响应 (包含 runId，图定义无法解析、校验或编译失败，或幂等键已用于不同的图定义时返回 422)
      */
     @PostMapping("/workflow/run")
-    public ResponseEntity<WorkflowRunResponse> runWorkflow(@RequestBody GraphRequest graphRequest) {
-        log.info("Received workflow run request: {} nodes, {} edges",
-                graphRequest.getNodes().size(),
-                graphRequest.getEdges().size());
+    public ResponseEntity<WorkflowRunResponse> runWorkflow(
+            @RequestBody byte[] definition,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        log.info("Received workflow run request: {} bytes, idempotencyKey={}", definition.length, idempotencyKey);
 
-        WorkflowRunResponse response = workflowService.runWorkflow(graphRequest);
+        try {
+            return ResponseEntity.ok(workflowService.runWorkflow(definition, idempotencyKey));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.unprocessableEntity().body(WorkflowRunResponse.builder()
+                    .message(e.getMessage())
+                    .build());
+        }
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * 注册工作流模板
+     * 
+     * POST /api/workflow/templates/{name}
+     * 
+     * 请求体与 /workflow/run 相同，模板编译一次后供 SUB_WORKFLOW 节点按名称引用
+     * 
+     * @param name         模板名称
+     * @param graphRequest 模板图定义
+     * @return 模板信息 (引用自身时返回 400)
+     */
+    @PostMapping("/workflow/templates/{name}")
+    public ResponseEntity<WorkflowTemplateResponse> registerTemplate(
+            @PathVariable String name,
+            @RequestBody GraphRequest graphRequest) {
+        log.info("Received template registration: name={}, {} nodes", name, graphRequest.getNodes().size());
+
+        try {
+            return ResponseEntity.ok(workflowService.registerTemplate(name, graphRequest));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(WorkflowTemplateResponse.builder()
+                    .name(name)
+                    .message(e.getMessage())
+                    .build());
+        }
+    }
+
+    /**
+     * 列出工作流模板
+     * 
+     * GET /api/workflow/templates
+     * 
+     * @return 模板列表
+     */
+    @GetMapping("/workflow/templates")
+    public ResponseEntity<List<WorkflowTemplateResponse>> listTemplates() {
+        return ResponseEntity.ok(workflowService.listTemplates());
+    }
+
+    /**
+     * 注册定时触发器
+     * 
+     * POST /api/workflow/triggers/{name}
+     * 
+     * 请求体示例:
+     * {
+     * "template": "daily-reconcile",
+     * "cron": "0 0 2 * * *",
+     * "zone": "Asia/Shanghai",
+     * "misfirePolicy": "FIRE_ONCE",
+     * "allowOverlap": false
+     * }
+     * 
+     * 到点时直接以模板的编译结果启动执行，替代外部 cron 反复调用 /workflow/run
+     * 
+     * @param name    触发器名称 (同名触发器被替换)
+     * @param request 触发配置
+     * @return 触发器信息 (模板不存在或调度配置无效时返回 400)
+     */
+    @PostMapping("/workflow/triggers/{name}")
+    public ResponseEntity<TriggerResponse> registerTrigger(
+            @PathVariable String name,
+            @RequestBody TriggerRequest request) {
+        log.info("Received trigger registration: name={}, template={}", name, request.getTemplate());
+
+        try {
+            return ResponseEntity.ok(workflowService.registerTrigger(name, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(TriggerResponse.builder()
+                    .name(name)
+                    .template(request.getTemplate())
+                    .message(e.getMessage())
+                    .build());
+        }
+    }
+
+    /**
+     * 列出定时触发器
+     * 
+     * GET /api/workflow/triggers
+     * 
+     * @return 触发器列表 (含下一次触发时间与触发计数)
+     */
+    @GetMapping("/workflow/triggers")
+    public ResponseEntity<List<TriggerResponse>> listTriggers() {
+        return ResponseEntity.ok(workflowService.listTriggers());
+    }
+
+    /**
+     * 删除定时触发器
+     * 
+     * DELETE /api/workflow/triggers/{name}
+     * 
+     * @param name 触发器名称
+     * @return 触发器不存在返回 404
+     */
+    @DeleteMapping("/workflow/triggers/{name}")
+    public ResponseEntity<Void> removeTrigger(@PathVariable String name) {
+        log.info("Received trigger removal: name={}", name);
+
+        if (!workflowService.removeTrigger(name)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
     }
 
     /**
      * 查询工作流状态
      * 
-     * GET /api/workflow/{runId}/status
+     * GET /api/workflow/{runId}/status?since={sequence}
+     * 
+     * 传入上一次响应的 sequence 时只返回之后发生变化的节点 (增量)
      * 
      * @param runId 执行 ID
+     * @param since 上一次响应的 sequence (可选)
      * @return 状态响应
      */
     @GetMapping("/workflow/{runId}/status")
-    public ResponseEntity<WorkflowStatusResponse> getStatus(@PathVariable String runId) {
-        log.info("Received status query: runId={}", runId);
+    public ResponseEntity<WorkflowStatusResponse> getStatus(
+            @PathVariable String runId,
+            @RequestParam(required = false) Long since) {
+        log.info("Received status query: runId={}, since={}", runId, since);
+
+        WorkflowStatusResponse response = workflowService.getStatus(runId, since);
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 下载节点响应体
+     * 
+     * GET /api/workflow/{runId}/nodes/{nodeId}/body
+     * 
+     * 溢写到磁盘的大响应体不出现在状态接口中，通过此接口按需流式读取
+     * 
+     * @param runId  执行 ID
+     * @param nodeId 节点 ID
+     * @return 响应体流
+     */
+    @GetMapping("/workflow/{runId}/nodes/{nodeId}/body")
+    public ResponseEntity<InputStreamResource> getNodeBody(
+            @PathVariable String runId,
+            @PathVariable String nodeId) throws IOException {
+        log.info("Received node body query: runId={}, nodeId={}", runId, nodeId);
+
+        WorkflowService.NodeBody body = workflowService.openNodeBody(runId, nodeId);
+        if (body == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String contentType = null;
+        if (body.getResult().getHeaders() != null) {
+            for (Map.Entry<String, String> header : body.getResult().getHeaders().entrySet()) {
+                if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.getKey())) {
+                    contentType = header.getValue();
+                }
+            }
+        }
+
+        return ResponseEntity.ok()
+                .contentType(contentType != null ? MediaType.parseMediaType(contentType)
+                        : MediaType.APPLICATION_OCTET_STREAM)
+                .body(new InputStreamResource(body.getStream()));
+    }
+
+    /**
+     * 订阅工作流事件流
+     * 
+     * GET /api/workflow/{runId}/events (text/event-stream)
+     * 
+     * 推送节点状态迁移与工作流状态变化，替代轮询 status 接口
+     * 
+     * @param runId 执行 ID
+     * @return SSE 连接
+     */
+    @GetMapping(value = "/workflow/{runId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvents(@PathVariable String runId) {
+        log.info("Received event stream subscription: runId={}", runId);
 
-        WorkflowStatusResponse response = workflowService.getStatus(runId);
+        SseEmitter emitter = workflowService.streamEvents(runId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 取消工作流执行
+     * 
+     * POST /api/workflow/{runId}/cancel
+     * 
+     * 在途 HTTP 请求被中断，排队中的节点不再执行，工作线程与并发许可立即释放
+     * 
+     * @param runId 执行 ID
+     * @return 执行响应 (执行不存在返回 404)
+     */
+    @PostMapping("/workflow/{runId}/cancel")
+    public ResponseEntity<WorkflowRunResponse> cancelWorkflow(@PathVariable String runId) {
+        log.info("Received cancel request: runId={}", runId);
+
+        WorkflowRunResponse response = workflowService.cancelWorkflow(runId);
+        if (response == null) {
+            return ResponseEntity.notFound().build();
+        }
 
         return ResponseEntity.ok(response);
     }
@@ -91,4 +318,29 @@ public class WorkflowController {
 
         return ResponseEntity.ok("Callback received");
     }
+
+    /**
+     * 批量回调端点
+     * 
+     * POST /api/hooks/batch
+     * 
+     * 请求体示例:
+     * [
+     * { "callbackId": "...", "payload": {...} },
+     * { "callbackId": "...", "payload": {...} }
+     * ]
+     * 
+     * 上游在短时间内集中发送回调时，一次请求恢复多个 CALLBACK 节点
+     * 
+     * @param callbacks 回调列表
+     * @return 成功恢复数与被拒绝的回调 ID
+     */
+    @PostMapping("/hooks/batch")
+    public ResponseEntity<BatchCallbackResponse> handleCallbacks(@RequestBody List<CallbackRequest> callbacks) {
+        log.info("Received batch callback: size={}", callbacks.size());
+
+        BatchCallbackResponse response = workflowService.handleCallbacks(callbacks);
+
+        return ResponseEntity.ok(response);
+    }
 }
@@ -0,0 +1,30 @@
+package com.gengzi.workflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量回调响应 DTO
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCallbackResponse {
+
+    /**
+     * 成功恢复的节点数
+     */
+    private int resumed;
+
+    /**
+     * 未找到、已处理、已超时或未能恢复 (执行不存在、节点不在等待回调) 的回调 ID
+     */
+    private List<String> rejected;
+}
@@ -0,0 +1,27 @@
+package com.gengzi.workflow.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量回调中的单条回调
+ * 
+ * @author gengzi
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CallbackRequest {
+
+    /**
+     * 回调 ID (由 CALLBACK 节点生成)
+     */
+    private String callbackId;
+
+    /**
+     * 回调数据 (任意 JSON，原样写入节点结果 body)
+     */
+    private JsonNode payload;
+}
@@ -23,4 +23,15 @@ public class Edge {
      * 目标节点 ID
      */
     private String toNodeId;
+
+    /**
+     * 条件表达式 (可选)
+     * 起始节点成功后条件成立才触发目标节点，否则目标节点按 "上游被跳过" 处理
+     * 语法见 com.gengzi.workflow.expression.ConditionParser，例如: "body.$.status == 'APPROVED'"
+     */
+    private String condition;
+
+    public Edge(String fromNodeId, String toNodeId) {
+        this(fromNodeId, toNodeId, null);
+    }
 }
@@ -27,4 +27,16 @@ public class GraphRequest {
      * 边列表 (描述节点依赖关系)
      */
     private List<Edge> edges;
+
+    /**
+     * 执行超时 (毫秒，从执行开始计)
+     * 为空时使用 workflow.executor.run-timeout-ms，0 表示不超时
+     * 到期后执行被取消 (CANCELLED)，子工作流继承父执行的截止时间
+     */
+    private Long timeoutMs;
+
+    public GraphRequest(List<Node> nodes, List<Edge> edges) {
+        this.nodes = nodes;
+        this.edges = edges;
+    }
 }
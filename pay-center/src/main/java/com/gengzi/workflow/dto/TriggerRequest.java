@@ -0,0 +1,55 @@
+package com.gengzi.workflow.dto;
+
+import com.gengzi.workflow.model.MisfirePolicy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 定时触发请求 DTO
+ * 
+ * cron 与 intervalMs 二选一:
+ * - cron: Spring cron 表达式 (秒 分 时 日 月 周)，如 "0 0/5 * * * *"
+ * - intervalMs: 固定频率 (毫秒)，按注册时间对齐，不受执行耗时影响
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TriggerRequest {
+
+    /**
+     * 工作流模板名称 (需先通过 /workflow/templates/{name} 注册)
+     */
+    private String template;
+
+    /**
+     * cron 表达式
+     */
+    private String cron;
+
+    /**
+     * cron 时区 (为空时使用系统时区)，如 "Asia/Shanghai"
+     */
+    private String zone;
+
+    /**
+     * 固定频率 (毫秒)
+     */
+    private Long intervalMs;
+
+    /**
+     * 错过触发时间的处理方式
+     */
+    @Builder.Default
+    private MisfirePolicy misfirePolicy = MisfirePolicy.FIRE_ONCE;
+
+    /**
+     * 是否允许重叠执行
+     * 为 false 时上一次触发的执行尚未结束 (含等待回调) 则跳过本次触发
+     */
+    private boolean allowOverlap;
+}
@@ -0,0 +1,69 @@
+package com.gengzi.workflow.dto;
+
+import com.gengzi.workflow.model.MisfirePolicy;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 定时触发响应 DTO
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TriggerResponse {
+
+    /**
+     * 触发器名称
+     */
+    private String name;
+
+    /**
+     * 工作流模板名称
+     */
+    private String template;
+
+    private String cron;
+
+    private String zone;
+
+    private Long intervalMs;
+
+    private MisfirePolicy misfirePolicy;
+
+    private boolean allowOverlap;
+
+    /**
+     * 下一次触发时间 (毫秒时间戳)
+     */
+    private long nextFireTimeMs;
+
+    /**
+     * 最近一次触发启动的执行 ID
+     */
+    private String lastRunId;
+
+    /**
+     * 已启动的执行数
+     */
+    private long fireCount;
+
+    /**
+     * 按 SKIP 策略跳过的错过触发数
+     */
+    private long misfireCount;
+
+    /**
+     * 因上一次执行未结束而跳过的触发数
+     */
+    private long overlapSkipCount;
+
+    /**
+     * 消息 (注册失败时为错误原因)
+     */
+    private String message;
+}
@@ -0,0 +1,60 @@
+package com.gengzi.workflow.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 工作流状态事件 (事件流推送)
+ * 
+ * 节点事件携带 nodeId / previousStatus / nodeStatus，
+ * 工作流事件只携带 workflowStatus
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkflowEvent {
+
+    /**
+     * 执行 ID
+     */
+    private String runId;
+
+    /**
+     * 事件序号 (与增量状态查询的 since 参数对应)
+     */
+    private long sequence;
+
+    /**
+     * 节点 ID (工作流事件为空)
+     */
+    private String nodeId;
+
+    /**
+     * 节点旧状态
+     */
+    private NodeStatus previousStatus;
+
+    /**
+     * 节点新状态
+     */
+    private NodeStatus nodeStatus;
+
+    /**
+     * 工作流状态 (仅工作流事件)
+     */
+    private WorkflowStatus workflowStatus;
+
+    /**
+     * 事件时间 (毫秒时间戳)
+     */
+    private long timeMs;
+}
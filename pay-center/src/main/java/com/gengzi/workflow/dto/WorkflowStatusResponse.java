@@ -31,6 +31,16 @@ public class WorkflowStatusResponse {
      */
     private WorkflowStatus workflowStatus;
 
+    /**
+     * 状态序号 (下一次增量查询传入 since=sequence)
+     */
+    private long sequence;
+
+    /**
+     * 是否为增量结果 (只包含 since 之后状态发生变化的节点)
+     */
+    private boolean delta;
+
     /**
      * 各节点执行状态
      */
@@ -41,6 +51,16 @@ public class WorkflowStatusResponse {
      */
     private Map<String, NodeResult> results;
 
+    /**
+     * 内存中的结果体大小 (近似字节数)
+     */
+    private long resultMemoryBytes;
+
+    /**
+     * 溢写到磁盘的结果体大小 (字节)
+     */
+    private long resultSpilledBytes;
+
     /**
      * 执行总耗时 (毫秒)
      */
@@ -0,0 +1,38 @@
+package com.gengzi.workflow.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 工作流模板响应 DTO
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowTemplateResponse {
+
+    /**
+     * 模板名称
+     */
+    private String name;
+
+    /**
+     * 节点数
+     */
+    private int nodeCount;
+
+    /**
+     * 边数
+     */
+    private int edgeCount;
+
+    /**
+     * 消息 (注册失败时为错误原因)
+     */
+    private String message;
+}
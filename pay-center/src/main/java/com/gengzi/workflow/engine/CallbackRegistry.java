@@ -0,0 +1,143 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.model.Node;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * 全局回调索引
+ *
+ * callbackId -> (runId, nodeId)，回调到达时 O(1) 定位执行与节点，
+ * 不再遍历所有 WorkflowContext
+ *
+ * 生命周期:
+ * - DagEngine 挂起 CALLBACK 节点时登记 (或重启恢复挂起执行时重新登记)
+ * - 回调恢复或超时时通过 claim 原子移除，保证同一回调只被处理一次
+ *
+ * 超时:
+ * - 带截止时间的登记额外进入按截止时间排序的优先队列
+ * - pollExpired 只弹出队首已到期的登记，已被 claim 的登记直接丢弃
+ *
+ * @author gengzi
+ */
+@Component
+public class CallbackRegistry {
+
+    /**
+     * 回调索引
+     * Key: 回调 ID, Value: 登记信息
+     */
+    private final ConcurrentHashMap<String, Registration> index = new ConcurrentHashMap<>();
+
+    /**
+     * 超时队列 (按截止时间升序)
+     */
+    private final PriorityBlockingQueue<Registration> deadlines =
+            new PriorityBlockingQueue<>(64, Comparator.comparingLong(Registration::getExpireAtMs));
+
+    /**
+     * 默认回调超时 (毫秒，0 表示不超时)
+     */
+    private final long defaultTimeoutMs;
+
+    public CallbackRegistry(WorkflowExecutorProperties properties) {
+        this.defaultTimeoutMs = properties.getCallbackTimeoutMs();
+    }
+
+    /**
+     * 登记回调
+     *
+     * @param callbackId     回调 ID
+     * @param runId          执行 ID
+     * @param node           CALLBACK 节点 (节点未配置超时则使用默认超时)
+     * @param registeredAtMs 节点进入等待的时间
+     * @return 登记信息
+     */
+    public Registration register(String callbackId, String runId, Node node, long registeredAtMs) {
+        long timeoutMs = node.getCallbackTimeoutMs() != null ? node.getCallbackTimeoutMs() : defaultTimeoutMs;
+        long expireAtMs = timeoutMs > 0 ? registeredAtMs + timeoutMs : 0L;
+
+        Registration registration = new Registration(callbackId, runId, node.getId(), expireAtMs);
+        index.put(callbackId, registration);
+        if (expireAtMs > 0) {
+            deadlines.offer(registration);
+        }
+        return registration;
+    }
+
+    /**
+     * 查询回调 (不移除)
+     *
+     * @param callbackId 回调 ID
+     * @return 登记信息，不存在或已处理返回 null
+     */
+    public Registration get(String callbackId) {
+        return callbackId != null ? index.get(callbackId) : null;
+    }
+
+    /**
+     * 认领回调 (原子移除)
+     *
+     * @param callbackId 回调 ID
+     * @return 登记信息，不存在、已处理或已超时返回 null
+     */
+    public Registration claim(String callbackId) {
+        return callbackId != null ? index.remove(callbackId) : null;
+    }
+
+    /**
+     * 弹出并认领所有已到期的回调
+     *
+     * @param nowMs 当前时间
+     * @return 到期的登记 (调用方负责将节点置为超时失败)
+     */
+    public List<Registration> pollExpired(long nowMs) {
+        List<Registration> expired = new ArrayList<>();
+
+        Registration head;
+        while ((head = deadlines.peek()) != null && head.getExpireAtMs() <= nowMs) {
+            Registration registration = deadlines.poll();
+            if (registration == null) {
+                break;
+            }
+            // 已被回调认领的登记 remove 失败，直接丢弃
+            if (index.remove(registration.getCallbackId(), registration)) {
+                expired.add(registration);
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * 当前等待中的回调数
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 回调登记信息
+     */
+    @Value
+    public static class Registration {
+
+        String callbackId;
+
+        String runId;
+
+        String nodeId;
+
+        /**
+         * 截止时间 (毫秒时间戳，0 表示不超时)
+         */
+        long expireAtMs;
+    }
+}
@@ -0,0 +1,341 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.cluster.ReadyTask;
+import com.gengzi.workflow.cluster.RunStateStore;
+import com.gengzi.workflow.config.WorkflowClusterProperties;
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.context.WorkflowStateListener;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * 集群调度 (DISTRIBUTED 策略)
+ *
+ * 调度状态:
+ * - 入度、JOIN_ANY 触发标记、JOIN_ALL 跳过标记以 RunStateStore 为准，
+ * 更新结果同步回写到上下文中的本地数组 (供持久化快照与状态查询)
+ * - 执行首次使用时在存储中创建状态 (从持久化恢复的执行带着恢复后的数组创建)
+ *
+ * 就绪节点:
+ * - 按顶层执行哈希进入分区队列，同一执行 (含子执行) 的节点落在同一分区
+ * - 领取顺序: 先本实例负责的分区 (分区号按存活实例数取模)，再其他分区 (窃取)，
+ * 每次领取的起始分区轮转，不同执行的节点轮流被取出
+ * - 领取后持有租约，节点离开 RUNNING (结束、等待回调、取消) 时结束租约
+ *
+ * 失联回收:
+ * - 心跳续约本实例及其持有的租约，同时回收过期租约
+ * - 回收的节点重新入队，仍为 PENDING 时由领取方执行；已开始执行的节点由原执行负责
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class ClusterScheduler implements WorkflowStateListener {
+
+    private final boolean enabled;
+    private final RunStateStore store;
+    private final String instanceId;
+    private final long leaseMs;
+
+    /**
+     * 本实例已登记的执行 (含子执行)
+     * Key: runId, Value: 上下文
+     */
+    private final ConcurrentHashMap<String, WorkflowContext> runs = new ConcurrentHashMap<>();
+
+    /**
+     * 本实例未登记的执行的查找方式 (如从共享持久化加载)
+     */
+    private volatile Function<String, WorkflowContext> runResolver = runId -> null;
+
+    /**
+     * 分区领取顺序 (本实例负责的分区在前)
+     */
+    private volatile int[] claimOrder;
+
+    /**
+     * 本实例负责的分区数 (claimOrder 的前 homeCount 个)
+     */
+    private volatile int homeCount;
+
+    /**
+     * 领取起点游标
+     */
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public ClusterScheduler(WorkflowExecutorProperties executorProperties, WorkflowClusterProperties properties,
+            RunStateStore store) {
+        this.enabled = executorProperties.getScheduling() == WorkflowExecutorProperties.Scheduling.DISTRIBUTED;
+        this.store = store;
+        this.instanceId = properties.getInstanceId() != null && !properties.getInstanceId().isBlank()
+                ? properties.getInstanceId() : UUID.randomUUID().toString();
+        this.leaseMs = properties.getLeaseMs();
+        updateClaimOrder(List.of());
+    }
+
+    /**
+     * 是否启用 (DISTRIBUTED 策略)
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * 设置未登记执行的查找方式
+     *
+     * @param runResolver runId -> 上下文 (找不到返回 null)
+     */
+    public void setRunResolver(Function<String, WorkflowContext> runResolver) {
+        this.runResolver = runResolver;
+    }
+
+    /**
+     * 登记执行，在共享存储中创建调度状态 (已存在时以存储为准)
+     *
+     * 从持久化恢复的上下文替换同一 runId 的旧上下文
+     *
+     * @param context 上下文
+     */
+    public void register(WorkflowContext context) {
+        if (runs.get(context.getRunId()) == context) {
+            return;
+        }
+        runs.compute(context.getRunId(), (runId, existing) -> {
+            store.createRun(runId, toArray(context.getIndegrees()), toArray(context.getAnyTriggered()),
+                    toArray(context.getSkipMarks()));
+            context.addStateListener(this);
+            return context;
+        });
+    }
+
+    /**
+     * 原子递减入度
+     *
+     * @return 递减后的入度
+     */
+    public int decrementIndegree(WorkflowContext context, int index) {
+        register(context);
+        int indegree = store.decrementIndegree(context.getRunId(), index);
+        context.getIndegrees().accumulateAndGet(index, indegree, Math::min);
+        return indegree;
+    }
+
+    /**
+     * JOIN_ANY 触发标记 CAS
+     *
+     * @return 是否本次调用置位
+     */
+    public boolean markTriggered(WorkflowContext context, int index) {
+        register(context);
+        boolean won = store.markTriggered(context.getRunId(), index);
+        if (won) {
+            context.getAnyTriggered().set(index, 1);
+        }
+        return won;
+    }
+
+    /**
+     * 置 JOIN_ALL 跳过标记
+     */
+    public void markSkipped(WorkflowContext context, int index) {
+        register(context);
+        store.markSkipped(context.getRunId(), index);
+        context.getSkipMarks().set(index, 1);
+    }
+
+    /**
+     * 是否有上游被跳过
+     */
+    public boolean isSkipped(WorkflowContext context, int index) {
+        register(context);
+        return store.isSkipped(context.getRunId(), index);
+    }
+
+    /**
+     * 就绪节点入队
+     *
+     * @param context   上下文
+     * @param index     节点下标
+     * @param readyAtMs 就绪时间
+     */
+    public void offer(WorkflowContext context, int index, long readyAtMs) {
+        store.offer(partition(context.getRootRunId()), new ReadyTask(context.getRunId(), context.getRootRunId(),
+                index, context.getGraph().rank(index), readyAtMs, 0));
+    }
+
+    /**
+     * 领取下一个节点 (先本实例负责的分区，再窃取其他分区)
+     *
+     * 本实例找不到所属执行的节点放回队列，留给能找到的实例
+     *
+     * @return 领取结果，没有可执行节点返回 null
+     */
+    public Claim claim() {
+        int[] order = claimOrder;
+        int home = homeCount;
+        int start = cursor.getAndIncrement() & Integer.MAX_VALUE;
+
+        List<ReadyTask> unresolved = null;
+        try {
+            for (int i = 0; i < order.length; i++) {
+                int partition = i < home
+                        ? order[(start + i) % home]
+                        : order[home + (start + i) % (order.length - home)];
+                ReadyTask task;
+                while ((task = store.claim(partition, instanceId, leaseMs)) != null) {
+                    WorkflowContext context = resolve(task.getRunId());
+                    if (context != null) {
+                        return new Claim(context, task);
+                    }
+                    if (unresolved == null) {
+                        unresolved = new ArrayList<>();
+                    }
+                    unresolved.add(task);
+                }
+            }
+            return null;
+        } finally {
+            if (unresolved != null) {
+                log.debug("Releasing {} claimed nodes of runs unknown to instance {}", unresolved.size(), instanceId);
+                unresolved.forEach(store::release);
+            }
+        }
+    }
+
+    /**
+     * 结束租约 (领取后放弃执行时调用)
+     */
+    public void complete(Claim claim) {
+        store.complete(claim.getTask().getRunId(), claim.getTask().getIndex());
+    }
+
+    /**
+     * 移出一个顶层执行排队中的节点 (执行取消时调用)
+     *
+     * @param rootRunId 顶层执行 ID
+     * @return 被移出的节点 (找不到上下文的节点不返回)
+     */
+    public List<Claim> removeRun(String rootRunId) {
+        List<Claim> removed = new ArrayList<>();
+        for (ReadyTask task : store.removeQueued(partition(rootRunId), rootRunId)) {
+            WorkflowContext context = resolve(task.getRunId());
+            if (context != null) {
+                removed.add(new Claim(context, task));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 心跳: 续约、按存活实例重算负责的分区、回收失联实例的租约
+     *
+     * @return 重新入队的节点数
+     */
+    public int heartbeat() {
+        List<String> live = store.heartbeat(instanceId, leaseMs);
+        updateClaimOrder(live);
+
+        List<ReadyTask> reclaimed = store.reclaimExpired(System.currentTimeMillis());
+        if (!reclaimed.isEmpty()) {
+            log.warn("Reclaimed {} nodes with expired leases", reclaimed.size());
+        }
+        return reclaimed.size();
+    }
+
+    /**
+     * 节点离开 RUNNING 或在排队时被取消，结束其租约
+     */
+    @Override
+    public void onNodeStatusChanged(WorkflowContext context, String nodeId, NodeStatus previous, NodeStatus status) {
+        if (status != NodeStatus.PENDING && status != NodeStatus.RUNNING) {
+            store.complete(context.getRunId(), context.getGraph().indexOf(nodeId));
+        }
+    }
+
+    /**
+     * 执行结束，删除共享调度状态
+     */
+    @Override
+    public void onWorkflowStatusChanged(WorkflowContext context, WorkflowStatus status) {
+        if (status.isTerminal() && runs.remove(context.getRunId(), context)) {
+            store.removeRun(context.getRunId());
+        }
+    }
+
+    private WorkflowContext resolve(String runId) {
+        WorkflowContext context = runs.get(runId);
+        return context != null ? context : runResolver.apply(runId);
+    }
+
+    private int partition(String rootRunId) {
+        return Math.floorMod(rootRunId.hashCode(), store.partitionCount());
+    }
+
+    /**
+     * 分区号按存活实例数取模等于本实例序号的分区在前，其余分区在后
+     * (本实例尚未出现在存活列表中时所有分区都视为负责分区)
+     */
+    private synchronized void updateClaimOrder(List<String> live) {
+        int count = store.partitionCount();
+        int self = live.indexOf(instanceId);
+        int[] order = new int[count];
+        int home = 0;
+
+        for (int p = 0; p < count; p++) {
+            if (self < 0 || p % live.size() == self) {
+                order[home++] = p;
+            }
+        }
+        int next = home;
+        for (int p = 0; p < count; p++) {
+            if (self >= 0 && p % live.size() != self) {
+                order[next++] = p;
+            }
+        }
+
+        homeCount = home;
+        claimOrder = order;
+    }
+
+    private static int[] toArray(AtomicIntegerArray array) {
+        int[] copy = new int[array.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = array.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * 领取结果
+     */
+    @Value
+    public static class Claim {
+
+        WorkflowContext context;
+
+        ReadyTask task;
+
+        /**
+         * 是否为回收后重新领取 (原领取方已失联)
+         */
+        public boolean isReclaimed() {
+            return task.getReclaims() > 0;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.expression.Condition;
+import com.gengzi.workflow.model.JoinMode;
+import com.gengzi.workflow.model.Node;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 编译后的 DAG 图 (不可变，可跨执行共享)
+ *
+ * 数据结构:
+ * - 节点 ID 映射为 0..n-1 的稠密整数下标
+ * - 邻接表使用 CSR (Compressed Sparse Row) 格式:
+ * 节点 i 的下游为 targets[offsets[i] .. offsets[i + 1])
+ * - 初始入度保存为 int[]，每次执行只需克隆一次得到 AtomicIntegerArray
+ * - 每个节点预计算关键路径长度 (rank)，作为就绪队列中的调度优先级
+ * - 预计算拓扑层级、叶子节点与最大层宽 (每次执行的队列、集合按最大层宽预分配容量)
+ * - 边条件与 UNTIL_SUCCESS 成功条件预先解析为 Condition，边条件与 targets 按下标对齐
+ * - 请求配置中的节点引用预先解析为 RequestTemplate，引用的节点换算为下标 (槽位)
+ *
+ * 由 GraphCompiler 构建并缓存，相同的 GraphRequest 复用同一实例
+ *
+ * @author gengzi
+ */
+public final class CompiledGraph {
+
+    /**
+     * 原始图定义 (用于持久化与恢复)
+     */
+    private final GraphRequest definition;
+
+    /**
+     * 下标 -> 节点 ID
+     */
+    private final String[] nodeIds;
+
+    /**
+     * 下标 -> 节点定义
+     */
+    private final Node[] nodes;
+
+    /**
+     * 节点 ID -> 下标
+     */
+    private final Map<String, Integer> indexById;
+
+    /**
+     * CSR 行偏移，长度 n + 1
+     */
+    private final int[] offsets;
+
+    /**
+     * CSR 列数组 (下游节点下标)
+     */
+    private final int[] targets;
+
+    /**
+     * 初始入度
+     */
+    private final int[] indegrees;
+
+    /**
+     * 起始节点 (入度为 0) 下标
+     */
+    private final int[] startNodes;
+
+    /**
+     * 关键路径长度: 从该节点出发到出口节点的最长加权路径 (含自身)
+     */
+    private final int[] ranks;
+
+    /**
+     * 拓扑层级: 起始节点为 0，其余为所有上游层级的最大值 + 1
+     */
+    private final int[] levels;
+
+    /**
+     * 层数 (最长路径上的节点数)
+     */
+    private final int levelCount;
+
+    /**
+     * 最大层宽 (同一拓扑层的最多节点数)
+     */
+    private final int maxWidth;
+
+    /**
+     * 叶子节点 (出度为 0) 下标
+     */
+    private final int[] leaves;
+
+    /**
+     * 边条件，与 targets 对齐 (无条件的边为 null；整张图没有条件边时为 null)
+     */
+    private final Condition[] edgeConditions;
+
+    /**
+     * 节点成功条件 (LoopConfig.successCondition，未配置为 null)
+     */
+    private final Condition[] successConditions;
+
+    /**
+     * 请求模板计划 (请求配置没有节点引用的为 null；整张图没有引用时为 null)
+     */
+    private final RequestTemplate[] requestTemplates;
+
+    CompiledGraph(GraphRequest definition, String[] nodeIds, Node[] nodes, Map<String, Integer> indexById,
+            int[] offsets, int[] targets, int[] indegrees, int[] startNodes, int[] ranks,
+            int[] levels, int levelCount, int maxWidth, int[] leaves, Condition[] edgeConditions, Condition[] successConditions, RequestTemplate[] requestTemplates) {
+        this.definition = definition;
+        this.nodeIds = nodeIds;
+        this.nodes = nodes;
+        this.indexById = Collections.unmodifiableMap(indexById);
+        this.offsets = offsets;
+        this.targets = targets;
+        this.indegrees = indegrees;
+        this.startNodes = startNodes;
+        this.ranks = ranks;
+        this.levels = levels;
+        this.levelCount = levelCount;
+        this.maxWidth = maxWidth;
+        this.leaves = leaves;
+        this.edgeConditions = edgeConditions;
+        this.successConditions = successConditions;
+        this.requestTemplates = requestTemplates;
+    }
+
+    public GraphRequest getDefinition() {
+        return definition;
+    }
+
+    /**
+     * 节点数量
+     */
+    public int size() {
+        return nodeIds.length;
+    }
+
+    /**
+     * 边数量
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * 根据节点 ID 查找下标
+     *
+     * @param nodeId 节点 ID
+     * @return 下标，不存在返回 -1
+     */
+    public int indexOf(String nodeId) {
+        Integer index = indexById.get(nodeId);
+        return index != null ? index : -1;
+    }
+
+    public String nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    public Node node(int index) {
+        return nodes[index];
+    }
+
+    public boolean isJoinAny(int index) {
+        return nodes[index].getJoinMode() == JoinMode.ANY;
+    }
+
+    /**
+     * 下游区间起点 (包含)
+     */
+    public int successorStart(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * 下游区间终点 (不包含)
+     */
+    public int successorEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    /**
+     * CSR 列数组中第 k 个下游节点下标
+     */
+    public int successor(int k) {
+        return targets[k];
+    }
+
+    /**
+     * 是否存在条件边
+     */
+    public boolean hasEdgeConditions() {
+        return edgeConditions != null;
+    }
+
+    /**
+     * CSR 列数组中第 k 条边的条件
+     *
+     * @return 条件，无条件的边返回 null
+     */
+    public Condition edgeCondition(int k) {
+        return edgeConditions != null ? edgeConditions[k] : null;
+    }
+
+    /**
+     * 节点成功条件
+     *
+     * @return 条件，未配置返回 null
+     */
+    public Condition successCondition(int index) {
+        return successConditions[index];
+    }
+
+    /**
+     * 节点请求模板计划
+     *
+     * @return 模板计划，请求配置没有节点引用返回 null
+     */
+    RequestTemplate requestTemplate(int index) {
+        return requestTemplates != null ? requestTemplates[index] : null;
+    }
+
+    public int initialIndegree(int index) {
+        return indegrees[index];
+    }
+
+    /**
+     * 节点关键路径长度 (越大越应优先调度)
+     */
+    public int rank(int index) {
+        return ranks[index];
+    }
+
+    /**
+     * 节点拓扑层级
+     */
+    public int level(int index) {
+        return levels[index];
+    }
+
+    /**
+     * 拓扑层数
+     */
+    public int depth() {
+        return levelCount;
+    }
+
+    /**
+     * 最大层宽 (至少为 1)
+     */
+    public int maxParallelism() {
+        return Math.max(1, maxWidth);
+    }
+
+    public int leafCount() {
+        return leaves.length;
+    }
+
+    public int leaf(int i) {
+        return leaves[i];
+    }
+
+    public int startNodeCount() {
+        return startNodes.length;
+    }
+
+    public int startNode(int i) {
+        return startNodes[i];
+    }
+
+    /**
+     * 为一次执行创建入度表 (克隆初始入度)
+     *
+     * @return 可原子递减的入度数组
+     */
+    public AtomicIntegerArray newIndegrees() {
+        return new AtomicIntegerArray(indegrees);
+    }
+}
@@ -1,37 +1,90 @@
 package com.gengzi.workflow.engine;
 
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
 import com.gengzi.workflow.context.WorkflowContext;
-import com.gengzi.workflow.dto.Edge;
-import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.context.WorkflowStateListener;
+import com.gengzi.workflow.executor.AsyncHttpExecutor;
+import com.gengzi.workflow.executor.ExecutionControl;
+import com.gengzi.workflow.executor.HttpBatcher;
 import com.gengzi.workflow.executor.HttpExecutor;
+import com.gengzi.workflow.expression.Condition;
+import com.gengzi.workflow.expression.ConditionContext;
 import com.gengzi.workflow.model.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DAG 工作流执行引擎
- * 
+ *
  * 核心算法: BFS (广度优先搜索) + 入度表 (Indegree Map)
- * 
+ *
  * 调度流程:
- * 1. 初始化: 解析 GraphRequest，构建邻接表和入度表
+ * 1. 初始化: GraphCompiler 将 GraphRequest 编译为 CompiledGraph (CSR 邻接表 + 初始入度)
  * 2. 启动: 将所有入度为 0 的节点提交到线程池
  * 3. 执行: 节点执行完成后，触发 onNodeComplete
  * 4. 依赖处理: 将下游节点入度 -1，入度变为 0 则提交执行
  * 5. 循环: 直到所有节点执行完成
- * 
+ *
+ * 完成检测:
+ * - WorkflowContext 维护剩余节点数、各状态计数和活跃任务数
+ * - 活跃任务归零时以 O(1) 判断整体状态，无需遍历 nodeStatus
+ * - 节点异常时其下游整棵子树标记为 SKIPPED，同样计入完成进度
+ *
  * 线程安全保证:
- * - 入度使用 AtomicInteger.decrementAndGet() 原子递减
- * - JOIN_ANY 使用 AtomicBoolean.compareAndSet() CAS 操作
- * - 所有状态存储在 WorkflowContext 的 ConcurrentHashMap 中
- * 
+ * - 入度使用 AtomicIntegerArray.decrementAndGet(i) 原子递减
+ * - JOIN_ANY 使用 AtomicIntegerArray.compareAndSet(i, 0, 1) CAS 操作
+ * - 调度内部统一使用节点下标，仅在读写状态与结果时使用节点 ID
+ *
+ * 就绪调度:
+ * - PRIORITY 策略下就绪节点先进入 NodeReadyQueue，线程池中只提交调度令牌，
+ * 令牌执行时取出关键路径最长、且按执行轮转公平的节点
+ * - FIFO 策略下就绪节点按提交顺序直接进入线程池
+ * - DISTRIBUTED 策略下入度等调度状态以共享 RunStateStore 为准，就绪节点进入分区队列，
+ * 调度令牌通过 ClusterScheduler 按租约领取节点 (可能是其他实例提交的节点)
+ *
+ * 条件边:
+ * - 节点成功后逐条求值出边条件 (编译图时已解析)，条件不成立的边按 "上游被跳过" 到达下游，
+ * 与节点异常时的子树跳过共用同一套入度语义，跳过的子树计入完成进度
+ * - 条件分支在下游汇合时，汇合节点应使用 JOIN_ANY
+ *
+ * 节点间数据传递:
+ * - 请求配置中的 ${节点ID.路径} 在编译图时解析为按槽位取值的 RequestTemplate，执行节点时渲染
+ * - 节点结果的求值上下文在本执行内缓存，边条件与请求模板共用，每个上游响应体最多解析一次
+ *
+ * 子工作流:
+ * - SUB_WORKFLOW 节点以子上下文运行预编译模板，子执行共享父执行的并发许可
+ * - 子执行结束时父节点随之完成或失败，再按常规逻辑触发或跳过下游
+ *
+ * 映射节点:
+ * - MAP 节点从上游响应体取出集合，按 mapConcurrency 条并行通道逐项发起 HTTP 请求，
+ * 通道完成一项后取下一项，单项结果即时追加到汇总结果，全部完成后节点一次性触发下游
+ *
+ * 超时与取消:
+ * - 每个 HTTP 请求 (含 MAP 元素) 携带 ExecutionControl，截止时间取节点超时与执行截止时间中较早者，
+ * 到期时在途请求被中断、循环等待提前结束，节点置为 FAILED
+ * - cancelWorkflow 中断在途请求、移出就绪队列中的节点并作废等待中的回调，
+ * 未执行的节点与被中断的节点置为 CANCELLED，工作流随后以 CANCELLED 结束
+ *
+ * 并发控制:
+ * - 节点任务运行在 workflowExecutorService 上 (平台线程池或每节点虚拟线程)
+ * - HTTP 调用前通过 NodeConcurrencyLimiter 获取单次执行与全局许可
+ * - async-http 开启时 HTTP 节点交给 AsyncHttpExecutor，
+ * 工作线程发起请求后立即返回，下游触发挂在返回的 Future 上
+ * - 配置了 batch 的 HTTP 节点交给 HttpBatcher，合并窗口内同一批量端点的节点合并为一次请求，
+ * 响应拆分回各节点结果后按异步节点的方式完成
+ *
  * @author gengzi
  */
 @Slf4j
@@ -39,186 +92,213 @@ import java.util.concurrent.atomic.AtomicInteger;
 @RequiredArgsConstructor
 public class DagEngine {
 
+    /**
+     * 子工作流最大嵌套深度
+     */
+    private static final int MAX_SUB_WORKFLOW_DEPTH = 16;
+
+    /**
+     * 执行截止时间到期的取消原因
+     */
+    public static final String RUN_DEADLINE_EXCEEDED = "Run deadline exceeded";
+
     private final ExecutorService executorService;
     private final HttpExecutor httpExecutor;
+    private final AsyncHttpExecutor asyncHttpExecutor;
+    private final NodeConcurrencyLimiter concurrencyLimiter;
+    private final WorkflowExecutorProperties executorProperties;
+    private final CallbackRegistry callbackRegistry;
+    private final NodeReadyQueue readyQueue;
+    private final WorkflowMetrics metrics;
+    private final WorkflowTemplateRegistry templateRegistry;
+    private final ClusterScheduler clusterScheduler;
+    private final HttpBatcher httpBatcher;
 
     /**
      * 执行工作流
-     * 
-     * @param graphRequest 工作流图定义
-     * @param context      执行上下文
+     *
+     * @param context 执行上下文 (已绑定 CompiledGraph)
      */
-    public void executeWorkflow(GraphRequest graphRequest, WorkflowContext context) {
+    public void executeWorkflow(WorkflowContext context) {
         log.info("Starting workflow execution: runId={}", context.getRunId());
 
-        // 1. 解析图，构建数据结构
-        Map<String, Node> nodeMap = buildNodeMap(graphRequest.getNodes());
-        Map<String, List<String>> adjacencyList = buildAdjacencyList(graphRequest.getEdges());
+        CompiledGraph graph = context.getGraph();
 
-        // 1.5 存储到 context 中 (用于 CALLBACK 节点恢复)
-        context.getNodeMap().putAll(nodeMap);
-        adjacencyList.forEach((key, value) -> context.getAdjacencyList().put(key, new ArrayList<>(value)));
+        log.info("Found {} start nodes", graph.startNodeCount());
 
-        // 2. 计算入度并初始化
-        initializeIndegrees(graphRequest.getNodes(), graphRequest.getEdges(), context);
+        if (clusterScheduler.isEnabled()) {
+            clusterScheduler.register(context);
+        }
 
-        // 3. 初始化所有节点状态为 PENDING
-        for (Node node : graphRequest.getNodes()) {
-            context.getNodeStatus().put(node.getId(), NodeStatus.PENDING);
+        // 提交起始节点到线程池
+        // 提交期间持有一个活跃计数，避免起始节点过早完成导致误判结束
+        context.markNodeActive();
+        try {
+            for (int i = 0; i < graph.startNodeCount(); i++) {
+                submitNodeExecution(graph.startNode(i), context);
+            }
+        } finally {
+            releaseActiveNode(context);
         }
+    }
 
-        // 4. 找出所有入度为 0 的起始节点
-        List<String> startNodes = findStartNodes(context);
+    /**
+     * 提交节点到线程池执行
+     *
+     * PRIORITY 策略下节点进入就绪队列，再提交一个调度令牌，
+     * 令牌与就绪节点一一对应，但执行的不一定是本次加入的节点
+     *
+     * @param index   节点下标
+     * @param context 上下文
+     */
+    private void submitNodeExecution(int index, WorkflowContext context) {
+        String nodeId = context.getGraph().nodeId(index);
+        log.info("Submitting node {} for execution", nodeId);
 
-        log.info("Found {} start nodes: {}", startNodes.size(), startNodes);
+        context.markNodeActive();
+        long readyAtMs = System.currentTimeMillis();
 
-        // 5. 提交起始节点到线程池
-        for (String nodeId : startNodes) {
-            Node node = nodeMap.get(nodeId);
-            submitNodeExecution(node, context, nodeMap, adjacencyList);
+        if (clusterScheduler.isEnabled()) {
+            clusterScheduler.offer(context, index, readyAtMs);
+            dispatchClaim();
+            return;
+        }
+
+        if (readyQueue.isEnabled()) {
+            readyQueue.offer(context, index, readyAtMs);
+            CompletableFuture.runAsync(this::executeNextReady, executorService).exceptionally(ex -> {
+                log.error("Ready node dispatch failed with exception", ex);
+                return null;
+            });
+            return;
+        }
+
+        try {
+            CompletableFuture.runAsync(() -> {
+                executeNode(index, context, readyAtMs);
+            }, executorService).exceptionally(ex -> {
+                abortNode(index, context, ex);
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            abortNode(index, context, e);
         }
     }
 
     /**
-     * 构建节点映射表
-     * Key: 节点 ID, Value: 节点对象
+     * 节点未能正常进入执行 (提交被拒绝，或 executeNode 在自身的异常处理之外抛出):
+     * 按失败处理并释放提交时登记的活跃计数，保证工作流仍能结束
      */
-    private Map<String, Node> buildNodeMap(List<Node> nodes) {
-        Map<String, Node> map = new HashMap<>();
-        for (Node node : nodes) {
-            map.put(node.getId(), node);
+    private void abortNode(int index, WorkflowContext context, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        log.error("Node {} execution failed with exception", context.getGraph().nodeId(index), cause);
+        try {
+            failNode(index, context, cause.getMessage());
+        } finally {
+            releaseActiveNode(context);
         }
-        return map;
     }
 
     /**
-     * 构建邻接表 (Adjacency List)
-     * Key: 节点 ID, Value: 下游节点 ID 列表
+     * 从就绪队列取出并执行一个节点 (调度令牌)
      */
-    private Map<String, List<String>> buildAdjacencyList(List<Edge> edges) {
-        Map<String, List<String>> adjacencyList = new HashMap<>();
-
-        for (Edge edge : edges) {
-            adjacencyList
-                    .computeIfAbsent(edge.getFromNodeId(), k -> new ArrayList<>())
-                    .add(edge.getToNodeId());
+    private void executeNextReady() {
+        NodeReadyQueue.ReadyNode ready = readyQueue.poll();
+        if (ready != null) {
+            executeNode(ready.getIndex(), ready.getContext(), ready.getReadyAtMs());
         }
-
-        return adjacencyList;
     }
 
     /**
-     * 初始化入度表
-     * 遍历所有边，统计每个节点的入度数量
+     * 提交一个集群调度令牌
      */
-    private void initializeIndegrees(List<Node> nodes, List<Edge> edges, WorkflowContext context) {
-        // 初始化所有节点入度为 0
-        for (Node node : nodes) {
-            context.getIndegreeMap().put(node.getId(), new AtomicInteger(0));
-        }
-
-        // 统计入度
-        for (Edge edge : edges) {
-            AtomicInteger indegree = context.getIndegreeMap().get(edge.getToNodeId());
-            if (indegree != null) {
-                indegree.incrementAndGet();
-            }
-        }
-
-        // 打印入度信息 (用于调试)
-        log.debug("Indegree map initialization:");
-        context.getIndegreeMap()
-                .forEach((nodeId, indegree) -> log.debug("  Node {}: indegree = {}", nodeId, indegree.get()));
+    private void dispatchClaim() {
+        CompletableFuture.runAsync(this::executeNextClaimed, executorService).exceptionally(ex -> {
+            log.error("Claimed node dispatch failed with exception", ex);
+            return null;
+        });
     }
 
     /**
-     * 找出所有入度为 0 的起始节点
+     * 从分区队列领取并执行一个节点 (集群调度令牌)
+     *
+     * 回收后重新领取的节点若已开始执行 (原领取方在执行中失联)，不再重复执行，
+     * 其活跃计数仍由原执行持有
      */
-    private List<String> findStartNodes(WorkflowContext context) {
-        List<String> startNodes = new ArrayList<>();
+    private void executeNextClaimed() {
+        ClusterScheduler.Claim claim = clusterScheduler.claim();
+        if (claim == null) {
+            return;
+        }
 
-        context.getIndegreeMap().forEach((nodeId, indegree) -> {
-            if (indegree.get() == 0) {
-                startNodes.add(nodeId);
-            }
-        });
+        WorkflowContext context = claim.getContext();
+        int index = claim.getTask().getIndex();
+        if (claim.isReclaimed()
+                && context.getNodeStatus().get(context.getGraph().nodeId(index)) != NodeStatus.PENDING) {
+            log.info("Reclaimed node {} already started, ignoring", context.getGraph().nodeId(index));
+            clusterScheduler.complete(claim);
+            return;
+        }
 
-        return startNodes;
+        executeNode(index, context, claim.getTask().getReadyAtMs());
     }
 
     /**
-     * 提交节点到线程池执行
-     * 
-     * @param node          节点
-     * @param context       上下文
-     * @param nodeMap       节点映射表
-     * @param adjacencyList 邻接表
-     */
-    private void submitNodeExecution(
-            Node node,
-            WorkflowContext context,
-            Map<String, Node> nodeMap,
-            Map<String, List<String>> adjacencyList) {
-        log.info("Submitting node {} for execution", node.getId());
-
-        CompletableFuture.runAsync(() -> {
-            executeNode(node, context, nodeMap, adjacencyList);
-        }, executorService).exceptionally(ex -> {
-            log.error("Node {} execution failed with exception", node.getId(), ex);
-            context.getNodeStatus().put(node.getId(), NodeStatus.FAILED);
-
-            NodeResult errorResult = NodeResult.builder()
-                    .errorMessage(ex.getMessage())
-                    .build();
-            context.getResults().put(node.getId(), errorResult);
-
-            return null;
-        });
+     * 集群心跳: 续约租约，回收失联实例的节点并为其提交调度令牌
+     */
+    public void heartbeatCluster() {
+        if (!clusterScheduler.isEnabled()) {
+            return;
+        }
+        int reclaimed = clusterScheduler.heartbeat();
+        for (int i = 0; i < reclaimed; i++) {
+            dispatchClaim();
+        }
     }
 
     /**
      * 执行单个节点
-     * 
+     *
      * 核心逻辑:
      * 1. 更新状态为 RUNNING
-     * 2. 根据节点类型执行 (HTTP 或 CALLBACK)
+     * 2. 根据节点类型执行 (HTTP、CALLBACK、SUB_WORKFLOW 或 MAP)
      * 3. 存储结果
      * 4. 更新状态为 SUCCESS/FAILED
      * 5. 触发下游节点调度 (onNodeComplete)
+     * 6. 释放活跃计数，必要时检查工作流是否完成
+     *
+     * 异步 HTTP 节点在发起请求后即返回，3-6 步由 Future 完成时执行
+     *
+     * @param readyAtMs 节点就绪 (提交到线程池) 的时间，用于统计排队耗时
      */
-    private void executeNode(
-            Node node,
-            WorkflowContext context,
-            Map<String, Node> nodeMap,
-            Map<String, List<String>> adjacencyList) {
+    private void executeNode(int index, WorkflowContext context, long readyAtMs) {
+        Node node = context.getGraph().node(index);
         String nodeId = node.getId();
         log.info("Executing node: {}, type: {}", nodeId, node.getType());
 
-        // 1. 更新状态为 RUNNING
-        context.getNodeStatus().put(nodeId, NodeStatus.RUNNING);
+        // 1. 更新状态为 RUNNING (执行取消时排队中的节点已被置为 CANCELLED，CAS 失败即放弃)
+        if (!context.compareAndSetNodeStatus(nodeId, NodeStatus.PENDING, NodeStatus.RUNNING)) {
+            log.info("Node {} not executed: status is {}", nodeId, context.getNodeStatus().get(nodeId));
+            releaseActiveNode(context);
+            return;
+        }
+
+        // 异步执行时活跃计数由 Future 回调释放
+        boolean async = false;
 
         try {
             NodeResult result;
 
             // 2. 根据节点类型执行
-            if (node.getType() == NodeType.HTTP) {
-                // HTTP 节点: 调用 HttpExecutor (支持循环策略)
-                result = httpExecutor.execute(node);
+            if (node.getType() == NodeType.HTTP && (executorProperties.isAsyncHttp() || HttpBatcher.isBatched(node))) {
+                // HTTP 节点 (异步或批量): 发起请求后立即返回，不阻塞工作线程
+                executeHttpAsync(index, context, readyAtMs);
+                async = true;
 
-                // 3. 存储结果
-                context.getResults().put(nodeId, result);
-
-                // 4. 更新状态
-                if (result.getStatusCode() == 200 || result.getStatusCode() > 0) {
-                    context.getNodeStatus().put(nodeId, NodeStatus.SUCCESS);
-                    log.info("Node {} completed successfully", nodeId);
-                } else {
-                    context.getNodeStatus().put(nodeId, NodeStatus.FAILED);
-                    log.warn("Node {} failed: {}", nodeId, result.getErrorMessage());
-                }
-
-                // 5. 触发下游节点
-                onNodeComplete(nodeId, context, nodeMap, adjacencyList);
+            } else if (node.getType() == NodeType.HTTP) {
+                // HTTP 节点: 获取并发许可后调用 HttpExecutor (支持循环策略)，许可不足时不占用工作线程
+                executeHttpSync(index, context, readyAtMs);
+                async = true;
 
             } else if (node.getType() == NodeType.CALLBACK) {
                 // Feature C: Async Callbacks
@@ -227,198 +307,1098 @@ public class DagEngine {
 
                 result = NodeResult.builder()
                         .callbackId(callbackId)
+                        .startTime(LocalDateTime.now())
                         .build();
 
-                context.getResults().put(nodeId, result);
-                context.getNodeStatus().put(nodeId, NodeStatus.WAITING_CALLBACK);
+                context.putResult(nodeId, result);
                 context.getCallbackMap().put(callbackId, nodeId);
+                context.updateNodeStatus(nodeId, NodeStatus.WAITING_CALLBACK);
+
+                // 登记到全局回调索引 (节点已处于 WAITING_CALLBACK，回调到达即可恢复)
+                CallbackRegistry.Registration registration = callbackRegistry.register(
+                        callbackId, context.getRunId(), node, System.currentTimeMillis());
 
-                log.info("Node {} is waiting for callback: callbackId={}", nodeId, callbackId);
+                log.info("Node {} is waiting for callback: callbackId={}, expireAt={}",
+                        nodeId, callbackId, registration.getExpireAtMs());
+
+                // 挂起期间执行已被取消 (取消时尚未登记回调)
+                if (context.isCancelled()) {
+                    cancelWaitingCallback(index, context);
+                }
 
                 // 注意: CALLBACK 节点不触发 onNodeComplete
                 // 下游节点需要等待外部调用 resumeNode 才会继续
+
+            } else if (node.getType() == NodeType.SUB_WORKFLOW) {
+                // SUB_WORKFLOW 节点: 启动子执行后立即返回，子执行结束时完成节点
+                executeSubWorkflow(index, context);
+                async = true;
+
+            } else if (node.getType() == NodeType.MAP) {
+                // MAP 节点: 启动并行通道后立即返回，最后一个元素完成时完成节点
+                async = executeMap(index, context);
             }
 
         } catch (Exception e) {
             log.error("Node {} execution exception", nodeId, e);
+            failNode(index, context, e.getMessage());
+        } finally {
+            if (!async) {
+                releaseActiveNode(context);
+            }
+        }
+    }
+
+    /**
+     * HTTP 节点完成处理
+     *
+     * 1. 存储结果
+     * 2. 更新状态 (有 HTTP 响应即视为 SUCCESS)
+     * 3. 触发下游节点
+     *
+     * 排队耗时 = 首个请求发出时间 - 节点就绪时间，与实际请求耗时 requestMs 分开统计
+     */
+    private void completeHttpNode(int index, WorkflowContext context, NodeResult result, long readyAtMs) {
+        String nodeId = context.getGraph().nodeId(index);
+
+        if (result.getRequestSentAtMs() > 0) {
+            result.setQueueWaitMs(Math.max(0L, result.getRequestSentAtMs() - readyAtMs));
+            log.debug("Node {} queue wait {}ms, request {}ms", nodeId, result.getQueueWaitMs(), result.getRequestMs());
+        }
+        metrics.recordHttpNode(context.getGraph().node(index), result);
+
+        context.putResult(nodeId, result);
+
+        if (result.getStatusCode() == 200 || result.getStatusCode() > 0) {
+            context.updateNodeStatus(nodeId, NodeStatus.SUCCESS);
+            log.info("Node {} completed successfully", nodeId);
+        } else {
+            cancelIfExpired(context);
+            context.updateNodeStatus(nodeId, failureStatus(context));
+            log.warn("Node {} failed: {}", nodeId, result.getErrorMessage());
+        }
+
+        onNodeComplete(index, context);
+    }
+
+    /**
+     * 同步执行 HTTP 节点
+     *
+     * 许可充足时在当前线程上执行；
+     * 许可不足时节点挂起等待并立即返回，获得许可后在线程池上执行，活跃计数由执行完成时释放
+     */
+    private void executeHttpSync(int index, WorkflowContext context, long readyAtMs) {
+        Node node = resolveNode(index, context);
+        ExecutionControl control = newControl(node, context);
+
+        Runnable task = () -> {
+            try {
+                NodeResult result = executeHttpWithPermits(node, context.getGraph().successCondition(index), control,
+                        context);
+
+                // 3-5. 存储结果、更新状态、触发下游
+                completeHttpNode(index, context, result, readyAtMs);
+            } catch (Exception e) {
+                log.error("Node {} execution exception", node.getId(), e);
+                failNode(index, context, e.getMessage());
+            } finally {
+                releaseActiveNode(context);
+            }
+        };
+
+        if (acquirePermit(context, task)) {
+            task.run();
+        }
+    }
+
+    /**
+     * 异步执行 HTTP 节点
+     *
+     * 并发许可在发起请求前获取，在 Future 完成时释放，
+     * 因此许可约束的是在途请求数 (含轮询等待)，而不是线程数；
+     * 许可不足时节点挂起等待并立即返回，获得许可后在线程池上发起请求
+     *
+     * Future 可能在 OkHttp 分发线程或轮询调度线程上完成，
+     * 完成处理 (存储结果、触发下游) 显式交给工作流线程池执行，不占用这些线程
+     *
+     * 配置了批量的节点交给 HttpBatcher，与同一批量端点的其他节点合并为一次请求
+     */
+    private void executeHttpAsync(int index, WorkflowContext context, long readyAtMs) {
+        Node node = resolveNode(index, context);
+        ExecutionControl control = newControl(node, context);
+
+        Runnable task = () -> startHttpAsync(index, context, node, control, readyAtMs);
+        if (acquirePermit(context, task)) {
+            task.run();
+        }
+    }
+
+    /**
+     * 发起异步 HTTP 请求 (已持有并发许可)
+     */
+    private void startHttpAsync(int index, WorkflowContext context, Node node, ExecutionControl control,
+            long readyAtMs) {
+        CompletableFuture<NodeResult> future;
+        try {
+            context.registerExecution(control);
+            future = HttpBatcher.isBatched(node)
+                    ? httpBatcher.submit(node, control)
+                    : asyncHttpExecutor.execute(node, context.getGraph().successCondition(index), control);
+        } catch (RuntimeException e) {
+            context.unregisterExecution(control);
+            concurrencyLimiter.release(context);
+            log.error("Node {} execution exception", node.getId(), e);
+            try {
+                failNode(index, context, e.getMessage());
+            } finally {
+                releaseActiveNode(context);
+            }
+            return;
+        }
+
+        future.whenCompleteAsync((result, ex) -> {
+            context.unregisterExecution(control);
+            concurrencyLimiter.release(context);
+            try {
+                if (ex != null) {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    log.error("Node {} execution exception", node.getId(), cause);
+                    failNode(index, context, cause.getMessage());
+                } else {
+                    completeHttpNode(index, context, result, readyAtMs);
+                }
+            } catch (Exception e) {
+                log.error("Node {} completion handling failed", node.getId(), e);
+                failNode(index, context, e.getMessage());
+            } finally {
+                releaseActiveNode(context);
+            }
+        }, executorService);
+    }
+
+    /**
+     * 启动子工作流
+     *
+     * 父节点的活跃计数由子执行结束时释放，
+     * 子执行等待回调期间父节点保持 RUNNING，父执行不会进入挂起或结束
+     *
+     * @throws IllegalArgumentException 模板不存在
+     * @throws IllegalStateException    嵌套过深 (此时未启动子执行)
+     */
+    private void executeSubWorkflow(int index, WorkflowContext context) {
+        Node node = context.getGraph().node(index);
+
+        if (context.getDepth() >= MAX_SUB_WORKFLOW_DEPTH) {
+            throw new IllegalStateException("Sub-workflow nesting exceeds " + MAX_SUB_WORKFLOW_DEPTH + " levels");
+        }
+        CompiledGraph template = templateRegistry.get(node.getTemplate());
+
+        WorkflowContext child = context.newChild(node.getId(), template);
+        context.putResult(node.getId(), NodeResult.builder()
+                .childRunId(child.getRunId())
+                .startTime(LocalDateTime.now())
+                .build());
+
+        AtomicBoolean completed = new AtomicBoolean();
+        child.addStateListener(new WorkflowStateListener() {
+            @Override
+            public void onWorkflowStatusChanged(WorkflowContext childContext, WorkflowStatus status) {
+                if (childContext.isFinished() && completed.compareAndSet(false, true)) {
+                    completeSubWorkflowNode(index, context, childContext);
+                }
+            }
+        });
+
+        log.info("Node {} starting sub-workflow {}: template={}, nodes={}",
+                node.getId(), child.getRunId(), node.getTemplate(), template.size());
+        executeWorkflow(child);
+
+        // 启动期间父执行已被取消 (取消时子执行尚未登记)
+        if (context.isCancelled()) {
+            cancelWorkflow(child, context.getCancelReason());
+        }
+    }
+
+    /**
+     * 子执行结束，完成父节点
+     *
+     * - 子执行 COMPLETED: 节点 SUCCESS，触发下游
+     * - 子执行 FAILED / CANCELLED: 节点 FAILED (父执行已取消时为 CANCELLED)，跳过下游子树
+     */
+    private void completeSubWorkflowNode(int index, WorkflowContext context, WorkflowContext child) {
+        String nodeId = context.getGraph().nodeId(index);
+
+        try {
+            NodeResult result = context.getResults().get(nodeId);
+            if (result != null) {
+                result.setEndTime(LocalDateTime.now());
+                result.setDurationMs(child.getTotalDurationMs());
+            }
+
+            if (child.getWorkflowStatus() == WorkflowStatus.COMPLETED) {
+                context.updateNodeStatus(nodeId, NodeStatus.SUCCESS);
+                log.info("Node {} sub-workflow {} completed", nodeId, child.getRunId());
+                onNodeComplete(index, context);
+            } else {
+                if (result != null) {
+                    result.setErrorMessage((child.getWorkflowStatus() == WorkflowStatus.CANCELLED
+                            ? "Sub-workflow cancelled: " : "Sub-workflow failed: ") + child.getRunId());
+                }
+                context.updateNodeStatus(nodeId, failureStatus(context));
+                log.warn("Node {} sub-workflow {} failed", nodeId, child.getRunId());
+                skipDownstream(index, context);
+            }
+        } catch (Exception e) {
+            log.error("Node {} sub-workflow completion handling failed", nodeId, e);
+            failNode(index, context, e.getMessage());
+        } finally {
+            releaseActiveNode(context);
+        }
+    }
+
+    /**
+     * 启动 MAP 节点
+     *
+     * 节点的活跃计数由最后一个元素完成时释放，
+     * 每个元素请求与普通 HTTP 节点一样获取并发许可
+     *
+     * 集合来源在编译时已校验为上游祖先，此处仍可能没有结果 (来源被跳过，或 JOIN_ANY 下来源尚未执行)，
+     * 此时节点直接失败
+     *
+     * @return 是否已启动元素 (为 false 时节点已结束，由调用方释放活跃计数)
+     * @throws IllegalArgumentException 集合来源不是 JSON 数组
+     */
+    private boolean executeMap(int index, WorkflowContext context) {
+        Node node = resolveNode(index, context);
+
+        NodeResult source = node.getItemsFrom() != null ? context.getResults().get(node.getItemsFrom()) : null;
+        if (source == null) {
+            log.warn("Node {} MAP items source {} has no result", node.getId(), node.getItemsFrom());
+            failNode(index, context, "MAP items source " + node.getItemsFrom()
+                    + " has no result (it was skipped or has not run)");
+            return false;
+        }
+        MapExecution map = new MapExecution(node, MapExecution.parseItems(httpExecutor.readBody(source),
+                node.getItemsPath()), nodeDeadlineMs(node, context), httpExecutor.newBodyOutput());
+
+        int concurrency = node.getMapConcurrency() != null
+                ? node.getMapConcurrency()
+                : executorProperties.getMapConcurrency();
+        int lanes = Math.max(1, Math.min(concurrency, map.size()));
+
+        log.info("Node {} mapping {} items from {} with {} lanes", node.getId(), map.size(), node.getItemsFrom(), lanes);
+
+        if (map.size() == 0) {
+            completeMapNode(index, context, map);
+            return true;
+        }
+        for (int i = 0; i < lanes; i++) {
+            CompletableFuture.runAsync(() -> runMapLane(index, context, map), executorService).exceptionally(ex -> {
+                log.error("Node {} map lane failed with exception", node.getId(), ex);
+                return null;
+            });
+        }
+        return true;
+    }
+
+    /**
+     * MAP 并行通道: 依次取出元素执行
+     *
+     * 同步模式下在当前工作线程上循环，许可不足时通道挂起，获得许可后在线程池上继续；
+     * 异步模式下发起请求后返回，请求完成时再提交下一轮通道任务
+     * 执行取消后剩余元素不再发起请求，直接记为失败
+     */
+    private void runMapLane(int index, WorkflowContext context, MapExecution map) {
+        int item;
+        while ((item = map.next()) >= 0) {
+            long takenAtMs = System.currentTimeMillis();
+            if (context.isCancelled()) {
+                completeMapItem(index, context, map, item, null, null, takenAtMs, context.getCancelReason());
+                continue;
+            }
+            try {
+                Node itemNode = map.itemNode(item);
+                ExecutionControl control = new ExecutionControl(map.getDeadlineMs(), context.getGraph());
+                int current = item;
+
+                if (executorProperties.isAsyncHttp()) {
+                    Runnable request = () -> executeMapItemAsync(index, context, map, current, itemNode, control,
+                            takenAtMs);
+                    if (acquirePermit(context, request)) {
+                        request.run();
+                    }
+                    return;
+                }
+
+                Runnable request = () -> executeMapItem(index, context, map, current, itemNode, control, takenAtMs);
+                if (!acquirePermit(context, () -> {
+                    request.run();
+                    runMapLane(index, context, map);
+                })) {
+                    return;
+                }
+                request.run();
+            } catch (Exception e) {
+                log.error("Node {} map item {} execution exception", context.getGraph().nodeId(index), item, e);
+                completeMapItem(index, context, map, item, null, null, takenAtMs, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 同步执行 MAP 单项请求 (已持有并发许可)
+     */
+    private void executeMapItem(int index, WorkflowContext context, MapExecution map, int item, Node itemNode,
+            ExecutionControl control, long takenAtMs) {
+        NodeResult result = null;
+        String error = null;
+        try {
+            result = executeHttpWithPermits(itemNode, context.getGraph().successCondition(index), control, context);
+        } catch (Exception e) {
+            log.error("Node {} map item {} execution exception", context.getGraph().nodeId(index), item, e);
+            error = e.getMessage();
+        }
+        completeMapItem(index, context, map, item, itemNode, result, takenAtMs, error);
+    }
+
+    /**
+     * 异步执行 MAP 单项请求 (已持有并发许可)，完成后继续本通道
+     *
+     * 完成处理与通道继续都在工作流线程池上执行 (同 startHttpAsync)
+     */
+    private void executeMapItemAsync(int index, WorkflowContext context, MapExecution map, int item, Node itemNode,
+            ExecutionControl control, long takenAtMs) {
+        CompletableFuture<NodeResult> future;
+        try {
+            context.registerExecution(control);
+            future = asyncHttpExecutor.execute(itemNode, context.getGraph().successCondition(index), control);
+        } catch (RuntimeException e) {
+            context.unregisterExecution(control);
+            concurrencyLimiter.release(context);
+            log.error("Node {} map item {} execution exception", context.getGraph().nodeId(index), item, e);
+            completeMapItem(index, context, map, item, itemNode, null, takenAtMs, e.getMessage());
+
+            if (map.hasNext()) {
+                CompletableFuture.runAsync(() -> runMapLane(index, context, map), executorService);
+            }
+            return;
+        }
+
+        future.whenCompleteAsync((result, ex) -> {
+            context.unregisterExecution(control);
+            concurrencyLimiter.release(context);
+
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            completeMapItem(index, context, map, item, itemNode, result, takenAtMs,
+                    cause != null ? cause.getMessage() : null);
+
+            if (map.hasNext()) {
+                runMapLane(index, context, map);
+            }
+        }, executorService);
+    }
+
+    /**
+     * MAP 单项完成: 记录结果，最后一个元素完成时完成节点
+     */
+    private void completeMapItem(int index, WorkflowContext context, MapExecution map, int item, Node itemNode,
+            NodeResult result, long takenAtMs, String error) {
+        Reader body = null;
+        if (result != null) {
+            if (result.getRequestSentAtMs() > 0) {
+                result.setQueueWaitMs(Math.max(0L, result.getRequestSentAtMs() - takenAtMs));
+            }
+            metrics.recordHttpNode(itemNode, result);
+            try {
+                body = httpExecutor.openBody(result);
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage();
+            }
+        }
+
+        if (map.complete(item, result, body, error)) {
+            completeMapNode(index, context, map);
+        }
+    }
+
+    /**
+     * 全部元素完成，完成 MAP 节点
+     *
+     * - 所有元素都有 HTTP 响应: 节点 SUCCESS，触发下游
+     * - 存在失败元素: 节点 FAILED (执行已取消时为 CANCELLED，汇总结果仍保留)，跳过下游子树
+     */
+    private void completeMapNode(int index, WorkflowContext context, MapExecution map) {
+        String nodeId = context.getGraph().nodeId(index);
+
+        try {
+            NodeResult result = map.toResult();
+            context.putResult(nodeId, result);
+
+            if (result.getFailedItems() == 0 && result.getStatusCode() > 0) {
+                context.updateNodeStatus(nodeId, NodeStatus.SUCCESS);
+                log.info("Node {} mapped {} items", nodeId, result.getItemCount());
+                onNodeComplete(index, context);
+            } else {
+                cancelIfExpired(context);
+                context.updateNodeStatus(nodeId, failureStatus(context));
+                log.warn("Node {} failed: {}", nodeId, result.getErrorMessage());
+                skipDownstream(index, context);
+            }
+        } catch (Exception e) {
+            log.error("Node {} map completion handling failed", nodeId, e);
+            failNode(index, context, e.getMessage());
+        } finally {
+            releaseActiveNode(context);
+        }
+    }
+
+    /**
+     * 获取并发许可，不足时挂起 task 等待
+     *
+     * 其他节点释放许可时由释放方为 task 获取许可并提交到线程池，
+     * 等待期间不占用工作线程 (PLATFORM 模式下工作线程不会因等待许可而耗尽)
+     *
+     * @param task 获得许可后执行的任务 (负责释放许可)
+     * @return 是否立即获得许可，true 时由调用方执行 task
+     */
+    private boolean acquirePermit(WorkflowContext context, Runnable task) {
+        return concurrencyLimiter.acquireOrWait(context, () -> executorService.execute(task));
+    }
+
+    /**
+     * 持有并发许可执行 HTTP 请求，返回前释放许可
+     *
+     * 许可只覆盖 HTTP 调用本身，触发下游前已释放，
+     * 因此 CallerRunsPolicy 在当前线程内联执行下游时不会占着许可
+     *
+     * 执行期间 control 登记在上下文中，取消执行时中断当前线程上的请求
+     */
+    private NodeResult executeHttpWithPermits(Node node, Condition successCondition, ExecutionControl control,
+            WorkflowContext context) {
+        context.registerExecution(control);
+        try {
+            return httpExecutor.execute(node, successCondition, control);
+        } finally {
+            context.unregisterExecution(control);
+            concurrencyLimiter.release(context);
+        }
+    }
+
+    /**
+     * 创建节点执行控制 (截止时间从当前时间起算，节点级限流按所属图区分)
+     */
+    private ExecutionControl newControl(Node node, WorkflowContext context) {
+        return new ExecutionControl(nodeDeadlineMs(node, context), context.getGraph());
+    }
+
+    /**
+     * 节点截止时间: 节点超时 (Node.timeoutMs 或默认 node-timeout-ms) 与执行截止时间中较早者
+     *
+     * @return 毫秒时间戳，0 表示不限
+     */
+    private long nodeDeadlineMs(Node node, WorkflowContext context) {
+        long timeoutMs = node.getTimeoutMs() != null ? node.getTimeoutMs() : executorProperties.getNodeTimeoutMs();
+        long deadlineMs = timeoutMs > 0 ? System.currentTimeMillis() + timeoutMs : 0L;
+        return earliest(deadlineMs, runDeadlineMs(context));
+    }
 
-            NodeResult errorResult = NodeResult.builder()
-                    .errorMessage(e.getMessage())
-                    .build();
-            context.getResults().put(nodeId, errorResult);
-            context.getNodeStatus().put(nodeId, NodeStatus.FAILED);
+    /**
+     * 执行截止时间: 执行超时 (GraphRequest.timeoutMs 或默认 run-timeout-ms) 与父执行截止时间中较早者
+     *
+     * 由图定义与开始时间推算，从持久化恢复的执行同样适用
+     *
+     * @param context 上下文
+     * @return 毫秒时间戳，0 表示不限
+     */
+    public long runDeadlineMs(WorkflowContext context) {
+        Long configured = context.getGraph().getDefinition().getTimeoutMs();
+        long timeoutMs = configured != null ? configured : executorProperties.getRunTimeoutMs();
+        long deadlineMs = timeoutMs > 0 ? context.getStartTimeMs() + timeoutMs : 0L;
+        return context.getParent() != null ? earliest(deadlineMs, runDeadlineMs(context.getParent())) : deadlineMs;
+    }
+
+    private static long earliest(long a, long b) {
+        if (a == 0) {
+            return b;
+        }
+        return b == 0 ? a : Math.min(a, b);
+    }
+
+    /**
+     * 执行截止时间已过时取消执行
+     *
+     * 在途节点因执行截止时间被中断后，工作流以 CANCELLED 结束，而不是按普通失败继续调度下游
+     * (调用方持有活跃计数)
+     */
+    private void cancelIfExpired(WorkflowContext context) {
+        long deadlineMs = runDeadlineMs(context);
+        if (deadlineMs > 0 && System.currentTimeMillis() >= deadlineMs) {
+            cancelWorkflow(context, RUN_DEADLINE_EXCEEDED);
         }
     }
 
+    /**
+     * 节点未成功时的终态: 执行已取消时为 CANCELLED，否则为 FAILED
+     */
+    private static NodeStatus failureStatus(WorkflowContext context) {
+        return context.isCancelled() ? NodeStatus.CANCELLED : NodeStatus.FAILED;
+    }
+
+    /**
+     * 节点异常中断
+     *
+     * 记录错误结果并标记为 FAILED，下游不再执行，整棵子树标记为 SKIPPED
+     */
+    private void failNode(int index, WorkflowContext context, String errorMessage) {
+        String nodeId = context.getGraph().nodeId(index);
+
+        NodeResult errorResult = NodeResult.builder()
+                .errorMessage(errorMessage)
+                .build();
+        context.putResult(nodeId, errorResult);
+        context.updateNodeStatus(nodeId, failureStatus(context));
+
+        skipDownstream(index, context);
+    }
+
     /**
      * 节点完成回调
-     * 
+     *
      * 核心调度逻辑:
-     * 1. 获取当前节点的所有下游节点
+     * 1. 获取当前节点的所有下游节点 (CSR 区间)
      * 2. 对每个下游节点:
+     * - 边条件不成立: 按被跳过的上游到达 (见 skipEdge)
      * - 如果是 JOIN_ALL 模式: 入度 -1，入度为 0 则提交执行
      * - 如果是 JOIN_ANY 模式: CAS 竞争，成功则提交执行
-     * 
-     * @param nodeId        完成的节点 ID
-     * @param context       上下文
-     * @param nodeMap       节点映射表
-     * @param adjacencyList 邻接表
-     */
-    private void onNodeComplete(
-            String nodeId,
-            WorkflowContext context,
-            Map<String, Node> nodeMap,
-            Map<String, List<String>> adjacencyList) {
-        log.debug("Node {} completed, triggering downstream nodes", nodeId);
-
-        // 1. 获取下游节点列表
-        List<String> downstreamNodes = adjacencyList.getOrDefault(nodeId, Collections.emptyList());
-
-        if (downstreamNodes.isEmpty()) {
-            log.debug("Node {} has no downstream nodes", nodeId);
-            checkWorkflowCompletion(context);
+     *
+     * 执行已取消时不再触发下游 (未执行的节点已被置为 CANCELLED)
+     *
+     * @param index   完成的节点下标
+     * @param context 上下文
+     */
+    private void onNodeComplete(int index, WorkflowContext context) {
+        if (context.isCancelled()) {
             return;
         }
+        CompiledGraph graph = context.getGraph();
+        log.debug("Node {} completed, triggering downstream nodes", graph.nodeId(index));
 
-        // 2. 处理每个下游节点
-        for (String childId : downstreamNodes) {
-            Node childNode = nodeMap.get(childId);
+        int start = graph.successorStart(index);
+        int end = graph.successorEnd(index);
 
-            if (childNode == null) {
-                log.warn("Child node {} not found in nodeMap", childId);
-                continue;
+        if (start == end) {
+            log.debug("Node {} has no downstream nodes", graph.nodeId(index));
+            return;
+        }
+
+        // 同一节点的所有出边共用一个求值上下文 (响应体最多读取、解析一次)
+        ConditionContext conditionContext = null;
+
+        // 处理每个下游节点
+        for (int k = start; k < end; k++) {
+            int child = graph.successor(k);
+
+            Condition condition = graph.edgeCondition(k);
+            if (condition != null) {
+                if (conditionContext == null) {
+                    conditionContext = conditionContext(index, context);
+                }
+                if (!testEdge(condition, conditionContext, index, child, context)) {
+                    skipEdge(index, child, context);
+                    continue;
+                }
             }
 
             // Feature B: Race Condition / Join ANY
-            if (childNode.getJoinMode() == JoinMode.ANY) {
+            if (graph.isJoinAny(child)) {
                 // JOIN_ANY 模式: 使用 CAS 竞争触发
-                triggerJoinAnyNode(childId, childNode, context, nodeMap, adjacencyList);
+                triggerJoinAnyNode(child, context);
             } else {
                 // JOIN_ALL 模式 (默认): 使用入度递减
-                triggerJoinAllNode(childId, childNode, context, nodeMap, adjacencyList);
+                triggerJoinAllNode(child, context);
             }
         }
     }
 
+    /**
+     * 节点结果的求值上下文 (本执行内按结果缓存，边条件与请求模板共用)
+     */
+    private ConditionContext conditionContext(int index, WorkflowContext context) {
+        return context.resultView(index, result -> ConditionContext.of(result, () -> httpExecutor.readBody(result)));
+    }
+
+    /**
+     * 按本次执行渲染节点请求配置中的节点引用 (见 RequestTemplate)
+     *
+     * @return 渲染后的节点，请求配置没有节点引用时返回图中的节点定义
+     */
+    private Node resolveNode(int index, WorkflowContext context) {
+        CompiledGraph graph = context.getGraph();
+        RequestTemplate template = graph.requestTemplate(index);
+        if (template == null) {
+            return graph.node(index);
+        }
+        return template.render(graph.node(index), slot -> conditionContext(slot, context));
+    }
+
+    /**
+     * 求值边条件，求值异常 (如读取溢写响应体失败) 视为条件不成立
+     */
+    private boolean testEdge(Condition condition, ConditionContext conditionContext, int index, int child,
+            WorkflowContext context) {
+        CompiledGraph graph = context.getGraph();
+        try {
+            boolean taken = condition.test(conditionContext);
+            log.debug("Edge {} -> {} condition [{}]: {}", graph.nodeId(index), graph.nodeId(child), condition, taken);
+            return taken;
+        } catch (RuntimeException e) {
+            log.warn("Edge {} -> {} condition [{}] evaluation failed: {}",
+                    graph.nodeId(index), graph.nodeId(child), condition, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 条件不成立的边: 下游按 "上游被跳过" 处理
+     *
+     * 下游因此被跳过时，其子树同样按 skipDownstream 在 O(子树规模) 内跳过
+     */
+    private void skipEdge(int index, int child, WorkflowContext context) {
+        CompiledGraph graph = context.getGraph();
+
+        boolean skip = graph.isJoinAny(child)
+                ? arriveSkippedJoinAny(child, context)
+                : arriveSkippedJoinAll(child, context);
+
+        if (skip) {
+            context.updateNodeStatus(graph.nodeId(child), NodeStatus.SKIPPED);
+            log.info("Node {} skipped because condition on edge from {} is not met",
+                    graph.nodeId(child), graph.nodeId(index));
+            skipDownstream(child, context);
+        }
+    }
+
+    /**
+     * 跳过下游子树
+     *
+     * 节点异常中断后调用，按入度语义向下游传播 "跳过" 信号:
+     * - JOIN_ALL: 任一上游被跳过即跳过 (入度归零时判定)
+     * - JOIN_ANY: 所有上游都被跳过才跳过
+     *
+     * 使用显式栈迭代，每个节点最多被跳过一次，总代价 O(子树规模)
+     * 执行已取消时不传播 (下游已被置为 CANCELLED)
+     *
+     * @param index   异常或被跳过的节点下标
+     * @param context 上下文
+     */
+    private void skipDownstream(int index, WorkflowContext context) {
+        if (context.isCancelled()) {
+            return;
+        }
+        CompiledGraph graph = context.getGraph();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(index);
+
+        while (!stack.isEmpty()) {
+            int parent = stack.pop();
+
+            for (int k = graph.successorStart(parent); k < graph.successorEnd(parent); k++) {
+                int child = graph.successor(k);
+
+                boolean skip = graph.isJoinAny(child)
+                        ? arriveSkippedJoinAny(child, context)
+                        : arriveSkippedJoinAll(child, context);
+
+                if (skip) {
+                    context.updateNodeStatus(graph.nodeId(child), NodeStatus.SKIPPED);
+                    log.info("Node {} skipped because upstream {} did not complete",
+                            graph.nodeId(child), graph.nodeId(parent));
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * JOIN_ALL 节点收到一个被跳过的上游
+     *
+     * @return 是否应跳过该节点 (本次递减使入度归零)
+     */
+    private boolean arriveSkippedJoinAll(int index, WorkflowContext context) {
+        markSkipped(index, context);
+        return decrementIndegree(index, context) == 0;
+    }
+
+    /**
+     * JOIN_ANY 节点收到一个被跳过的上游
+     *
+     * 入度在 JOIN_ANY 中用作 "已到达上游计数"，
+     * 全部上游到达且没有任何上游成功触发时才跳过
+     *
+     * @return 是否应跳过该节点
+     */
+    private boolean arriveSkippedJoinAny(int index, WorkflowContext context) {
+        if (decrementIndegree(index, context) != 0) {
+            return false;
+        }
+        return markTriggered(index, context);
+    }
+
     /**
      * 触发 JOIN_ALL 节点
-     * 
+     *
      * 使用入度递减逻辑:
      * - decrementAndGet() 原子递减入度
      * - 如果入度变为 0，则提交执行
+     * - 若期间有上游被跳过 (skipMarks)，则跳过该节点及其子树
      */
-    private void triggerJoinAllNode(
-            String nodeId,
-            Node node,
-            WorkflowContext context,
-            Map<String, Node> nodeMap,
-            Map<String, List<String>> adjacencyList) {
-        AtomicInteger indegree = context.getIndegreeMap().get(nodeId);
-
-        if (indegree == null) {
-            log.warn("Indegree not found for node {}", nodeId);
-            return;
-        }
+    private void triggerJoinAllNode(int index, WorkflowContext context) {
+        String nodeId = context.getGraph().nodeId(index);
 
         // 原子递减入度
-        int newIndegree = indegree.decrementAndGet();
+        int newIndegree = decrementIndegree(index, context);
 
         log.debug("Node {} indegree decremented: {} -> {}", nodeId, newIndegree + 1, newIndegree);
 
         // 入度为 0 时，提交执行
         if (newIndegree == 0) {
+            if (isSkipped(index, context)) {
+                context.updateNodeStatus(nodeId, NodeStatus.SKIPPED);
+                log.info("Node {} skipped (JOIN_ALL), an upstream did not complete", nodeId);
+                skipDownstream(index, context);
+                return;
+            }
+
             log.info("Node {} all dependencies satisfied (JOIN_ALL), submitting execution", nodeId);
-            submitNodeExecution(node, context, nodeMap, adjacencyList);
+            submitNodeExecution(index, context);
         }
     }
 
     /**
      * 触发 JOIN_ANY 节点
-     * 
+     *
      * Feature B: Race Condition / Join ANY
-     * 
+     *
      * 使用 CAS (Compare-And-Set) 保证只触发一次:
-     * - 为每个 JOIN_ANY 节点分配一个 AtomicBoolean
-     * - compareAndSet(false, true): 只有第一个到达的父节点能成功
+     * - 每个 JOIN_ANY 节点在 anyTriggered 中占一个槽位
+     * - compareAndSet(i, 0, 1): 只有第一个到达的父节点能成功
      * - 后续父节点的 CAS 操作会失败，从而被忽略
+     *
+     * CAS 之后仍递减入度 (记录上游到达数)，
+     * 以便所有上游都被跳过时 arriveSkippedJoinAny 能正确判定
      */
-    private void triggerJoinAnyNode(
-            String nodeId,
-            Node node,
-            WorkflowContext context,
-            Map<String, Node> nodeMap,
-            Map<String, List<String>> adjacencyList) {
-        // 获取或创建 CAS 锁
-        AtomicBoolean triggered = context.getAnyTriggerMap()
-                .computeIfAbsent(nodeId, k -> new AtomicBoolean(false));
-
-        // CAS 操作: 尝试将 false 改为 true
+    private void triggerJoinAnyNode(int index, WorkflowContext context) {
+        String nodeId = context.getGraph().nodeId(index);
+
+        // CAS 操作: 尝试将 0 改为 1
         // 只有第一个到达的线程能成功
-        if (triggered.compareAndSet(false, true)) {
+        boolean won = markTriggered(index, context);
+
+        decrementIndegree(index, context);
+
+        if (won) {
             log.info("Node {} first parent completed (JOIN_ANY), submitting execution", nodeId);
-            submitNodeExecution(node, context, nodeMap, adjacencyList);
+            submitNodeExecution(index, context);
         } else {
             log.debug("Node {} already triggered by another parent (JOIN_ANY), ignoring", nodeId);
         }
     }
 
+    /**
+     * 原子递减入度 (DISTRIBUTED 策略下以共享存储为准)
+     */
+    private int decrementIndegree(int index, WorkflowContext context) {
+        return clusterScheduler.isEnabled()
+                ? clusterScheduler.decrementIndegree(context, index)
+                : context.getIndegrees().decrementAndGet(index);
+    }
+
+    /**
+     * JOIN_ANY 触发标记 CAS (DISTRIBUTED 策略下以共享存储为准)
+     */
+    private boolean markTriggered(int index, WorkflowContext context) {
+        return clusterScheduler.isEnabled()
+                ? clusterScheduler.markTriggered(context, index)
+                : context.getAnyTriggered().compareAndSet(index, 0, 1);
+    }
+
+    private void markSkipped(int index, WorkflowContext context) {
+        if (clusterScheduler.isEnabled()) {
+            clusterScheduler.markSkipped(context, index);
+        } else {
+            context.getSkipMarks().set(index, 1);
+        }
+    }
+
+    private boolean isSkipped(int index, WorkflowContext context) {
+        return clusterScheduler.isEnabled()
+                ? clusterScheduler.isSkipped(context, index)
+                : context.getSkipMarks().get(index) == 1;
+    }
+
     /**
      * 恢复 CALLBACK 节点执行
-     * 
+     *
      * Feature C: Async Callbacks
-     * 
+     *
      * 当外部调用 POST /api/hooks/{callbackId} 时触发
      * 手动完成节点，并恢复下游调度
-     * 
-     * @param nodeId        节点 ID
-     * @param payload       回调数据
-     * @param context       上下文
-     * @param nodeMap       节点映射表
-     * @param adjacencyList 邻接表
-     */
-    public void resumeNode(
-            String nodeId,
-            String payload,
-            WorkflowContext context,
-            Map<String, Node> nodeMap,
-            Map<String, List<String>> adjacencyList) {
+     *
+     * 图拓扑直接取自 context 中共享的 CompiledGraph，无需复制
+     * 调用方需先通过 CallbackRegistry.claim 认领回调
+     *
+     * @param nodeId  节点 ID
+     * @param payload 回调数据
+     * @param context 上下文
+     */
+    public void resumeNode(String nodeId, String payload, WorkflowContext context) {
+        context.markNodeActive();
+        try {
+            completeCallbackNode(nodeId, payload, context);
+        } finally {
+            releaseActiveNode(context);
+        }
+    }
+
+    /**
+     * 批量恢复同一执行中的多个 CALLBACK 节点
+     *
+     * 整批只持有一个活跃计数，所有节点的下游都触发完成后才检查一次工作流状态，
+     * 避免逐个恢复时工作流在 RUNNING / PARTIALLY_SUSPENDED 之间反复切换
+     *
+     * @param payloads 节点 ID -> 回调数据
+     * @param context  上下文
+     * @return 成功恢复的节点 ID (节点不存在或不在等待回调的不包含在内)
+     */
+    public Set<String> resumeNodes(Map<String, String> payloads, WorkflowContext context) {
+        Set<String> resumed = new HashSet<>();
+
+        context.markNodeActive();
+        try {
+            for (Map.Entry<String, String> entry : payloads.entrySet()) {
+                if (completeCallbackNode(entry.getKey(), entry.getValue(), context)) {
+                    resumed.add(entry.getKey());
+                }
+            }
+        } finally {
+            releaseActiveNode(context);
+        }
+
+        return resumed;
+    }
+
+    /**
+     * 完成 CALLBACK 节点并触发下游 (调用方持有活跃计数)
+     *
+     * @return 是否恢复成功 (节点不存在或不在等待回调时返回 false)
+     */
+    private boolean completeCallbackNode(String nodeId, String payload, WorkflowContext context) {
         log.info("Resuming callback node: {}", nodeId);
 
+        int index = context.getGraph().indexOf(nodeId);
+        if (index < 0) {
+            log.warn("Node {} not found in graph, ignoring resume", nodeId);
+            return false;
+        }
+
         // 更新节点结果
         NodeResult result = context.getResults().get(nodeId);
         if (result != null) {
-            result.setBody(payload);
+            context.setResultBody(index, result, payload);
         }
 
-        // 更新状态为 SUCCESS
-        context.getNodeStatus().put(nodeId, NodeStatus.SUCCESS);
+        // 更新状态为 SUCCESS (CAS 保证重复回调只生效一次)
+        if (!context.compareAndSetNodeStatus(nodeId, NodeStatus.WAITING_CALLBACK, NodeStatus.SUCCESS)) {
+            log.warn("Node {} is not waiting for callback, ignoring resume", nodeId);
+            return false;
+        }
+
+        if (result != null && result.getCallbackId() != null) {
+            context.getCallbackMap().remove(result.getCallbackId());
+        }
+        metrics.recordCallback(context.getGraph().node(index), waitedMs(result), "resumed");
+
+        if (context.getWorkflowStatus() == WorkflowStatus.PARTIALLY_SUSPENDED) {
+            context.setWorkflowStatus(WorkflowStatus.RUNNING);
+        }
 
         // 触发下游节点
-        onNodeComplete(nodeId, context, nodeMap, adjacencyList);
+        onNodeComplete(index, context);
+        return true;
+    }
+
+    /**
+     * CALLBACK 节点等待超时
+     *
+     * 节点置为 FAILED，下游子树跳过，与节点执行异常的处理一致
+     * 调用方需先通过 CallbackRegistry.pollExpired 认领回调
+     *
+     * @param nodeId  节点 ID
+     * @param context 上下文
+     */
+    public void expireCallback(String nodeId, WorkflowContext context) {
+        int index = context.getGraph().indexOf(nodeId);
+        if (index < 0) {
+            return;
+        }
+
+        context.markNodeActive();
+        try {
+            NodeResult result = context.getResults().get(nodeId);
+            if (context.getNodeStatus().get(nodeId) != NodeStatus.WAITING_CALLBACK) {
+                return;
+            }
+            if (result != null) {
+                result.setErrorMessage("Callback timed out");
+                result.setEndTime(LocalDateTime.now());
+            }
+
+            if (!context.compareAndSetNodeStatus(nodeId, NodeStatus.WAITING_CALLBACK, NodeStatus.FAILED)) {
+                return;
+            }
+            log.warn("Node {} callback timed out", nodeId);
+
+            if (result != null && result.getCallbackId() != null) {
+                context.getCallbackMap().remove(result.getCallbackId());
+            }
+            metrics.recordCallback(context.getGraph().node(index), waitedMs(result), "expired");
+
+            if (context.getWorkflowStatus() == WorkflowStatus.PARTIALLY_SUSPENDED) {
+                context.setWorkflowStatus(WorkflowStatus.RUNNING);
+            }
+
+            skipDownstream(index, context);
+        } finally {
+            releaseActiveNode(context);
+        }
+    }
+
+    /**
+     * 取消执行
+     *
+     * 1. 置取消标记 (之后不再启动新节点、不再触发下游)
+     * 2. 中断在途请求 (同步执行的工作线程被中断，异步请求的 Future 立即完成)
+     * 3. 递归取消子执行
+     * 4. 未执行的节点置为 CANCELLED，等待中的回调作废
+     * 5. 移出就绪队列 (或集群分区队列) 中本执行的节点并释放其活跃计数 (FIFO 策略下线程池中的任务执行时直接放弃)
+     *
+     * 在途节点结束后置为 CANCELLED (已成功的保持 SUCCESS)，最后一个活跃任务释放时工作流置为 CANCELLED
+     *
+     * @param context 上下文
+     * @param reason  取消原因
+     * @return 是否本次调用生效 (执行已结束或已取消时返回 false)
+     */
+    public boolean cancelWorkflow(WorkflowContext context, String reason) {
+        if (context.isFinished() || !context.cancel(reason)) {
+            return false;
+        }
+        log.warn("Cancelling workflow {}: {}", context.getRunId(), reason);
+
+        context.markNodeActive();
+        try {
+            for (ExecutionControl control : context.getExecutionControls()) {
+                control.cancel(reason);
+            }
+
+            for (WorkflowContext child : context.getChildren().values()) {
+                cancelWorkflow(child, reason);
+            }
+
+            CompiledGraph graph = context.getGraph();
+            for (int i = 0; i < graph.size(); i++) {
+                if (!context.compareAndSetNodeStatus(graph.nodeId(i), NodeStatus.PENDING, NodeStatus.CANCELLED)) {
+                    cancelWaitingCallback(i, context);
+                }
+            }
+
+            // 就绪队列按顶层执行归组，子执行的节点随顶层执行一并移出
+            if (context.getParent() == null && clusterScheduler.isEnabled()) {
+                List<ClusterScheduler.Claim> drained = clusterScheduler.removeRun(context.getRootRunId());
+                log.info("Workflow {} cancelled: {} queued nodes drained", context.getRunId(), drained.size());
+                for (ClusterScheduler.Claim queued : drained) {
+                    releaseActiveNode(queued.getContext());
+                }
+            } else if (context.getParent() == null) {
+                List<NodeReadyQueue.ReadyNode> drained = readyQueue.removeRun(context.getRootRunId());
+                log.info("Workflow {} cancelled: {} ready nodes drained", context.getRunId(), drained.size());
+                for (NodeReadyQueue.ReadyNode ready : drained) {
+                    releaseActiveNode(ready.getContext());
+                }
+            }
+        } finally {
+            releaseActiveNode(context);
+        }
+        return true;
+    }
+
+    /**
+     * 作废等待中的回调，节点置为 CANCELLED (节点不在等待回调时忽略)
+     */
+    private void cancelWaitingCallback(int index, WorkflowContext context) {
+        String nodeId = context.getGraph().nodeId(index);
+        NodeResult result = context.getResults().get(nodeId);
+        if (result == null || result.getCallbackId() == null) {
+            return;
+        }
+        if (!context.compareAndSetNodeStatus(nodeId, NodeStatus.WAITING_CALLBACK, NodeStatus.CANCELLED)) {
+            return;
+        }
+
+        callbackRegistry.claim(result.getCallbackId());
+        context.getCallbackMap().remove(result.getCallbackId());
+        result.setErrorMessage(context.getCancelReason());
+        result.setEndTime(LocalDateTime.now());
+        metrics.recordCallback(context.getGraph().node(index), waitedMs(result), "cancelled");
+        log.info("Node {} callback cancelled", nodeId);
+    }
+
+    /**
+     * CALLBACK 节点已等待时长
+     */
+    private static long waitedMs(NodeResult result) {
+        if (result == null || result.getStartTime() == null) {
+            return 0L;
+        }
+        return Duration.between(result.getStartTime(), LocalDateTime.now()).toMillis();
+    }
+
+    /**
+     * 释放活跃计数，归零时检查工作流是否完成
+     */
+    private void releaseActiveNode(WorkflowContext context) {
+        if (context.releaseActiveNode() && !context.isFinished()) {
+            checkWorkflowCompletion(context);
+        }
     }
 
     /**
      * 检查工作流是否完成
+     *
+     * 仅在活跃任务归零时调用，全部基于计数器 O(1) 判断:
+     * - 剩余节点为 0: 已取消则 CANCELLED，有失败节点则 FAILED，否则 COMPLETED
+     * - 否则存在等待回调的节点: PARTIALLY_SUSPENDED
+     *
+     * 对 context 加锁并复查活跃计数，
+     * 避免与并发的回调恢复交错写入过期状态；
+     * 已结束的执行 (迟到的恢复、超时或重复回调使活跃计数再次归零) 直接返回
      */
     private void checkWorkflowCompletion(WorkflowContext context) {
-        boolean allCompleted = context.getNodeStatus().values().stream()
-                .allMatch(status -> status == NodeStatus.SUCCESS ||
-                        status == NodeStatus.FAILED ||
-                        status == NodeStatus.WAITING_CALLBACK);
+        synchronized (context) {
+            if (context.isFinished() || context.getActiveNodes().get() != 0) {
+                return;
+            }
 
-        if (allCompleted) {
-            boolean hasWaiting = context.getNodeStatus().values().stream()
-                    .anyMatch(status -> status == NodeStatus.WAITING_CALLBACK);
+            if (context.getRemainingNodes().get() == 0) {
+                boolean hasFailed = context.getStatusCount(NodeStatus.FAILED) > 0;
 
-            if (hasWaiting) {
+                context.setWorkflowStatus(context.isCancelled() ? WorkflowStatus.CANCELLED
+                        : hasFailed ? WorkflowStatus.FAILED : WorkflowStatus.COMPLETED);
+                log.info("Workflow {} completed with status: {}", context.getRunId(), context.getWorkflowStatus());
+            } else if (context.getStatusCount(NodeStatus.WAITING_CALLBACK) > 0) {
                 context.setWorkflowStatus(WorkflowStatus.PARTIALLY_SUSPENDED);
                 log.info("Workflow {} partially suspended (has waiting callbacks)", context.getRunId());
             } else {
-                boolean hasFailed = context.getNodeStatus().values().stream()
-                        .anyMatch(status -> status == NodeStatus.FAILED);
-
-                context.setWorkflowStatus(hasFailed ? WorkflowStatus.FAILED : WorkflowStatus.COMPLETED);
-                log.info("Workflow {} completed with status: {}", context.getRunId(), context.getWorkflowStatus());
+                log.warn("Workflow {} has {} unreachable nodes", context.getRunId(), context.getRemainingNodes().get());
             }
         }
     }
@@ -0,0 +1,464 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.dto.Edge;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.expression.Condition;
+import com.gengzi.workflow.model.LoopConfig;
+import com.gengzi.workflow.model.LoopPolicy;
+import com.gengzi.workflow.model.Node;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 图编译器
+ *
+ * 将 GraphRequest 编译为 CompiledGraph:
+ * 1. 节点 ID 驻留为稠密整数下标 (ID 为空或重复时编译失败)
+ * 2. 边列表转换为 CSR 邻接数组 (两遍扫描: 计数 + 填充)，边端点不存在时编译失败
+ * 3. 统计初始入度与起始节点
+ * 4. Kahn 算法求一次拓扑序 (存在环时编译失败)，同时得到拓扑层级、叶子节点与最大层宽，
+ * 再按拓扑逆序计算关键路径长度 (rank)
+ * 5. 解析边条件与节点成功条件 (语法错误时编译失败)
+ * 6. 解析请求配置中的节点引用 (见 RequestTemplate)，引用的节点与 MAP 节点的 itemsFrom
+ * 不是当前节点的上游祖先时编译失败
+ *
+ * 校验失败抛出 IllegalArgumentException，调用方在创建执行上下文之前即可拒绝非法图
+ *
+ * 编译结果按 GraphRequest 内容缓存 (LRU)，
+ * 相同定义的重复提交直接复用，单次执行只需克隆入度数组
+ *
+ * 原始请求体另按 SHA-256 哈希缓存 (LRU)，
+ * 字节相同的重复提交连 JSON 反序列化与按内容判等都跳过
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class GraphCompiler {
+
+    /**
+     * 编译结果缓存
+     * Key: 图定义 (按内容判等), Value: 编译结果
+     */
+    private final Map<GraphRequest, CompiledGraph> cache;
+
+    /**
+     * 编译结果缓存
+     * Key: 原始图定义哈希, Value: 编译结果
+     */
+    private final Map<String, CompiledGraph> hashCache;
+
+    public GraphCompiler(@Value("${workflow.graph.cache-size:256}") int cacheSize) {
+        this.cache = lru(cacheSize);
+        this.hashCache = lru(cacheSize);
+    }
+
+    private static <K> Map<K, CompiledGraph> lru(int cacheSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, CompiledGraph>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CompiledGraph> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * 计算原始图定义的内容哈希
+     *
+     * @param definition 请求体字节
+     * @return SHA-256 (十六进制)
+     */
+    public static String hash(byte[] definition) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(definition));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 编译原始图定义 (优先按哈希命中缓存)
+     *
+     * 哈希未命中时才调用 parser 反序列化，再按内容命中缓存或编译
+     *
+     * @param definitionHash 原始图定义哈希 (见 hash)
+     * @param parser         反序列化原始图定义
+     * @return 编译结果
+     */
+    public CompiledGraph compile(String definitionHash, Supplier<GraphRequest> parser) {
+        CompiledGraph graph = hashCache.get(definitionHash);
+        if (graph != null) {
+            log.debug("Compiled graph hash hit: {} nodes", graph.size());
+            return graph;
+        }
+
+        graph = compile(parser.get());
+        hashCache.put(definitionHash, graph);
+        return graph;
+    }
+
+    /**
+     * 编译图 (优先命中缓存)
+     *
+     * @param graphRequest 工作流图定义
+     * @return 编译结果
+     */
+    public CompiledGraph compile(GraphRequest graphRequest) {
+        CompiledGraph graph = cache.get(graphRequest);
+        if (graph != null) {
+            log.debug("Compiled graph cache hit: {} nodes", graph.size());
+            return graph;
+        }
+
+        graph = doCompile(graphRequest);
+        cache.put(graphRequest, graph);
+
+        log.debug("Compiled graph: {} nodes, {} edges, {} levels, max width {}",
+                graph.size(), graph.edgeCount(), graph.depth(), graph.maxParallelism());
+        return graph;
+    }
+
+    private CompiledGraph doCompile(GraphRequest graphRequest) {
+        List<Node> nodeList = graphRequest.getNodes();
+        List<Edge> edgeList = graphRequest.getEdges();
+        int n = nodeList.size();
+
+        // 1. 驻留节点 ID
+        String[] nodeIds = new String[n];
+        Node[] nodes = new Node[n];
+        Map<String, Integer> indexById = new HashMap<>(n * 4 / 3 + 1);
+
+        for (int i = 0; i < n; i++) {
+            Node node = nodeList.get(i);
+            if (node.getId() == null || node.getId().isBlank()) {
+                throw new IllegalArgumentException("node at position " + i + " has no id");
+            }
+            if (indexById.putIfAbsent(node.getId(), i) != null) {
+                throw new IllegalArgumentException("duplicate node id: " + node.getId());
+            }
+            nodeIds[i] = node.getId();
+            nodes[i] = node;
+        }
+        for (Node node : nodes) {
+            if (node.getItemsFrom() != null && !indexById.containsKey(node.getItemsFrom())) {
+                throw new IllegalArgumentException("node " + node.getId() + " itemsFrom references unknown node: "
+                        + node.getItemsFrom());
+            }
+        }
+
+        // 2. 解析边端点，统计出度与入度
+        int m = edgeList.size();
+        int[] from = new int[m];
+        int[] to = new int[m];
+        Condition[] conditions = new Condition[m];
+        boolean conditional = false;
+        int[] offsets = new int[n + 1];
+        int[] indegrees = new int[n];
+        int edgeCount = 0;
+
+        for (Edge edge : edgeList) {
+            Integer source = indexById.get(edge.getFromNodeId());
+            Integer target = indexById.get(edge.getToNodeId());
+
+            if (source == null || target == null) {
+                throw new IllegalArgumentException("edge references unknown node: "
+                        + edge.getFromNodeId() + " -> " + edge.getToNodeId());
+            }
+
+            from[edgeCount] = source;
+            to[edgeCount] = target;
+            if (edge.getCondition() != null && !edge.getCondition().isBlank()) {
+                conditions[edgeCount] = compileCondition(edge.getCondition(),
+                        "edge " + edge.getFromNodeId() + " -> " + edge.getToNodeId());
+                conditional = true;
+            }
+            edgeCount++;
+
+            offsets[source + 1]++;
+            indegrees[target]++;
+        }
+
+        // 3. 前缀和得到行偏移，再按偏移填充 CSR 列数组
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int[] targets = new int[edgeCount];
+        Condition[] edgeConditions = conditional ? new Condition[edgeCount] : null;
+        int[] cursor = new int[n];
+        System.arraycopy(offsets, 0, cursor, 0, n);
+
+        for (int e = 0; e < edgeCount; e++) {
+            int k = cursor[from[e]]++;
+            targets[k] = to[e];
+            if (edgeConditions != null) {
+                edgeConditions[k] = conditions[e];
+            }
+        }
+
+        // 4. 起始节点 (保持定义顺序)
+        int startCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (indegrees[i] == 0) {
+                startCount++;
+            }
+        }
+
+        int[] startNodes = new int[startCount];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (indegrees[i] == 0) {
+                startNodes[k++] = i;
+            }
+        }
+
+        Topology topology = sort(nodeIds, offsets, targets, indegrees, startNodes);
+        int[] ranks = computeRanks(nodes, offsets, targets, topology.order);
+
+        // 5. 节点成功条件
+        Condition[] successConditions = new Condition[n];
+        for (int i = 0; i < n; i++) {
+            LoopConfig loopConfig = nodes[i].getLoopConfig();
+            if (loopConfig != null && loopConfig.getSuccessCondition() != null
+                    && !loopConfig.getSuccessCondition().isBlank()) {
+                successConditions[i] = compileCondition(loopConfig.getSuccessCondition(),
+                        "node " + nodeIds[i] + " successCondition");
+            }
+        }
+
+        // 6. 请求模板计划
+        RequestTemplate[] requestTemplates = null;
+        for (int i = 0; i < n; i++) {
+            RequestTemplate template = compileRequestTemplate(nodes[i], indexById);
+            if (template != null) {
+                if (requestTemplates == null) {
+                    requestTemplates = new RequestTemplate[n];
+                }
+                requestTemplates[i] = template;
+            }
+        }
+        if (requestTemplates != null) {
+            validateUpstreamReferences(nodeIds, offsets, targets, templateReferrers(requestTemplates), "config");
+        }
+        Map<Integer, List<Integer>> itemsReferrers = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (nodes[i].getItemsFrom() != null) {
+                itemsReferrers.computeIfAbsent(indexById.get(nodes[i].getItemsFrom()), key -> new ArrayList<>())
+                        .add(i);
+            }
+        }
+        validateUpstreamReferences(nodeIds, offsets, targets, itemsReferrers, "itemsFrom");
+
+        return new CompiledGraph(graphRequest, nodeIds, nodes, indexById, offsets, targets, indegrees, startNodes,
+                ranks, topology.levels, topology.levelCount, topology.maxWidth, topology.leaves,
+                edgeConditions, successConditions, requestTemplates);
+    }
+
+    private static Condition compileCondition(String source, String owner) {
+        try {
+            return Condition.compile(source);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(owner + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static RequestTemplate compileRequestTemplate(Node node, Map<String, Integer> indexById) {
+        try {
+            return RequestTemplate.compile(node, nodeId -> indexById.getOrDefault(nodeId, -1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("node " + node.getId() + " config: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 模板引用: 被引用节点下标 -> 引用它的节点下标 (升序、不重复)
+     */
+    private static Map<Integer, List<Integer>> templateReferrers(RequestTemplate[] requestTemplates) {
+        Map<Integer, List<Integer>> referrers = new HashMap<>();
+        for (int i = 0; i < requestTemplates.length; i++) {
+            if (requestTemplates[i] == null) {
+                continue;
+            }
+            for (int slot : requestTemplates[i].referencedSlots()) {
+                List<Integer> nodes = referrers.computeIfAbsent(slot, key -> new ArrayList<>());
+                if (nodes.isEmpty() || nodes.get(nodes.size() - 1) != i) {
+                    nodes.add(i);
+                }
+            }
+        }
+        return referrers;
+    }
+
+    /**
+     * 校验节点引用 (模板中的 ${节点ID.路径}、MAP 节点的 itemsFrom): 引用的节点必须是当前节点的上游祖先，
+     * 否则执行时被引用节点可能尚未执行 (或永远不会先于当前节点执行)
+     *
+     * 每个被引用的节点沿出边遍历一次，检查引用它的节点是否可达
+     *
+     * @param referrers 被引用节点下标 -> 引用它的节点下标
+     * @param field     引用所在的字段 (用于错误信息)
+     * @throws IllegalArgumentException 引用了自身、下游或无依赖关系的节点
+     */
+    private static void validateUpstreamReferences(String[] nodeIds, int[] offsets, int[] targets,
+            Map<Integer, List<Integer>> referrers, String field) {
+        int n = nodeIds.length;
+        int[] visitedBy = new int[n];
+        int[] stack = new int[n];
+        int stamp = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : referrers.entrySet()) {
+            int source = entry.getKey();
+            stamp++;
+
+            int top = 0;
+            for (int k = offsets[source]; k < offsets[source + 1]; k++) {
+                if (visitedBy[targets[k]] != stamp) {
+                    visitedBy[targets[k]] = stamp;
+                    stack[top++] = targets[k];
+                }
+            }
+            while (top > 0) {
+                int node = stack[--top];
+                for (int k = offsets[node]; k < offsets[node + 1]; k++) {
+                    if (visitedBy[targets[k]] != stamp) {
+                        visitedBy[targets[k]] = stamp;
+                        stack[top++] = targets[k];
+                    }
+                }
+            }
+
+            for (int referrer : entry.getValue()) {
+                if (visitedBy[referrer] != stamp) {
+                    throw new IllegalArgumentException("node " + nodeIds[referrer] + " " + field + " references node "
+                            + nodeIds[source] + ", which is not an upstream node of " + nodeIds[referrer]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 拓扑排序 (Kahn 算法)
+     *
+     * 按层推进: 第 0 层为起始节点，节点层级 = 所有上游层级的最大值 + 1，
+     * 同一层的节点互不依赖，最大层宽即图中可同时就绪的节点数上界的估计
+     *
+     * @throws IllegalArgumentException 存在环 (列出未能排序的节点)
+     */
+    private static Topology sort(String[] nodeIds, int[] offsets, int[] targets, int[] indegrees, int[] startNodes) {
+        int n = nodeIds.length;
+        int[] remaining = indegrees.clone();
+        int[] order = new int[n];
+        int[] levels = new int[n];
+        int head = 0;
+        int tail = 0;
+        int maxWidth = 0;
+        int levelCount = 0;
+
+        for (int start : startNodes) {
+            order[tail++] = start;
+        }
+        while (head < tail) {
+            int levelEnd = tail;
+            maxWidth = Math.max(maxWidth, levelEnd - head);
+            while (head < levelEnd) {
+                int node = order[head++];
+                for (int k = offsets[node]; k < offsets[node + 1]; k++) {
+                    if (--remaining[targets[k]] == 0) {
+                        levels[targets[k]] = levelCount + 1;
+                        order[tail++] = targets[k];
+                    }
+                }
+            }
+            levelCount++;
+        }
+
+        if (tail < n) {
+            StringBuilder cyclic = new StringBuilder();
+            int listed = 0;
+            for (int i = 0; i < n && listed < 10; i++) {
+                if (remaining[i] > 0) {
+                    cyclic.append(listed++ > 0 ? ", " : "").append(nodeIds[i]);
+                }
+            }
+            throw new IllegalArgumentException("graph contains a cycle through " + (n - tail) + " nodes: ["
+                    + cyclic + (n - tail > listed ? ", ..." : "") + "]");
+        }
+
+        int leafCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (offsets[i] == offsets[i + 1]) {
+                leafCount++;
+            }
+        }
+        int[] leaves = new int[leafCount];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (offsets[i] == offsets[i + 1]) {
+                leaves[k++] = i;
+            }
+        }
+
+        return new Topology(order, levels, levelCount, maxWidth, leaves);
+    }
+
+    /**
+     * 拓扑排序结果
+     */
+    private static final class Topology {
+
+        private final int[] order;
+        private final int[] levels;
+        private final int levelCount;
+        private final int maxWidth;
+        private final int[] leaves;
+
+        private Topology(int[] order, int[] levels, int levelCount, int maxWidth, int[] leaves) {
+            this.order = order;
+            this.levels = levels;
+            this.levelCount = levelCount;
+            this.maxWidth = maxWidth;
+            this.leaves = leaves;
+        }
+    }
+
+    /**
+     * 计算关键路径长度
+     *
+     * 按拓扑逆序累加: rank[i] = weight(i) + max(rank[下游])
+     */
+    private static int[] computeRanks(Node[] nodes, int[] offsets, int[] targets, int[] order) {
+        int n = nodes.length;
+        int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[i] = weight(nodes[i]);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            int node = order[i];
+            int longest = 0;
+            for (int k = offsets[node]; k < offsets[node + 1]; k++) {
+                longest = Math.max(longest, ranks[targets[k]]);
+            }
+            ranks[node] += longest;
+        }
+        return ranks;
+    }
+
+    /**
+     * 节点权重: 固定次数循环按执行次数计，其余节点计 1
+     */
+    private static int weight(Node node) {
+        if (node.getLoopPolicy() == LoopPolicy.FIXED_COUNT && node.getLoopConfig() != null) {
+            return Math.max(1, node.getLoopConfig().getMaxRetries());
+        }
+        return 1;
+    }
+}
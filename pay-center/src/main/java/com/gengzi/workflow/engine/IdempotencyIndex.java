@@ -0,0 +1,104 @@
+package com.gengzi.workflow.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 幂等键索引
+ *
+ * Idempotency-Key -> (runId, 图定义哈希)，上游重试同一次提交时返回已有 runId，
+ * 不再重复启动执行、重复发出支付类 HTTP 请求
+ *
+ * 容量与有效期:
+ * - 按插入顺序保留最多 maxKeys 个键，超出时淘汰最早的键
+ * - 超过 ttlMs 的键视为不存在，下次同键提交启动新执行
+ *
+ * 索引只保存在内存中，重启后不再识别重启前的键
+ *
+ * @author gengzi
+ */
+@Component
+public class IdempotencyIndex {
+
+    /**
+     * 幂等键索引 (按插入顺序)
+     * Key: 幂等键, Value: 登记信息
+     */
+    private final LinkedHashMap<String, Entry> index;
+
+    /**
+     * 键有效期 (毫秒，0 表示只受容量限制)
+     */
+    private final long ttlMs;
+
+    public IdempotencyIndex(@Value("${workflow.idempotency.max-keys:100000}") int maxKeys,
+            @Value("${workflow.idempotency.ttl-ms:86400000}") long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.index = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    /**
+     * 登记幂等键 (键已存在且未过期时不覆盖)
+     *
+     * @param key       幂等键
+     * @param runId     新执行 ID
+     * @param graphHash 图定义哈希
+     * @return 已存在的登记，登记成功返回 null
+     */
+    public synchronized Entry putIfAbsent(String key, String runId, String graphHash) {
+        long nowMs = System.currentTimeMillis();
+        Entry existing = index.get(key);
+        if (existing != null && (ttlMs <= 0 || nowMs - existing.getCreatedAtMs() < ttlMs)) {
+            return existing;
+        }
+
+        // 过期键先移除，重新登记后排到队尾
+        index.remove(key);
+        index.put(key, new Entry(runId, graphHash, nowMs));
+        return null;
+    }
+
+    /**
+     * 移除幂等键 (执行未能启动时释放，允许上游重试)
+     *
+     * @param key   幂等键
+     * @param runId 登记时的执行 ID (键已被其他执行重新登记时不移除)
+     */
+    public synchronized void remove(String key, String runId) {
+        Entry existing = index.get(key);
+        if (existing != null && existing.getRunId().equals(runId)) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * 当前登记的键数量 (含已过期未淘汰的键)
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * 登记信息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        private final String runId;
+
+        private final String graphHash;
+
+        private final long createdAtMs;
+    }
+}
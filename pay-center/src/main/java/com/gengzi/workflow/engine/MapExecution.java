@@ -0,0 +1,299 @@
+package com.gengzi.workflow.engine;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.gengzi.workflow.model.HttpConfig;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeType;
+import com.gengzi.workflow.storage.ResultBodyStore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * MAP 节点的一次执行
+ *
+ * 元素状态紧凑存放:
+ * - 元素保留在解析出的 ArrayNode 中，单项请求节点在取出元素时才生成
+ * - 每个元素只占 statusCodes 中一个 int 槽位 (0 未完成，>0 HTTP 状态码，-1 失败)
+ * - 单项结果完成即追加到汇总响应体，不为每个元素保留 NodeResult
+ * - 汇总响应体经 ResultBodyStore 输出，超过阈值后溢写到磁盘；
+ * 单项响应体 (含已溢写的) 以字符流转义写入，不整体读入内存
+ *
+ * 汇总响应体为 JSON 数组，按完成顺序排列:
+ * [{"index":0,"statusCode":200,"body":"..."}, {"index":2,"statusCode":-1,"error":"..."}, ...]
+ *
+ * @author gengzi
+ */
+final class MapExecution {
+
+    static final String ITEM_PLACEHOLDER = "${item}";
+    static final String INDEX_PLACEHOLDER = "${index}";
+
+    private static final int FAILED = -1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Node node;
+    private final ArrayNode items;
+
+    /**
+     * 节点截止时间 (毫秒时间戳，0 表示不限)，在节点启动时确定，所有元素共用
+     */
+    private final long deadlineMs;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final AtomicIntegerArray statusCodes;
+    private final AtomicInteger failed = new AtomicInteger();
+    private final LocalDateTime startTime = LocalDateTime.now();
+    private final long startMs = System.currentTimeMillis();
+
+    /**
+     * 汇总响应体输出与其上的 JSON 生成器 (追加时对本对象加锁)
+     */
+    private final ResultBodyStore.BodyOutput output;
+    private final JsonGenerator aggregate;
+
+    /**
+     * 写入汇总响应体失败的原因 (之后的元素只计数不再写入)
+     */
+    private String aggregateError;
+    private long requestMs;
+    private int attempts;
+
+    MapExecution(Node node, ArrayNode items, long deadlineMs, ResultBodyStore.BodyOutput output) {
+        this.node = node;
+        this.items = items;
+        this.deadlineMs = deadlineMs;
+        this.remaining = new AtomicInteger(items.size());
+        this.statusCodes = new AtomicIntegerArray(items.size());
+        this.output = output;
+        try {
+            this.aggregate = MAPPER.getFactory().createGenerator(output, JsonEncoding.UTF8);
+            this.aggregate.writeStartArray();
+        } catch (IOException e) {
+            output.abort();
+            throw new UncheckedIOException("Failed to create map result body", e);
+        }
+    }
+
+    /**
+     * 从上游响应体中取出集合
+     *
+     * @param body      上游响应体
+     * @param itemsPath JSON Pointer，为空表示响应体本身
+     * @return 元素数组
+     * @throws IllegalArgumentException 响应体不是 JSON 或指定位置不是数组
+     */
+    static ArrayNode parseItems(String body, String itemsPath) {
+        if (body == null) {
+            throw new IllegalArgumentException("MAP source result has no body");
+        }
+
+        JsonNode root;
+        try {
+            root = MAPPER.readTree(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("MAP source body is not valid JSON: " + e.getOriginalMessage());
+        }
+
+        JsonNode target = itemsPath == null || itemsPath.isEmpty() ? root : root.at(itemsPath);
+        if (!target.isArray()) {
+            throw new IllegalArgumentException("MAP items at '" + (itemsPath != null ? itemsPath : "")
+                    + "' is not an array");
+        }
+        return (ArrayNode) target;
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    /**
+     * 取出下一个待执行元素
+     *
+     * @return 元素下标，已全部取出返回 -1
+     */
+    int next() {
+        int index = cursor.getAndIncrement();
+        return index < items.size() ? index : -1;
+    }
+
+    /**
+     * 是否还有未取出的元素
+     */
+    boolean hasNext() {
+        return cursor.get() < items.size();
+    }
+
+    /**
+     * 生成单项请求节点
+     *
+     * 沿用 MAP 节点 ID (节点级限流对所有元素共享)，
+     * 请求配置中的占位符替换为当前元素: 文本/数值元素取原值，对象与数组取 JSON，并按位置编码:
+     * - URL: 百分号编码
+     * - 请求体: 文本元素按 JSON 字符串内容转义 (模板写作 "${item}")，数值、对象与数组原样嵌入
+     * - 请求头: 原值
+     */
+    Node itemNode(int index) {
+        JsonNode item = items.get(index);
+        String value = item.isValueNode() ? item.asText() : item.toString();
+        HttpConfig template = node.getConfig();
+
+        Map<String, String> headers = null;
+        if (template.getHeaders() != null) {
+            headers = new HashMap<>();
+            for (Map.Entry<String, String> header : template.getHeaders().entrySet()) {
+                headers.put(header.getKey(), substitute(header.getValue(), value, index));
+            }
+        }
+
+        String bodyValue = item.isTextual() ? new String(JsonStringEncoder.getInstance().quoteAsString(value))
+                : value;
+
+        HttpConfig config = HttpConfig.builder()
+                .url(substitute(template.getUrl(), encodeUrl(value), index))
+                .method(template.getMethod())
+                .headers(headers)
+                .body(substitute(template.getBody(), bodyValue, index))
+                .contentType(template.getContentType())
+                .connectTimeoutMs(template.getConnectTimeoutMs())
+                .readTimeoutMs(template.getReadTimeoutMs())
+                .ratePerSecond(template.getRatePerSecond())
+                .build();
+
+        return Node.builder()
+                .id(node.getId())
+                .type(NodeType.HTTP)
+                .config(config)
+                .loopPolicy(node.getLoopPolicy())
+                .loopConfig(node.getLoopConfig())
+                .build();
+    }
+
+    /**
+     * URL 百分号编码 (空格编码为 %20 而不是表单编码的 +)
+     */
+    private static String encodeUrl(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    private static String substitute(String text, String value, int index) {
+        if (text == null || text.indexOf('$') < 0) {
+            return text;
+        }
+        return text.replace(ITEM_PLACEHOLDER, value).replace(INDEX_PLACEHOLDER, Integer.toString(index));
+    }
+
+    /**
+     * 记录单项结果并追加到汇总响应体
+     *
+     * @param index  元素下标
+     * @param result 单项结果 (异常时为 null)
+     * @param body   单项响应体字符流 (可为 null，由本方法关闭)
+     * @param error  异常信息
+     * @return 是否为最后一个完成的元素 (同一元素重复完成时返回 false)
+     */
+    boolean complete(int index, NodeResult result, Reader body, String error) {
+        int statusCode = result != null && result.getStatusCode() > 0 ? result.getStatusCode() : FAILED;
+        if (!statusCodes.compareAndSet(index, 0, statusCode)) {
+            close(body);
+            return false;
+        }
+        if (statusCode == FAILED) {
+            failed.incrementAndGet();
+        }
+        String message = error != null ? error : result != null ? result.getErrorMessage() : null;
+
+        synchronized (this) {
+            if (aggregateError == null) {
+                try {
+                    aggregate.writeStartObject();
+                    aggregate.writeNumberField("index", index);
+                    aggregate.writeNumberField("statusCode", statusCode);
+                    if (body != null) {
+                        aggregate.writeFieldName("body");
+                        aggregate.writeString(body, -1);
+                    }
+                    if (statusCode == FAILED && message != null) {
+                        aggregate.writeStringField("error", message);
+                    }
+                    aggregate.writeEndObject();
+                } catch (IOException e) {
+                    aggregateError = "Failed to write map result: " + e.getMessage();
+                }
+            }
+            if (result != null) {
+                requestMs += result.getRequestMs();
+                attempts += result.getAttempts();
+            }
+        }
+        close(body);
+
+        return remaining.decrementAndGet() == 0;
+    }
+
+    private static void close(Reader body) {
+        if (body == null) {
+            return;
+        }
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // 只读流，关闭失败不影响结果
+        }
+    }
+
+    /**
+     * 生成节点汇总结果 (全部元素完成后调用)
+     *
+     * 汇总响应体写入失败时节点以 statusCode=0 失败，已写入的溢写文件被删除
+     */
+    synchronized NodeResult toResult() {
+        int failedItems = failed.get();
+        NodeResult result = NodeResult.builder()
+                .statusCode(failedItems == 0 ? 200 : 0)
+                .startTime(startTime)
+                .endTime(LocalDateTime.now())
+                .durationMs(System.currentTimeMillis() - startMs)
+                .requestMs(requestMs)
+                .attempts(attempts)
+                .itemCount(items.size())
+                .failedItems(failedItems)
+                .errorMessage(failedItems == 0 ? null : failedItems + " of " + items.size() + " items failed")
+                .build();
+
+        if (aggregateError == null) {
+            try {
+                aggregate.writeEndArray();
+                aggregate.close();
+                output.finish(result);
+                return result;
+            } catch (IOException e) {
+                aggregateError = "Failed to write map result: " + e.getMessage();
+            }
+        }
+
+        output.abort();
+        result.setStatusCode(0);
+        result.setErrorMessage(aggregateError);
+        return result;
+    }
+}
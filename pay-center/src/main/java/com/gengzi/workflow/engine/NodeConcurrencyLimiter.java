@@ -0,0 +1,281 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 节点并发限制器
+ * 
+ * 两级信号量:
+ * - 单次执行许可: 每个 WorkflowContext 一个 (子执行与父执行共用)，防止单个大图占满执行资源
+ * - 全局许可: 所有执行共享，限制同时执行的节点总数
+ * 
+ * 获取顺序为先单次执行、后全局，
+ * 避免因单次执行许可不足而等待的任务白白占用全局许可
+ * 
+ * 获取许可不阻塞线程: 许可不足时任务进入等待队列，调用方立即返回；
+ * 释放许可时由释放方为等待任务获取许可并交还执行:
+ * - 等待任务按单次执行许可分组，组内 FIFO
+ * - 就绪队列只放可能还有单次执行许可的组，组与组之间轮转，每次为组首任务获取许可
+ * - 单次执行许可不足的组移出就绪队列，该执行释放许可时再放回
+ * 
+ * 因此一次释放只唤醒释放方所在的组与就绪队列的队首，
+ * 单个执行达到上限时积压的大量任务不会让每次释放都扫描一遍
+ * 
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class NodeConcurrencyLimiter {
+
+    /**
+     * 全局许可 (null 表示不限制)
+     */
+    private final Semaphore globalPermits;
+
+    /**
+     * 单次执行许可数 (0 表示不限制)
+     */
+    private final int permitsPerRun;
+
+    /**
+     * 不限制单次执行许可的执行共用的等待组 (只等待全局许可)
+     */
+    private final WaiterGroup sharedWaiters = new WaiterGroup();
+
+    /**
+     * 就绪的等待组 (组首任务只差全局许可或尚未检查)
+     */
+    private final Deque<WaiterGroup> readyGroups = new ConcurrentLinkedDeque<>();
+
+    /**
+     * 等待许可的任务总数
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * 待处理的分配请求数，同一时刻只有一个线程分配许可 (见 grantWaiters)
+     */
+    private final AtomicInteger grantRequests = new AtomicInteger();
+
+    public NodeConcurrencyLimiter(WorkflowExecutorProperties properties) {
+        this.globalPermits = properties.getMaxConcurrentNodes() > 0
+                ? new Semaphore(properties.getMaxConcurrentNodes())
+                : null;
+        this.permitsPerRun = properties.getMaxConcurrentNodesPerRun();
+    }
+
+    /**
+     * 为一次执行创建许可
+     * 
+     * @return 单次执行信号量 (附带该执行的等待组)，不限制时返回 null
+     */
+    public Semaphore newRunPermits() {
+        return permitsPerRun > 0 ? new RunPermits(permitsPerRun) : null;
+    }
+
+    /**
+     * 获取执行许可，不足时登记等待 (不阻塞)
+     * 
+     * @param context   上下文
+     * @param onGranted 登记等待后获得许可时调用 (在释放许可的线程上执行，应只提交任务)
+     * @return 是否立即获得许可，false 表示已登记等待，许可由 onGranted 的执行方持有
+     */
+    public boolean acquireOrWait(WorkflowContext context, Runnable onGranted) {
+        WaiterGroup group = groupOf(context);
+        if (group.waiters.isEmpty() && readyGroups.isEmpty() && tryAcquire(context)) {
+            return true;
+        }
+
+        group.waiters.add(new Waiter(context, onGranted));
+        waiting.incrementAndGet();
+        schedule(group);
+        // 登记前释放的许可没有看到本任务，补一次分配
+        grantWaiters();
+        return false;
+    }
+
+    /**
+     * 尝试获取执行许可 (不等待)
+     * 
+     * @param context 上下文
+     * @return 是否获取成功 (失败时不持有任何许可)
+     */
+    public boolean tryAcquire(WorkflowContext context) {
+        return acquire(context) == Grant.GRANTED;
+    }
+
+    private Grant acquire(WorkflowContext context) {
+        Semaphore runPermits = context.getConcurrencyPermits();
+        if (runPermits != null && !runPermits.tryAcquire()) {
+            return Grant.RUN_EXHAUSTED;
+        }
+
+        if (globalPermits != null && !globalPermits.tryAcquire()) {
+            if (runPermits != null) {
+                runPermits.release();
+            }
+            return Grant.GLOBAL_EXHAUSTED;
+        }
+        return Grant.GRANTED;
+    }
+
+    /**
+     * 释放执行许可
+     * 
+     * @param context 上下文
+     */
+    public void release(WorkflowContext context) {
+        if (globalPermits != null) {
+            globalPermits.release();
+        }
+
+        Semaphore runPermits = context.getConcurrencyPermits();
+        if (runPermits != null) {
+            runPermits.release();
+        }
+
+        WaiterGroup group = groupOf(context);
+        if (!group.waiters.isEmpty()) {
+            schedule(group);
+        }
+        if (waiting.get() > 0) {
+            grantWaiters();
+        }
+    }
+
+    /**
+     * 等待组放入就绪队列 (已在队列中时忽略)
+     */
+    private void schedule(WaiterGroup group) {
+        if (group.scheduled.compareAndSet(false, true)) {
+            readyGroups.add(group);
+        }
+    }
+
+    /**
+     * 为等待任务分配许可
+     * 
+     * 同一时刻只有一个线程分配，分配期间到达的请求使其再处理一轮，避免许可释放与登记等待交错时任务被遗漏；
+     * 每次取出就绪队列的队首组:
+     * - 组首任务获得许可: 交还执行，组内还有任务时放回队尾 (组间轮转)
+     * - 单次执行许可不足: 组移出就绪队列，等该执行释放许可
+     * - 全局许可不足: 组放回队首，本轮结束
+     */
+    private void grantWaiters() {
+        if (grantRequests.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            WaiterGroup group;
+            while ((group = readyGroups.poll()) != null) {
+                // 先清除标记再检查任务，之后登记的任务会重新放入就绪队列
+                group.scheduled.set(false);
+                Waiter waiter = group.waiters.peek();
+                if (waiter == null) {
+                    continue;
+                }
+
+                Grant grant = acquire(waiter.context);
+                if (grant == Grant.RUN_EXHAUSTED) {
+                    continue;
+                }
+                if (grant == Grant.GLOBAL_EXHAUSTED) {
+                    if (group.scheduled.compareAndSet(false, true)) {
+                        readyGroups.addFirst(group);
+                    }
+                    break;
+                }
+
+                group.waiters.poll();
+                waiting.decrementAndGet();
+                if (!group.waiters.isEmpty()) {
+                    schedule(group);
+                }
+
+                try {
+                    waiter.onGranted.run();
+                } catch (RuntimeException e) {
+                    log.error("Failed to hand over execution permit for run {}", waiter.context.getRunId(), e);
+                    release(waiter.context);
+                }
+            }
+            missed = grantRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private WaiterGroup groupOf(WorkflowContext context) {
+        return context.getConcurrencyPermits() instanceof RunPermits runPermits
+                ? runPermits.waiters
+                : sharedWaiters;
+    }
+
+    /**
+     * 等待许可的任务数
+     */
+    public int waitingCount() {
+        return waiting.get();
+    }
+
+    /**
+     * 当前可用的全局许可数 (不限制时返回 -1)
+     */
+    public int availableGlobalPermits() {
+        return globalPermits != null ? globalPermits.availablePermits() : -1;
+    }
+
+    private enum Grant {
+        GRANTED,
+        RUN_EXHAUSTED,
+        GLOBAL_EXHAUSTED
+    }
+
+    /**
+     * 单次执行许可，附带等待该许可的任务组
+     */
+    private static final class RunPermits extends Semaphore {
+
+        private final WaiterGroup waiters = new WaiterGroup();
+
+        private RunPermits(int permits) {
+            super(permits);
+        }
+    }
+
+    /**
+     * 共用同一单次执行许可的等待任务 (只由分配线程出队)
+     */
+    private static final class WaiterGroup {
+
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 是否在就绪队列中
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
+
+    private static final class Waiter {
+
+        private final WorkflowContext context;
+
+        private final Runnable onGranted;
+
+        private Waiter(WorkflowContext context, Runnable onGranted) {
+            this.context = context;
+            this.onGranted = onGranted;
+        }
+    }
+}
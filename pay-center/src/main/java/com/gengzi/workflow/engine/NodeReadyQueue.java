@@ -0,0 +1,167 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.config.WorkflowExecutorProperties;
+import com.gengzi.workflow.context.WorkflowContext;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 就绪节点队列 (跨执行共享)
+ *
+ * 线程池队列只保存无差别的调度令牌，每个令牌执行时从这里取出 "当前最应执行" 的节点，
+ * 因此选择顺序与线程池实现 (平台线程池 / 虚拟线程) 和拒绝策略无关
+ *
+ * 取出顺序:
+ * - 执行间: 有就绪节点的执行轮转排队，每次取一个节点后排到队尾，
+ * 单个大执行无论就绪多少节点，也只能占用与其他执行相同的调度份额
+ * (子执行与顶层执行共用一个份额，按 rootRunId 归组)
+ * - 执行内: 按关键路径长度 (CompiledGraph.rank) 降序，相同时按就绪先后
+ *
+ * @author gengzi
+ */
+@Component
+public class NodeReadyQueue {
+
+    private static final Comparator<ReadyNode> BY_PRIORITY = Comparator
+            .comparingInt(ReadyNode::getRank).reversed()
+            .thenComparingLong(ReadyNode::getSequence);
+
+    private final boolean enabled;
+
+    /**
+     * 各执行的就绪节点
+     * Key: rootRunId, Value: 该执行 (含子执行) 的优先队列
+     */
+    private final Map<String, RunQueue> runs = new HashMap<>();
+
+    /**
+     * 有就绪节点的执行 (轮转顺序)
+     */
+    private final ArrayDeque<RunQueue> rotation = new ArrayDeque<>();
+
+    private long sequence;
+    private int size;
+
+    public NodeReadyQueue(WorkflowExecutorProperties properties) {
+        this.enabled = properties.getScheduling() == WorkflowExecutorProperties.Scheduling.PRIORITY;
+    }
+
+    /**
+     * 是否启用 (FIFO 调度时不经过本队列)
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 加入就绪节点
+     *
+     * @param context   上下文
+     * @param index     节点下标
+     * @param readyAtMs 就绪时间
+     */
+    public synchronized void offer(WorkflowContext context, int index, long readyAtMs) {
+        RunQueue queue = runs.get(context.getRootRunId());
+        if (queue == null) {
+            queue = new RunQueue(context.getGraph().maxParallelism());
+            runs.put(context.getRootRunId(), queue);
+            rotation.addLast(queue);
+        }
+
+        queue.nodes.add(new ReadyNode(context, index, readyAtMs, context.getGraph().rank(index), sequence++));
+        size++;
+    }
+
+    /**
+     * 取出下一个应执行的节点
+     *
+     * @return 就绪节点，队列为空返回 null
+     */
+    public synchronized ReadyNode poll() {
+        RunQueue queue = rotation.pollFirst();
+        if (queue == null) {
+            return null;
+        }
+
+        ReadyNode node = queue.nodes.poll();
+        if (queue.nodes.isEmpty()) {
+            runs.remove(node.getContext().getRootRunId());
+        } else {
+            rotation.addLast(queue);
+        }
+
+        size--;
+        return node;
+    }
+
+    /**
+     * 移出一个执行 (含子执行) 的全部就绪节点 (执行取消时调用)
+     *
+     * 已提交的调度令牌不受影响，取不到节点时直接返回
+     *
+     * @param rootRunId 顶层执行 ID
+     * @return 被移出的就绪节点
+     */
+    public synchronized List<ReadyNode> removeRun(String rootRunId) {
+        RunQueue queue = runs.remove(rootRunId);
+        if (queue == null) {
+            return Collections.emptyList();
+        }
+
+        rotation.remove(queue);
+        List<ReadyNode> removed = new ArrayList<>(queue.nodes);
+        size -= removed.size();
+        return removed;
+    }
+
+    /**
+     * 当前就绪节点数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 就绪节点
+     */
+    @Value
+    public static class ReadyNode {
+
+        WorkflowContext context;
+
+        int index;
+
+        long readyAtMs;
+
+        /**
+         * 关键路径长度
+         */
+        int rank;
+
+        /**
+         * 就绪序号 (同优先级按先后)
+         */
+        long sequence;
+    }
+
+    private static final class RunQueue {
+
+        private final PriorityQueue<ReadyNode> nodes;
+
+        /**
+         * @param capacity 初始容量 (图的最大层宽)
+         */
+        private RunQueue(int capacity) {
+            this.nodes = new PriorityQueue<>(capacity, BY_PRIORITY);
+        }
+    }
+}
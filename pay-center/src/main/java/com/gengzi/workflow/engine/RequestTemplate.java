@@ -0,0 +1,135 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.expression.ConditionContext;
+import com.gengzi.workflow.expression.Template;
+import com.gengzi.workflow.model.HttpConfig;
+import com.gengzi.workflow.model.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * 节点请求配置的模板计划 (不可变，可跨执行共享)
+ *
+ * URL、请求头与请求体中引用其他节点结果的部分 (见 Template) 在编译图时解析一次，
+ * 执行节点时按槽位取结果渲染出本次请求的 HttpConfig，未引用任何节点的字段原样沿用
+ *
+ * @author gengzi
+ */
+final class RequestTemplate {
+
+    private final Template url;
+    private final Map<String, Template> headers;
+    private final Template body;
+
+    private RequestTemplate(Template url, Map<String, Template> headers, Template body) {
+        this.url = url;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * 编译节点请求配置
+     *
+     * @param node   节点定义
+     * @param slotOf 节点 ID -> 槽位
+     * @return 模板计划，请求配置中没有节点引用时返回 null
+     * @throws IllegalArgumentException 引用路径语法错误
+     */
+    static RequestTemplate compile(Node node, ToIntFunction<String> slotOf) {
+        HttpConfig config = node.getConfig();
+        if (config == null) {
+            return null;
+        }
+
+        Map<String, Template> headers = new HashMap<>();
+        if (config.getHeaders() != null) {
+            config.getHeaders().forEach((name, value) -> {
+                Template template = name != null ? Template.compile(value, slotOf) : null;
+                if (template != null) {
+                    headers.put(name, template);
+                }
+            });
+        }
+        Template url = Template.compile(config.getUrl(), slotOf);
+        Template body = Template.compile(config.getBody(), slotOf);
+
+        if (url == null && headers.isEmpty() && body == null) {
+            return null;
+        }
+        return new RequestTemplate(url, headers, body);
+    }
+
+    /**
+     * 引用的节点槽位 (可能重复)
+     */
+    int[] referencedSlots() {
+        int count = (url != null ? url.referenceCount() : 0) + (body != null ? body.referenceCount() : 0);
+        for (Template header : headers.values()) {
+            count += header.referenceCount();
+        }
+
+        int[] slots = new int[count];
+        int k = 0;
+        for (Template template : new Template[]{url, body}) {
+            for (int i = 0; template != null && i < template.referenceCount(); i++) {
+                slots[k++] = template.slot(i);
+            }
+        }
+        for (Template header : headers.values()) {
+            for (int i = 0; i < header.referenceCount(); i++) {
+                slots[k++] = header.slot(i);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * 渲染本次执行的节点定义
+     *
+     * @param node  节点定义
+     * @param views 槽位 -> 节点结果的求值上下文
+     * @return 替换引用后的节点 (请求配置为新实例，其余字段与原节点相同)
+     */
+    Node render(Node node, IntFunction<ConditionContext> views) {
+        HttpConfig template = node.getConfig();
+
+        Map<String, String> renderedHeaders = template.getHeaders();
+        if (!headers.isEmpty()) {
+            Map<String, String> rendered = renderedHeaders != null ? new HashMap<>(renderedHeaders) : new HashMap<>();
+            headers.forEach((name, header) -> rendered.put(name, header.render(views)));
+            renderedHeaders = rendered;
+        }
+
+        HttpConfig config = HttpConfig.builder()
+                .url(url != null ? url.render(views) : template.getUrl())
+                .method(template.getMethod())
+                .headers(renderedHeaders)
+                .body(body != null ? body.render(views) : template.getBody())
+                .contentType(template.getContentType())
+                .connectTimeoutMs(template.getConnectTimeoutMs())
+                .readTimeoutMs(template.getReadTimeoutMs())
+                .ratePerSecond(template.getRatePerSecond())
+                .build();
+
+        return Node.builder()
+                .id(node.getId())
+                .type(node.getType())
+                .config(config)
+                .template(node.getTemplate())
+                .itemsFrom(node.getItemsFrom())
+                .itemsPath(node.getItemsPath())
+                .mapConcurrency(node.getMapConcurrency())
+                .nextNodes(node.getNextNodes())
+                .loopPolicy(node.getLoopPolicy())
+                .loopConfig(node.getLoopConfig())
+                .joinMode(node.getJoinMode())
+                .callbackTimeoutMs(node.getCallbackTimeoutMs())
+                .timeoutMs(node.getTimeoutMs())
+                .batch(node.getBatch())
+                .description(node.getDescription())
+                .build();
+    }
+}
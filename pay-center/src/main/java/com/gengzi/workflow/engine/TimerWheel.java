@@ -0,0 +1,327 @@
+package com.gengzi.workflow.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * 哈希时间轮
+ *
+ * 大量定时任务共用一个轮转线程，时间按 tickMs 划分为刻度，wheelSize 个槽位首尾相接:
+ * - 任务按到期刻度哈希到槽位 (刻度 & mask)，超过一圈的任务记录剩余圈数
+ * - 加入与取消都是 O(1)，与任务总数无关
+ * - 每个刻度只遍历当前槽位，槽位中的任务平均为 总数 / wheelSize
+ * - 到期精度为一个刻度，只会晚到不会早到
+ *
+ * 新任务先进入无锁队列，由轮转线程在下一个刻度放入槽位，槽位只由轮转线程访问；
+ * 取消只标记状态，轮转线程经过所在槽位时移除
+ *
+ * 到期任务在轮转线程上执行，应只做轻量操作 (耗时操作会推迟之后所有任务)
+ *
+ * 时间来源可注入: 不启动轮转线程时由调用方推进时钟后调用 advance 处理到期刻度 (用于确定性测试)
+ *
+ * @author gengzi
+ */
+@Slf4j
+public final class TimerWheel {
+
+    private static final int ST_PENDING = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private final long tickMs;
+
+    /**
+     * 时钟 (毫秒时间戳)
+     */
+    private final LongSupplier clock;
+
+    private final int mask;
+
+    private final Bucket[] wheel;
+
+    /**
+     * 尚未放入槽位的新任务
+     */
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 刻度 0 的起点 (毫秒时间戳)
+     */
+    private final long startMs;
+
+    /**
+     * 轮转线程 (由调用方驱动时为 null)
+     */
+    private final Thread worker;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile boolean stopped;
+
+    /**
+     * 当前刻度 (仅轮转线程或驱动方访问)
+     */
+    private long tick;
+
+    /**
+     * @param name      轮转线程名称
+     * @param tickMs    刻度 (毫秒)
+     * @param wheelSize 槽位数 (向上取整为 2 的幂)
+     */
+    public TimerWheel(String name, long tickMs, int wheelSize) {
+        this(name, tickMs, wheelSize, System::currentTimeMillis, true);
+    }
+
+    /**
+     * 由调用方驱动的时间轮: 不启动轮转线程，推进 clock 后调用 advance
+     *
+     * @param tickMs    刻度 (毫秒)
+     * @param wheelSize 槽位数 (向上取整为 2 的幂)
+     * @param clock     时钟 (毫秒时间戳)
+     */
+    TimerWheel(long tickMs, int wheelSize, LongSupplier clock) {
+        this(null, tickMs, wheelSize, clock, false);
+    }
+
+    private TimerWheel(String name, long tickMs, int wheelSize, LongSupplier clock, boolean startWorker) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be positive: " + tickMs);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize must be in (0, 2^30]: " + wheelSize);
+        }
+
+        int buckets = Integer.highestOneBit(wheelSize);
+        if (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.tickMs = tickMs;
+        this.clock = clock;
+        this.mask = buckets - 1;
+        this.wheel = new Bucket[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new Bucket();
+        }
+
+        this.startMs = clock.getAsLong();
+        if (startWorker) {
+            this.worker = new Thread(this::run, name);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        } else {
+            this.worker = null;
+        }
+    }
+
+    /**
+     * 加入定时任务
+     *
+     * @param task       到期时执行的任务
+     * @param deadlineMs 到期时间 (毫秒时间戳，已过期的任务在下一个刻度执行)
+     * @return 任务句柄 (可取消)
+     */
+    public Timeout schedule(Runnable task, long deadlineMs) {
+        if (stopped) {
+            throw new IllegalStateException("Timer wheel is stopped");
+        }
+
+        Timeout timeout = new Timeout(task, deadlineMs);
+        size.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 未到期且未取消的任务数 (近似值)
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    /**
+     * 停止轮转线程，未到期的任务不再执行
+     */
+    public void stop() {
+        stopped = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            long sleepMs = startMs + (tick + 1) * tickMs - clock.getAsLong();
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            advance();
+        }
+    }
+
+    /**
+     * 处理当前时间之前的所有刻度 (落后多个刻度时连续补处理)
+     *
+     * 只能由轮转线程调用；不启动轮转线程时由唯一的驱动方调用
+     *
+     * @return 处理的刻度数
+     */
+    int advance() {
+        long nowMs = clock.getAsLong();
+        int ticks = 0;
+        while (!stopped && startMs + (tick + 1) * tickMs <= nowMs) {
+            transferIncoming();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * 新任务放入槽位
+     *
+     * 刻度 t 在 startMs + (t + 1) * tickMs 时处理，到期时间之前的刻度都不能触发该任务
+     */
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.state.get() == ST_CANCELLED) {
+                continue;
+            }
+
+            long elapsed = timeout.deadlineMs - startMs;
+            long dueTick = Math.max(elapsed <= 0 ? 0 : (elapsed + tickMs - 1) / tickMs - 1, tick);
+            timeout.remainingRounds = (dueTick - tick) / wheel.length;
+            wheel[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public final class Timeout {
+
+        private final Runnable task;
+
+        private final long deadlineMs;
+
+        private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+
+        /**
+         * 剩余圈数 / 槽位链表 (仅轮转线程访问)
+         */
+        private long remainingRounds;
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineMs) {
+            this.task = task;
+            this.deadlineMs = deadlineMs;
+        }
+
+        /**
+         * 取消任务
+         *
+         * @return 是否由本次调用取消 (已到期或已取消返回 false)
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            size.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public long getDeadlineMs() {
+            return deadlineMs;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+                return;
+            }
+            size.decrementAndGet();
+
+            try {
+                task.run();
+            } catch (Throwable e) {
+                log.error("Timer task failed", e);
+            }
+        }
+    }
+
+    /**
+     * 槽位: 任务双向链表
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            if (tail == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * 执行本圈到期的任务，移除已取消的任务，其余任务圈数减一
+         */
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.context.WorkflowStateListener;
+import com.gengzi.workflow.dto.TriggerRequest;
+import com.gengzi.workflow.model.MisfirePolicy;
+import com.gengzi.workflow.model.WorkflowStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * 定时触发调度器
+ *
+ * 按 cron 或固定频率启动已注册的工作流模板 (见 WorkflowTemplateRegistry):
+ * - 触发时直接使用模板的 CompiledGraph，不再解析与编译图定义
+ * - 所有触发器共用一个哈希时间轮 (见 TimerWheel)，每个触发器只占一个待到期任务，数万个触发器不增加线程
+ * - 触发时间已过去超过 misfireThresholdMs 时按 MisfirePolicy 处理，错过的多个触发点最多补一次
+ * - 不允许重叠的触发器在上一次执行未结束时跳过本次触发
+ *
+ * 触发器只保存在本实例内存中，重启后需重新注册
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class TriggerScheduler {
+
+    private final WorkflowTemplateRegistry templateRegistry;
+
+    private final long misfireThresholdMs;
+
+    private final TimerWheel wheel;
+
+    /**
+     * 时钟 (毫秒时间戳)，与时间轮使用同一时间来源
+     */
+    private final LongSupplier clock;
+
+    /**
+     * 触发器
+     * Key: 触发器名称, Value: 触发器
+     */
+    private final ConcurrentHashMap<String, Trigger> triggers = new ConcurrentHashMap<>();
+
+    /**
+     * 启动执行 (触发器名称, 模板编译结果) -> 上下文，启动失败返回 null
+     */
+    private volatile BiFunction<String, CompiledGraph, WorkflowContext> launcher;
+
+    @Autowired
+    public TriggerScheduler(WorkflowTemplateRegistry templateRegistry,
+            @Value("${workflow.trigger.tick-ms:100}") long tickMs,
+            @Value("${workflow.trigger.wheel-size:512}") int wheelSize,
+            @Value("${workflow.trigger.misfire-threshold-ms:5000}") long misfireThresholdMs) {
+        this(templateRegistry, new TimerWheel("workflow-trigger", tickMs, wheelSize), misfireThresholdMs,
+                System::currentTimeMillis);
+    }
+
+    /**
+     * @param wheel 时间轮 (由调用方驱动时与 clock 共用时间来源)
+     * @param clock 时钟 (毫秒时间戳)
+     */
+    TriggerScheduler(WorkflowTemplateRegistry templateRegistry, TimerWheel wheel, long misfireThresholdMs,
+            LongSupplier clock) {
+        this.templateRegistry = templateRegistry;
+        this.misfireThresholdMs = misfireThresholdMs;
+        this.wheel = wheel;
+        this.clock = clock;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wheel.stop();
+    }
+
+    /**
+     * 设置启动执行的方式
+     *
+     * @param launcher (触发器名称, 模板编译结果) -> 上下文 (启动失败返回 null)
+     */
+    public void setLauncher(BiFunction<String, CompiledGraph, WorkflowContext> launcher) {
+        this.launcher = launcher;
+    }
+
+    /**
+     * 注册触发器 (同名触发器被替换，旧触发器已启动的执行不受影响)
+     *
+     * @param name    触发器名称
+     * @param request 触发配置
+     * @return 触发器
+     * @throws IllegalArgumentException 模板不存在、cron 与 intervalMs 未二选一、表达式或时区无效
+     */
+    public Trigger register(String name, TriggerRequest request) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Trigger name must not be blank");
+        }
+        templateRegistry.get(request.getTemplate());
+
+        boolean hasCron = request.getCron() != null && !request.getCron().isBlank();
+        boolean hasInterval = request.getIntervalMs() != null;
+        if (hasCron == hasInterval) {
+            throw new IllegalArgumentException("Trigger " + name + " must specify exactly one of cron and intervalMs");
+        }
+        if (hasInterval && request.getIntervalMs() <= 0) {
+            throw new IllegalArgumentException("Trigger " + name + " intervalMs must be positive");
+        }
+
+        CronExpression cron = hasCron ? CronExpression.parse(request.getCron()) : null;
+        ZoneId zone;
+        try {
+            zone = request.getZone() != null && !request.getZone().isBlank() ? ZoneId.of(request.getZone())
+                    : ZoneId.systemDefault();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid trigger zone: " + request.getZone(), e);
+        }
+
+        Trigger trigger = new Trigger(name, request, cron, zone);
+        long nowMs = clock.getAsLong();
+        long firstFireMs = trigger.nextFireAfter(nowMs, nowMs);
+        if (firstFireMs < 0) {
+            throw new IllegalArgumentException("Cron expression of trigger " + name + " never fires: "
+                    + request.getCron());
+        }
+
+        Trigger previous = triggers.put(name, trigger);
+        if (previous != null) {
+            previous.cancel();
+        }
+        schedule(trigger, firstFireMs);
+
+        log.info("Registered trigger {}: template={}, cron={}, intervalMs={}, firstFire={}", name,
+                request.getTemplate(), request.getCron(), request.getIntervalMs(), Instant.ofEpochMilli(firstFireMs));
+        return trigger;
+    }
+
+    /**
+     * 删除触发器 (已启动的执行不受影响)
+     *
+     * @return 是否存在
+     */
+    public boolean remove(String name) {
+        Trigger trigger = triggers.remove(name);
+        if (trigger == null) {
+            return false;
+        }
+        trigger.cancel();
+        log.info("Removed trigger {}", name);
+        return true;
+    }
+
+    /**
+     * 获取触发器
+     *
+     * @return 触发器，不存在返回 null
+     */
+    public Trigger get(String name) {
+        return triggers.get(name);
+    }
+
+    /**
+     * 所有触发器 (按名称排序)
+     */
+    public Map<String, Trigger> getAll() {
+        return new TreeMap<>(triggers);
+    }
+
+    private void schedule(Trigger trigger, long fireAtMs) {
+        trigger.nextFireTimeMs = fireAtMs;
+        trigger.timeout = wheel.schedule(() -> fire(trigger, fireAtMs), fireAtMs);
+        // 与 cancel 并发时由后执行的一方取消任务
+        if (trigger.cancelled) {
+            trigger.timeout.cancel();
+        }
+    }
+
+    /**
+     * 触发 (轮转线程)，处理后安排下一个触发点
+     */
+    private void fire(Trigger trigger, long scheduledMs) {
+        long nowMs = clock.getAsLong();
+        try {
+            if (trigger.cancelled) {
+                return;
+            }
+
+            if (nowMs - scheduledMs > misfireThresholdMs && trigger.misfirePolicy == MisfirePolicy.SKIP) {
+                trigger.misfireCount.incrementAndGet();
+                log.warn("Trigger {} misfired by {} ms, skipped", trigger.name, nowMs - scheduledMs);
+            } else if (!trigger.allowOverlap && trigger.isRunning()) {
+                trigger.overlapSkipCount.incrementAndGet();
+                log.info("Trigger {} skipped: previous run {} still active", trigger.name, trigger.lastRunId);
+            } else {
+                launch(trigger);
+            }
+        } finally {
+            if (!trigger.cancelled) {
+                long nextMs = trigger.nextFireAfter(scheduledMs, nowMs);
+                if (nextMs >= 0) {
+                    schedule(trigger, nextMs);
+                } else {
+                    log.info("Trigger {} has no further fire time", trigger.name);
+                }
+            }
+        }
+    }
+
+    private void launch(Trigger trigger) {
+        BiFunction<String, CompiledGraph, WorkflowContext> launcher = this.launcher;
+        if (launcher == null) {
+            log.warn("Trigger {} fired before a launcher was set", trigger.name);
+            return;
+        }
+
+        CompiledGraph graph;
+        try {
+            graph = templateRegistry.get(trigger.template);
+        } catch (IllegalArgumentException e) {
+            log.error("Trigger {} fired: {}", trigger.name, e.getMessage());
+            return;
+        }
+
+        WorkflowContext context = launcher.apply(trigger.name, graph);
+        if (context != null) {
+            trigger.lastRunId = context.getRunId();
+            trigger.activeRun.set(context);
+            trigger.fireCount.incrementAndGet();
+            context.addStateListener(trigger);
+            if (context.isFinished()) {
+                trigger.onWorkflowStatusChanged(context, context.getWorkflowStatus());
+            }
+        }
+    }
+
+    /**
+     * 触发器
+     *
+     * 配置不可变，运行状态 (下一次触发时间、最近一次执行、计数) 由轮转线程更新；
+     * 监听启动的执行，执行结束后不再持有其上下文
+     */
+    public static final class Trigger implements WorkflowStateListener {
+
+        private final String name;
+
+        private final String template;
+
+        private final String cronText;
+
+        private final CronExpression cron;
+
+        private final ZoneId zone;
+
+        private final long intervalMs;
+
+        private final MisfirePolicy misfirePolicy;
+
+        private final boolean allowOverlap;
+
+        private final AtomicLong fireCount = new AtomicLong();
+
+        private final AtomicLong misfireCount = new AtomicLong();
+
+        private final AtomicLong overlapSkipCount = new AtomicLong();
+
+        private volatile long nextFireTimeMs;
+
+        private volatile String lastRunId;
+
+        /**
+         * 上一次触发的执行，结束后清空
+         */
+        private final AtomicReference<WorkflowContext> activeRun = new AtomicReference<>();
+
+        private volatile TimerWheel.Timeout timeout;
+
+        private volatile boolean cancelled;
+
+        private Trigger(String name, TriggerRequest request, CronExpression cron, ZoneId zone) {
+            this.name = name;
+            this.template = request.getTemplate();
+            this.cronText = request.getCron();
+            this.cron = cron;
+            this.zone = zone;
+            this.intervalMs = cron == null ? request.getIntervalMs() : 0L;
+            this.misfirePolicy = request.getMisfirePolicy() != null ? request.getMisfirePolicy()
+                    : MisfirePolicy.FIRE_ONCE;
+            this.allowOverlap = request.isAllowOverlap();
+        }
+
+        /**
+         * 下一个触发点 (晚于 nowMs，错过的触发点不再补)
+         *
+         * - 固定频率: 保持与 scheduledMs 对齐的相位
+         * - cron: 表达式在 nowMs 之后的第一个匹配时间
+         *
+         * @param scheduledMs 本次触发点
+         * @param nowMs       当前时间
+         * @return 毫秒时间戳，cron 不再匹配时返回 -1
+         */
+        long nextFireAfter(long scheduledMs, long nowMs) {
+            if (cron == null) {
+                long periods = Math.max(1L, (nowMs - scheduledMs) / intervalMs + 1);
+                return scheduledMs + periods * intervalMs;
+            }
+
+            ZonedDateTime next = cron.next(ZonedDateTime.ofInstant(Instant.ofEpochMilli(nowMs), zone));
+            return next != null ? next.toInstant().toEpochMilli() : -1L;
+        }
+
+        /**
+         * 上一次触发的执行是否仍在进行 (含等待回调)
+         */
+        boolean isRunning() {
+            WorkflowContext run = activeRun.get();
+            return run != null && !run.isFinished();
+        }
+
+        @Override
+        public void onWorkflowStatusChanged(WorkflowContext context, WorkflowStatus status) {
+            if (status.isTerminal()) {
+                activeRun.compareAndSet(context, null);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            TimerWheel.Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public String getCron() {
+            return cronText;
+        }
+
+        public ZoneId getZone() {
+            return cron != null ? zone : null;
+        }
+
+        public Long getIntervalMs() {
+            return cron == null ? intervalMs : null;
+        }
+
+        public MisfirePolicy getMisfirePolicy() {
+            return misfirePolicy;
+        }
+
+        public boolean isAllowOverlap() {
+            return allowOverlap;
+        }
+
+        public long getNextFireTimeMs() {
+            return nextFireTimeMs;
+        }
+
+        public String getLastRunId() {
+            return lastRunId;
+        }
+
+        public long getFireCount() {
+            return fireCount.get();
+        }
+
+        public long getMisfireCount() {
+            return misfireCount.get();
+        }
+
+        public long getOverlapSkipCount() {
+            return overlapSkipCount.get();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.context.WorkflowStateListener;
+import com.gengzi.workflow.dto.WorkflowEvent;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 工作流事件总线
+ *
+ * 按执行订阅节点状态迁移与工作流状态变化:
+ * - 首次订阅时才把总线注册为该上下文的监听器，未被订阅的执行没有任何额外开销
+ * - 监听回调运行在引擎线程上，只构建事件并放入每个订阅者自己的有界队列，从不等待订阅者
+ * - 订阅者的队列由分发线程池依次取出并投递，同一订阅者同一时刻只有一个投递任务，事件按发生顺序送达；
+ * 每次投递最多连续送出 DRAIN_BATCH 个事件后让出线程，慢订阅者 (如 SSE 连接) 只占用一个分发线程
+ * - 队列已满的订阅者视为过慢，取消订阅并通知其断开，不影响其他订阅者与节点调度
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class WorkflowEventBus implements WorkflowStateListener {
+
+    /**
+     * 单次投递任务最多连续送出的事件数
+     */
+    private static final int DRAIN_BATCH = 64;
+
+    /**
+     * 订阅者
+     * Key: runId, Value: 订阅
+     */
+    private final ConcurrentHashMap<String, List<Subscription>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * 每个订阅者最多积压的事件数
+     */
+    private final int queueCapacity;
+
+    /**
+     * 事件分发线程池
+     */
+    private final ExecutorService dispatcher;
+
+    public WorkflowEventBus(@Value("${workflow.events.subscriber-queue-capacity:1024}") int queueCapacity,
+            @Value("${workflow.events.dispatcher-threads:4}") int dispatcherThreads) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("subscriber-queue-capacity must be positive: " + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatcherThreads), runnable -> {
+            Thread thread = new Thread(runnable, "workflow-event-dispatcher-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 订阅执行事件
+     *
+     * @param context    上下文
+     * @param consumer   事件消费者 (在分发线程上调用，抛出异常时取消订阅)
+     * @param onOverflow 积压超过队列容量被取消订阅时调用 (在分发线程上调用，用于断开连接)
+     * @return 取消订阅句柄
+     */
+    public Runnable subscribe(WorkflowContext context, Consumer<WorkflowEvent> consumer, Runnable onOverflow) {
+        String runId = context.getRunId();
+        Subscription subscription = new Subscription(runId, consumer, onOverflow);
+        subscribers.computeIfAbsent(runId, key -> new CopyOnWriteArrayList<>()).add(subscription);
+        context.addStateListener(this);
+
+        log.debug("Subscribed to workflow events: runId={}", runId);
+        return subscription::close;
+    }
+
+    private void unsubscribe(String runId, Subscription subscription) {
+        subscribers.computeIfPresent(runId, (key, list) -> {
+            list.remove(subscription);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @Override
+    public void onNodeStatusChanged(WorkflowContext context, String nodeId, NodeStatus previous, NodeStatus status) {
+        if (!subscribers.containsKey(context.getRunId())) {
+            return;
+        }
+
+        int index = context.getGraph().indexOf(nodeId);
+        publish(WorkflowEvent.builder()
+                .runId(context.getRunId())
+                .sequence(index >= 0 ? context.getNodeSequence(index) : context.getSequence())
+                .nodeId(nodeId)
+                .previousStatus(previous)
+                .nodeStatus(status)
+                .timeMs(System.currentTimeMillis())
+                .build());
+    }
+
+    @Override
+    public void onWorkflowStatusChanged(WorkflowContext context, WorkflowStatus status) {
+        if (!subscribers.containsKey(context.getRunId())) {
+            return;
+        }
+
+        publish(WorkflowEvent.builder()
+                .runId(context.getRunId())
+                .sequence(context.getSequence())
+                .workflowStatus(status)
+                .timeMs(System.currentTimeMillis())
+                .build());
+    }
+
+    private void publish(WorkflowEvent event) {
+        List<Subscription> subscriptions = subscribers.get(event.getRunId());
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * 单个订阅: 有界事件队列 + 串行投递
+     */
+    private final class Subscription implements Runnable {
+
+        private final String runId;
+
+        private final Consumer<WorkflowEvent> consumer;
+
+        private final Runnable onOverflow;
+
+        private final Queue<WorkflowEvent> queue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        /**
+         * 是否已有投递任务在分发线程池中
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private Subscription(String runId, Consumer<WorkflowEvent> consumer, Runnable onOverflow) {
+            this.runId = runId;
+            this.consumer = consumer;
+            this.onOverflow = onOverflow;
+        }
+
+        /**
+         * 放入事件 (引擎线程调用，不阻塞)
+         */
+        void offer(WorkflowEvent event) {
+            if (closed) {
+                return;
+            }
+            if (queued.incrementAndGet() > queueCapacity) {
+                queued.decrementAndGet();
+                log.warn("Workflow event subscriber too slow, disconnecting: runId={}, queued={}", runId,
+                        queueCapacity);
+                close();
+                execute(onOverflow);
+                return;
+            }
+
+            queue.add(event);
+            if (scheduled.compareAndSet(false, true)) {
+                execute(this);
+            }
+        }
+
+        /**
+         * 投递积压的事件 (分发线程)
+         */
+        @Override
+        public void run() {
+            WorkflowEvent event;
+            for (int i = 0; i < DRAIN_BATCH && !closed && (event = queue.poll()) != null; i++) {
+                queued.decrementAndGet();
+                try {
+                    consumer.accept(event);
+                } catch (Exception e) {
+                    log.warn("Workflow event consumer failed: runId={}, error={}", runId, e.getMessage());
+                    close();
+                }
+            }
+
+            scheduled.set(false);
+            // 让出期间或清除标记前放入的事件
+            if (!closed && !queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                execute(this);
+            }
+        }
+
+        void close() {
+            closed = true;
+            unsubscribe(runId, this);
+            queue.clear();
+        }
+
+        private void execute(Runnable task) {
+            try {
+                dispatcher.execute(task);
+            } catch (RejectedExecutionException e) {
+                log.debug("Workflow event dispatcher stopped, dropping events: runId={}", runId);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.model.LoopPolicy;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.NodeResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.HttpUrl;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点执行指标
+ *
+ * 计时器 (均发布百分位直方图):
+ * - workflow.node.queue.wait: 节点就绪到首个请求发出
+ * - workflow.node.execution: 节点执行耗时 (含循环间隔)，附带 outcome 标签
+ * - workflow.http.request: 实际 HTTP 请求耗时 (循环时为累计)
+ * - workflow.callback.wait: CALLBACK 节点从挂起到收到回调
+ *
+ * 计数器:
+ * - workflow.node.retries: FIXED_COUNT / RETRY 节点首次之外的重复执行
+ * - workflow.node.polls: UNTIL_SUCCESS 节点首次之外的轮询
+ *
+ * 公共标签: type (节点类型)、loop (循环策略)、host (目标主机)
+ * 队列深度、活跃执行与等待回调数等容量类仪表见 WorkflowMetricsConfig
+ *
+ * @author gengzi
+ */
+@Component
+public class WorkflowMetrics {
+
+    private static final String UNKNOWN_HOST = "none";
+
+    private final MeterRegistry registry;
+
+    public WorkflowMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 记录 HTTP 节点完成
+     *
+     * @param node   节点
+     * @param result 执行结果
+     */
+    public void recordHttpNode(Node node, NodeResult result) {
+        Tags tags = tags(node);
+
+        if (result.getRequestSentAtMs() > 0) {
+            timer("workflow.node.queue.wait", tags).record(result.getQueueWaitMs(), TimeUnit.MILLISECONDS);
+            timer("workflow.http.request", tags).record(result.getRequestMs(), TimeUnit.MILLISECONDS);
+        }
+        timer("workflow.node.execution", tags.and("outcome", result.getStatusCode() > 0 ? "success" : "failed"))
+                .record(result.getDurationMs(), TimeUnit.MILLISECONDS);
+
+        int repeats = result.getAttempts() - 1;
+        if (repeats > 0) {
+            if (node.getLoopPolicy() == LoopPolicy.UNTIL_SUCCESS) {
+                counter("workflow.node.polls", tags).increment(repeats);
+            } else {
+                counter("workflow.node.retries", tags).increment(repeats);
+            }
+        }
+    }
+
+    /**
+     * 记录 CALLBACK 节点等待结束
+     *
+     * @param node    节点
+     * @param waitMs  等待时长
+     * @param outcome resumed / expired / cancelled
+     */
+    public void recordCallback(Node node, long waitMs, String outcome) {
+        timer("workflow.callback.wait", tags(node).and("outcome", outcome))
+                .record(Math.max(0L, waitMs), TimeUnit.MILLISECONDS);
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter counter(String name, Tags tags) {
+        return Counter.builder(name)
+                .tags(tags)
+                .register(registry);
+    }
+
+    private static Tags tags(Node node) {
+        return Tags.of(
+                "type", node.getType().name(),
+                "loop", node.getLoopPolicy().name(),
+                "host", host(node));
+    }
+
+    private static String host(Node node) {
+        if (node.getConfig() == null || node.getConfig().getUrl() == null) {
+            return UNKNOWN_HOST;
+        }
+        HttpUrl url = HttpUrl.parse(node.getConfig().getUrl());
+        return url != null ? url.host() : UNKNOWN_HOST;
+    }
+}
@@ -0,0 +1,109 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.NodeType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作流模板注册表
+ *
+ * SUB_WORKFLOW 节点按名称引用这里注册的模板:
+ * - 注册时编译一次，之后所有子执行共享同一个 CompiledGraph (不受 GraphCompiler LRU 淘汰影响)
+ * - 同名重复注册覆盖旧模板，已在运行的子执行继续使用旧图
+ * - 注册时检查模板间引用，拒绝直接或间接引用自身的模板
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class WorkflowTemplateRegistry {
+
+    private final GraphCompiler graphCompiler;
+
+    /**
+     * 模板
+     * Key: 模板名称, Value: 编译结果
+     */
+    private final ConcurrentHashMap<String, CompiledGraph> templates = new ConcurrentHashMap<>();
+
+    public WorkflowTemplateRegistry(GraphCompiler graphCompiler) {
+        this.graphCompiler = graphCompiler;
+    }
+
+    /**
+     * 注册模板
+     *
+     * @param name       模板名称
+     * @param definition 图定义
+     * @return 编译结果
+     * @throws IllegalArgumentException 模板直接或间接引用自身
+     */
+    public CompiledGraph register(String name, GraphRequest definition) {
+        checkNoSelfReference(name, definition);
+
+        CompiledGraph graph = graphCompiler.compile(definition);
+        templates.put(name, graph);
+
+        log.info("Registered workflow template {}: {} nodes, {} edges", name, graph.size(), graph.edgeCount());
+        return graph;
+    }
+
+    /**
+     * 获取模板
+     *
+     * @param name 模板名称
+     * @return 编译结果
+     * @throws IllegalArgumentException 模板不存在
+     */
+    public CompiledGraph get(String name) {
+        CompiledGraph graph = name != null ? templates.get(name) : null;
+        if (graph == null) {
+            throw new IllegalArgumentException("Unknown workflow template: " + name);
+        }
+        return graph;
+    }
+
+    /**
+     * 所有模板 (按名称排序)
+     *
+     * @return 模板名称 -> 编译结果
+     */
+    public Map<String, CompiledGraph> getAll() {
+        return new TreeMap<>(templates);
+    }
+
+    /**
+     * 沿 SUB_WORKFLOW 引用遍历已注册模板，检查是否会回到自身
+     */
+    private void checkNoSelfReference(String name, GraphRequest definition) {
+        Deque<GraphRequest> pending = new ArrayDeque<>();
+        Set<String> visited = new HashSet<>();
+        pending.push(definition);
+
+        while (!pending.isEmpty()) {
+            for (Node node : pending.pop().getNodes()) {
+                if (node.getType() != NodeType.SUB_WORKFLOW) {
+                    continue;
+                }
+                if (name.equals(node.getTemplate())) {
+                    throw new IllegalArgumentException("Workflow template " + name + " references itself");
+                }
+
+                CompiledGraph referenced = node.getTemplate() != null ? templates.get(node.getTemplate()) : null;
+                if (referenced != null && visited.add(node.getTemplate())) {
+                    pending.push(referenced.getDefinition());
+                }
+            }
+        }
+    }
+}
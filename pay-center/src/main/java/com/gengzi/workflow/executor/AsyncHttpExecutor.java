@@ -0,0 +1,382 @@
+package com.gengzi.workflow.executor;
+
+import com.gengzi.workflow.expression.Condition;
+import com.gengzi.workflow.model.*;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 异步 HTTP 执行器
+ *
+ * 与 HttpExecutor 语义一致，但不阻塞调用线程:
+ * - 单次请求使用 OkHttp enqueue，响应在 OkHttp Dispatcher 线程上回调
+ * - FIXED_COUNT / UNTIL_SUCCESS 的间隔等待与 RETRY 的退避等待交给 ScheduledExecutorService 定时触发，
+ * 而不是在工作线程上 Thread.sleep
+ * - 熔断中的主机直接以失败结果完成，不发起调用
+ *
+ * 因此一个节点在轮询等待期间不占用任何线程，
+ * 单个实例可同时承载数千个轮询中的节点
+ *
+ * 截止时间与取消 (ExecutionControl) 语义与 HttpExecutor 一致:
+ * 取消时立即以 statusCode=0 完成结果 Future 并取消在途 Call，不再发起后续循环
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class AsyncHttpExecutor {
+
+    private final HttpExecutor httpExecutor;
+
+    /**
+     * 循环间隔调度器 (只负责到点后发起下一次 enqueue，不执行阻塞操作)
+     */
+    private final ScheduledExecutorService scheduler;
+
+    public AsyncHttpExecutor(HttpExecutor httpExecutor) {
+        this.httpExecutor = httpExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workflow-http-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 异步执行节点 (支持循环策略，UNTIL_SUCCESS 以 HTTP 200 为成功条件，不解析 successCondition)
+     *
+     * @param node 工作流节点
+     * @return 执行结果 Future (HTTP 失败以 statusCode=0 的结果正常完成)
+     */
+    public CompletableFuture<NodeResult> execute(Node node) {
+        return execute(node, null, ExecutionControl.unbounded());
+    }
+
+    /**
+     * 异步执行节点 (支持循环策略)
+     *
+     * @param node             工作流节点
+     * @param successCondition UNTIL_SUCCESS 成功条件 (为 null 时以 HTTP 200 为成功)
+     * @param control          截止时间与取消控制
+     * @return 执行结果 Future (HTTP 失败、超时与取消均以 statusCode=0 的结果正常完成)
+     */
+    public CompletableFuture<NodeResult> execute(Node node, Condition successCondition, ExecutionControl control) {
+        if (node.getType() != NodeType.HTTP) {
+            throw new IllegalArgumentException("AsyncHttpExecutor can only execute HTTP type nodes");
+        }
+
+        LocalDateTime startTime = LocalDateTime.now();
+        long startMs = System.currentTimeMillis();
+
+        CompletableFuture<NodeResult> promise = new CompletableFuture<>();
+        Runnable stop = () -> promise.complete(HttpExecutor.stopped(null, control));
+        control.onCancel(stop);
+        promise.whenComplete((result, ex) -> control.removeCancelHook(stop));
+
+        // 根据循环策略执行
+        switch (node.getLoopPolicy()) {
+            case FIXED_COUNT:
+                executeFixedCount(node, control, promise);
+                break;
+            case UNTIL_SUCCESS:
+                executeUntilSuccess(node, successCondition, control, promise);
+                break;
+            case RETRY:
+                executeRetry(node, successCondition, control, promise);
+                break;
+            case NONE:
+            default:
+                executeSingle(node, control).whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        promise.completeExceptionally(ex);
+                    } else {
+                        promise.complete(HttpExecutor.accumulate(null, result));
+                    }
+                });
+                break;
+        }
+
+        return promise.thenApply(result -> {
+            result.setStartTime(startTime);
+            result.setEndTime(LocalDateTime.now());
+            result.setDurationMs(System.currentTimeMillis() - startMs);
+            return result;
+        });
+    }
+
+    /**
+     * 异步执行单次 HTTP 请求
+     *
+     * 被限流时由调度器在令牌可用时再发起 enqueue，等待期间不占用线程
+     * Future 被取消或 control 被取消时同步取消底层 OkHttp Call
+     */
+    CompletableFuture<NodeResult> executeSingle(Node node, ExecutionControl control) {
+        CompletableFuture<NodeResult> future = new CompletableFuture<>();
+        HttpConfig config = node.getConfig();
+
+        Request request;
+        try {
+            request = httpExecutor.buildRequest(config);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        CircuitBreaker breaker = httpExecutor.circuitBreaker(request);
+        if (breaker != null && !breaker.tryAcquire()) {
+            log.debug("Circuit open for node {}, failing fast", node.getId());
+            future.complete(HttpExecutor.circuitOpen(request));
+            return future;
+        }
+
+        // 得到响应或 I/O 错误时先计入熔断再完成 Future，未发出的请求只归还探测名额
+        AtomicBoolean recorded = new AtomicBoolean();
+        Consumer<NodeResult> outcome = result -> {
+            if (recorded.compareAndSet(false, true)) {
+                HttpExecutor.recordOutcome(breaker, result, control, request.url().host());
+            }
+        };
+        future.whenComplete((result, ex) -> outcome.accept(null));
+
+        long waitMs = httpExecutor.reserveRate(node, request, control);
+        if (waitMs < 0) {
+            future.complete(HttpExecutor.stopped(null, control));
+            return future;
+        }
+        if (waitMs > 0) {
+            log.debug("Rate limited node {}: scheduling request in {}ms", node.getId(), waitMs);
+            schedule(() -> enqueue(request, control, outcome, future), waitMs, future);
+        } else {
+            enqueue(request, control, outcome, future);
+        }
+
+        return future;
+    }
+
+    private void enqueue(Request request, ExecutionControl control, Consumer<NodeResult> outcome,
+            CompletableFuture<NodeResult> future) {
+        if (future.isDone()) {
+            return;
+        }
+        if (control.isStopped()) {
+            future.complete(HttpExecutor.stopped(null, control));
+            return;
+        }
+
+        log.info("Enqueueing HTTP request: {} {}", request.method(), request.url());
+
+        Call call = httpExecutor.newCall(request, control);
+        Runnable cancelCall = call::cancel;
+        control.onCancel(cancelCall);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (control.isStopped()) {
+                    log.warn("HTTP request stopped: {}", control.stopReason());
+                    future.complete(HttpExecutor.stopped(null, control));
+                    return;
+                }
+                log.error("HTTP request failed: {}", e.getMessage(), e);
+                NodeResult result = NodeResult.builder()
+                        .statusCode(0)
+                        .errorMessage(e.getMessage())
+                        .build();
+                outcome.accept(result);
+                future.complete(result);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    NodeResult result = httpExecutor.buildResult(response);
+                    outcome.accept(result);
+                    future.complete(result);
+                } catch (IOException e) {
+                    onFailure(call, e);
+                }
+            }
+        });
+
+        future.whenComplete((result, ex) -> {
+            control.removeCancelHook(cancelCall);
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+    }
+
+    /**
+     * 固定次数循环执行
+     * Feature A: In-Node Loops - FIXED_COUNT
+     */
+    private void executeFixedCount(Node node, ExecutionControl control, CompletableFuture<NodeResult> promise) {
+        LoopConfig loopConfig = node.getLoopConfig();
+        int maxRetries = loopConfig != null ? loopConfig.getMaxRetries() : 1;
+        long intervalMs = loopConfig != null ? loopConfig.getIntervalMs() : 1000L;
+
+        log.info("Executing async FIXED_COUNT loop: node={}, retries={}", node.getId(), maxRetries);
+
+        runFixedCount(node, 0, Math.max(1, maxRetries), intervalMs, control, null, promise);
+    }
+
+    private void runFixedCount(Node node, int iteration, int maxRetries, long intervalMs, ExecutionControl control,
+            NodeResult previous, CompletableFuture<NodeResult> promise) {
+        if (promise.isDone()) {
+            return;
+        }
+        if (previous != null && control.isStopped()) {
+            promise.complete(HttpExecutor.stopped(previous, control));
+            return;
+        }
+
+        log.debug("Loop iteration {}/{} for node {}", iteration + 1, maxRetries, node.getId());
+
+        executeSingle(node, control).whenComplete((current, ex) -> {
+            if (ex != null) {
+                promise.completeExceptionally(ex);
+                return;
+            }
+
+            NodeResult result = HttpExecutor.accumulate(previous, current);
+            if (iteration >= maxRetries - 1) {
+                promise.complete(result);
+            } else {
+                // 如果不是最后一次循环，则定时触发下一次 (不越过截止时间)
+                schedule(() -> runFixedCount(node, iteration + 1, maxRetries, intervalMs, control, result, promise),
+                        Math.min(intervalMs, control.remainingMs()), promise);
+            }
+        });
+    }
+
+    /**
+     * 轮询直到成功
+     * Feature A: In-Node Loops - UNTIL_SUCCESS
+     *
+     * 成功条件与 HttpExecutor 一致
+     */
+    private void executeUntilSuccess(Node node, Condition successCondition, ExecutionControl control,
+            CompletableFuture<NodeResult> promise) {
+        LoopConfig loopConfig = node.getLoopConfig();
+        long intervalMs = loopConfig != null ? loopConfig.getIntervalMs() : 1000L;
+        long maxTimeoutMs = loopConfig != null ? loopConfig.getMaxTimeoutMs() : 60000L;
+        long deadlineMs = System.currentTimeMillis() + maxTimeoutMs;
+
+        log.info("Executing async UNTIL_SUCCESS loop: node={}, maxTimeout={}ms", node.getId(), maxTimeoutMs);
+
+        runUntilSuccess(node, successCondition, 1, intervalMs, deadlineMs, control, null, promise);
+    }
+
+    private void runUntilSuccess(Node node, Condition successCondition, int attempt, long intervalMs, long deadlineMs,
+            ExecutionControl control, NodeResult previous, CompletableFuture<NodeResult> promise) {
+        if (promise.isDone()) {
+            return;
+        }
+
+        log.debug("Loop attempt {} for node {}", attempt, node.getId());
+
+        executeSingle(node, control).whenComplete((current, ex) -> {
+            if (ex != null) {
+                promise.completeExceptionally(ex);
+                return;
+            }
+
+            NodeResult result = HttpExecutor.accumulate(previous, current);
+
+            if (httpExecutor.isSuccess(result, successCondition)) {
+                log.info("UNTIL_SUCCESS succeeded on attempt {} for node {}", attempt, node.getId());
+                promise.complete(result);
+                return;
+            }
+
+            // 等待间隔后检查是否超时，与同步版本语义一致
+            schedule(() -> {
+                if (control.isStopped()) {
+                    promise.complete(HttpExecutor.stopped(result, control));
+                } else if (System.currentTimeMillis() >= deadlineMs) {
+                    log.warn("UNTIL_SUCCESS timeout for node {} after {} attempts", node.getId(), attempt);
+                    promise.complete(result);
+                } else {
+                    runUntilSuccess(node, successCondition, attempt + 1, intervalMs, deadlineMs, control, result,
+                            promise);
+                }
+            }, Math.min(intervalMs, control.remainingMs()), promise);
+        });
+    }
+
+    /**
+     * 失败重试
+     * LoopPolicy.RETRY
+     *
+     * 重试判定与退避与 HttpExecutor 一致，退避等待由调度器定时触发
+     */
+    private void executeRetry(Node node, Condition successCondition, ExecutionControl control,
+            CompletableFuture<NodeResult> promise) {
+        LoopConfig loopConfig = node.getLoopConfig() != null ? node.getLoopConfig() : new LoopConfig();
+        int maxAttempts = Math.max(1, loopConfig.getMaxRetries());
+
+        log.info("Executing async RETRY loop: node={}, maxAttempts={}", node.getId(), maxAttempts);
+
+        runRetry(node, successCondition, loopConfig, 1, maxAttempts, control, null, promise);
+    }
+
+    private void runRetry(Node node, Condition successCondition, LoopConfig loopConfig, int attempt, int maxAttempts,
+            ExecutionControl control, NodeResult previous, CompletableFuture<NodeResult> promise) {
+        if (promise.isDone()) {
+            return;
+        }
+
+        executeSingle(node, control).whenComplete((current, ex) -> {
+            if (ex != null) {
+                promise.completeExceptionally(ex);
+                return;
+            }
+
+            NodeResult result = HttpExecutor.accumulate(previous, current);
+            if (attempt >= maxAttempts
+                    || !httpExecutor.shouldRetry(node, result, successCondition, loopConfig, control)) {
+                promise.complete(result);
+                return;
+            }
+
+            long delayMs = RetryBackoff.delayMs(loopConfig, attempt, result);
+            log.debug("Retrying node {} in {}ms (attempt {} got {})", node.getId(), delayMs, attempt,
+                    result.getStatusCode());
+
+            // 退避等待 (不越过截止时间)，到点后检查是否已停止
+            schedule(() -> {
+                if (control.isStopped()) {
+                    promise.complete(HttpExecutor.stopped(result, control));
+                } else {
+                    runRetry(node, successCondition, loopConfig, attempt + 1, maxAttempts, control, result, promise);
+                }
+            }, Math.min(delayMs, control.remainingMs()), promise);
+        });
+    }
+
+    /**
+     * 定时执行下一次循环，调度失败 (如执行器已关闭) 时以异常结束 promise
+     */
+    private void schedule(Runnable task, long delayMs, CompletableFuture<NodeResult> promise) {
+        try {
+            scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            promise.completeExceptionally(e);
+        }
+    }
+}
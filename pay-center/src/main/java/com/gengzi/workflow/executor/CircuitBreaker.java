@@ -0,0 +1,113 @@
+package com.gengzi.workflow.executor;
+
+/**
+ * 熔断器 (单个主机)
+ *
+ * 状态迁移:
+ * - CLOSED: 正常放行，连续失败达到 failureThreshold 次后打开
+ * - OPEN: 直接拒绝请求，openMs 后进入 HALF_OPEN
+ * - HALF_OPEN: 只放行一个探测请求，成功则关闭，失败则重新打开
+ *
+ * 失败的判定 (I/O 错误、5xx 等) 由调用方决定，被截止时间或取消中断的请求不计入
+ *
+ * @author gengzi
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMs * 1_000_000L;
+    }
+
+    /**
+     * 申请发送一次请求
+     *
+     * @return 是否放行 (OPEN 或 HALF_OPEN 已有探测请求时返回 false)
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * 请求成功 (HALF_OPEN 时关闭熔断)
+     */
+    public synchronized void onSuccess() {
+        if (state == State.OPEN) {
+            // 打开前发出的请求，不影响熔断状态
+            return;
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    /**
+     * 请求失败
+     *
+     * @return 本次失败是否使熔断打开
+     */
+    public synchronized boolean onFailure() {
+        if (state == State.OPEN) {
+            return false;
+        }
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            probeInFlight = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 请求未得出结果 (被截止时间或取消中断)，只归还探测名额
+     */
+    public synchronized void onIgnored() {
+        probeInFlight = false;
+    }
+
+    /**
+     * 当前是否拒绝请求 (OPEN 且尚未到达探测时间)
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAtNanos < openNanos;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
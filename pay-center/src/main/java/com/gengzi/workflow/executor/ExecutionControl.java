@@ -0,0 +1,150 @@
+package com.gengzi.workflow.executor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单个节点执行的截止时间与取消控制
+ *
+ * - 截止时间: 同步请求设置 OkHttp Call 整体超时，循环间隔与限流等待不会越过截止时间
+ * - 取消: 取消在途的 OkHttp Call、结束异步执行的 Future、中断同步执行的工作线程
+ *
+ * 由 DagEngine 为每个在途 HTTP 节点 (或 MAP 元素) 创建，执行结束后丢弃
+ *
+ * @author gengzi
+ */
+public final class ExecutionControl {
+
+    /**
+     * 截止时间 (毫秒时间戳，0 表示不限)
+     */
+    private final long deadlineMs;
+
+    /**
+     * 节点级限流的范围 (为空时同 ID 的节点共用一个桶)，见 HttpRateLimiter
+     */
+    private final Object rateScope;
+
+    private volatile String cancelReason;
+
+    /**
+     * 取消时执行的动作 (取消 Call、结束 Future 等)
+     */
+    private final Set<Runnable> cancelHooks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 同步执行中的线程 (对本对象加锁访问，避免中断已转去执行其他任务的线程)
+     */
+    private Thread boundThread;
+    private boolean interruptedByCancel;
+
+    public ExecutionControl(long deadlineMs) {
+        this(deadlineMs, null);
+    }
+
+    /**
+     * @param deadlineMs 截止时间 (毫秒时间戳，0 表示不限)
+     * @param rateScope  节点级限流的范围 (如节点所属的 CompiledGraph)
+     */
+    public ExecutionControl(long deadlineMs, Object rateScope) {
+        this.deadlineMs = deadlineMs;
+        this.rateScope = rateScope;
+    }
+
+    /**
+     * 不限时、未与任何执行关联的控制 (直接调用执行器时使用)
+     */
+    public static ExecutionControl unbounded() {
+        return new ExecutionControl(0L);
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    public Object getRateScope() {
+        return rateScope;
+    }
+
+    /**
+     * 距截止时间的剩余毫秒数 (不限时为 Long.MAX_VALUE)
+     */
+    public long remainingMs() {
+        return deadlineMs > 0 ? Math.max(0L, deadlineMs - System.currentTimeMillis()) : Long.MAX_VALUE;
+    }
+
+    public boolean isCancelled() {
+        return cancelReason != null;
+    }
+
+    public boolean isExpired() {
+        return deadlineMs > 0 && System.currentTimeMillis() >= deadlineMs;
+    }
+
+    /**
+     * 是否应停止执行 (已取消或已超过截止时间)
+     */
+    public boolean isStopped() {
+        return isCancelled() || isExpired();
+    }
+
+    /**
+     * 停止原因
+     */
+    public String stopReason() {
+        String reason = cancelReason;
+        return reason != null ? reason : "Node deadline exceeded";
+    }
+
+    /**
+     * 取消执行 (重复调用只生效一次)
+     *
+     * @param reason 取消原因
+     */
+    public void cancel(String reason) {
+        synchronized (this) {
+            if (cancelReason != null) {
+                return;
+            }
+            cancelReason = reason;
+
+            if (boundThread != null) {
+                interruptedByCancel = true;
+                boundThread.interrupt();
+            }
+        }
+        cancelHooks.forEach(Runnable::run);
+    }
+
+    /**
+     * 登记取消动作，已取消时立即执行
+     */
+    void onCancel(Runnable hook) {
+        cancelHooks.add(hook);
+        if (isCancelled()) {
+            hook.run();
+        }
+    }
+
+    void removeCancelHook(Runnable hook) {
+        cancelHooks.remove(hook);
+    }
+
+    /**
+     * 同步执行开始: 绑定当前线程，取消时中断它
+     */
+    synchronized void bindThread() {
+        boundThread = Thread.currentThread();
+    }
+
+    /**
+     * 同步执行结束: 解除绑定，并清除取消留下的中断标记，避免影响线程上的后续任务
+     */
+    synchronized void unbindThread() {
+        boundThread = null;
+        if (interruptedByCancel) {
+            interruptedByCancel = false;
+            Thread.interrupted();
+        }
+    }
+}
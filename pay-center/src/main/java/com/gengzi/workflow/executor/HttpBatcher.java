@@ -0,0 +1,322 @@
+package com.gengzi.workflow.executor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.gengzi.workflow.model.BatchConfig;
+import com.gengzi.workflow.model.HttpConfig;
+import com.gengzi.workflow.model.LoopConfig;
+import com.gengzi.workflow.model.LoopPolicy;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeType;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP 批量合并器
+ *
+ * 配置了 BatchConfig 的 HTTP 节点就绪后不单独发起请求，而是按批量端点分组:
+ * - 同一端点、方法、Content-Type、请求头与循环策略的节点进入同一批次
+ * - 批次中首个节点就绪后等待 windowMs，或攒满 maxSize 个节点时立即发出
+ * - 批量请求体为各节点请求体组成的 JSON 数组 (不是合法 JSON 的请求体按字符串放入)
+ * - 响应为等长 JSON 数组时，第 i 个元素拆分为第 i 个节点的结果 (文本元素取原值，其余取 JSON)，
+ * 状态码、响应头与请求耗时沿用批量响应；非 2xx 响应原样作为每个节点的结果；
+ * 2xx 但不是等长数组时所有节点以 statusCode=0 失败
+ *
+ * 批量请求通过 AsyncHttpExecutor 发出，等待与请求期间不占用线程，
+ * 与单独发起的请求一样经过熔断，RETRY 节点的批次按节点的重试配置整体重试
+ *
+ * 批量请求只经过批量端点主机的主机级限流，节点级令牌桶按节点 ID 计数，无法在一次批量请求中为每个成员扣减；
+ * 因此配置了节点级限流 (HttpConfig.ratePerSecond) 的节点不参与合并，按普通 HTTP 节点单独发起请求
+ *
+ * 批量请求的截止时间取批次中最晚的节点截止时间，节点各自的取消与截止时间只结束自己的 Future，
+ * 批次中节点全部结束时批量请求随之取消
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class HttpBatcher {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpExecutor httpExecutor;
+    private final AsyncHttpExecutor asyncHttpExecutor;
+
+    /**
+     * 合并窗口调度器 (只负责到点后发出批次，不执行阻塞操作)
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 攒批中的批次 (对本对象加锁访问)
+     */
+    private final Map<Key, Batch> pending = new HashMap<>();
+
+    public HttpBatcher(HttpExecutor httpExecutor, AsyncHttpExecutor asyncHttpExecutor) {
+        this.httpExecutor = httpExecutor;
+        this.asyncHttpExecutor = asyncHttpExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workflow-http-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 节点是否以批量方式执行 (配置了节点级限流的节点不合并，见类注释)
+     */
+    public static boolean isBatched(Node node) {
+        return node.getType() == NodeType.HTTP && node.getBatch() != null && node.getBatch().getUrl() != null
+                && (node.getLoopPolicy() == LoopPolicy.NONE || node.getLoopPolicy() == LoopPolicy.RETRY)
+                && node.getConfig().getRatePerSecond() <= 0;
+    }
+
+    /**
+     * 提交节点到批次
+     *
+     * @param node    工作流节点 (isBatched 为 true)
+     * @param control 节点的截止时间与取消控制
+     * @return 节点结果 Future (批量请求失败、超时与取消均以 statusCode=0 的结果正常完成)
+     */
+    public CompletableFuture<NodeResult> submit(Node node, ExecutionControl control) {
+        Member member = new Member(node, control, new CompletableFuture<>());
+        Runnable stop = () -> member.getFuture().complete(HttpExecutor.stopped(null, control));
+        control.onCancel(stop);
+        member.getFuture().whenComplete((result, ex) -> control.removeCancelHook(stop));
+        if (member.getFuture().isDone()) {
+            return member.getFuture();
+        }
+
+        // 批量请求可能比本节点等得更久，到本节点截止时间时单独结束
+        long remainingMs = control.remainingMs();
+        if (remainingMs != Long.MAX_VALUE) {
+            ScheduledFuture<?> timeout = scheduler.schedule(stop, remainingMs, TimeUnit.MILLISECONDS);
+            member.getFuture().whenComplete((result, ex) -> timeout.cancel(false));
+        }
+
+        BatchConfig config = node.getBatch();
+        Key key = Key.of(node);
+        Batch full = null;
+
+        synchronized (this) {
+            Batch batch = pending.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                pending.put(key, batch);
+                Batch scheduled = batch;
+                scheduler.schedule(() -> flush(key, scheduled), Math.max(0L, config.getWindowMs()),
+                        TimeUnit.MILLISECONDS);
+            }
+            batch.members.add(member);
+            if (batch.members.size() >= Math.max(1, config.getMaxSize())) {
+                pending.remove(key);
+                full = batch;
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return member.getFuture();
+    }
+
+    /**
+     * 合并窗口到期 (批次已因攒满发出时忽略)
+     */
+    private void flush(Key key, Batch batch) {
+        synchronized (this) {
+            if (pending.get(key) != batch) {
+                return;
+            }
+            pending.remove(key);
+        }
+        send(batch);
+    }
+
+    /**
+     * 发出批量请求
+     *
+     * 截止时间取批次中最晚的节点截止时间 (有节点不限时则不限)，早截止的节点由各自的超时结束
+     */
+    private void send(Batch batch) {
+        List<Member> members = batch.members;
+        Node first = members.get(0).getNode();
+        HttpConfig template = first.getConfig();
+        BatchConfig batchConfig = first.getBatch();
+
+        ArrayNode body = MAPPER.createArrayNode();
+        long deadlineMs = 0L;
+        boolean unbounded = false;
+        for (Member member : members) {
+            body.add(toJson(member.getNode().getConfig().getBody()));
+            long memberDeadline = member.getControl().getDeadlineMs();
+            if (memberDeadline <= 0) {
+                unbounded = true;
+            } else if (memberDeadline > deadlineMs) {
+                deadlineMs = memberDeadline;
+            }
+        }
+        if (unbounded) {
+            deadlineMs = 0L;
+        }
+
+        Node request = Node.builder()
+                .id(first.getId())
+                .type(NodeType.HTTP)
+                .loopPolicy(first.getLoopPolicy())
+                .loopConfig(first.getLoopConfig())
+                .config(HttpConfig.builder()
+                        .url(batchConfig.getUrl())
+                        .method(batchConfig.getMethod())
+                        .headers(template.getHeaders())
+                        .body(body.toString())
+                        .contentType(template.getContentType())
+                        .connectTimeoutMs(template.getConnectTimeoutMs())
+                        .readTimeoutMs(template.getReadTimeoutMs())
+                        .build())
+                .build();
+
+        ExecutionControl control = new ExecutionControl(deadlineMs);
+        AtomicInteger live = new AtomicInteger(members.size());
+        for (Member member : members) {
+            member.getFuture().whenComplete((result, ex) -> {
+                if (live.decrementAndGet() == 0) {
+                    control.cancel("All batched nodes cancelled");
+                }
+            });
+        }
+
+        log.debug("Sending batch of {} nodes to {}", members.size(), batchConfig.getUrl());
+        asyncHttpExecutor.execute(request, null, control).whenComplete((result, ex) -> {
+            if (ex != null) {
+                String message = "Batch request failed: " + ex.getMessage();
+                members.forEach(member -> member.getFuture().complete(failed(result, message)));
+            } else {
+                try {
+                    demultiplex(members, result);
+                } catch (RuntimeException e) {
+                    log.error("Batch response handling failed", e);
+                    members.forEach(member -> member.getFuture().complete(failed(result, e.getMessage())));
+                }
+            }
+        });
+    }
+
+    /**
+     * 把批量响应拆分为各节点结果
+     */
+    private void demultiplex(List<Member> members, NodeResult result) {
+        if (result.getStatusCode() < 200 || result.getStatusCode() >= 300) {
+            String body = result.getStatusCode() > 0 ? httpExecutor.readBody(result) : null;
+            members.forEach(member -> member.getFuture().complete(split(result, body)));
+            return;
+        }
+
+        JsonNode items;
+        try {
+            String body = httpExecutor.readBody(result);
+            items = body != null ? MAPPER.readTree(body) : null;
+        } catch (JsonProcessingException | RuntimeException e) {
+            items = null;
+        }
+
+        if (items == null || !items.isArray() || items.size() != members.size()) {
+            String message = "Batch response is not a JSON array of " + members.size() + " items";
+            members.forEach(member -> member.getFuture().complete(failed(result, message)));
+            return;
+        }
+        for (int i = 0; i < members.size(); i++) {
+            JsonNode item = items.get(i);
+            members.get(i).getFuture().complete(split(result, item.isTextual() ? item.textValue() : item.toString()));
+        }
+    }
+
+    /**
+     * 单个节点的结果 (沿用批量响应的状态码、响应头与请求统计)
+     */
+    private static NodeResult split(NodeResult batch, String body) {
+        return NodeResult.builder()
+                .statusCode(batch.getStatusCode())
+                .body(body)
+                .bodySize(body != null ? body.length() : 0)
+                .headers(batch.getHeaders() != null ? new HashMap<>(batch.getHeaders()) : null)
+                .startTime(batch.getStartTime())
+                .endTime(LocalDateTime.now())
+                .durationMs(batch.getDurationMs())
+                .requestMs(batch.getRequestMs())
+                .requestSentAtMs(batch.getRequestSentAtMs())
+                .attempts(batch.getAttempts())
+                .errorMessage(batch.getErrorMessage())
+                .build();
+    }
+
+    private static NodeResult failed(NodeResult batch, String message) {
+        NodeResult result = batch != null ? split(batch, null) : new NodeResult();
+        result.setStatusCode(0);
+        result.setErrorMessage(message);
+        return result;
+    }
+
+    private static JsonNode toJson(String body) {
+        if (body == null || body.isBlank()) {
+            return MAPPER.nullNode();
+        }
+        try {
+            return MAPPER.readTree(body);
+        } catch (JsonProcessingException e) {
+            return MAPPER.getNodeFactory().textNode(body);
+        }
+    }
+
+    /**
+     * 分组键: 同一键的节点可以合并为一次请求
+     */
+    @Value
+    private static class Key {
+        String url;
+        String method;
+        String contentType;
+        Map<String, String> headers;
+        LoopPolicy loopPolicy;
+        LoopConfig loopConfig;
+
+        static Key of(Node node) {
+            HttpConfig config = node.getConfig();
+            return new Key(node.getBatch().getUrl(), node.getBatch().getMethod(), config.getContentType(),
+                    config.getHeaders(), node.getLoopPolicy(), node.getLoopConfig());
+        }
+    }
+
+    @Value
+    private static class Member {
+        Node node;
+        ExecutionControl control;
+        CompletableFuture<NodeResult> future;
+    }
+
+    private static class Batch {
+        private final List<Member> members = new ArrayList<>();
+    }
+}
@@ -0,0 +1,60 @@
+package com.gengzi.workflow.executor;
+
+import com.gengzi.workflow.config.HttpClientProperties;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按主机划分的熔断器 (跨执行共享)
+ *
+ * - 阈值: workflow.http.hosts.{host}.circuit-failure-threshold，未配置时使用 circuit-failure-threshold
+ * - 打开时长: workflow.http.hosts.{host}.circuit-open-ms，未配置时使用 circuit-open-ms
+ *
+ * 阈值为 0 的主机不熔断
+ *
+ * @author gengzi
+ */
+public class HttpCircuitBreakers {
+
+    private final HttpClientProperties properties;
+
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public HttpCircuitBreakers(HttpClientProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 获取主机的熔断器
+     *
+     * @param host 目标主机
+     * @return 熔断器，该主机未启用熔断时返回 null
+     */
+    public CircuitBreaker forHost(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        if (breaker != null) {
+            return breaker;
+        }
+
+        HttpClientProperties.Host hostConfig = properties.getHosts().get(host);
+        int threshold = hostConfig != null && hostConfig.getCircuitFailureThreshold() > 0
+                ? hostConfig.getCircuitFailureThreshold()
+                : properties.getCircuitFailureThreshold();
+        if (threshold <= 0) {
+            return null;
+        }
+
+        long openMs = hostConfig != null && hostConfig.getCircuitOpenMs() > 0
+                ? hostConfig.getCircuitOpenMs()
+                : properties.getCircuitOpenMs();
+        return breakers.computeIfAbsent(host, key -> new CircuitBreaker(threshold, openMs));
+    }
+
+    /**
+     * 主机当前是否熔断中
+     */
+    public boolean isOpen(String host) {
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker != null && breaker.isOpen();
+    }
+}
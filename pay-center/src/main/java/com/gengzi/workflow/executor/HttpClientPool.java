@@ -0,0 +1,105 @@
+package com.gengzi.workflow.executor;
+
+import com.gengzi.workflow.config.HttpClientProperties;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按主机划分的 OkHttp 客户端
+ *
+ * - 默认客户端: 全局 Dispatcher 限制 (maxRequests / maxRequestsPerHost) 与共享连接池
+ * - 单独配置的主机: 由默认客户端派生 (共享 Dispatcher 线程与超时配置)，
+ * 使用独立 Dispatcher 限制在途请求数，可选独立连接池，
+ * 避免一个下游的突发请求占满共享连接池或挤占其他主机的并发额度
+ *
+ * Dispatcher 只约束异步 (enqueue) 请求，同步请求使用 syncPermits 提供的同等上限
+ *
+ * @author gengzi
+ */
+@Slf4j
+class HttpClientPool {
+
+    private final OkHttpClient defaultClient;
+
+    /**
+     * Key: 主机名, Value: 该主机专用客户端
+     */
+    private final Map<String, OkHttpClient> hostClients = new HashMap<>();
+
+    /**
+     * 同步请求的按主机在途上限
+     * Key: 主机名, Value: 信号量
+     */
+    private final ConcurrentHashMap<String, Semaphore> syncPermits = new ConcurrentHashMap<>();
+
+    private final HttpClientProperties properties;
+
+    HttpClientPool(HttpClientProperties properties) {
+        this.properties = properties;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(properties.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(properties.getMaxRequestsPerHost());
+
+        this.defaultClient = new OkHttpClient.Builder()
+                .connectTimeout(properties.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(properties.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(properties.getWriteTimeoutMs(), TimeUnit.MILLISECONDS)
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(properties.getMaxIdleConnections(),
+                        properties.getKeepAliveMs(), TimeUnit.MILLISECONDS))
+                .protocols(properties.isHttp2()
+                        ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                        : List.of(Protocol.HTTP_1_1))
+                .build();
+
+        properties.getHosts().forEach((host, config) -> {
+            Dispatcher hostDispatcher = new Dispatcher(dispatcher.executorService());
+            int maxInFlight = config.getMaxInFlight() > 0 ? config.getMaxInFlight() : properties.getMaxRequestsPerHost();
+            hostDispatcher.setMaxRequests(maxInFlight);
+            hostDispatcher.setMaxRequestsPerHost(maxInFlight);
+
+            OkHttpClient.Builder builder = defaultClient.newBuilder().dispatcher(hostDispatcher);
+            if (config.getMaxIdleConnections() > 0) {
+                builder.connectionPool(new ConnectionPool(config.getMaxIdleConnections(),
+                        properties.getKeepAliveMs(), TimeUnit.MILLISECONDS));
+            }
+            hostClients.put(host, builder.build());
+
+            log.info("HTTP client for host {}: maxInFlight={}, maxIdleConnections={}, rate={}/s",
+                    host, maxInFlight, config.getMaxIdleConnections(), config.getRatePerSecond());
+        });
+    }
+
+    /**
+     * 获取目标地址对应的客户端
+     */
+    OkHttpClient clientFor(HttpUrl url) {
+        OkHttpClient client = hostClients.get(url.host());
+        return client != null ? client : defaultClient;
+    }
+
+    /**
+     * 同步请求的主机在途许可
+     */
+    Semaphore syncPermits(HttpUrl url) {
+        return syncPermits.computeIfAbsent(url.host(), host -> {
+            HttpClientProperties.Host config = properties.getHosts().get(host);
+            int maxInFlight = config != null && config.getMaxInFlight() > 0
+                    ? config.getMaxInFlight()
+                    : properties.getMaxRequestsPerHost();
+            return new Semaphore(maxInFlight);
+        });
+    }
+}
@@ -1,43 +1,172 @@
 package com.gengzi.workflow.executor;
 
+import com.gengzi.workflow.config.HttpClientProperties;
+import com.gengzi.workflow.expression.Condition;
+import com.gengzi.workflow.expression.ConditionContext;
 import com.gengzi.workflow.model.*;
+import com.gengzi.workflow.storage.ResultBodyStore;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /**
  * HTTP 执行器
  * 负责执行 HTTP 请求，并处理循环策略
  * 
+ * 连接管理与限流:
+ * - HttpClientPool: 按主机划分的客户端、连接池与在途请求上限，优先 HTTP/2
+ * - HttpRateLimiter: 主机级 + 节点级令牌桶
+ * - HttpCircuitBreakers: 按主机熔断，熔断期间请求直接失败 (不发起调用、不等待限流与许可)
+ * - 结果中记录实际请求耗时 (requestMs)，排队耗时由 DagEngine 计算
+ * 
+ * 截止时间与取消 (ExecutionControl):
+ * - 每次请求的 OkHttp Call 整体超时不超过剩余时间，卡住的读取到期即中断
+ * - 限流等待、主机许可等待与循环间隔均不越过截止时间
+ * - 取消时中断在途 Call 与等待中的线程，节点以 statusCode=0 结束
+ * 
+ * 失败重试 (RETRY):
+ * - 可重试的失败按指数退避加随机抖动等待后重试，退避与判定见 RetryBackoff
+ * - 成功、不可重试的失败或目标主机熔断时立即结束
+ * 
  * @author gengzi
  */
 @Slf4j
 @Component
 public class HttpExecutor {
 
-    private final OkHttpClient httpClient;
+    private final HttpClientPool clientPool;
+    private final HttpRateLimiter rateLimiter;
+    private final HttpCircuitBreakers circuitBreakers;
+    private final ResultBodyStore resultBodyStore;
+
+    public HttpExecutor(ResultBodyStore resultBodyStore, HttpClientProperties properties) {
+        this.resultBodyStore = resultBodyStore;
+        this.clientPool = new HttpClientPool(properties);
+        this.rateLimiter = new HttpRateLimiter(properties);
+        this.circuitBreakers = new HttpCircuitBreakers(properties);
+    }
+
+    /**
+     * 创建 OkHttp Call (按目标主机选择客户端，供 AsyncHttpExecutor 复用)
+     */
+    Call newCall(Request request) {
+        return clientPool.clientFor(request.url()).newCall(request);
+    }
+
+    /**
+     * 为一次请求预约限流令牌
+     * 
+     * @return 需要等待的毫秒数，等待会越过截止时间时返回 -1 (未扣减令牌)
+     */
+    long reserveRate(Node node, Request request, ExecutionControl control) {
+        return rateLimiter.reserve(node, request.url().host(), control);
+    }
+
+    /**
+     * 获取目标主机的熔断器
+     * 
+     * @return 熔断器，未启用熔断时返回 null
+     */
+    CircuitBreaker circuitBreaker(Request request) {
+        return circuitBreakers.forHost(request.url().host());
+    }
+
+    /**
+     * 节点目标主机当前是否熔断中
+     */
+    boolean isCircuitOpen(Node node) {
+        HttpUrl url = HttpUrl.parse(node.getConfig().getUrl());
+        return url != null && circuitBreakers.isOpen(url.host());
+    }
 
-    public HttpExecutor() {
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(10, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
+    /**
+     * 熔断拒绝的结果
+     */
+    static NodeResult circuitOpen(Request request) {
+        return NodeResult.builder()
+                .statusCode(0)
+                .errorMessage("Circuit open for host " + request.url().host())
                 .build();
     }
 
     /**
-     * 执行节点 (支持循环策略)
+     * 记录请求结果到熔断器
+     * 
+     * I/O 错误与 5xx 计为失败，未发出或被截止时间、取消中断的请求 (result 为 null 或 control 已停止) 不计入
+     */
+    static void recordOutcome(CircuitBreaker breaker, NodeResult result, ExecutionControl control, String host) {
+        if (breaker == null) {
+            return;
+        }
+        if (result == null || control.isStopped()) {
+            breaker.onIgnored();
+        } else if (result.getStatusCode() == 0 || result.getStatusCode() >= 500) {
+            if (breaker.onFailure()) {
+                log.warn("Circuit opened for host {}: {}", host,
+                        result.getErrorMessage() != null ? result.getErrorMessage() : "HTTP " + result.getStatusCode());
+            }
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    /**
+     * 读取结果响应体 (含溢写到磁盘的响应体)
+     * 
+     * @param result 节点结果
+     * @return 响应体，无响应体返回 null
+     */
+    public String readBody(NodeResult result) {
+        return resultBodyStore.read(result);
+    }
+
+    /**
+     * 打开结果响应体字符流 (溢写的响应体按需从文件读取，不整体加载)
+     * 
+     * @param result 节点结果
+     * @return 响应体字符流，无响应体返回 null
+     */
+    public Reader openBody(NodeResult result) throws IOException {
+        return resultBodyStore.openReader(result);
+    }
+
+    /**
+     * 新建逐步写入的响应体输出 (超过阈值后溢写，见 ResultBodyStore.newOutput)
+     */
+    public ResultBodyStore.BodyOutput newBodyOutput() {
+        return resultBodyStore.newOutput();
+    }
+
+    /**
+     * 执行节点 (支持循环策略，UNTIL_SUCCESS 以 HTTP 200 为成功条件，不解析 successCondition)
      * 
      * @param node 工作流节点
      * @return 执行结果
      */
     public NodeResult execute(Node node) {
+        return execute(node, null, ExecutionControl.unbounded());
+    }
+
+    /**
+     * 执行节点 (支持循环策略)
+     * 
+     * @param node             工作流节点
+     * @param successCondition UNTIL_SUCCESS 成功条件 (为 null 时以 HTTP 200 为成功)
+     * @param control          截止时间与取消控制
+     * @return 执行结果
+     */
+    public NodeResult execute(Node node, Condition successCondition, ExecutionControl control) {
         if (node.getType() != NodeType.HTTP) {
             throw new IllegalArgumentException("HttpExecutor can only execute HTTP type nodes");
         }
@@ -48,17 +177,25 @@ public class HttpExecutor {
         NodeResult result;
 
         // 根据循环策略执行
-        switch (node.getLoopPolicy()) {
-            case FIXED_COUNT:
-                result = executeFixedCount(node);
-                break;
-            case UNTIL_SUCCESS:
-                result = executeUntilSuccess(node);
-                break;
-            case NONE:
-            default:
-                result = executeSingle(node.getConfig());
-                break;
+        control.bindThread();
+        try {
+            switch (node.getLoopPolicy()) {
+                case FIXED_COUNT:
+                    result = executeFixedCount(node, control);
+                    break;
+                case UNTIL_SUCCESS:
+                    result = executeUntilSuccess(node, successCondition, control);
+                    break;
+                case RETRY:
+                    result = executeRetry(node, successCondition, control);
+                    break;
+                case NONE:
+                default:
+                    result = accumulate(null, executeSingle(node, control));
+                    break;
+            }
+        } finally {
+            control.unbindThread();
         }
 
         LocalDateTime endTime = LocalDateTime.now();
@@ -73,30 +210,132 @@ public class HttpExecutor {
 
     /**
      * 执行单次 HTTP 请求
+     * 
+     * 发送前检查熔断，再依次等待限流令牌与主机在途许可，两者都不越过截止时间
      */
-    private NodeResult executeSingle(HttpConfig config) {
-        try {
-            Request request = buildRequest(config);
+    private NodeResult executeSingle(Node node, ExecutionControl control) {
+        if (control.isStopped()) {
+            return stopped(null, control);
+        }
+        Request request = buildRequest(node.getConfig());
+
+        CircuitBreaker breaker = circuitBreaker(request);
+        if (breaker != null && !breaker.tryAcquire()) {
+            log.debug("Circuit open for node {}, failing fast", node.getId());
+            return circuitOpen(request);
+        }
+
+        return send(node, request, control, breaker);
+    }
 
-            log.info("Executing HTTP request: {} {}", config.getMethod(), config.getUrl());
+    private NodeResult send(Node node, Request request, ExecutionControl control, CircuitBreaker breaker) {
+        HttpConfig config = node.getConfig();
+        // 得到响应或 I/O 错误时才计入熔断，未发出的请求只归还探测名额
+        NodeResult outcome = null;
+        try {
+            long waitMs = reserveRate(node, request, control);
+            if (waitMs < 0) {
+                return stopped(null, control);
+            }
+            if (waitMs > 0) {
+                log.debug("Rate limited node {}: waiting {}ms", node.getId(), waitMs);
+                Thread.sleep(waitMs);
+            }
 
-            try (Response response = httpClient.newCall(request).execute()) {
-                return buildResult(response);
+            Semaphore hostPermits = clientPool.syncPermits(request.url());
+            if (!hostPermits.tryAcquire(control.remainingMs(), TimeUnit.MILLISECONDS)) {
+                return stopped(null, control);
+            }
+            try {
+                log.info("Executing HTTP request: {} {}", config.getMethod(), config.getUrl());
+
+                Call call = newCall(request, control);
+                Runnable cancelCall = call::cancel;
+                control.onCancel(cancelCall);
+                try (Response response = call.execute()) {
+                    outcome = buildResult(response);
+                    return outcome;
+                } finally {
+                    control.removeCancelHook(cancelCall);
+                }
+            } finally {
+                hostPermits.release();
             }
         } catch (IOException e) {
+            if (control.isStopped()) {
+                log.warn("HTTP request stopped for node {}: {}", node.getId(), control.stopReason());
+                return stopped(null, control);
+            }
             log.error("HTTP request failed: {}", e.getMessage(), e);
-            return NodeResult.builder()
+            outcome = NodeResult.builder()
                     .statusCode(0)
                     .errorMessage(e.getMessage())
                     .build();
+            return outcome;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (control.isStopped()) {
+                return stopped(null, control);
+            }
+            log.warn("HTTP request interrupted for node {}", node.getId());
+            return NodeResult.builder()
+                    .statusCode(0)
+                    .errorMessage("Interrupted while waiting to send request")
+                    .build();
+        } finally {
+            recordOutcome(breaker, outcome, control, request.url().host());
+        }
+    }
+
+    /**
+     * 创建受截止时间约束的 Call: 整体超时 (连接、发送、读取合计) 不超过剩余时间
+     */
+    Call newCall(Request request, ExecutionControl control) {
+        Call call = newCall(request);
+        long remainingMs = control.remainingMs();
+        if (remainingMs != Long.MAX_VALUE) {
+            call.timeout().timeout(Math.max(1L, remainingMs), TimeUnit.MILLISECONDS);
         }
+        return call;
+    }
+
+    /**
+     * 截止时间已到或已取消时的结果 (保留此前循环的请求统计)
+     */
+    static NodeResult stopped(NodeResult previous, ExecutionControl control) {
+        NodeResult result = NodeResult.builder()
+                .statusCode(0)
+                .errorMessage(control.stopReason())
+                .build();
+        if (previous != null) {
+            result.setAttempts(previous.getAttempts());
+            result.setRequestMs(previous.getRequestMs());
+            result.setRequestSentAtMs(previous.getRequestSentAtMs());
+        }
+        return result;
+    }
+
+    /**
+     * 循环间隔等待 (不越过截止时间)
+     * 
+     * @return 是否可以继续下一次循环
+     */
+    private static boolean awaitInterval(Node node, long intervalMs, ExecutionControl control) {
+        try {
+            Thread.sleep(Math.min(intervalMs, control.remainingMs()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Loop interrupted for node {}", node.getId());
+            return false;
+        }
+        return !control.isStopped();
     }
 
     /**
      * 固定次数循环执行
      * Feature A: In-Node Loops - FIXED_COUNT
      */
-    private NodeResult executeFixedCount(Node node) {
+    private NodeResult executeFixedCount(Node node, ExecutionControl control) {
         LoopConfig loopConfig = node.getLoopConfig();
         int maxRetries = loopConfig != null ? loopConfig.getMaxRetries() : 1;
         long intervalMs = loopConfig != null ? loopConfig.getIntervalMs() : 1000L;
@@ -108,17 +347,11 @@ public class HttpExecutor {
         for (int i = 0; i < maxRetries; i++) {
             log.debug("Loop iteration {}/{} for node {}", i + 1, maxRetries, node.getId());
 
-            lastResult = executeSingle(node.getConfig());
+            lastResult = accumulate(lastResult, executeSingle(node, control));
 
-            // 如果不是最后一次循环，则等待间隔时间
-            if (i < maxRetries - 1) {
-                try {
-                    Thread.sleep(intervalMs);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Loop interrupted for node {}", node.getId());
-                    break;
-                }
+            // 如果不是最后一次循环，则等待间隔时间 (截止或取消时以失败结束)
+            if (i < maxRetries - 1 && !awaitInterval(node, intervalMs, control)) {
+                return control.isStopped() ? stopped(lastResult, control) : lastResult;
             }
         }
 
@@ -129,10 +362,9 @@ public class HttpExecutor {
      * 轮询直到成功
      * Feature A: In-Node Loops - UNTIL_SUCCESS
      * 
-     * 成功条件: HTTP 200 或自定义断言通过
-     * MVP 版本: 简化为 HTTP 200 即视为成功
+     * 成功条件: LoopConfig.successCondition 成立，未配置时 HTTP 200 即视为成功
      */
-    private NodeResult executeUntilSuccess(Node node) {
+    private NodeResult executeUntilSuccess(Node node, Condition successCondition, ExecutionControl control) {
         LoopConfig loopConfig = node.getLoopConfig();
         long intervalMs = loopConfig != null ? loopConfig.getIntervalMs() : 1000L;
         long maxTimeoutMs = loopConfig != null ? loopConfig.getMaxTimeoutMs() : 60000L;
@@ -147,58 +379,109 @@ public class HttpExecutor {
             attemptCount++;
             log.debug("Loop attempt {} for node {}", attemptCount, node.getId());
 
-            lastResult = executeSingle(node.getConfig());
+            lastResult = accumulate(lastResult, executeSingle(node, control));
 
-            // 成功条件: HTTP 200 (MVP 简化版本)
-            if (isSuccess(lastResult, loopConfig)) {
+            if (isSuccess(lastResult, successCondition)) {
                 log.info("UNTIL_SUCCESS succeeded on attempt {} for node {}", attemptCount, node.getId());
                 break;
             }
 
-            // 等待间隔
-            try {
-                Thread.sleep(intervalMs);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("Loop interrupted for node {}", node.getId());
-                break;
+            // 等待间隔 (截止或取消时以失败结束)
+            if (!awaitInterval(node, intervalMs, control)) {
+                return control.isStopped() ? stopped(lastResult, control) : lastResult;
             }
         }
 
-        if (lastResult != null && !isSuccess(lastResult, loopConfig)) {
+        if (lastResult != null && !isSuccess(lastResult, successCondition)) {
             log.warn("UNTIL_SUCCESS timeout after {}ms for node {}", maxTimeoutMs, node.getId());
         }
 
         return lastResult;
     }
 
+    /**
+     * 失败重试
+     * LoopPolicy.RETRY
+     * 
+     * 可重试的失败按指数退避加随机抖动等待后重试，最多执行 maxRetries 次
+     */
+    private NodeResult executeRetry(Node node, Condition successCondition, ExecutionControl control) {
+        LoopConfig loopConfig = node.getLoopConfig() != null ? node.getLoopConfig() : new LoopConfig();
+        int maxAttempts = Math.max(1, loopConfig.getMaxRetries());
+
+        log.info("Executing RETRY loop: node={}, maxAttempts={}", node.getId(), maxAttempts);
+
+        NodeResult lastResult = null;
+        for (int attempt = 1; ; attempt++) {
+            lastResult = accumulate(lastResult, executeSingle(node, control));
+
+            if (attempt >= maxAttempts || !shouldRetry(node, lastResult, successCondition, loopConfig, control)) {
+                return lastResult;
+            }
+
+            long delayMs = RetryBackoff.delayMs(loopConfig, attempt, lastResult);
+            log.debug("Retrying node {} in {}ms (attempt {} got {})", node.getId(), delayMs, attempt,
+                    lastResult.getStatusCode());
+
+            // 退避等待 (截止或取消时以失败结束)
+            if (!awaitInterval(node, delayMs, control)) {
+                return control.isStopped() ? stopped(lastResult, control) : lastResult;
+            }
+        }
+    }
+
+    /**
+     * RETRY 是否继续重试: 未成功、失败可重试、未停止且目标主机未熔断
+     */
+    boolean shouldRetry(Node node, NodeResult result, Condition successCondition, LoopConfig loopConfig,
+            ExecutionControl control) {
+        return !control.isStopped()
+                && !isSuccess(result, successCondition)
+                && RetryBackoff.isRetryable(result, loopConfig)
+                && !isCircuitOpen(node);
+    }
+
     /**
      * 判断是否成功
-     * MVP: HTTP 200 即视为成功
-     * 未来扩展: 支持自定义表达式 (successCondition)
+     * 
+     * - 没有 HTTP 响应 (statusCode=0) 一律视为失败
+     * - 配置了成功条件时按条件求值 (可引用状态码、响应头与 JSON 响应体)
+     * - 否则 HTTP 200 即视为成功
      */
-    private boolean isSuccess(NodeResult result, LoopConfig loopConfig) {
+    boolean isSuccess(NodeResult result, Condition successCondition) {
         if (result == null || result.getStatusCode() == 0) {
             return false;
         }
 
-        // MVP: 简化为 200 即成功
-        if (result.getStatusCode() == 200) {
-            return true;
+        if (successCondition != null) {
+            return successCondition.test(ConditionContext.of(result, () -> readBody(result)));
         }
 
-        // 未来: 支持自定义条件表达式
-        // if (loopConfig != null && loopConfig.getSuccessCondition() != null) {
-        // return evaluateCondition(result, loopConfig.getSuccessCondition());
-        // }
+        return result.getStatusCode() == 200;
+    }
 
-        return false;
+    /**
+     * 合并循环中前几次请求的耗时统计与请求次数到本次结果
+     * 
+     * @param previous 上一次结果 (可为 null)
+     * @param current  本次结果
+     * @return 本次结果
+     */
+    static NodeResult accumulate(NodeResult previous, NodeResult current) {
+        current.setAttempts(previous != null ? previous.getAttempts() + 1 : 1);
+        if (previous != null) {
+            current.setRequestMs(current.getRequestMs() + previous.getRequestMs());
+            if (previous.getRequestSentAtMs() > 0) {
+                current.setRequestSentAtMs(previous.getRequestSentAtMs());
+            }
+        }
+        return current;
     }
 
     /**
      * 构建 OkHttp Request
      */
-    private Request buildRequest(HttpConfig config) {
+    Request buildRequest(HttpConfig config) {
         Request.Builder builder = new Request.Builder()
                 .url(config.getUrl());
 
@@ -240,22 +523,32 @@ public class HttpExecutor {
 
     /**
      * 构建执行结果
+     * 
+     * 响应体交给 ResultBodyStore，大响应体不会整体读入内存
      */
-    private NodeResult buildResult(Response response) throws IOException {
+    NodeResult buildResult(Response response) throws IOException {
         // 提取响应头
         Map<String, String> headers = new HashMap<>();
         response.headers().forEach(pair -> headers.put(pair.getFirst(), pair.getSecond()));
 
-        // 读取响应体
-        String bodyStr = null;
-        if (response.body() != null) {
-            bodyStr = response.body().string();
-        }
-
-        return NodeResult.builder()
+        NodeResult result = NodeResult.builder()
                 .statusCode(response.code())
-                .body(bodyStr)
                 .headers(headers)
+                .requestSentAtMs(response.sentRequestAtMillis())
+                .requestMs(response.receivedResponseAtMillis() - response.sentRequestAtMillis())
                 .build();
+
+        // 流式读取响应体，超过阈值的部分溢写到磁盘
+        ResponseBody responseBody = response.body();
+        if (responseBody != null) {
+            MediaType contentType = responseBody.contentType();
+            Charset charset = contentType != null ? contentType.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+
+            try (InputStream in = responseBody.byteStream()) {
+                resultBodyStore.store(in, charset, result);
+            }
+        }
+
+        return result;
     }
 }
@@ -0,0 +1,119 @@
+package com.gengzi.workflow.executor;
+
+import com.gengzi.workflow.config.HttpClientProperties;
+import com.gengzi.workflow.model.Node;
+import lombok.Value;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP 请求限流器
+ *
+ * 两级令牌桶，请求需同时满足:
+ * - 主机级: workflow.http.hosts.{host}.rate-per-second，未配置时使用 default-rate-per-second
+ * - 节点级: HttpConfig.ratePerSecond，按 (限流范围, 节点 ID) 共享，
+ * 限流范围由 ExecutionControl 携带 (DagEngine 使用 CompiledGraph，同一图定义的不同执行共用一个桶)
+ *
+ * 节点级的桶在限流速率变化时重建；桶数超过 MAX_NODE_BUCKETS 时移除已补满 (空闲) 的桶
+ *
+ * 只负责计算等待时间，不阻塞线程
+ *
+ * @author gengzi
+ */
+public class HttpRateLimiter {
+
+    /**
+     * 节点级桶数上限 (超过时清理空闲桶，仍在限流中的桶保留)
+     */
+    static final int MAX_NODE_BUCKETS = 10_000;
+
+    private final HttpClientProperties properties;
+
+    private final ConcurrentHashMap<String, TokenBucket> hostBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<NodeKey, TokenBucket> nodeBuckets = new ConcurrentHashMap<>();
+
+    public HttpRateLimiter(HttpClientProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 为一次请求预约令牌
+     *
+     * 等待会越过截止时间时不预约 (两级桶都不扣减令牌)
+     *
+     * @param node    节点
+     * @param host    目标主机
+     * @param control 执行控制 (截止时间与限流范围)
+     * @return 需要等待的毫秒数 (0 表示可立即发送)，等待会越过截止时间时返回 -1
+     */
+    public long reserve(Node node, String host, ExecutionControl control) {
+        long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(control.remainingMs());
+        long waitNanos = 0L;
+
+        TokenBucket hostBucket = hostBucket(host);
+        if (hostBucket != null) {
+            waitNanos = hostBucket.tryReserve(maxWaitNanos);
+            if (waitNanos < 0) {
+                return -1L;
+            }
+        }
+
+        double nodeRate = node.getConfig().getRatePerSecond();
+        if (nodeRate > 0) {
+            long nodeWaitNanos = nodeBucket(new NodeKey(control.getRateScope(), node.getId()), nodeRate)
+                    .tryReserve(maxWaitNanos);
+            if (nodeWaitNanos < 0) {
+                if (hostBucket != null) {
+                    hostBucket.refund();
+                }
+                return -1L;
+            }
+            waitNanos = Math.max(waitNanos, nodeWaitNanos);
+        }
+
+        return waitNanos > 0 ? Math.max(1L, TimeUnit.NANOSECONDS.toMillis(waitNanos)) : 0L;
+    }
+
+    private TokenBucket nodeBucket(NodeKey key, double rate) {
+        TokenBucket bucket = nodeBuckets.get(key);
+        if (bucket != null && bucket.getRatePerSecond() == rate) {
+            return bucket;
+        }
+
+        bucket = nodeBuckets.compute(key, (k, existing) -> existing != null && existing.getRatePerSecond() == rate
+                ? existing
+                : new TokenBucket(rate, 0));
+        if (nodeBuckets.size() > MAX_NODE_BUCKETS) {
+            nodeBuckets.values().removeIf(TokenBucket::isIdle);
+        }
+        return bucket;
+    }
+
+    private TokenBucket hostBucket(String host) {
+        TokenBucket bucket = hostBuckets.get(host);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        HttpClientProperties.Host hostConfig = properties.getHosts().get(host);
+        double rate = hostConfig != null && hostConfig.getRatePerSecond() > 0
+                ? hostConfig.getRatePerSecond()
+                : properties.getDefaultRatePerSecond();
+        if (rate <= 0) {
+            return null;
+        }
+
+        int burst = hostConfig != null ? hostConfig.getBurst() : 0;
+        return hostBuckets.computeIfAbsent(host, key -> new TokenBucket(rate, burst));
+    }
+
+    /**
+     * 节点级桶的键 (限流范围按对象相等比较，CompiledGraph 即按实例区分)
+     */
+    @Value
+    private static class NodeKey {
+        Object scope;
+        String nodeId;
+    }
+}
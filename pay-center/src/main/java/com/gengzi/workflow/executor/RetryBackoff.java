@@ -0,0 +1,83 @@
+package com.gengzi.workflow.executor;
+
+import com.gengzi.workflow.model.LoopConfig;
+import com.gengzi.workflow.model.NodeResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RETRY 策略的重试判定与退避计算
+ *
+ * 退避: 第 n 次失败后等待 intervalMs * backoffMultiplier^(n-1)，不超过 maxIntervalMs，
+ * 其中 jitter 比例的部分随机化 (0 为固定退避，1 为完全随机)，避免多个执行同时重试同一下游
+ * 响应带 Retry-After (秒) 时至少等待该时长
+ *
+ * @author gengzi
+ */
+final class RetryBackoff {
+
+    /**
+     * 默认可重试状态码 (另外 I/O 错误总是可重试)
+     */
+    static final List<Integer> DEFAULT_RETRYABLE_STATUS_CODES = List.of(408, 429, 500, 502, 503, 504);
+
+    private RetryBackoff() {
+    }
+
+    /**
+     * 结果是否可重试
+     *
+     * @param result 本次结果
+     * @param config 循环配置 (retryableStatusCodes 为空时使用默认列表)
+     */
+    static boolean isRetryable(NodeResult result, LoopConfig config) {
+        if (result.getStatusCode() == 0) {
+            return true;
+        }
+        List<Integer> codes = config.getRetryableStatusCodes() != null
+                ? config.getRetryableStatusCodes()
+                : DEFAULT_RETRYABLE_STATUS_CODES;
+        return codes.contains(result.getStatusCode());
+    }
+
+    /**
+     * 计算下一次重试前的等待时间
+     *
+     * @param config  循环配置
+     * @param attempt 已执行次数 (从 1 开始)
+     * @param result  本次结果
+     * @return 等待毫秒数
+     */
+    static long delayMs(LoopConfig config, int attempt, NodeResult result) {
+        double multiplier = Math.max(1d, config.getBackoffMultiplier());
+        double jitter = Math.min(1d, Math.max(0d, config.getJitter()));
+        long maxIntervalMs = Math.max(config.getIntervalMs(), config.getMaxIntervalMs());
+
+        double backoff = Math.min(maxIntervalMs, config.getIntervalMs() * Math.pow(multiplier, attempt - 1));
+        long delayMs = (long) (backoff * (1 - jitter) + ThreadLocalRandom.current().nextDouble() * backoff * jitter);
+
+        return Math.max(delayMs, retryAfterMs(result));
+    }
+
+    /**
+     * 解析 Retry-After 响应头 (只支持秒数形式)
+     */
+    private static long retryAfterMs(NodeResult result) {
+        Map<String, String> headers = result.getHeaders();
+        if (headers == null) {
+            return 0L;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if ("Retry-After".equalsIgnoreCase(header.getKey())) {
+                try {
+                    return Math.max(0L, Long.parseLong(header.getValue().trim()) * 1000L);
+                } catch (NumberFormatException e) {
+                    return 0L;
+                }
+            }
+        }
+        return 0L;
+    }
+}
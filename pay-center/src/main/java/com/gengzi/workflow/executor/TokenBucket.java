@@ -0,0 +1,74 @@
+package com.gengzi.workflow.executor;
+
+/**
+ * 令牌桶
+ *
+ * 以 ratePerSecond 的速度补充令牌，最多累积 burst 个。
+ * tryReserve 采用预约语义: 等待时间不超过上限时立即扣减一个令牌 (允许透支)，
+ * 返回调用方需要等待的时间，等待由调用方决定阻塞还是定时触发；超过上限时不扣减
+ *
+ * @author gengzi
+ */
+public class TokenBucket {
+
+    private final double ratePerSecond;
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.capacity = burst > 0 ? burst : Math.max(1d, ratePerSecond);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * 预约一个令牌
+     *
+     * @param maxWaitNanos 可接受的最长等待 (纳秒)
+     * @return 需要等待的纳秒数 (0 表示可立即执行)，需要等待且不短于 maxWaitNanos 时返回 -1 (不扣减令牌)
+     */
+    public synchronized long tryReserve(long maxWaitNanos) {
+        refill();
+
+        long waitNanos = tokens >= 1 ? 0L : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (waitNanos > 0 && waitNanos >= maxWaitNanos) {
+            return -1L;
+        }
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    /**
+     * 归还一个已预约的令牌 (预约后放弃发送请求时调用)
+     */
+    public synchronized void refund() {
+        refill();
+        tokens = Math.min(capacity, tokens + 1);
+    }
+
+    /**
+     * 令牌是否已补满 (没有任何预约需要等待，丢弃后重建不影响限流)
+     */
+    public synchronized boolean isIdle() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,57 @@
+package com.gengzi.workflow.expression;
+
+/**
+ * 编译后的条件表达式 (不可变，可跨执行共享)
+ *
+ * 由 GraphCompiler 在编译图时解析一次，求值时只遍历表达式树，不再解析文本
+ *
+ * 语法示例:
+ * - statusCode == 200 && headers['Content-Type'].contains('json')
+ * - body.$.data.status == 'DONE' || body.$.items.size() > 0
+ * - body.contains('success')
+ * - !(body.$.code != 0)
+ *
+ * 见 ConditionParser
+ *
+ * @author gengzi
+ */
+public final class Condition {
+
+    private final String source;
+    private final Expression root;
+
+    Condition(String source, Expression root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * 解析条件表达式
+     *
+     * @param source 表达式文本
+     * @return 编译结果
+     * @throws IllegalArgumentException 语法错误
+     */
+    public static Condition compile(String source) {
+        return new ConditionParser(source).parse();
+    }
+
+    /**
+     * 对节点结果求值
+     *
+     * @param context 求值上下文
+     * @return 条件是否成立
+     */
+    public boolean test(ConditionContext context) {
+        return Values.truthy(root.evaluate(context));
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,115 @@
+package com.gengzi.workflow.expression;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.gengzi.workflow.model.NodeResult;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 条件求值上下文 (单个节点结果)
+ *
+ * 响应体与 JSON 解析结果按需加载并缓存:
+ * 只判断状态码的条件不会读取响应体，同一上下文上的多个条件与模板引用只解析一次 JSON
+ *
+ * 线程安全，一次执行内每个节点结果共用一个 (见 WorkflowContext.resultView)
+ *
+ * @author gengzi
+ */
+public final class ConditionContext {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final NodeResult result;
+    private final Supplier<String> bodySupplier;
+
+    private String body;
+    private boolean bodyLoaded;
+    private JsonNode json;
+
+    private ConditionContext(NodeResult result, Supplier<String> bodySupplier) {
+        this.result = result;
+        this.bodySupplier = bodySupplier;
+    }
+
+    /**
+     * @param result       节点结果
+     * @param bodySupplier 响应体读取 (溢写到磁盘的响应体需经 ResultBodyStore 读取)
+     */
+    public static ConditionContext of(NodeResult result, Supplier<String> bodySupplier) {
+        return new ConditionContext(result, bodySupplier);
+    }
+
+    /**
+     * 求值的节点结果
+     */
+    public NodeResult getResult() {
+        return result;
+    }
+
+    int statusCode() {
+        return result.getStatusCode();
+    }
+
+    long durationMs() {
+        return result.getDurationMs();
+    }
+
+    int attempts() {
+        return result.getAttempts();
+    }
+
+    String errorMessage() {
+        return result.getErrorMessage();
+    }
+
+    /**
+     * 响应头 (名称不区分大小写)
+     */
+    String header(String name) {
+        Map<String, String> headers = result.getHeaders();
+        if (headers == null) {
+            return null;
+        }
+
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    synchronized String body() {
+        if (!bodyLoaded) {
+            body = bodySupplier.get();
+            bodyLoaded = true;
+        }
+        return body;
+    }
+
+    /**
+     * 响应体 JSON (响应体为空或不是 JSON 时为 MissingNode)
+     */
+    synchronized JsonNode json() {
+        if (json == null) {
+            String text = body();
+            try {
+                json = text != null ? MAPPER.readTree(text) : MissingNode.getInstance();
+            } catch (JsonProcessingException e) {
+                json = MissingNode.getInstance();
+            }
+            if (json == null) {
+                json = MissingNode.getInstance();
+            }
+        }
+        return json;
+    }
+}
@@ -0,0 +1,391 @@
+package com.gengzi.workflow.expression;
+
+import com.fasterxml.jackson.core.JsonPointer;
+
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 条件表达式解析器 (递归下降)
+ *
+ * 语法:
+ * <pre>
+ * or         := and ('||' and)*
+ * and        := not ('&&' not)*
+ * not        := '!' not | comparison
+ * comparison := operand (('==' | '!=' | '<' | '<=' | '>' | '>=') operand)?
+ * operand    := (literal | path | '(' or ')') ('.' method '(' args ')')*
+ * literal    := 数字 | 'text' | "text" | true | false | null
+ * path       := statusCode | durationMs | attempts | errorMessage
+ *             | headers.名称 | headers['名称']
+ *             | body | body.$ 段*
+ * 段         := '.' 字段 | '[' 下标 ']' | '[' '键' ']'
+ * method     := contains | startsWith | endsWith | matches | size
+ * </pre>
+ *
+ * JSON 路径在解析时转换为 JsonPointer，matches 的正则在解析时编译
+ *
+ * @author gengzi
+ */
+final class ConditionParser {
+
+    private final String source;
+    private int pos;
+
+    ConditionParser(String source) {
+        this.source = source;
+    }
+
+    Condition parse() {
+        return new Condition(source, parseExpression());
+    }
+
+    /**
+     * 解析完整表达式 (条件与模板引用共用)
+     */
+    Expression parseExpression() {
+        if (source == null || source.isBlank()) {
+            throw error("empty condition");
+        }
+
+        Expression root = parseOr();
+        skipWhitespace();
+        if (pos < source.length()) {
+            throw error("unexpected '" + source.charAt(pos) + "'");
+        }
+        return root;
+    }
+
+    private Expression parseOr() {
+        Expression left = parseAnd();
+        while (accept("||")) {
+            Expression l = left;
+            Expression r = parseAnd();
+            left = context -> Values.truthy(l.evaluate(context)) || Values.truthy(r.evaluate(context));
+        }
+        return left;
+    }
+
+    private Expression parseAnd() {
+        Expression left = parseNot();
+        while (accept("&&")) {
+            Expression l = left;
+            Expression r = parseNot();
+            left = context -> Values.truthy(l.evaluate(context)) && Values.truthy(r.evaluate(context));
+        }
+        return left;
+    }
+
+    private Expression parseNot() {
+        if (accept("!")) {
+            Expression operand = parseNot();
+            return context -> !Values.truthy(operand.evaluate(context));
+        }
+        return parseComparison();
+    }
+
+    private Expression parseComparison() {
+        Expression left = parseOperand();
+
+        String operator = null;
+        for (String candidate : new String[]{"==", "!=", "<=", ">=", "<", ">"}) {
+            if (accept(candidate)) {
+                operator = candidate;
+                break;
+            }
+        }
+        if (operator == null) {
+            return left;
+        }
+
+        Expression right = parseOperand();
+        switch (operator) {
+            case "==":
+                return context -> Values.equal(left.evaluate(context), right.evaluate(context));
+            case "!=":
+                return context -> !Values.equal(left.evaluate(context), right.evaluate(context));
+            case "<":
+                return context -> compare(left, right, context, c -> c < 0);
+            case "<=":
+                return context -> compare(left, right, context, c -> c <= 0);
+            case ">":
+                return context -> compare(left, right, context, c -> c > 0);
+            default:
+                return context -> compare(left, right, context, c -> c >= 0);
+        }
+    }
+
+    private static boolean compare(Expression left, Expression right, ConditionContext context,
+            IntPredicate test) {
+        Integer result = Values.compare(left.evaluate(context), right.evaluate(context));
+        return result != null && test.test(result);
+    }
+
+    private Expression parseOperand() {
+        skipWhitespace();
+        if (pos >= source.length()) {
+            throw error("unexpected end of condition");
+        }
+
+        Expression operand;
+        char c = source.charAt(pos);
+        if (c == '(') {
+            pos++;
+            operand = parseOr();
+            expect(")");
+        } else if (c == '\'' || c == '"') {
+            String text = readString();
+            operand = context -> text;
+        } else if (Character.isDigit(c) || (c == '-' && pos + 1 < source.length()
+                && Character.isDigit(source.charAt(pos + 1)))) {
+            Double number = readNumber();
+            operand = context -> number;
+        } else if (isIdentifierStart(c)) {
+            operand = parsePath(readIdentifier());
+        } else {
+            throw error("unexpected '" + c + "'");
+        }
+
+        return parseMethods(operand);
+    }
+
+    private Expression parsePath(String root) {
+        switch (root) {
+            case "true":
+                return context -> Boolean.TRUE;
+            case "false":
+                return context -> Boolean.FALSE;
+            case "null":
+                return context -> null;
+            case "statusCode":
+                return ConditionContext::statusCode;
+            case "durationMs":
+                return ConditionContext::durationMs;
+            case "attempts":
+                return ConditionContext::attempts;
+            case "errorMessage":
+                return ConditionContext::errorMessage;
+            case "headers":
+                String name = readSegment();
+                if (name == null) {
+                    throw error("header name expected after 'headers'");
+                }
+                return context -> context.header(name);
+            case "body":
+                return parseBody();
+            default:
+                throw error("unknown identifier '" + root + "'");
+        }
+    }
+
+    /**
+     * body 为原始响应体，body.$ 起为 JSON 路径
+     */
+    private Expression parseBody() {
+        int mark = pos;
+        if (!accept(".") || !accept("$")) {
+            pos = mark;
+            return ConditionContext::body;
+        }
+
+        StringBuilder pointer = new StringBuilder();
+        String segment;
+        while ((segment = readSegment()) != null) {
+            pointer.append('/').append(segment.replace("~", "~0").replace("/", "~1"));
+        }
+
+        JsonPointer compiled = JsonPointer.compile(pointer.toString());
+        return context -> Values.fromJson(context.json().at(compiled));
+    }
+
+    /**
+     * 读取一个路径段: .name、[0] 或 ['key']
+     * 后面紧跟 '(' 的 .name 是方法调用，不作为路径段
+     *
+     * @return 段名，没有更多路径段时返回 null
+     */
+    private String readSegment() {
+        int mark = pos;
+        if (accept(".")) {
+            if (pos < source.length() && isIdentifierStart(source.charAt(pos))) {
+                String name = readIdentifier();
+                skipWhitespace();
+                if (pos >= source.length() || source.charAt(pos) != '(') {
+                    return name;
+                }
+            }
+            pos = mark;
+            return null;
+        }
+
+        if (accept("[")) {
+            skipWhitespace();
+            String key;
+            if (pos < source.length() && (source.charAt(pos) == '\'' || source.charAt(pos) == '"')) {
+                key = readString();
+            } else {
+                int start = pos;
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                    pos++;
+                }
+                if (start == pos) {
+                    throw error("index or quoted key expected");
+                }
+                key = source.substring(start, pos);
+            }
+            expect("]");
+            return key;
+        }
+        return null;
+    }
+
+    private Expression parseMethods(Expression target) {
+        Expression result = target;
+        while (true) {
+            int mark = pos;
+            if (!accept(".")) {
+                return result;
+            }
+            skipWhitespace();
+            if (pos >= source.length() || !isIdentifierStart(source.charAt(pos))) {
+                pos = mark;
+                return result;
+            }
+
+            String method = readIdentifier();
+            expect("(");
+            result = parseMethod(method, result);
+            expect(")");
+        }
+    }
+
+    private Expression parseMethod(String method, Expression target) {
+        switch (method) {
+            case "size":
+            case "length":
+                return context -> Values.size(target.evaluate(context));
+            case "contains": {
+                Expression arg = parseOr();
+                return context -> {
+                    String text = Values.text(target.evaluate(context));
+                    String part = Values.text(arg.evaluate(context));
+                    return text != null && part != null && text.contains(part);
+                };
+            }
+            case "startsWith": {
+                Expression arg = parseOr();
+                return context -> {
+                    String text = Values.text(target.evaluate(context));
+                    String part = Values.text(arg.evaluate(context));
+                    return text != null && part != null && text.startsWith(part);
+                };
+            }
+            case "endsWith": {
+                Expression arg = parseOr();
+                return context -> {
+                    String text = Values.text(target.evaluate(context));
+                    String part = Values.text(arg.evaluate(context));
+                    return text != null && part != null && text.endsWith(part);
+                };
+            }
+            case "matches": {
+                skipWhitespace();
+                if (pos >= source.length() || (source.charAt(pos) != '\'' && source.charAt(pos) != '"')) {
+                    throw error("matches() requires a quoted regular expression");
+                }
+                Pattern pattern;
+                try {
+                    pattern = Pattern.compile(readString());
+                } catch (PatternSyntaxException e) {
+                    throw error("invalid regular expression: " + e.getDescription());
+                }
+                return context -> {
+                    String text = Values.text(target.evaluate(context));
+                    return text != null && pattern.matcher(text).find();
+                };
+            }
+            default:
+                throw error("unknown method '" + method + "'");
+        }
+    }
+
+    private String readIdentifier() {
+        int start = pos;
+        while (pos < source.length() && isIdentifierPart(source.charAt(pos))) {
+            pos++;
+        }
+        return source.substring(start, pos);
+    }
+
+    private String readString() {
+        char quote = source.charAt(pos++);
+        StringBuilder text = new StringBuilder();
+        while (pos < source.length()) {
+            char c = source.charAt(pos++);
+            if (c == quote) {
+                return text.toString();
+            }
+            if (c == '\\' && pos < source.length()) {
+                c = source.charAt(pos++);
+            }
+            text.append(c);
+        }
+        throw error("unterminated string");
+    }
+
+    private Double readNumber() {
+        int start = pos;
+        pos++;
+        while (pos < source.length()
+                && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        try {
+            return Double.parseDouble(source.substring(start, pos));
+        } catch (NumberFormatException e) {
+            throw error("invalid number '" + source.substring(start, pos) + "'");
+        }
+    }
+
+    private boolean accept(String token) {
+        skipWhitespace();
+        if (!source.startsWith(token, pos)) {
+            return false;
+        }
+        // '!' 与 '!='、'<' 与 '<=' 等前缀重叠时不误匹配
+        if ((token.equals("!") || token.equals("<") || token.equals(">"))
+                && source.startsWith("=", pos + 1)) {
+            return false;
+        }
+        pos += token.length();
+        return true;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("'" + token + "' expected");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * 表达式不含算术运算，标识符中允许 '-' (如响应头名称)
+     */
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '$';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid condition '" + source + "' at position " + pos + ": " + message);
+    }
+}
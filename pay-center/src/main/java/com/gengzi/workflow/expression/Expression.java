@@ -0,0 +1,17 @@
+package com.gengzi.workflow.expression;
+
+/**
+ * 编译后的表达式节点
+ *
+ * @author gengzi
+ */
+@FunctionalInterface
+interface Expression {
+
+    /**
+     * 求值
+     *
+     * @return String / Number / Boolean / JsonNode (对象与数组) 或 null
+     */
+    Object evaluate(ConditionContext context);
+}
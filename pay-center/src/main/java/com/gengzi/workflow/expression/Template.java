@@ -0,0 +1,149 @@
+package com.gengzi.workflow.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * 编译后的文本模板 (不可变，可跨执行共享)
+ *
+ * 文本中的 ${节点ID.路径} 引用其他节点的结果，路径语法与条件表达式相同 (见 ConditionParser):
+ * - ${nodeA.statusCode}
+ * - ${nodeA.headers['X-Trace-Id']}
+ * - ${nodeA.body}
+ * - ${nodeA.body.$.data.orderId}
+ *
+ * 编译时文本拆分为字面量与引用片段，引用的节点换算为槽位 (图中节点下标)，
+ * 渲染时按槽位取结果求值，不再扫描文本
+ *
+ * - 节点 ID 不是图中节点的 ${...} (如 MAP 的 ${item}) 保持原样
+ * - 取值为 null (节点无结果、路径不存在) 时替换为空串，对象与数组取 JSON 文本
+ *
+ * @author gengzi
+ */
+public final class Template {
+
+    private static final String OPEN = "${";
+    private static final char CLOSE = '}';
+
+    private final String source;
+
+    /**
+     * 字面量片段，比引用多一个: literals[0] refs[0] literals[1] ... refs[k-1] literals[k]
+     */
+    private final String[] literals;
+
+    /**
+     * 引用的节点槽位，与 expressions 对齐
+     */
+    private final int[] slots;
+
+    private final Expression[] expressions;
+
+    private Template(String source, String[] literals, int[] slots, Expression[] expressions) {
+        this.source = source;
+        this.literals = literals;
+        this.slots = slots;
+        this.expressions = expressions;
+    }
+
+    /**
+     * 编译模板文本
+     *
+     * @param text   模板文本
+     * @param slotOf 节点 ID -> 槽位 (不存在返回 -1)
+     * @return 编译结果，文本中没有节点引用时返回 null
+     * @throws IllegalArgumentException 引用路径语法错误
+     */
+    public static Template compile(String text, ToIntFunction<String> slotOf) {
+        if (text == null || !text.contains(OPEN)) {
+            return null;
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<Expression> expressions = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+
+        while (pos < text.length()) {
+            int start = text.indexOf(OPEN, pos);
+            int end = start < 0 ? -1 : text.indexOf(CLOSE, start + OPEN.length());
+            if (end < 0) {
+                break;
+            }
+
+            String reference = text.substring(start + OPEN.length(), end);
+            int dot = reference.indexOf('.');
+            int slot = dot > 0 ? slotOf.applyAsInt(reference.substring(0, dot).trim()) : -1;
+
+            literal.append(text, pos, start);
+            if (slot < 0) {
+                literal.append(text, start, end + 1);
+            } else {
+                try {
+                    expressions.add(new ConditionParser(reference.substring(dot + 1)).parseExpression());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid template reference '" + OPEN + reference + CLOSE
+                            + "': " + e.getMessage(), e);
+                }
+                slots.add(slot);
+                literals.add(literal.toString());
+                literal.setLength(0);
+            }
+            pos = end + 1;
+        }
+
+        if (expressions.isEmpty()) {
+            return null;
+        }
+        literal.append(text, pos, text.length());
+        literals.add(literal.toString());
+
+        return new Template(text, literals.toArray(new String[0]), slots.stream().mapToInt(Integer::intValue).toArray(),
+                expressions.toArray(new Expression[0]));
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param views 槽位 -> 节点结果的求值上下文
+     * @return 替换引用后的文本
+     */
+    public String render(IntFunction<ConditionContext> views) {
+        StringBuilder text = new StringBuilder(source.length());
+        text.append(literals[0]);
+        for (int i = 0; i < slots.length; i++) {
+            String value = Values.text(expressions[i].evaluate(views.apply(slots[i])));
+            if (value != null) {
+                text.append(value);
+            }
+            text.append(literals[i + 1]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * 引用数量
+     */
+    public int referenceCount() {
+        return slots.length;
+    }
+
+    /**
+     * 第 i 个引用的节点槽位
+     */
+    public int slot(int i) {
+        return slots[i];
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,131 @@
+package com.gengzi.workflow.expression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * 表达式取值的类型转换与比较
+ *
+ * - 数值比较: 两侧都能转为数值 (含数字字符串) 时按数值比较
+ * - 其余按文本比较，对象与数组取 JSON 文本
+ * - null 只等于 null，参与大小比较时结果为 false
+ *
+ * @author gengzi
+ */
+final class Values {
+
+    private Values() {
+    }
+
+    static Object fromJson(JsonNode node) {
+        if (node == null || node.isMissingNode() || node.isNull()) {
+            return null;
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isNumber()) {
+            return node.numberValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        return node;
+    }
+
+    static boolean truthy(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue() != 0;
+        }
+        if (value instanceof JsonNode) {
+            return ((JsonNode) value).size() > 0;
+        }
+        return !value.toString().isEmpty();
+    }
+
+    static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (d == Math.rint(d) && !Double.isInfinite(d)) {
+                return Long.toString((long) d);
+            }
+        }
+        return value.toString();
+    }
+
+    static Double number(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            return parseNumber((String) value);
+        }
+        return null;
+    }
+
+    static boolean equal(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+
+        Double a = number(left);
+        Double b = number(right);
+        if (a != null && b != null) {
+            return a.doubleValue() == b.doubleValue();
+        }
+        return text(left).equals(text(right));
+    }
+
+    /**
+     * 大小比较
+     *
+     * @return 比较结果，任一侧为 null 时返回 null
+     */
+    static Integer compare(Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+
+        Double a = number(left);
+        Double b = number(right);
+        if (a != null && b != null) {
+            return Double.compare(a, b);
+        }
+        return text(left).compareTo(text(right));
+    }
+
+    static int size(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof JsonNode) {
+            return ((JsonNode) value).size();
+        }
+        return text(value).length();
+    }
+
+    private static Double parseNumber(String text) {
+        if (text.isEmpty() || text.length() > 32) {
+            return null;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!(Character.isDigit(c) || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E')) {
+                return null;
+            }
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.gengzi.workflow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量配置
+ * 配置后 HTTP 节点不单独发起请求，而是与同一批量端点的就绪节点合并为一次请求
+ *
+ * 批量请求体为各节点请求体组成的 JSON 数组，
+ * 响应体须为等长 JSON 数组，第 i 个元素作为第 i 个节点的响应体
+ *
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchConfig {
+
+    /**
+     * 批量端点 URL
+     */
+    private String url;
+
+    /**
+     * 批量请求的 HTTP 方法
+     */
+    @Builder.Default
+    private String method = "POST";
+
+    /**
+     * 单批最多节点数，达到后立即发出
+     */
+    @Builder.Default
+    private int maxSize = 50;
+
+    /**
+     * 合并窗口 (毫秒)
+     * 批次中首个节点就绪后最多等待的时间
+     */
+    @Builder.Default
+    private long windowMs = 10L;
+}
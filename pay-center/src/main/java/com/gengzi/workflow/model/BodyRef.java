@@ -0,0 +1,41 @@
+package com.gengzi.workflow.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 溢写到磁盘的响应体引用
+ * 
+ * 超过内存阈值的响应体由 ResultBodyStore 写入本地文件，
+ * NodeResult 只保留此引用，读取时再按需打开
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BodyRef {
+
+    /**
+     * 文件路径
+     */
+    private String path;
+
+    /**
+     * 文件大小 (字节，压缩后)
+     */
+    private long storedBytes;
+
+    /**
+     * 是否 GZIP 压缩
+     */
+    private boolean compressed;
+
+    /**
+     * 响应体字符集
+     */
+    private String charset;
+}
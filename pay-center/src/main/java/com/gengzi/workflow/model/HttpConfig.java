@@ -59,4 +59,10 @@ public class HttpConfig {
      */
     @Builder.Default
     private long readTimeoutMs = 30000L;
+
+    /**
+     * 节点级限流: 每秒请求数 (0 表示不限流)
+     * 与主机级限流同时生效
+     */
+    private double ratePerSecond;
 }
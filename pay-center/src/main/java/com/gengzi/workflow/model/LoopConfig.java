@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 循环配置
  * 配合 LoopPolicy 使用，定义循环执行的具体参数
@@ -18,23 +20,49 @@ import lombok.NoArgsConstructor;
 public class LoopConfig {
 
     /**
-     * 最大重试次数 (用于 FIXED_COUNT)
-     * 例如: maxRetries=3 表示执行 3 次
+     * 最大重试次数 (用于 FIXED_COUNT / RETRY)
+     * 例如: maxRetries=3 表示执行 3 次 (RETRY 时为最多执行 3 次)
      */
     @Builder.Default
     private int maxRetries = 1;
 
     /**
      * 循环间隔时间 (毫秒)
-     * 每次循环执行之间的等待时间
+     * 每次循环执行之间的等待时间 (RETRY 时为首次重试的基础退避)
      */
     @Builder.Default
     private long intervalMs = 1000L;
 
     /**
-     * 成功条件表达式 (用于 UNTIL_SUCCESS)
-     * 例如: "statusCode == 200" 或 "body.contains('success')"
-     * MVP 版本: 简化为 HTTP 200 即视为成功
+     * 退避倍数 (用于 RETRY)
+     * 第 n 次重试的基础退避为 intervalMs * backoffMultiplier^(n-1)
+     */
+    @Builder.Default
+    private double backoffMultiplier = 2.0d;
+
+    /**
+     * 最大退避时间 (毫秒，用于 RETRY)
+     */
+    @Builder.Default
+    private long maxIntervalMs = 30000L;
+
+    /**
+     * 退避抖动比例 (0-1，用于 RETRY)
+     * 退避时间中该比例的部分随机化，0 为固定退避，1 为完全随机 (0 到基础退避之间)
+     */
+    @Builder.Default
+    private double jitter = 0.5d;
+
+    /**
+     * 可重试的 HTTP 状态码 (用于 RETRY)
+     * 为空时使用 408、429、500、502、503、504，I/O 错误总是可重试
+     */
+    private List<Integer> retryableStatusCodes;
+
+    /**
+     * 成功条件表达式 (用于 UNTIL_SUCCESS / RETRY)
+     * 例如: "statusCode == 200" 或 "body.contains('success')" 或 "body.$.state == 'DONE'"
+     * 为空时 HTTP 200 即视为成功，表达式在编译图时解析
      */
     private String successCondition;
 
@@ -23,5 +23,12 @@ public enum LoopPolicy {
      * 成功条件: HTTP 200 或自定义断言通过
      * 需配合 LoopConfig.successCondition 使用
      */
-    UNTIL_SUCCESS
+    UNTIL_SUCCESS,
+
+    /**
+     * 失败重试 - 遇到可重试的失败 (I/O 错误、429、5xx 等) 时按指数退避加随机抖动重试
+     * 成功或不可重试的失败立即结束，最多执行 LoopConfig.maxRetries 次
+     * 目标主机熔断时不再重试
+     */
+    RETRY
 }
@@ -0,0 +1,19 @@
+package com.gengzi.workflow.model;
+
+/**
+ * 定时触发错过策略枚举
+ * 触发时间已过去超过 workflow.trigger.misfire-threshold-ms 时 (轮转线程积压、上一个任务耗时过长等) 的处理方式
+ * 
+ * @author gengzi
+ */
+public enum MisfirePolicy {
+    /**
+     * 立即补触发一次 - 错过的多个触发点合并为一次执行，之后按原计划继续
+     */
+    FIRE_ONCE,
+
+    /**
+     * 跳过 - 错过的触发点不再执行，等待下一个触发点
+     */
+    SKIP
+}
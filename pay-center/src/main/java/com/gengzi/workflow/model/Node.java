@@ -26,16 +26,40 @@ public class Node {
     private String id;
 
     /**
-     * 节点类型: HTTP 或 CALLBACK
+     * 节点类型: HTTP、CALLBACK、SUB_WORKFLOW 或 MAP
      */
     @Builder.Default
     private NodeType type = NodeType.HTTP;
 
     /**
-     * HTTP 请求配置 (仅用于 HTTP 类型节点)
+     * HTTP 请求配置 (用于 HTTP 类型节点，以及 MAP 节点的单项请求模板)
+     * MAP 节点中 url、body 与请求头里的 ${item} / ${index} 替换为当前元素及其下标
      */
     private HttpConfig config;
 
+    /**
+     * 子工作流模板名称 (仅用于 SUB_WORKFLOW 类型节点)
+     * 模板需预先通过 WorkflowTemplateRegistry 注册
+     */
+    private String template;
+
+    /**
+     * 集合来源的上游节点 ID (仅用于 MAP 类型节点)
+     */
+    private String itemsFrom;
+
+    /**
+     * 集合在上游响应体中的位置 (JSON Pointer，如 /data/items，仅用于 MAP 类型节点)
+     * 为空表示响应体本身就是数组
+     */
+    private String itemsPath;
+
+    /**
+     * 最大并行元素数 (仅用于 MAP 类型节点)
+     * 为空时使用 workflow.executor.map-concurrency
+     */
+    private Integer mapConcurrency;
+
     /**
      * 下游节点 ID 列表
      * 当前节点执行完成后，触发这些节点的执行
@@ -44,7 +68,7 @@ public class Node {
     private List<String> nextNodes = new ArrayList<>();
 
     /**
-     * 循环策略: NONE, FIXED_COUNT, UNTIL_SUCCESS
+     * 循环策略: NONE, FIXED_COUNT, UNTIL_SUCCESS, RETRY
      */
     @Builder.Default
     private LoopPolicy loopPolicy = LoopPolicy.NONE;
@@ -61,6 +85,25 @@ public class Node {
     @Builder.Default
     private JoinMode joinMode = JoinMode.ALL;
 
+    /**
+     * 回调超时 (毫秒，仅用于 CALLBACK 类型节点)
+     * 为空时使用 workflow.executor.callback-timeout-ms，0 表示不超时
+     */
+    private Long callbackTimeoutMs;
+
+    /**
+     * 节点执行超时 (毫秒，HTTP / MAP 节点，含循环等待)
+     * 为空时使用 workflow.executor.node-timeout-ms，0 表示不超时
+     * 超时后在途请求被中断，节点置为 FAILED
+     */
+    private Long timeoutMs;
+
+    /**
+     * 批量配置 (仅用于 HTTP 类型节点，循环策略须为 NONE 或 RETRY，且未配置节点级限流)
+     * 为空时单独发起请求
+     */
+    private BatchConfig batch;
+
     /**
      * 节点描述 (可选)
      */
@@ -27,9 +27,20 @@ public class NodeResult {
 
     /**
      * 响应体内容
+     * 超过内存阈值时为 null，内容见 bodyRef
      */
     private String body;
 
+    /**
+     * 溢写到磁盘的响应体 (未溢写为 null)
+     */
+    private BodyRef bodyRef;
+
+    /**
+     * 响应体原始大小 (字节)
+     */
+    private long bodySize;
+
     /**
      * 响应头
      */
@@ -50,6 +61,28 @@ public class NodeResult {
      */
     private long durationMs;
 
+    /**
+     * 排队等待耗时 (毫秒)
+     * 从节点就绪到首个 HTTP 请求发出，包含线程池排队、并发许可、限流与连接池等待
+     */
+    private long queueWaitMs;
+
+    /**
+     * 实际请求耗时 (毫秒)
+     * 请求发出到收到响应的时间，多次循环请求时累加
+     */
+    private long requestMs;
+
+    /**
+     * HTTP 请求次数 (循环节点为实际执行次数)
+     */
+    private int attempts;
+
+    /**
+     * 首个 HTTP 请求发出时间 (毫秒时间戳)
+     */
+    private long requestSentAtMs;
+
     /**
      * 错误信息 (如果执行失败)
      */
@@ -59,4 +92,19 @@ public class NodeResult {
      * 回调 ID (仅用于 CALLBACK 节点)
      */
     private String callbackId;
+
+    /**
+     * 子执行 ID (仅用于 SUB_WORKFLOW 节点)，可用于查询子执行状态
+     */
+    private String childRunId;
+
+    /**
+     * 元素总数 (仅用于 MAP 节点)
+     */
+    private int itemCount;
+
+    /**
+     * 失败元素数 (仅用于 MAP 节点)
+     */
+    private int failedItems;
 }
@@ -29,5 +29,23 @@ public enum NodeStatus {
     /**
      * 等待回调 - 节点已挂起，等待外部回调唤醒
      */
-    WAITING_CALLBACK
+    WAITING_CALLBACK,
+
+    /**
+     * 已跳过 - 上游异常中断，节点不会再被执行
+     */
+    SKIPPED,
+
+    /**
+     * 已取消 - 所属执行被取消，节点未执行或在途请求被中断
+     */
+    CANCELLED;
+
+    /**
+     * 是否为终态 (SUCCESS / FAILED / SKIPPED / CANCELLED)
+     * 终态节点计入工作流完成进度，不会再发生状态迁移
+     */
+    public boolean isTerminal() {
+        return this == SUCCESS || this == FAILED || this == SKIPPED || this == CANCELLED;
+    }
 }
@@ -14,5 +14,15 @@ public enum NodeType {
     /**
      * 回调节点 - 等待外部异步回调
      */
-    CALLBACK
+    CALLBACK,
+
+    /**
+     * 子工作流节点 - 以子执行运行已注册的工作流模板
+     */
+    SUB_WORKFLOW,
+
+    /**
+     * 映射节点 - 对上游结果中的集合逐项发起 HTTP 调用 (有界并行)，结果汇总为一个
+     */
+    MAP
 }
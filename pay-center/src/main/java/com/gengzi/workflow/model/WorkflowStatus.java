@@ -24,5 +24,17 @@ public enum WorkflowStatus {
     /**
      * 部分暂停 - 存在等待回调的节点
      */
-    PARTIALLY_SUSPENDED
+    PARTIALLY_SUSPENDED,
+
+    /**
+     * 已取消 - 通过取消接口或执行截止时间中止
+     */
+    CANCELLED;
+
+    /**
+     * 是否为终态 (COMPLETED / FAILED / CANCELLED)
+     */
+    public boolean isTerminal() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
 }
@@ -1,20 +1,44 @@
 package com.gengzi.workflow.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.dto.BatchCallbackResponse;
+import com.gengzi.workflow.dto.CallbackRequest;
 import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.dto.TriggerRequest;
+import com.gengzi.workflow.dto.TriggerResponse;
 import com.gengzi.workflow.dto.WorkflowRunResponse;
 import com.gengzi.workflow.dto.WorkflowStatusResponse;
+import com.gengzi.workflow.dto.WorkflowTemplateResponse;
+import com.gengzi.workflow.engine.CallbackRegistry;
+import com.gengzi.workflow.engine.ClusterScheduler;
+import com.gengzi.workflow.engine.CompiledGraph;
 import com.gengzi.workflow.engine.DagEngine;
-import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.IdempotencyIndex;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.engine.TriggerScheduler;
+import com.gengzi.workflow.engine.WorkflowEventBus;
+import com.gengzi.workflow.engine.WorkflowTemplateRegistry;
+import com.gengzi.workflow.model.NodeResult;
 import com.gengzi.workflow.model.NodeStatus;
 import com.gengzi.workflow.model.WorkflowStatus;
+import com.gengzi.workflow.storage.ArchivedRun;
+import com.gengzi.workflow.storage.ResultBodyStore;
 import com.gengzi.workflow.storage.WorkflowStorageService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 工作流服务 (编排层)
@@ -31,48 +55,296 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class WorkflowService {
 
+    /**
+     * 事件流连接超时 (毫秒)
+     */
+    private static final long SSE_TIMEOUT_MS = 30 * 60 * 1000L;
+
     private final DagEngine dagEngine;
+    private final GraphCompiler graphCompiler;
+    private final NodeConcurrencyLimiter concurrencyLimiter;
     private final WorkflowStorageService storageService;
+    private final CallbackRegistry callbackRegistry;
+    private final WorkflowEventBus eventBus;
+    private final ResultBodyStore resultBodyStore;
+    private final WorkflowTemplateRegistry templateRegistry;
+    private final IdempotencyIndex idempotencyIndex;
+    private final ObjectMapper objectMapper;
+    private final ClusterScheduler clusterScheduler;
+    private final TriggerScheduler triggerScheduler;
+
+    /**
+     * 集群调度领取到本实例未登记的执行时，从存储 (含共享持久化) 查找
+     */
+    @PostConstruct
+    public void registerRunResolver() {
+        clusterScheduler.setRunResolver(storageService::get);
+    }
+
+    /**
+     * 定时触发通过本服务启动执行 (与 API 提交相同的存储、调度路径)
+     */
+    @PostConstruct
+    public void registerTriggerLauncher() {
+        triggerScheduler.setLauncher(this::launchTriggered);
+    }
 
     /**
      * 启动工作流执行
      * 
      * @param graphRequest 工作流图定义
      * @return 执行响应
+     * @throws IllegalArgumentException 图定义校验或编译失败
      */
     public WorkflowRunResponse runWorkflow(GraphRequest graphRequest) {
         // 1. 生成 runId
         String runId = UUID.randomUUID().toString();
 
-        log.info("Starting new workflow: runId={}, nodes={}", runId, graphRequest.getNodes().size());
+        log.info("Starting new workflow: runId={}", runId);
 
-        // 2. 创建执行上下文
-        WorkflowContext context = new WorkflowContext(runId);
+        // 2. 编译图 (相同定义命中缓存)
+        CompiledGraph graph = compile(runId, () -> graphCompiler.compile(graphRequest));
 
-        // 3. 保存到存储
-        storageService.save(context);
+        try {
+            startWorkflow(runId, graph);
+        } catch (RuntimeException e) {
+            return failedResponse(runId, e);
+        }
+        return startedResponse(runId);
+    }
 
-        // 4. 异步执行工作流 (不阻塞 API 响应)
+    /**
+     * 启动工作流执行 (原始请求体，支持幂等键)
+     * 
+     * - 相同幂等键的重复提交直接返回已有执行，不再启动新执行
+     * - 请求体按内容哈希命中编译缓存时跳过反序列化与编译
+     * 
+     * @param definition     工作流图定义 (JSON 请求体)
+     * @param idempotencyKey 幂等键 (可为 null)
+     * @return 执行响应
+     * @throws IllegalArgumentException 图定义无法解析、校验或编译失败，或幂等键已用于不同的图定义
+     */
+    public WorkflowRunResponse runWorkflow(byte[] definition, String idempotencyKey) {
+        // 1. 生成 runId，登记幂等键
+        String runId = UUID.randomUUID().toString();
+        String graphHash = GraphCompiler.hash(definition);
+
+        if (idempotencyKey != null) {
+            IdempotencyIndex.Entry existing = idempotencyIndex.putIfAbsent(idempotencyKey, runId, graphHash);
+            if (existing != null) {
+                return duplicateResponse(idempotencyKey, graphHash, existing);
+            }
+        }
+
+        log.info("Starting new workflow: runId={}, graphHash={}", runId, graphHash);
+
+        // 未成功启动的任何路径都释放幂等键，上游可用同一键重试
+        boolean started = false;
         try {
-            dagEngine.executeWorkflow(graphRequest, context);
+            // 2. 编译图 (相同请求体按哈希命中缓存，不再反序列化)
+            CompiledGraph graph = compile(runId, () -> graphCompiler.compile(graphHash, () -> parse(definition)));
 
-            return WorkflowRunResponse.builder()
-                    .runId(runId)
-                    .status(WorkflowStatus.RUNNING)
-                    .message("Workflow started successfully")
-                    .build();
+            try {
+                startWorkflow(runId, graph);
+            } catch (RuntimeException e) {
+                return failedResponse(runId, e);
+            }
+            started = true;
+            return startedResponse(runId);
+        } finally {
+            if (!started) {
+                releaseKey(idempotencyKey, runId);
+            }
+        }
+    }
+
+    /**
+     * 编译图定义 (编译只依赖请求内容，任何编译失败都视为非法定义)
+     * 
+     * @throws IllegalArgumentException 图定义无法解析、校验或编译失败
+     */
+    private CompiledGraph compile(String runId, Supplier<CompiledGraph> compiler) {
+        try {
+            return compiler.get();
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected workflow graph: runId={}, error={}", runId, e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("Failed to compile workflow graph: runId={}", runId, e);
+            throw new IllegalArgumentException("Invalid workflow definition: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定时触发启动执行
+     * 
+     * @return 上下文，启动失败返回 null
+     */
+    private WorkflowContext launchTriggered(String triggerName, CompiledGraph graph) {
+        String runId = UUID.randomUUID().toString();
+
+        log.info("Starting triggered workflow: runId={}, trigger={}", runId, triggerName);
+
+        try {
+            return startWorkflow(runId, graph);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建、保存并异步执行上下文
+     * 
+     * @return 新建的上下文
+     * @throws RuntimeException 启动失败 (上下文已置为 FAILED)
+     */
+    private WorkflowContext startWorkflow(String runId, CompiledGraph graph) {
+        // 3. 创建执行上下文
+        WorkflowContext context = new WorkflowContext(runId, graph, concurrencyLimiter.newRunPermits());
+
+        // 4. 保存到存储
+        storageService.save(context);
 
-        } catch (Exception e) {
+        // 5. 异步执行工作流 (不阻塞 API 响应)
+        try {
+            dagEngine.executeWorkflow(context);
+        } catch (RuntimeException e) {
             log.error("Failed to start workflow: runId={}", runId, e);
 
             context.setWorkflowStatus(WorkflowStatus.FAILED);
+            throw e;
+        }
+        return context;
+    }
 
-            return WorkflowRunResponse.builder()
-                    .runId(runId)
-                    .status(WorkflowStatus.FAILED)
-                    .message("Failed to start workflow: " + e.getMessage())
-                    .build();
+    private static WorkflowRunResponse startedResponse(String runId) {
+        return WorkflowRunResponse.builder()
+                .runId(runId)
+                .status(WorkflowStatus.RUNNING)
+                .message("Workflow started successfully")
+                .build();
+    }
+
+    /**
+     * 重复提交: 返回幂等键登记的执行及其当前状态
+     */
+    private WorkflowRunResponse duplicateResponse(String idempotencyKey, String graphHash,
+            IdempotencyIndex.Entry existing) {
+        if (!existing.getGraphHash().equals(graphHash)) {
+            throw new IllegalArgumentException(
+                    "Idempotency key " + idempotencyKey + " was already used with a different workflow definition");
         }
+
+        log.info("Duplicate workflow submission: idempotencyKey={}, runId={}", idempotencyKey, existing.getRunId());
+
+        WorkflowContext context = storageService.get(existing.getRunId());
+        ArchivedRun archived = context == null ? storageService.getArchived(existing.getRunId()) : null;
+        return WorkflowRunResponse.builder()
+                .runId(existing.getRunId())
+                .status(context != null ? context.getWorkflowStatus()
+                        : archived != null ? archived.getWorkflowStatus() : WorkflowStatus.RUNNING)
+                .message("Workflow already submitted with this idempotency key")
+                .build();
+    }
+
+    private void releaseKey(String idempotencyKey, String runId) {
+        if (idempotencyKey != null) {
+            idempotencyIndex.remove(idempotencyKey, runId);
+        }
+    }
+
+    private GraphRequest parse(byte[] definition) {
+        try {
+            return objectMapper.readValue(definition, GraphRequest.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid workflow definition: " + e.getMessage(), e);
+        }
+    }
+
+    private static WorkflowRunResponse failedResponse(String runId, Exception e) {
+        return WorkflowRunResponse.builder()
+                .runId(runId)
+                .status(WorkflowStatus.FAILED)
+                .message("Failed to start workflow: " + e.getMessage())
+                .build();
+    }
+
+    /**
+     * 注册工作流模板 (供 SUB_WORKFLOW 节点引用)
+     * 
+     * @param name         模板名称
+     * @param graphRequest 模板图定义
+     * @return 模板信息
+     * @throws IllegalArgumentException 模板直接或间接引用自身
+     */
+    public WorkflowTemplateResponse registerTemplate(String name, GraphRequest graphRequest) {
+        CompiledGraph graph = templateRegistry.register(name, graphRequest);
+        return toTemplateResponse(name, graph);
+    }
+
+    /**
+     * 列出已注册的工作流模板
+     */
+    public List<WorkflowTemplateResponse> listTemplates() {
+        List<WorkflowTemplateResponse> templates = new ArrayList<>();
+        templateRegistry.getAll().forEach((name, graph) -> templates.add(toTemplateResponse(name, graph)));
+        return templates;
+    }
+
+    private static WorkflowTemplateResponse toTemplateResponse(String name, CompiledGraph graph) {
+        return WorkflowTemplateResponse.builder()
+                .name(name)
+                .nodeCount(graph.size())
+                .edgeCount(graph.edgeCount())
+                .build();
+    }
+
+    /**
+     * 注册定时触发器 (同名触发器被替换)
+     * 
+     * @param name    触发器名称
+     * @param request 触发配置 (模板需已注册)
+     * @return 触发器信息
+     * @throws IllegalArgumentException 模板不存在或调度配置无效
+     */
+    public TriggerResponse registerTrigger(String name, TriggerRequest request) {
+        return toTriggerResponse(triggerScheduler.register(name, request));
+    }
+
+    /**
+     * 列出定时触发器
+     */
+    public List<TriggerResponse> listTriggers() {
+        List<TriggerResponse> triggers = new ArrayList<>();
+        triggerScheduler.getAll().values().forEach(trigger -> triggers.add(toTriggerResponse(trigger)));
+        return triggers;
+    }
+
+    /**
+     * 删除定时触发器 (已启动的执行不受影响)
+     * 
+     * @param name 触发器名称
+     * @return 是否存在
+     */
+    public boolean removeTrigger(String name) {
+        return triggerScheduler.remove(name);
+    }
+
+    private static TriggerResponse toTriggerResponse(TriggerScheduler.Trigger trigger) {
+        return TriggerResponse.builder()
+                .name(trigger.getName())
+                .template(trigger.getTemplate())
+                .cron(trigger.getCron())
+                .zone(trigger.getZone() != null ? trigger.getZone().getId() : null)
+                .intervalMs(trigger.getIntervalMs())
+                .misfirePolicy(trigger.getMisfirePolicy())
+                .allowOverlap(trigger.isAllowOverlap())
+                .nextFireTimeMs(trigger.getNextFireTimeMs())
+                .lastRunId(trigger.getLastRunId())
+                .fireCount(trigger.getFireCount())
+                .misfireCount(trigger.getMisfireCount())
+                .overlapSkipCount(trigger.getOverlapSkipCount())
+                .build();
     }
 
     /**
@@ -82,74 +354,430 @@ public class WorkflowService {
      * @return 状态响应
      */
     public WorkflowStatusResponse getStatus(String runId) {
+        return getStatus(runId, null);
+    }
+
+    /**
+     * 获取工作流状态 (支持增量)
+     * 
+     * since 为空时返回全部节点；否则只返回序号 since 之后状态发生变化的节点，
+     * 大图轮询时避免重复序列化未变化的节点结果
+     * 
+     * @param runId 执行 ID
+     * @param since 上一次响应的 sequence (可为 null)
+     * @return 状态响应
+     */
+    public WorkflowStatusResponse getStatus(String runId, Long since) {
         WorkflowContext context = storageService.get(runId);
 
         if (context == null) {
+            ArchivedRun archived = storageService.getArchived(runId);
+            if (archived != null) {
+                return getStatus(archived, since);
+            }
             return WorkflowStatusResponse.builder()
                     .runId(runId)
                     .workflowStatus(WorkflowStatus.FAILED)
                     .build();
         }
 
+        // 先读序号再采集，采集期间的并发迁移会在下一次增量中再次返回
+        long sequence = context.getSequence();
+
+        if (since == null) {
+            return WorkflowStatusResponse.builder()
+                    .runId(runId)
+                    .workflowStatus(context.getWorkflowStatus())
+                    .sequence(sequence)
+                    .nodeStatuses(new HashMap<>(context.getNodeStatus()))
+                    .results(new HashMap<>(context.getResults()))
+                    .resultMemoryBytes(context.getResultMemoryBytes().get())
+                    .resultSpilledBytes(context.getResultSpilledBytes().get())
+                    .totalDurationMs(context.getTotalDurationMs())
+                    .build();
+        }
+
+        CompiledGraph graph = context.getGraph();
+        Map<String, NodeStatus> nodeStatuses = new HashMap<>();
+        Map<String, NodeResult> results = new HashMap<>();
+
+        for (int i = 0; i < graph.size(); i++) {
+            if (context.getNodeSequence(i) > since) {
+                String nodeId = graph.nodeId(i);
+                nodeStatuses.put(nodeId, context.getNodeStatus().get(nodeId));
+
+                NodeResult result = context.getResults().get(nodeId);
+                if (result != null) {
+                    results.put(nodeId, result);
+                }
+            }
+        }
+
         return WorkflowStatusResponse.builder()
                 .runId(runId)
                 .workflowStatus(context.getWorkflowStatus())
-                .nodeStatuses(new HashMap<>(context.getNodeStatus()))
-                .results(new HashMap<>(context.getResults()))
+                .sequence(sequence)
+                .delta(true)
+                .nodeStatuses(nodeStatuses)
+                .results(results)
+                .resultMemoryBytes(context.getResultMemoryBytes().get())
+                .resultSpilledBytes(context.getResultSpilledBytes().get())
                 .totalDurationMs(context.getTotalDurationMs())
                 .build();
     }
 
+    /**
+     * 已归档执行的状态 (执行已结束，序号不再变化)
+     */
+    private static WorkflowStatusResponse getStatus(ArchivedRun archived, Long since) {
+        WorkflowStatusResponse.WorkflowStatusResponseBuilder response = WorkflowStatusResponse.builder()
+                .runId(archived.getRunId())
+                .workflowStatus(archived.getWorkflowStatus())
+                .sequence(archived.getSequence())
+                .resultMemoryBytes(archived.getResultMemoryBytes())
+                .resultSpilledBytes(archived.getResultSpilledBytes())
+                .totalDurationMs(archived.getTotalDurationMs());
+
+        if (since == null) {
+            return response
+                    .nodeStatuses(archived.getNodeStatuses())
+                    .results(archived.getResults())
+                    .build();
+        }
+
+        CompiledGraph graph = archived.getGraph();
+        Map<String, NodeStatus> nodeStatuses = new HashMap<>();
+        Map<String, NodeResult> results = new HashMap<>();
+
+        for (int i = 0; i < graph.size(); i++) {
+            if (archived.nodeSequence(i) > since) {
+                String nodeId = graph.nodeId(i);
+                nodeStatuses.put(nodeId, archived.nodeStatus(i));
+
+                NodeResult result = archived.result(i);
+                if (result != null) {
+                    results.put(nodeId, result);
+                }
+            }
+        }
+
+        return response
+                .delta(true)
+                .nodeStatuses(nodeStatuses)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * 打开节点响应体 (内存或溢写文件)
+     * 
+     * @param runId  执行 ID
+     * @param nodeId 节点 ID
+     * @return 节点结果与响应体流，不存在返回 null
+     */
+    public NodeBody openNodeBody(String runId, String nodeId) throws IOException {
+        WorkflowContext context = storageService.get(runId);
+        NodeResult result;
+        if (context != null) {
+            result = context.getResults().get(nodeId);
+        } else {
+            ArchivedRun archived = storageService.getArchived(runId);
+            result = archived != null ? archived.result(nodeId) : null;
+        }
+        if (result == null) {
+            return null;
+        }
+
+        InputStream in = resultBodyStore.open(result);
+        return in != null ? new NodeBody(result, in) : null;
+    }
+
+    /**
+     * 节点响应体
+     */
+    @Value
+    public static class NodeBody {
+
+        NodeResult result;
+
+        InputStream stream;
+    }
+
+    /**
+     * 订阅工作流事件流 (Server-Sent Events)
+     * 
+     * 事件:
+     * - status: 订阅时的状态快照 (不含结果)，客户端可忽略 sequence 不大于快照序号的后续事件
+     * - node: 节点状态迁移
+     * - workflow: 工作流状态变化，进入 COMPLETED / FAILED / CANCELLED 后关闭连接
+     * 
+     * 客户端读取过慢、积压超过 workflow.events.subscriber-queue-capacity 时服务端关闭连接
+     * 
+     * @param runId 执行 ID
+     * @return SSE 连接，执行不存在时返回 null
+     */
+    public SseEmitter streamEvents(String runId) {
+        WorkflowContext context = storageService.get(runId);
+        if (context == null) {
+            ArchivedRun archived = storageService.getArchived(runId);
+            return archived != null ? streamArchived(archived) : null;
+        }
+
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+
+        Runnable unsubscribe = eventBus.subscribe(context, event -> {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(event.getSequence()))
+                        .name(event.getNodeId() != null ? "node" : "workflow")
+                        .data(event));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (event.getWorkflowStatus() != null && event.getWorkflowStatus().isTerminal()) {
+                emitter.complete();
+            }
+        }, emitter::complete);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(ex -> unsubscribe.run());
+
+        try {
+            WorkflowStatusResponse snapshot = WorkflowStatusResponse.builder()
+                    .runId(runId)
+                    .sequence(context.getSequence())
+                    .workflowStatus(context.getWorkflowStatus())
+                    .nodeStatuses(new HashMap<>(context.getNodeStatus()))
+                    .resultMemoryBytes(context.getResultMemoryBytes().get())
+                    .resultSpilledBytes(context.getResultSpilledBytes().get())
+                    .totalDurationMs(context.getTotalDurationMs())
+                    .build();
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(snapshot.getSequence()))
+                    .name("status")
+                    .data(snapshot));
+        } catch (IOException e) {
+            unsubscribe.run();
+            emitter.completeWithError(e);
+            return emitter;
+        }
+
+        if (context.isFinished()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    /**
+     * 已归档执行的事件流: 只发送状态快照后关闭连接
+     */
+    private static SseEmitter streamArchived(ArchivedRun archived) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        WorkflowStatusResponse snapshot = WorkflowStatusResponse.builder()
+                .runId(archived.getRunId())
+                .sequence(archived.getSequence())
+                .workflowStatus(archived.getWorkflowStatus())
+                .nodeStatuses(archived.getNodeStatuses())
+                .resultMemoryBytes(archived.getResultMemoryBytes())
+                .resultSpilledBytes(archived.getResultSpilledBytes())
+                .totalDurationMs(archived.getTotalDurationMs())
+                .build();
+        try {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(snapshot.getSequence()))
+                    .name("status")
+                    .data(snapshot));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
     /**
      * 处理异步回调
      * 
      * Feature C: Async Callbacks - 完整实现
      * 
+     * 通过 CallbackRegistry 原子认领回调 (O(1))，
+     * 重复回调、超时后到达的回调都会在认领时被忽略
+     * 
      * @param callbackId 回调 ID
      * @param payload    回调数据
      */
     public void handleCallback(String callbackId, String payload) {
         log.info("Received callback: callbackId={}", callbackId);
 
-        // 1. 使用 StorageService 查找对应的 context
-        WorkflowContext context = storageService.findByCallbackId(callbackId);
+        // 1. 认领回调，得到 runId 与节点 ID
+        CallbackRegistry.Registration registration = callbackRegistry.claim(callbackId);
 
-        if (context == null) {
-            log.warn("Callback ID not found: {}", callbackId);
+        if (registration == null) {
+            log.warn("Callback ID not found or already handled: {}", callbackId);
             return;
         }
 
-        // 2. 获取对应的节点 ID
-        String nodeId = context.getCallbackMap().get(callbackId);
+        // 2. 查找对应的 context
+        WorkflowContext context = storageService.get(registration.getRunId());
 
-        if (nodeId == null) {
-            log.warn("Node not found for callback ID: {}", callbackId);
+        if (context == null) {
+            log.warn("Workflow not found for callback ID: {}, runId={}", callbackId, registration.getRunId());
             return;
         }
 
+        String nodeId = registration.getNodeId();
         log.info("Resuming node {} for callback {}", nodeId, callbackId);
 
-        // 3. 从 context 中恢复 nodeMap 和 adjacencyList
-        // 这些数据已经在 DagEngine.executeWorkflow 时存储到 context 中
-        Map<String, Node> nodeMap = new HashMap<>(context.getNodeMap());
-        Map<String, List<String>> adjacencyList = new HashMap<>();
-        context.getAdjacencyList().forEach((key, value) -> adjacencyList.put(key, new ArrayList<>(value)));
-
-        // 4. 调用 DagEngine.resumeNode() 恢复执行
-        dagEngine.resumeNode(nodeId, payload, context, nodeMap, adjacencyList);
+        // 3. 调用 DagEngine.resumeNode() 恢复执行
+        // 图拓扑由 context 持有的 CompiledGraph 提供
+        dagEngine.resumeNode(nodeId, payload, context);
 
         log.info("Node {} resumed successfully", nodeId);
     }
 
+    /**
+     * 批量处理异步回调
+     * 
+     * 先逐条认领回调，再按执行分组，每个执行只查找一次上下文、
+     * 调用一次 DagEngine.resumeNodes (整组只做一次完成检测)
+     * 
+     * 认领后回调即从注册表移除，执行不存在或节点未能恢复的回调都计入 rejected，
+     * 每个输入的回调 ID 要么被恢复、要么出现在 rejected 中
+     * 
+     * @param callbacks 回调列表
+     * @return 处理结果
+     */
+    public BatchCallbackResponse handleCallbacks(List<CallbackRequest> callbacks) {
+        log.info("Received batch callback: size={}", callbacks.size());
+
+        List<String> rejected = new ArrayList<>();
+        Map<String, Map<String, String>> payloadsByRun = new HashMap<>();
+        Map<String, Map<String, String>> callbackIdsByRun = new HashMap<>();
+
+        // 1. 认领回调并按 runId 分组
+        for (CallbackRequest callback : callbacks) {
+            CallbackRegistry.Registration registration = callbackRegistry.claim(callback.getCallbackId());
+            if (registration == null) {
+                rejected.add(callback.getCallbackId());
+                continue;
+            }
+
+            String payload = callback.getPayload() != null ? callback.getPayload().toString() : null;
+            payloadsByRun.computeIfAbsent(registration.getRunId(), runId -> new LinkedHashMap<>())
+                    .put(registration.getNodeId(), payload);
+            callbackIdsByRun.computeIfAbsent(registration.getRunId(), runId -> new LinkedHashMap<>())
+                    .put(registration.getNodeId(), callback.getCallbackId());
+        }
+
+        // 2. 每个执行批量恢复
+        int resumed = 0;
+        for (Map.Entry<String, Map<String, String>> entry : payloadsByRun.entrySet()) {
+            Map<String, String> callbackIds = callbackIdsByRun.get(entry.getKey());
+            WorkflowContext context = storageService.get(entry.getKey());
+            if (context == null) {
+                log.warn("Workflow not found for batch callback: runId={}", entry.getKey());
+                rejected.addAll(callbackIds.values());
+                continue;
+            }
+
+            Set<String> resumedNodes = dagEngine.resumeNodes(entry.getValue(), context);
+            resumed += resumedNodes.size();
+            callbackIds.forEach((nodeId, callbackId) -> {
+                if (!resumedNodes.contains(nodeId)) {
+                    rejected.add(callbackId);
+                }
+            });
+        }
+
+        log.info("Batch callback handled: resumed={}, rejected={}", resumed, rejected.size());
+
+        return BatchCallbackResponse.builder()
+                .resumed(resumed)
+                .rejected(rejected)
+                .build();
+    }
+
+    /**
+     * 取消工作流执行
+     * 
+     * 中断在途请求、移出排队中的节点并作废等待中的回调，
+     * 在途节点结束后工作流置为 CANCELLED
+     * 
+     * @param runId 执行 ID
+     * @return 执行响应，执行不存在返回 null
+     */
+    public WorkflowRunResponse cancelWorkflow(String runId) {
+        WorkflowContext context = storageService.get(runId);
+        if (context == null) {
+            ArchivedRun archived = storageService.getArchived(runId);
+            return archived == null ? null : WorkflowRunResponse.builder()
+                    .runId(runId)
+                    .status(archived.getWorkflowStatus())
+                    .message("Workflow already finished")
+                    .build();
+        }
+
+        boolean cancelled = dagEngine.cancelWorkflow(context, "Workflow cancelled");
+        log.info("Cancel requested: runId={}, cancelled={}", runId, cancelled);
+
+        return WorkflowRunResponse.builder()
+                .runId(runId)
+                .status(context.getWorkflowStatus())
+                .message(cancelled ? "Workflow cancelled"
+                        : context.isFinished() ? "Workflow already finished" : "Workflow is already being cancelled")
+                .build();
+    }
+
     /**
      * 根据回调 ID 获取节点 ID
      * (用于 Controller)
      */
     public String getNodeByCallbackId(String callbackId) {
-        WorkflowContext context = storageService.findByCallbackId(callbackId);
-        if (context == null) {
-            return null;
+        CallbackRegistry.Registration registration = callbackRegistry.get(callbackId);
+        return registration != null ? registration.getNodeId() : null;
+    }
+
+    /**
+     * 回调超时检查
+     * 
+     * 到期的 CALLBACK 节点置为 FAILED，下游子树跳过
+     */
+    @Scheduled(fixedDelayString = "${workflow.executor.callback-sweep-interval-ms:1000}")
+    public void expireCallbacks() {
+        for (CallbackRegistry.Registration registration : callbackRegistry.pollExpired(System.currentTimeMillis())) {
+            WorkflowContext context = storageService.get(registration.getRunId());
+            if (context != null) {
+                dagEngine.expireCallback(registration.getNodeId(), context);
+            }
+        }
+    }
+
+    /**
+     * 执行截止时间检查
+     * 
+     * 到期的执行被取消 (在途请求的截止时间已包含执行截止时间，这里负责排队中与等待回调的节点)
+     */
+    @Scheduled(fixedDelayString = "${workflow.executor.deadline-sweep-interval-ms:1000}")
+    public void abortExpiredRuns() {
+        long nowMs = System.currentTimeMillis();
+        for (WorkflowContext context : storageService.getActiveContexts()) {
+            if (context.isFinished() || context.isCancelled()) {
+                continue;
+            }
+            long deadlineMs = dagEngine.runDeadlineMs(context);
+            if (deadlineMs > 0 && nowMs >= deadlineMs) {
+                dagEngine.cancelWorkflow(context, DagEngine.RUN_DEADLINE_EXCEEDED);
+            }
         }
-        return context.getCallbackMap().get(callbackId);
+    }
+
+    /**
+     * 集群心跳 (DISTRIBUTED 策略)
+     * 
+     * 续约本实例持有的节点租约，回收失联实例的节点
+     */
+    @Scheduled(fixedDelayString = "${workflow.cluster.heartbeat-interval-ms:5000}")
+    public void heartbeatCluster() {
+        dagEngine.heartbeatCluster();
     }
 }
@@ -0,0 +1,648 @@
+package com.gengzi.workflow.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.model.BodyRef;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 已结束执行的归档 (不可变)
+ *
+ * 执行结束后不再变化，WorkflowContext 中为并发调度准备的结构 (各 ConcurrentHashMap、原子数组、
+ * 许可与监听器) 都不再需要，归档只保留查询所需的数据，按节点下标列式存放:
+ * - 节点 ID 不单独保存，通过共享的 CompiledGraph 按下标取得
+ * - 节点状态为 NodeStatus 序号的 byte[]
+ * - 结果的数值字段分列存放在 int[] / long[] 中，时间保存为毫秒时间戳
+ * - 结果的文本字段 (响应体、错误信息、回调 ID、子执行 ID) 拼接为一个字符串，按偏移截取
+ * - 溢写引用与响应头很少出现，按下标稀疏存放
+ *
+ * 查询时按需生成 NodeResult，归档本身不持有 NodeResult 实例
+ *
+ * 二进制格式 (writeTo / readFrom) 用于把归档写入磁盘后冷读取，图定义以 JSON 内嵌，读取时重新编译 (命中编译缓存)
+ *
+ * @author gengzi
+ */
+public final class ArchivedRun {
+
+    private static final int MAGIC = 0x57464152;
+    private static final int VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final NodeStatus[] NODE_STATUSES = NodeStatus.values();
+    private static final WorkflowStatus[] WORKFLOW_STATUSES = WorkflowStatus.values();
+
+    /**
+     * 未设置的时间
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * 每个节点的 long 列: 开始时间、结束时间、耗时、排队耗时、请求耗时、首个请求发出时间、响应体大小
+     */
+    private static final int LONGS = 7;
+
+    /**
+     * 每个节点的 int 列: 状态码、请求次数、元素总数、失败元素数
+     */
+    private static final int INTS = 4;
+
+    /**
+     * 每个节点的文本列: 响应体、错误信息、回调 ID、子执行 ID
+     */
+    private static final int TEXTS = 4;
+
+    private final String runId;
+    private final CompiledGraph graph;
+    private final WorkflowStatus workflowStatus;
+    private final long startTimeMs;
+    private final long finishTimeMs;
+    private final long sequence;
+    private final long resultMemoryBytes;
+    private final long resultSpilledBytes;
+    private final String cancelReason;
+
+    /**
+     * 节点状态序号
+     */
+    private final byte[] statuses;
+
+    /**
+     * 节点最后一次状态迁移的序号
+     */
+    private final long[] nodeSequences;
+
+    /**
+     * 有结果的节点
+     */
+    private final BitSet hasResult;
+
+    private final long[] longs;
+    private final int[] ints;
+
+    /**
+     * 文本列拼接结果，第 k 个文本为 text[textOffsets[k] .. textOffsets[k + 1])，textNulls 中的为 null
+     */
+    private final String text;
+    private final int[] textOffsets;
+    private final BitSet textNulls;
+
+    /**
+     * 溢写引用 (没有溢写的结果时为 null)
+     */
+    private final BodyRef[] bodyRefs;
+
+    /**
+     * 响应头 (没有响应头时为 null)
+     */
+    private final List<Map<String, String>> headers;
+
+    /**
+     * 子执行归档
+     * Key: SUB_WORKFLOW 节点 ID
+     */
+    private final Map<String, ArchivedRun> children;
+
+    private ArchivedRun(String runId, CompiledGraph graph, WorkflowStatus workflowStatus, long startTimeMs,
+            long finishTimeMs, long sequence, long resultMemoryBytes, long resultSpilledBytes, String cancelReason,
+            byte[] statuses, long[] nodeSequences, BitSet hasResult, long[] longs, int[] ints, String text,
+            int[] textOffsets, BitSet textNulls, BodyRef[] bodyRefs, List<Map<String, String>> headers,
+            Map<String, ArchivedRun> children) {
+        this.runId = runId;
+        this.graph = graph;
+        this.workflowStatus = workflowStatus;
+        this.startTimeMs = startTimeMs;
+        this.finishTimeMs = finishTimeMs;
+        this.sequence = sequence;
+        this.resultMemoryBytes = resultMemoryBytes;
+        this.resultSpilledBytes = resultSpilledBytes;
+        this.cancelReason = cancelReason;
+        this.statuses = statuses;
+        this.nodeSequences = nodeSequences;
+        this.hasResult = hasResult;
+        this.longs = longs;
+        this.ints = ints;
+        this.text = text;
+        this.textOffsets = textOffsets;
+        this.textNulls = textNulls;
+        this.bodyRefs = bodyRefs;
+        this.headers = headers;
+        this.children = children;
+    }
+
+    /**
+     * 归档已结束的执行 (含子执行)
+     *
+     * @param context 上下文 (isFinished 为 true)
+     * @return 归档
+     * @throws IllegalStateException 执行未结束
+     */
+    public static ArchivedRun of(WorkflowContext context) {
+        if (!context.isFinished()) {
+            throw new IllegalStateException("Workflow " + context.getRunId() + " is not finished");
+        }
+
+        CompiledGraph graph = context.getGraph();
+        int n = graph.size();
+        byte[] statuses = new byte[n];
+        long[] nodeSequences = new long[n];
+        BitSet hasResult = new BitSet(n);
+        long[] longs = new long[n * LONGS];
+        int[] ints = new int[n * INTS];
+        StringBuilder text = new StringBuilder();
+        int[] textOffsets = new int[n * TEXTS + 1];
+        BitSet textNulls = new BitSet(n * TEXTS);
+        BodyRef[] bodyRefs = null;
+        List<Map<String, String>> headers = null;
+
+        for (int i = 0; i < n; i++) {
+            String nodeId = graph.nodeId(i);
+            NodeStatus status = context.getNodeStatus().get(nodeId);
+            statuses[i] = (byte) (status != null ? status : NodeStatus.PENDING).ordinal();
+            nodeSequences[i] = context.getNodeSequence(i);
+
+            NodeResult result = context.getResults().get(nodeId);
+            String[] texts = new String[TEXTS];
+            if (result != null) {
+                hasResult.set(i);
+                int l = i * LONGS;
+                longs[l] = toMillis(result.getStartTime());
+                longs[l + 1] = toMillis(result.getEndTime());
+                longs[l + 2] = result.getDurationMs();
+                longs[l + 3] = result.getQueueWaitMs();
+                longs[l + 4] = result.getRequestMs();
+                longs[l + 5] = result.getRequestSentAtMs();
+                longs[l + 6] = result.getBodySize();
+                int c = i * INTS;
+                ints[c] = result.getStatusCode();
+                ints[c + 1] = result.getAttempts();
+                ints[c + 2] = result.getItemCount();
+                ints[c + 3] = result.getFailedItems();
+                texts[0] = result.getBody();
+                texts[1] = result.getErrorMessage();
+                texts[2] = result.getCallbackId();
+                texts[3] = result.getChildRunId();
+
+                if (result.getBodyRef() != null) {
+                    if (bodyRefs == null) {
+                        bodyRefs = new BodyRef[n];
+                    }
+                    bodyRefs[i] = result.getBodyRef();
+                }
+                if (result.getHeaders() != null && !result.getHeaders().isEmpty()) {
+                    if (headers == null) {
+                        headers = new ArrayList<>(Collections.nCopies(n, null));
+                    }
+                    headers.set(i, compact(result.getHeaders()));
+                }
+            }
+
+            for (int t = 0; t < TEXTS; t++) {
+                int k = i * TEXTS + t;
+                if (texts[t] == null) {
+                    textNulls.set(k);
+                } else {
+                    text.append(texts[t]);
+                }
+                textOffsets[k + 1] = text.length();
+            }
+        }
+
+        Map<String, ArchivedRun> children = Collections.emptyMap();
+        if (!context.getChildren().isEmpty()) {
+            children = new HashMap<>();
+            for (Map.Entry<String, WorkflowContext> child : context.getChildren().entrySet()) {
+                if (child.getValue().isFinished()) {
+                    children.put(child.getKey(), of(child.getValue()));
+                }
+            }
+        }
+
+        return new ArchivedRun(context.getRunId(), graph, context.getWorkflowStatus(), context.getStartTimeMs(),
+                context.getFinishTimeMs(), context.getSequence(), context.getResultMemoryBytes().get(),
+                context.getResultSpilledBytes().get(), context.getCancelReason(), statuses, nodeSequences, hasResult,
+                longs, ints, text.toString(), textOffsets, textNulls, bodyRefs, headers, children);
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public CompiledGraph getGraph() {
+        return graph;
+    }
+
+    public WorkflowStatus getWorkflowStatus() {
+        return workflowStatus;
+    }
+
+    public long getStartTimeMs() {
+        return startTimeMs;
+    }
+
+    public long getFinishTimeMs() {
+        return finishTimeMs;
+    }
+
+    /**
+     * 最终状态序号
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getResultMemoryBytes() {
+        return resultMemoryBytes;
+    }
+
+    public long getResultSpilledBytes() {
+        return resultSpilledBytes;
+    }
+
+    public String getCancelReason() {
+        return cancelReason;
+    }
+
+    public long getTotalDurationMs() {
+        return finishTimeMs - startTimeMs;
+    }
+
+    public NodeStatus nodeStatus(int index) {
+        return NODE_STATUSES[statuses[index]];
+    }
+
+    public long nodeSequence(int index) {
+        return nodeSequences[index];
+    }
+
+    /**
+     * 节点结果 (每次调用生成新实例)
+     *
+     * @return 结果，节点没有结果返回 null
+     */
+    public NodeResult result(int index) {
+        if (!hasResult.get(index)) {
+            return null;
+        }
+
+        int l = index * LONGS;
+        int c = index * INTS;
+        int t = index * TEXTS;
+        return NodeResult.builder()
+                .statusCode(ints[c])
+                .body(text(t))
+                .bodyRef(bodyRefs != null ? bodyRefs[index] : null)
+                .bodySize(longs[l + 6])
+                .headers(headers != null && headers.get(index) != null ? new HashMap<>(headers.get(index)) : null)
+                .startTime(toTime(longs[l]))
+                .endTime(toTime(longs[l + 1]))
+                .durationMs(longs[l + 2])
+                .queueWaitMs(longs[l + 3])
+                .requestMs(longs[l + 4])
+                .requestSentAtMs(longs[l + 5])
+                .attempts(ints[c + 1])
+                .itemCount(ints[c + 2])
+                .failedItems(ints[c + 3])
+                .errorMessage(text(t + 1))
+                .callbackId(text(t + 2))
+                .childRunId(text(t + 3))
+                .build();
+    }
+
+    /**
+     * 节点结果
+     *
+     * @return 结果，节点不存在或没有结果返回 null
+     */
+    public NodeResult result(String nodeId) {
+        int index = graph.indexOf(nodeId);
+        return index >= 0 ? result(index) : null;
+    }
+
+    /**
+     * 各节点状态 (按节点定义顺序)
+     */
+    public Map<String, NodeStatus> getNodeStatuses() {
+        Map<String, NodeStatus> nodeStatuses = new LinkedHashMap<>(statuses.length * 4 / 3 + 1);
+        for (int i = 0; i < statuses.length; i++) {
+            nodeStatuses.put(graph.nodeId(i), nodeStatus(i));
+        }
+        return nodeStatuses;
+    }
+
+    /**
+     * 各节点结果 (按节点定义顺序)
+     */
+    public Map<String, NodeResult> getResults() {
+        Map<String, NodeResult> results = new LinkedHashMap<>(hasResult.cardinality() * 4 / 3 + 1);
+        for (int i = hasResult.nextSetBit(0); i >= 0; i = hasResult.nextSetBit(i + 1)) {
+            results.put(graph.nodeId(i), result(i));
+        }
+        return results;
+    }
+
+    /**
+     * 按 runId 查找后代执行的归档
+     *
+     * @param descendantRunId 后代执行 ID ("父 runId:节点 ID"...)
+     * @return 归档，不存在返回 null
+     */
+    public ArchivedRun findDescendant(String descendantRunId) {
+        for (ArchivedRun child : children.values()) {
+            if (child.runId.equals(descendantRunId)) {
+                return child;
+            }
+            if (descendantRunId.startsWith(child.runId + WorkflowContext.CHILD_SEPARATOR)) {
+                ArchivedRun found = child.findDescendant(descendantRunId);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 不可变紧凑副本 (忽略空的键值)
+     */
+    private static Map<String, String> compact(Map<String, String> map) {
+        Map<String, String> copy = new HashMap<>(map.size() * 4 / 3 + 1);
+        map.forEach((key, value) -> {
+            if (key != null && value != null) {
+                copy.put(key, value);
+            }
+        });
+        return Map.copyOf(copy);
+    }
+
+    private String text(int k) {
+        return textNulls.get(k) ? null : text.substring(textOffsets[k], textOffsets[k + 1]);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : NO_TIME;
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return millis != NO_TIME ? LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()) : null;
+    }
+
+    /**
+     * 写出二进制格式
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeBytes(out, MAPPER.writeValueAsBytes(graph.getDefinition()));
+        writeBody(out);
+    }
+
+    private void writeBody(DataOutput out) throws IOException {
+        out.writeUTF(runId);
+        out.writeByte(workflowStatus.ordinal());
+        out.writeLong(startTimeMs);
+        out.writeLong(finishTimeMs);
+        out.writeLong(sequence);
+        out.writeLong(resultMemoryBytes);
+        out.writeLong(resultSpilledBytes);
+        writeString(out, cancelReason);
+
+        int n = statuses.length;
+        out.writeInt(n);
+        out.write(statuses);
+        for (long value : nodeSequences) {
+            out.writeLong(value);
+        }
+        writeBits(out, hasResult);
+        for (long value : longs) {
+            out.writeLong(value);
+        }
+        for (int value : ints) {
+            out.writeInt(value);
+        }
+        writeBytes(out, text.getBytes(StandardCharsets.UTF_8));
+        for (int offset : textOffsets) {
+            out.writeInt(offset);
+        }
+        writeBits(out, textNulls);
+
+        out.writeInt(bodyRefs != null ? n : 0);
+        for (int i = 0; bodyRefs != null && i < n; i++) {
+            BodyRef ref = bodyRefs[i];
+            out.writeBoolean(ref != null);
+            if (ref != null) {
+                writeString(out, ref.getPath());
+                out.writeLong(ref.getStoredBytes());
+                out.writeBoolean(ref.isCompressed());
+                writeString(out, ref.getCharset());
+            }
+        }
+
+        out.writeInt(headers != null ? n : 0);
+        for (int i = 0; headers != null && i < n; i++) {
+            Map<String, String> nodeHeaders = headers.get(i);
+            out.writeInt(nodeHeaders != null ? nodeHeaders.size() : -1);
+            if (nodeHeaders != null) {
+                for (Map.Entry<String, String> header : nodeHeaders.entrySet()) {
+                    writeString(out, header.getKey());
+                    writeString(out, header.getValue());
+                }
+            }
+        }
+
+        out.writeInt(children.size());
+        for (Map.Entry<String, ArchivedRun> child : children.entrySet()) {
+            out.writeUTF(child.getKey());
+            writeBytes(out, MAPPER.writeValueAsBytes(child.getValue().graph.getDefinition()));
+            child.getValue().writeBody(out);
+        }
+    }
+
+    /**
+     * 读取二进制格式
+     *
+     * @param in       输入
+     * @param compiler 图定义 -> 编译结果
+     * @return 归档
+     * @throws IOException 格式错误或读取失败
+     */
+    public static ArchivedRun readFrom(DataInput in, Function<GraphRequest, CompiledGraph> compiler)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a workflow archive");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported workflow archive version: " + version);
+        }
+        return readBody(in, compiler.apply(MAPPER.readValue(readBytes(in), GraphRequest.class)), compiler);
+    }
+
+    private static ArchivedRun readBody(DataInput in, CompiledGraph graph,
+            Function<GraphRequest, CompiledGraph> compiler) throws IOException {
+        String runId = in.readUTF();
+        int workflowStatus = in.readUnsignedByte();
+        if (workflowStatus >= WORKFLOW_STATUSES.length) {
+            throw new IOException("Archive of " + runId + " has unknown workflow status " + workflowStatus);
+        }
+        long startTimeMs = in.readLong();
+        long finishTimeMs = in.readLong();
+        long sequence = in.readLong();
+        long resultMemoryBytes = in.readLong();
+        long resultSpilledBytes = in.readLong();
+        String cancelReason = readString(in);
+
+        int n = in.readInt();
+        if (n != graph.size()) {
+            throw new IOException("Archive of " + runId + " has " + n + " nodes, graph has " + graph.size());
+        }
+        byte[] statuses = new byte[n];
+        in.readFully(statuses);
+        for (int i = 0; i < n; i++) {
+            if (statuses[i] < 0 || statuses[i] >= NODE_STATUSES.length) {
+                throw new IOException("Archive of " + runId + " has unknown status " + statuses[i] + " for node " + i);
+            }
+        }
+        long[] nodeSequences = new long[n];
+        for (int i = 0; i < n; i++) {
+            nodeSequences[i] = in.readLong();
+        }
+        BitSet hasResult = readBits(in);
+        long[] longs = new long[n * LONGS];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = in.readLong();
+        }
+        int[] ints = new int[n * INTS];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = in.readInt();
+        }
+        String text = new String(readBytes(in), StandardCharsets.UTF_8);
+        int[] textOffsets = new int[n * TEXTS + 1];
+        for (int i = 0; i < textOffsets.length; i++) {
+            textOffsets[i] = in.readInt();
+        }
+        BitSet textNulls = readBits(in);
+
+        BodyRef[] bodyRefs = null;
+        if (readColumnSize(in, n, runId) > 0) {
+            bodyRefs = new BodyRef[n];
+            for (int i = 0; i < n; i++) {
+                if (in.readBoolean()) {
+                    bodyRefs[i] = new BodyRef(readString(in), in.readLong(), in.readBoolean(), readString(in));
+                }
+            }
+        }
+
+        List<Map<String, String>> headers = null;
+        if (readColumnSize(in, n, runId) > 0) {
+            headers = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int size = in.readInt();
+                if (size < -1) {
+                    throw new IOException("Archive of " + runId + " has " + size + " headers for node " + i);
+                }
+                Map<String, String> nodeHeaders = null;
+                if (size >= 0) {
+                    // 容量不信任文件中的数量，按实际读到的条目扩容
+                    nodeHeaders = new HashMap<>();
+                    for (int h = 0; h < size; h++) {
+                        nodeHeaders.put(readString(in), readString(in));
+                    }
+                    nodeHeaders = compact(nodeHeaders);
+                }
+                headers.add(nodeHeaders);
+            }
+        }
+
+        int childCount = in.readInt();
+        if (childCount < 0 || childCount > n) {
+            throw new IOException(
+                    "Archive of " + runId + " has " + childCount + " children, graph has " + n + " nodes");
+        }
+        Map<String, ArchivedRun> children = childCount > 0 ? new HashMap<>() : Collections.emptyMap();
+        for (int i = 0; i < childCount; i++) {
+            String nodeId = in.readUTF();
+            CompiledGraph childGraph = compiler.apply(MAPPER.readValue(readBytes(in), GraphRequest.class));
+            children.put(nodeId, readBody(in, childGraph, compiler));
+        }
+
+        return new ArchivedRun(runId, graph, WORKFLOW_STATUSES[workflowStatus], startTimeMs, finishTimeMs, sequence,
+                resultMemoryBytes, resultSpilledBytes, cancelReason, statuses, nodeSequences, hasResult, longs, ints,
+                text, textOffsets, textNulls, bodyRefs, headers, children);
+    }
+
+    /**
+     * 读取可选列的长度 (写入时为 0 或节点数)，在按长度分配数组前校验
+     */
+    private static int readColumnSize(DataInput in, int n, String runId) throws IOException {
+        int size = in.readInt();
+        if (size != 0 && size != n) {
+            throw new IOException("Archive of " + runId + " has a column of " + size + " nodes, graph has " + n);
+        }
+        return size;
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length in workflow archive: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? new String(readBytes(in), StandardCharsets.UTF_8) : null;
+    }
+
+    private static void writeBits(DataOutput out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBits(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length in workflow archive: " + length);
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
@@ -0,0 +1,476 @@
+package com.gengzi.workflow.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gengzi.workflow.config.WorkflowStorageProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地文件持久化
+ *
+ * 文件布局 (workflow.storage.dir):
+ * - workflow.log: 追加日志，每行一条 WorkflowLogRecord (JSON)
+ * - workflow.snapshot: 快照，每行一个 RunRecord (JSON)
+ *
+ * 写后缓冲 (write-behind):
+ * - append 只入队，不做 I/O
+ * - 单线程按 flushIntervalMs 批量写出；同一批中同一节点的多次迁移只保留最后一次
+ *
+ * 快照压缩:
+ * - 每隔 snapshotIntervalMs 检查一次，日志达到 snapshotMinLogBytes 时将 快照 + 日志 折叠为新快照，
+ * 丢弃超过 retentionMs 的已结束执行 (日志较小时不重写快照)
+ * - 新快照原子替换旧快照后截断日志
+ *
+ * 冷读取:
+ * - 内存中维护已持久化 (未过期) 的执行 ID 索引，不存在的执行直接返回，不读取文件
+ * - 同时维护每个执行在快照中的行偏移与在日志中的各行偏移，冷读取按偏移定位，只读该执行的行
+ * - 索引在首次恢复或冷读取时由快照与日志建立，之后随写出、快照压缩维护
+ *
+ * 所有文件操作都在刷盘线程上串行执行
+ *
+ * @author gengzi
+ */
+@Slf4j
+public class FileWorkflowPersistence implements WorkflowPersistence {
+
+    private static final String LOG_FILE = "workflow.log";
+    private static final String SNAPSHOT_FILE = "workflow.snapshot";
+
+    private final WorkflowStorageProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Path logPath;
+    private final Path snapshotPath;
+
+    /**
+     * 待写出记录
+     */
+    private final ConcurrentLinkedQueue<WorkflowLogRecord> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 刷盘线程 (串行化所有文件操作)
+     */
+    private final ScheduledExecutorService flusher;
+
+    private final FileChannel logChannel;
+
+    private long lastSnapshotMs;
+
+    /**
+     * 已持久化 (未过期) 的执行 ID
+     */
+    private final Set<String> runIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * runIds 与偏移索引是否已包含文件中的全部执行 (之前只包含本进程启动的执行)
+     */
+    private volatile boolean indexed;
+
+    /**
+     * 执行 ID -> 快照中该执行所在行的字节偏移 (只在刷盘线程访问)
+     */
+    private Map<String, Long> snapshotIndex = new HashMap<>();
+
+    /**
+     * 执行 ID -> 日志中该执行各行的字节偏移 (只在刷盘线程访问)
+     */
+    private Map<String, Offsets> logIndex = new HashMap<>();
+
+    public FileWorkflowPersistence(WorkflowStorageProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+
+        Path dir = Paths.get(properties.getDir());
+        this.logPath = dir.resolve(LOG_FILE);
+        this.snapshotPath = dir.resolve(SNAPSHOT_FILE);
+
+        try {
+            Files.createDirectories(dir);
+            this.logChannel = FileChannel.open(logPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open workflow log: " + logPath, e);
+        }
+
+        this.lastSnapshotMs = System.currentTimeMillis();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "workflow-storage-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushSafely,
+                properties.getFlushIntervalMs(), properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+
+        log.info("File workflow persistence opened: {}", dir.toAbsolutePath());
+    }
+
+    @Override
+    public boolean isDurable() {
+        return true;
+    }
+
+    @Override
+    public void append(WorkflowLogRecord record) {
+        if (record.getType() == WorkflowLogRecord.Type.STARTED) {
+            runIds.add(record.getRunId());
+        }
+        pending.offer(record);
+    }
+
+    @Override
+    public void flush() {
+        runOnFlusher(() -> {
+            writePending();
+            return null;
+        });
+    }
+
+    @Override
+    public List<RunRecord> recover() {
+        return runOnFlusher(() -> {
+            writePending();
+            return new ArrayList<>(readAll().values());
+        });
+    }
+
+    @Override
+    public RunRecord load(String runId) {
+        if (!indexed) {
+            runOnFlusher(() -> {
+                if (!indexed) {
+                    writePending();
+                    readAll();
+                }
+                return null;
+            });
+        }
+        if (!runIds.contains(runId)) {
+            return null;
+        }
+
+        return runOnFlusher(() -> {
+            writePending();
+            return readRun(runId);
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            flusher.shutdown();
+            try {
+                logChannel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close workflow log", e);
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            writePending();
+
+            if (System.currentTimeMillis() - lastSnapshotMs >= properties.getSnapshotIntervalMs()) {
+                if (logChannel.size() >= properties.getSnapshotMinLogBytes()) {
+                    compact();
+                } else {
+                    lastSnapshotMs = System.currentTimeMillis();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Workflow storage flush failed", e);
+        }
+    }
+
+    /**
+     * 批量写出缓冲记录
+     *
+     * 同一执行同一节点的 NODE 记录只保留最后一次 (移动到最后位置，保证与 CHECKPOINT 的先后关系)
+     */
+    private void writePending() throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<String, WorkflowLogRecord> batch = new LinkedHashMap<>();
+        long sequence = 0;
+        WorkflowLogRecord record;
+        while ((record = pending.poll()) != null) {
+            String key = record.getType() == WorkflowLogRecord.Type.NODE
+                    ? record.getRunId() + '\u0000' + record.getNodeId()
+                    : "#" + sequence++;
+            batch.remove(key);
+            batch.put(key, record);
+        }
+
+        long position = logChannel.size();
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (WorkflowLogRecord item : batch.values()) {
+            logIndex.computeIfAbsent(item.getRunId(), key -> new Offsets()).add(position + lines.size());
+            lines.write(objectMapper.writeValueAsBytes(item));
+            lines.write('\n');
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while (buffer.hasRemaining()) {
+            logChannel.write(buffer);
+        }
+        if (properties.isFsync()) {
+            logChannel.force(false);
+        }
+
+        log.debug("Flushed {} workflow log records", batch.size());
+    }
+
+    /**
+     * 快照压缩: 快照 + 日志 -> 新快照，然后截断日志
+     */
+    private void compact() throws IOException {
+        Map<String, RunRecord> runs = readAll();
+
+        long expireBefore = System.currentTimeMillis() - properties.getRetentionMs();
+        List<String> expired = new ArrayList<>();
+        runs.values().removeIf(run -> {
+            if (run.isFinished() && run.getFinishTimeMs() < expireBefore) {
+                expired.add(run.getRunId());
+                return true;
+            }
+            return false;
+        });
+
+        Path tmpPath = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        Map<String, Long> offsets = new HashMap<>(runs.size() * 4 / 3 + 1);
+        long position = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+            for (RunRecord run : runs.values()) {
+                byte[] line = objectMapper.writeValueAsBytes(run);
+                offsets.put(run.getRunId(), position);
+                out.write(line);
+                out.write('\n');
+                position += line.length + 1;
+            }
+        }
+        Files.move(tmpPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logChannel.truncate(0);
+        if (properties.isFsync()) {
+            logChannel.force(true);
+        }
+
+        snapshotIndex = offsets;
+        logIndex = new HashMap<>();
+        expired.forEach(runIds::remove);
+
+        lastSnapshotMs = System.currentTimeMillis();
+        log.info("Workflow storage compacted: {} runs in snapshot", runs.size());
+    }
+
+    /**
+     * 读取快照与日志并折叠，同时重建执行 ID 与偏移索引
+     */
+    private Map<String, RunRecord> readAll() throws IOException {
+        Map<String, RunRecord> runs = new LinkedHashMap<>();
+        Map<String, Long> snapshotOffsets = new HashMap<>();
+        Map<String, Offsets> logOffsets = new HashMap<>();
+
+        forEachLine(snapshotPath, (offset, line) -> {
+            RunRecord run = parse(line, RunRecord.class);
+            if (run != null) {
+                runs.put(run.getRunId(), run);
+                snapshotOffsets.put(run.getRunId(), offset);
+            }
+        });
+
+        forEachLine(logPath, (offset, line) -> {
+            WorkflowLogRecord record = parse(line, WorkflowLogRecord.class);
+            if (record == null) {
+                return;
+            }
+
+            RunRecord run = runs.get(record.getRunId());
+            if (run == null) {
+                if (record.getType() != WorkflowLogRecord.Type.STARTED) {
+                    // 执行已在快照压缩时过期丢弃
+                    return;
+                }
+                run = new RunRecord();
+                runs.put(record.getRunId(), run);
+            }
+            run.apply(record);
+            logOffsets.computeIfAbsent(record.getRunId(), key -> new Offsets()).add(offset);
+        });
+
+        snapshotIndex = snapshotOffsets;
+        logIndex = logOffsets;
+        runIds.addAll(runs.keySet());
+        indexed = true;
+        return runs;
+    }
+
+    /**
+     * 按偏移索引读取单个执行 (快照中的一行 + 日志中该执行的各行)
+     */
+    private RunRecord readRun(String runId) throws IOException {
+        RunRecord run = null;
+
+        Long snapshotOffset = snapshotIndex.get(runId);
+        if (snapshotOffset != null) {
+            try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+                run = parse(readLineAt(channel, snapshotOffset), RunRecord.class);
+            }
+        }
+
+        Offsets offsets = logIndex.get(runId);
+        if (offsets != null) {
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                for (int i = 0; i < offsets.size; i++) {
+                    WorkflowLogRecord record = parse(readLineAt(channel, offsets.values[i]), WorkflowLogRecord.class);
+                    if (record == null || !runId.equals(record.getRunId())) {
+                        continue;
+                    }
+                    if (run == null) {
+                        if (record.getType() != WorkflowLogRecord.Type.STARTED) {
+                            continue;
+                        }
+                        run = new RunRecord();
+                    }
+                    run.apply(record);
+                }
+            }
+        }
+
+        return run;
+    }
+
+    /**
+     * 逐行读取文件，同时给出每行起始的字节偏移 (文件不存在时不读取)
+     */
+    private static void forEachLine(Path path, LineConsumer consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long position = 0;
+            long lineStart = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    consumer.accept(lineStart, line.toString(StandardCharsets.UTF_8));
+                    line.reset();
+                    lineStart = position;
+                } else {
+                    line.write(b);
+                }
+            }
+            if (line.size() > 0) {
+                consumer.accept(lineStart, line.toString(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * 读取从指定偏移开始的一行 (不含换行符)
+     */
+    private static String readLineAt(FileChannel channel, long offset) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long position = offset;
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            position += buffer.limit();
+            buffer.clear();
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 解析一行 JSON，损坏的行 (如崩溃时写了一半) 跳过
+     */
+    private <T> T parse(String line, Class<T> type) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(line, type);
+        } catch (IOException e) {
+            log.warn("Skipping corrupt workflow storage line: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> T runOnFlusher(IoTask<T> task) {
+        try {
+            return flusher.submit(task::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while accessing workflow storage", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Workflow storage access failed", e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoTask<T> {
+        T run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface LineConsumer {
+        void accept(long offset, String line) throws IOException;
+    }
+
+    /**
+     * 可增长的偏移数组
+     */
+    private static final class Offsets {
+
+        private long[] values = new long[4];
+
+        private int size;
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.gengzi.workflow.storage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 仅内存模式 (不落盘，重启后执行全部丢失)
+ * 
+ * @author gengzi
+ */
+public class MemoryWorkflowPersistence implements WorkflowPersistence {
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    @Override
+    public void append(WorkflowLogRecord record) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public List<RunRecord> recover() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public RunRecord load(String runId) {
+        return null;
+    }
+}
@@ -0,0 +1,280 @@
+package com.gengzi.workflow.storage;
+
+import com.gengzi.workflow.config.ResultStoreProperties;
+import com.gengzi.workflow.model.BodyRef;
+import com.gengzi.workflow.model.NodeResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 节点响应体存储
+ *
+ * 写入:
+ * - 先读取至多 inlineThresholdBytes + 1 字节到内存
+ * - 读完则作为字符串保存在 NodeResult.body
+ * - 未读完则把已读部分与剩余流一起写入文件 (可选 GZIP)，NodeResult 只保留 BodyRef，
+ * 整个过程内存占用不超过阈值
+ *
+ * 逐步生成的响应体 (如 MAP 汇总结果) 通过 newOutput 写入，同样在超过阈值后溢写
+ *
+ * 读取:
+ * - open / openReader / read 对内存与文件两种形式透明，文件按需打开
+ *
+ * @author gengzi
+ */
+@Slf4j
+@Component
+public class ResultBodyStore {
+
+    private static final String FILE_SUFFIX = ".body";
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final ResultStoreProperties properties;
+    private final Path dir;
+
+    public ResultBodyStore(ResultStoreProperties properties) {
+        this.properties = properties;
+        this.dir = Paths.get(properties.getDir());
+    }
+
+    /**
+     * 保存响应体到结果中
+     *
+     * @param in      响应体流 (由调用方关闭)
+     * @param charset 字符集
+     * @param result  目标结果 (设置 body 或 bodyRef，以及 bodySize)
+     */
+    public void store(InputStream in, Charset charset, NodeResult result) throws IOException {
+        int threshold = properties.getInlineThresholdBytes();
+        byte[] head = in.readNBytes(threshold + 1);
+
+        if (head.length <= threshold) {
+            result.setBody(new String(head, charset));
+            result.setBodySize(head.length);
+            return;
+        }
+
+        Files.createDirectories(dir);
+        boolean compress = properties.isCompress();
+        Path file = dir.resolve(UUID.randomUUID() + FILE_SUFFIX + (compress ? GZIP_SUFFIX : ""));
+
+        long size = head.length;
+        try (OutputStream out = newOutput(file, compress)) {
+            out.write(head);
+            size += in.transferTo(out);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        result.setBodyRef(BodyRef.builder()
+                .path(file.toString())
+                .storedBytes(Files.size(file))
+                .compressed(compress)
+                .charset(charset.name())
+                .build());
+        result.setBodySize(size);
+
+        log.debug("Spilled response body to {}: {} bytes", file, size);
+    }
+
+    /**
+     * 新建逐步写入的响应体输出 (UTF-8)
+     *
+     * 写入内容先缓存在内存中，超过 inlineThresholdBytes 后转为写入溢写文件，
+     * 写完后调用 finish 设置到结果中
+     *
+     * @return 响应体输出 (由调用方 finish 或 abort)
+     */
+    public BodyOutput newOutput() {
+        return new BodyOutput();
+    }
+
+    /**
+     * 打开响应体流
+     *
+     * @param result 节点结果
+     * @return 响应体流，无响应体返回 null
+     */
+    public InputStream open(NodeResult result) throws IOException {
+        BodyRef ref = result.getBodyRef();
+        if (ref == null) {
+            return result.getBody() != null
+                    ? new ByteArrayInputStream(result.getBody().getBytes(StandardCharsets.UTF_8))
+                    : null;
+        }
+
+        InputStream in = Files.newInputStream(Paths.get(ref.getPath()));
+        return ref.isCompressed() ? new GZIPInputStream(in) : in;
+    }
+
+    /**
+     * 打开响应体字符流 (按溢写时记录的字符集解码)
+     *
+     * @param result 节点结果
+     * @return 响应体字符流，无响应体返回 null
+     */
+    public Reader openReader(NodeResult result) throws IOException {
+        InputStream in = open(result);
+        if (in == null) {
+            return null;
+        }
+        BodyRef ref = result.getBodyRef();
+        return new InputStreamReader(in, ref != null ? Charset.forName(ref.getCharset()) : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取完整响应体 (溢写的响应体会整体加载到内存，只在确实需要内容时调用)
+     *
+     * @param result 节点结果
+     * @return 响应体，无响应体返回 null
+     */
+    public String read(NodeResult result) {
+        BodyRef ref = result.getBodyRef();
+        if (ref == null) {
+            return result.getBody();
+        }
+
+        try (InputStream in = open(result)) {
+            return new String(in.readAllBytes(), Charset.forName(ref.getCharset()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spilled body: " + ref.getPath(), e);
+        }
+    }
+
+    /**
+     * 删除过期的溢写文件
+     */
+    @Scheduled(fixedDelayString = "${workflow.result.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        long expireBefore = System.currentTimeMillis() - properties.getRetentionMs();
+        int deleted = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + FILE_SUFFIX + "*")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < expireBefore && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up spilled bodies: {}", e.getMessage());
+        }
+
+        if (deleted > 0) {
+            log.info("Deleted {} expired spilled bodies", deleted);
+        }
+    }
+
+    private static OutputStream newOutput(Path file, boolean compress) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        return compress ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+
+    /**
+     * 逐步写入的响应体输出 (非线程安全，由调用方串行写入)
+     */
+    public final class BodyOutput extends OutputStream {
+
+        private final int threshold = properties.getInlineThresholdBytes();
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private Path file;
+
+        private OutputStream out;
+
+        private long size;
+
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            (out != null ? out : buffer).write(b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            reserve(length);
+            (out != null ? out : buffer).write(bytes, offset, length);
+            size += length;
+        }
+
+        /**
+         * 写入后将超过阈值时，把已缓存的内容转入溢写文件
+         */
+        private void reserve(int length) throws IOException {
+            if (out != null || size + length <= threshold) {
+                return;
+            }
+
+            Files.createDirectories(dir);
+            file = dir.resolve(UUID.randomUUID() + FILE_SUFFIX + (properties.isCompress() ? GZIP_SUFFIX : ""));
+            out = ResultBodyStore.newOutput(file, properties.isCompress());
+            buffer.writeTo(out);
+            buffer = null;
+        }
+
+        /**
+         * 结束写入，把响应体或溢写引用设置到结果中
+         *
+         * @param result 目标结果 (设置 body 或 bodyRef，以及 bodySize)
+         */
+        public void finish(NodeResult result) throws IOException {
+            if (out == null) {
+                result.setBody(buffer.toString(StandardCharsets.UTF_8));
+                result.setBodySize(size);
+                return;
+            }
+
+            out.close();
+            result.setBodyRef(BodyRef.builder()
+                    .path(file.toString())
+                    .storedBytes(Files.size(file))
+                    .compressed(properties.isCompress())
+                    .charset(StandardCharsets.UTF_8.name())
+                    .build());
+            result.setBodySize(size);
+
+            log.debug("Spilled generated body to {}: {} bytes", file, size);
+        }
+
+        /**
+         * 放弃写入，删除已创建的溢写文件
+         */
+        public void abort() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                if (file != null) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to discard generated body {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
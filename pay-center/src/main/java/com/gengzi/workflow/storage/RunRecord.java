@@ -0,0 +1,98 @@
+package com.gengzi.workflow.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单次执行的持久化状态 (日志折叠结果)
+ * 
+ * 由 WorkflowLogRecord 按顺序 apply 得到，也是快照文件中每一行的格式
+ * 
+ * resumable: 最后一条影响调度状态的记录是 CHECKPOINT，
+ * 即执行停在一个一致的挂起点上，可以在重启后恢复并继续接收回调
+ * 
+ * @author gengzi
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RunRecord {
+
+    private String runId;
+
+    private long startTimeMs;
+
+    private long finishTimeMs;
+
+    private GraphRequest graph;
+
+    private WorkflowStatus workflowStatus = WorkflowStatus.RUNNING;
+
+    private Map<String, NodeStatus> nodeStatuses = new HashMap<>();
+
+    private Map<String, NodeResult> results = new HashMap<>();
+
+    private Map<String, String> callbacks = new HashMap<>();
+
+    private int[] indegrees;
+
+    private int[] anyTriggered;
+
+    private int[] skipMarks;
+
+    private boolean resumable;
+
+    /**
+     * 应用一条日志记录
+     * 
+     * @param record 日志记录
+     */
+    public void apply(WorkflowLogRecord record) {
+        switch (record.getType()) {
+            case STARTED:
+                runId = record.getRunId();
+                startTimeMs = record.getStartTimeMs() != null ? record.getStartTimeMs() : record.getTimeMs();
+                graph = record.getGraph();
+                break;
+            case NODE:
+                nodeStatuses.put(record.getNodeId(), record.getNodeStatus());
+                if (record.getResult() != null) {
+                    results.put(record.getNodeId(), record.getResult());
+                }
+                resumable = false;
+                break;
+            case STATUS:
+                workflowStatus = record.getWorkflowStatus();
+                if (isFinished()) {
+                    finishTimeMs = record.getTimeMs();
+                }
+                break;
+            case CHECKPOINT:
+                indegrees = record.getIndegrees();
+                anyTriggered = record.getAnyTriggered();
+                skipMarks = record.getSkipMarks();
+                callbacks = record.getCallbacks() != null ? record.getCallbacks() : new HashMap<>();
+                resumable = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 是否已结束 (COMPLETED / FAILED / CANCELLED)，由状态推导，不写入快照
+     */
+    @JsonIgnore
+    public boolean isFinished() {
+        return workflowStatus != null && workflowStatus.isTerminal();
+    }
+}
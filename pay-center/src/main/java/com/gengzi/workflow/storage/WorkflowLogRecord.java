@@ -0,0 +1,104 @@
+package com.gengzi.workflow.storage;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 工作流持久化日志记录
+ * 
+ * 追加日志中的一行，按 type 使用不同字段:
+ * - STARTED: graph, startTimeMs
+ * - NODE: nodeId, nodeStatus, result
+ * - STATUS: workflowStatus
+ * - CHECKPOINT: indegrees, anyTriggered, skipMarks, callbacks (挂起时的完整调度状态)
+ * 
+ * @author gengzi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkflowLogRecord {
+
+    /**
+     * 记录类型
+     */
+    private Type type;
+
+    /**
+     * 执行 ID
+     */
+    private String runId;
+
+    /**
+     * 记录时间 (毫秒时间戳)
+     */
+    private long timeMs;
+
+    /**
+     * 工作流开始时间 (STARTED)
+     */
+    private Long startTimeMs;
+
+    /**
+     * 图定义 (STARTED)
+     */
+    private GraphRequest graph;
+
+    /**
+     * 节点 ID (NODE)
+     */
+    private String nodeId;
+
+    /**
+     * 节点状态 (NODE)
+     */
+    private NodeStatus nodeStatus;
+
+    /**
+     * 节点结果 (NODE)
+     */
+    private NodeResult result;
+
+    /**
+     * 工作流状态 (STATUS)
+     */
+    private WorkflowStatus workflowStatus;
+
+    /**
+     * 入度表 (CHECKPOINT)
+     */
+    private int[] indegrees;
+
+    /**
+     * JOIN_ANY 触发标记 (CHECKPOINT)
+     */
+    private int[] anyTriggered;
+
+    /**
+     * JOIN_ALL 跳过标记 (CHECKPOINT)
+     */
+    private int[] skipMarks;
+
+    /**
+     * 回调 ID -> 节点 ID (CHECKPOINT)
+     */
+    private Map<String, String> callbacks;
+
+    public enum Type {
+        STARTED,
+        NODE,
+        STATUS,
+        CHECKPOINT
+    }
+}
@@ -0,0 +1,56 @@
+package com.gengzi.workflow.storage;
+
+import java.util.List;
+
+/**
+ * 工作流持久化 SPI
+ * 
+ * WorkflowStorageService 将状态变化转换为 WorkflowLogRecord 交给实现方，
+ * 实现方负责落盘 (可批量、异步)，并在启动时折叠出每次执行的 RunRecord
+ * 
+ * 内置实现:
+ * - MemoryWorkflowPersistence: 不落盘
+ * - FileWorkflowPersistence: 本地追加日志 + 周期快照
+ * 
+ * @author gengzi
+ */
+public interface WorkflowPersistence {
+
+    /**
+     * 是否真正持久化 (为 false 时存储层跳过记录构建)
+     */
+    boolean isDurable();
+
+    /**
+     * 追加一条记录 (允许写后缓冲，调用方不等待落盘)
+     * 
+     * @param record 日志记录
+     */
+    void append(WorkflowLogRecord record);
+
+    /**
+     * 将缓冲中的记录立即写出
+     */
+    void flush();
+
+    /**
+     * 启动恢复: 读取全部持久化数据并按执行折叠
+     * 
+     * @return 所有未过期执行的状态
+     */
+    List<RunRecord> recover();
+
+    /**
+     * 冷数据读取: 加载单次执行 (已从热数据驱逐的执行)
+     * 
+     * @param runId 执行 ID
+     * @return 执行状态，不存在返回 null
+     */
+    RunRecord load(String runId);
+
+    /**
+     * 关闭: 写出剩余记录并释放资源 (容器关闭时调用)
+     */
+    default void close() {
+    }
+}
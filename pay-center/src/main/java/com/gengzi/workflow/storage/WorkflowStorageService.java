@@ -1,81 +1,552 @@
 package com.gengzi.workflow.storage;
 
+import com.gengzi.workflow.config.WorkflowStorageProperties;
 import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.context.WorkflowStateListener;
+import com.gengzi.workflow.engine.CallbackRegistry;
+import com.gengzi.workflow.engine.CompiledGraph;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.engine.NodeConcurrencyLimiter;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * 工作流存储服务
- * 
- * MVP 版本: 使用内存 ConcurrentHashMap 存储
- * 未来: 可替换为 Redis 实现
- * 
+ *
+ * 两层存储:
+ * - 热数据: 内存 ConcurrentHashMap，保存运行中、挂起中和最近结束的执行
+ * - 持久化: WorkflowPersistence (MEMORY / FILE)，由 workflow.storage.type 选择
+ *
+ * 持久化方式:
+ * - 作为 WorkflowStateListener 挂到每个上下文上，节点/工作流状态变化时追加日志记录 (写后缓冲)
+ * - 工作流进入 PARTIALLY_SUSPENDED 时额外写一条 CHECKPOINT，保存完整调度状态
+ *
+ * 生命周期:
+ * - 启动时恢复: 挂起的执行重新加载到热数据，可继续接收回调；中断的执行标记为 FAILED
+ * - 已结束的执行超过 archiveAfterMs 后冻结为 ArchivedRun (只读、列式紧凑存放)，状态查询直接读取归档
+ * - 已结束的执行超过 completedTtlMs 后从内存驱逐 (配置了 archiveDir 时归档写入磁盘)，
+ * 之后的查询从归档文件或持久化冷读取，读到的归档放入容量为 coldCacheSize 的 LRU 缓存
+ *
+ * 未结束的执行另外登记在活跃集合中，截止时间检查与活跃数统计只遍历该集合
+ *
  * @author gengzi
  */
 @Slf4j
 @Service
-public class WorkflowStorageService {
+public class WorkflowStorageService implements WorkflowStateListener {
+
+    private static final String INTERRUPTED_MESSAGE = "Interrupted by restart";
+
+    private static final String ARCHIVE_SUFFIX = ".run";
+
+    private final WorkflowPersistence persistence;
+    private final WorkflowStorageProperties properties;
+    private final GraphCompiler graphCompiler;
+    private final NodeConcurrencyLimiter concurrencyLimiter;
+    private final CallbackRegistry callbackRegistry;
 
     /**
-     * 存储所有工作流上下文
+     * 热数据
      * Key: runId, Value: WorkflowContext
      */
     private final ConcurrentHashMap<String, WorkflowContext> storage = new ConcurrentHashMap<>();
 
     /**
-     * 保存工作流上下文
+     * 已冻结的执行
+     * Key: runId, Value: 归档
+     */
+    private final ConcurrentHashMap<String, ArchivedRun> archive = new ConcurrentHashMap<>();
+
+    /**
+     * 冷读取 (归档文件或持久化) 得到的归档
+     * Key: 顶层 runId, Value: 归档
+     */
+    private final Map<String, ArchivedRun> coldCache;
+
+    /**
+     * 未结束 (运行中或挂起) 的执行
+     */
+    private final Set<WorkflowContext> active = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 执行结束时移出活跃集合
+     */
+    private final WorkflowStateListener activeTracker = new WorkflowStateListener() {
+        @Override
+        public void onWorkflowStatusChanged(WorkflowContext context, WorkflowStatus status) {
+            if (status.isTerminal()) {
+                active.remove(context);
+            }
+        }
+    };
+
+    public WorkflowStorageService(WorkflowPersistence persistence, WorkflowStorageProperties properties,
+            GraphCompiler graphCompiler, NodeConcurrencyLimiter concurrencyLimiter,
+            CallbackRegistry callbackRegistry) {
+        this.persistence = persistence;
+        this.properties = properties;
+        this.graphCompiler = graphCompiler;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.callbackRegistry = callbackRegistry;
+
+        int cacheSize = properties.getColdCacheSize();
+        this.coldCache = Collections.synchronizedMap(new LinkedHashMap<String, ArchivedRun>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArchivedRun> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * 保存工作流上下文 (执行开始前调用)
      */
     public void save(WorkflowContext context) {
         storage.put(context.getRunId(), context);
+        track(context);
+
+        if (persistence.isDurable()) {
+            persistence.append(WorkflowLogRecord.builder()
+                    .type(WorkflowLogRecord.Type.STARTED)
+                    .runId(context.getRunId())
+                    .timeMs(System.currentTimeMillis())
+                    .startTimeMs(context.getStartTimeMs())
+                    .graph(context.getGraph().getDefinition())
+                    .build());
+            context.addStateListener(this);
+        }
+
         log.debug("Saved workflow context: runId={}", context.getRunId());
     }
 
     /**
      * 获取工作流上下文
+     *
+     * - 子执行 ID ("父 runId:节点 ID") 通过顶层执行的子上下文查找
+     * - 已冻结为归档的执行返回 null (见 getArchived)
+     * - 热数据与归档都未命中时从持久化冷读取: 已结束的执行转为归档放入冷缓存并返回 null，
+     * 未结束的执行 (只会出现在恢复之前) 返回只读快照
      */
     public WorkflowContext get(String runId) {
-        return storage.get(runId);
+        WorkflowContext context = storage.get(runId);
+        if (context == null && runId.contains(WorkflowContext.CHILD_SEPARATOR)) {
+            WorkflowContext root = storage.get(rootRunId(runId));
+            return root != null ? root.findDescendant(runId) : null;
+        }
+        if (context != null || !persistence.isDurable() || archive.containsKey(runId)
+                || coldCache.containsKey(runId)) {
+            return context;
+        }
+
+        RunRecord record = persistence.load(runId);
+        if (record == null) {
+            return null;
+        }
+        WorkflowContext restored = restore(record);
+        if (!restored.isFinished()) {
+            return restored;
+        }
+        coldCache.put(runId, ArchivedRun.of(restored));
+        return null;
+    }
+
+    /**
+     * 获取已结束执行的归档
+     *
+     * - 子执行 ID 通过顶层执行的归档查找
+     * - 内存未命中且配置了 archiveDir 时读取归档文件，放入冷缓存
+     *
+     * @param runId 执行 ID
+     * @return 归档，不存在返回 null
+     */
+    public ArchivedRun getArchived(String runId) {
+        String rootRunId = rootRunId(runId);
+        ArchivedRun root = archive.get(rootRunId);
+        if (root == null) {
+            root = coldCache.get(rootRunId);
+        }
+        if (root == null) {
+            root = readArchive(rootRunId);
+            if (root != null) {
+                coldCache.put(rootRunId, root);
+            }
+        }
+        if (root == null || rootRunId.equals(runId)) {
+            return root;
+        }
+        return root.findDescendant(runId);
+    }
+
+    private static String rootRunId(String runId) {
+        int separator = runId.indexOf(WorkflowContext.CHILD_SEPARATOR);
+        return separator >= 0 ? runId.substring(0, separator) : runId;
     }
 
     /**
-     * 删除工作流上下文
+     * 删除工作流上下文 (仅从热数据删除，持久化数据按 retentionMs 过期)
      */
     public void delete(String runId) {
-        storage.remove(runId);
+        WorkflowContext context = storage.remove(runId);
+        if (context != null) {
+            active.remove(context);
+        }
+        archive.remove(runId);
+        coldCache.remove(runId);
         log.debug("Deleted workflow context: runId={}", runId);
     }
 
     /**
-     * 检查是否存在
+     * 检查是否存在 (仅热数据)
      */
     public boolean exists(String runId) {
         return storage.containsKey(runId);
     }
 
     /**
-     * 获取所有上下文
-     * 用于回调 ID 查找
+     * 获取所有上下文 (仅热数据)
      */
     public List<WorkflowContext> getAllContexts() {
         return new ArrayList<>(storage.values());
     }
 
     /**
-     * 根据回调 ID 查找上下文
-     * 
+     * 未结束 (运行中或挂起) 的执行
+     */
+    public Collection<WorkflowContext> getActiveContexts() {
+        return Collections.unmodifiableSet(active);
+    }
+
+    /**
+     * 未结束 (运行中或挂起) 的执行数
+     */
+    public long countActive() {
+        return active.size();
+    }
+
+    /**
+     * 登记到活跃集合，执行结束时自动移出
+     */
+    private void track(WorkflowContext context) {
+        active.add(context);
+        context.addStateListener(activeTracker);
+        // 登记前已经结束
+        if (context.isFinished()) {
+            active.remove(context);
+        }
+    }
+
+    /**
+     * 根据回调 ID 查找上下文 (通过 CallbackRegistry 索引，O(1))
+     *
      * @param callbackId 回调 ID
-     * @return 上下文，如果未找到返回 null
+     * @return 上下文，如果未找到或回调已处理返回 null
      */
     public WorkflowContext findByCallbackId(String callbackId) {
+        CallbackRegistry.Registration registration = callbackRegistry.get(callbackId);
+        return registration != null ? storage.get(registration.getRunId()) : null;
+    }
+
+    @Override
+    public void onNodeStatusChanged(WorkflowContext context, String nodeId, NodeStatus previous, NodeStatus status) {
+        persistence.append(WorkflowLogRecord.builder()
+                .type(WorkflowLogRecord.Type.NODE)
+                .runId(context.getRunId())
+                .timeMs(System.currentTimeMillis())
+                .nodeId(nodeId)
+                .nodeStatus(status)
+                .result(context.getResults().get(nodeId))
+                .build());
+    }
+
+    @Override
+    public void onWorkflowStatusChanged(WorkflowContext context, WorkflowStatus status) {
+        persistence.append(WorkflowLogRecord.builder()
+                .type(WorkflowLogRecord.Type.STATUS)
+                .runId(context.getRunId())
+                .timeMs(System.currentTimeMillis())
+                .workflowStatus(status)
+                .build());
+
+        if (status == WorkflowStatus.PARTIALLY_SUSPENDED) {
+            checkpoint(context);
+        }
+    }
+
+    /**
+     * 写入挂起点快照
+     *
+     * 只有在没有活跃任务、且采集前后状态版本一致时才写入，
+     * 否则说明有回调正在并发恢复，等它结束后的下一次挂起再写
+     */
+    private void checkpoint(WorkflowContext context) {
+        long version = context.getStateVersion().get();
+        if (context.getActiveNodes().get() != 0) {
+            return;
+        }
+
+        int[] indegrees = toArray(context.getIndegrees());
+        int[] anyTriggered = toArray(context.getAnyTriggered());
+        int[] skipMarks = toArray(context.getSkipMarks());
+        Map<String, String> callbacks = new HashMap<>(context.getCallbackMap());
+
+        if (context.getActiveNodes().get() != 0 || context.getStateVersion().get() != version) {
+            log.debug("Skipping checkpoint for workflow {}: state changed concurrently", context.getRunId());
+            return;
+        }
+
+        persistence.append(WorkflowLogRecord.builder()
+                .type(WorkflowLogRecord.Type.CHECKPOINT)
+                .runId(context.getRunId())
+                .timeMs(System.currentTimeMillis())
+                .indegrees(indegrees)
+                .anyTriggered(anyTriggered)
+                .skipMarks(skipMarks)
+                .callbacks(callbacks)
+                .build());
+    }
+
+    /**
+     * 冻结已结束且超过 archiveAfterMs 的执行，驱逐已结束且超过 completedTtlMs 的执行
+     *
+     * 归档先放入归档表再移出热数据，期间的查询总能读到其中之一
+     */
+    @Scheduled(fixedDelayString = "${workflow.storage.eviction-interval-ms:60000}")
+    public void evictCompleted() {
+        long now = System.currentTimeMillis();
+        long archiveBefore = now - properties.getArchiveAfterMs();
+        long expireBefore = now - properties.getCompletedTtlMs();
+
+        int archived = 0;
         for (WorkflowContext context : storage.values()) {
-            if (context.getCallbackMap().containsKey(callbackId)) {
-                return context;
+            if (context.isFinished() && context.getFinishTimeMs() < archiveBefore) {
+                archive.put(context.getRunId(), ArchivedRun.of(context));
+                storage.remove(context.getRunId(), context);
+                archived++;
             }
         }
-        return null;
+
+        int before = archive.size();
+        archive.values().removeIf(run -> {
+            if (run.getFinishTimeMs() >= expireBefore) {
+                return false;
+            }
+            writeArchive(run);
+            return true;
+        });
+
+        int evicted = before - archive.size();
+        if (archived > 0 || evicted > 0) {
+            log.info("Archived {} completed workflows, evicted {} from memory", archived, evicted);
+        }
+
+        purgeArchives(now - properties.getRetentionMs());
+    }
+
+    /**
+     * 写入归档文件 (未配置 archiveDir 时忽略)
+     */
+    private void writeArchive(ArchivedRun run) {
+        Path file = archiveFile(run.getRunId());
+        if (file == null) {
+            return;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                run.writeTo(out);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to write workflow archive: runId={}", run.getRunId(), e);
+        }
+    }
+
+    /**
+     * 读取归档文件
+     *
+     * @return 归档，未配置 archiveDir、文件不存在或读取失败返回 null
+     */
+    private ArchivedRun readArchive(String runId) {
+        Path file = archiveFile(runId);
+        if (file == null || !Files.exists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return ArchivedRun.readFrom(in, graphCompiler::compile);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to read workflow archive: runId={}", runId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 删除超过 retentionMs 的归档文件
+     */
+    private void purgeArchives(long expireBefore) {
+        if (properties.getArchiveDir() == null || properties.getArchiveDir().isBlank()) {
+            return;
+        }
+
+        Path dir = Path.of(properties.getArchiveDir());
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + ARCHIVE_SUFFIX)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < expireBefore) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to purge workflow archives in {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private Path archiveFile(String runId) {
+        if (properties.getArchiveDir() == null || properties.getArchiveDir().isBlank()) {
+            return null;
+        }
+        return Path.of(properties.getArchiveDir()).resolve(runId + ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * 启动恢复
+     *
+     * - 停在挂起点 (CHECKPOINT 之后无节点变化) 的执行: 完整恢复到热数据，可继续回调
+     * - 已结束的执行: 直接恢复为归档供查询，按 completedTtlMs 驱逐
+     * - 其余执行在重启时被中断: 运行中节点和工作流标记为 FAILED
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!persistence.isDurable()) {
+            return;
+        }
+
+        int suspended = 0;
+        int interrupted = 0;
+
+        for (RunRecord record : persistence.recover()) {
+            WorkflowContext context;
+            try {
+                context = restore(record);
+            } catch (Exception e) {
+                log.error("Failed to recover workflow: runId={}", record.getRunId(), e);
+                continue;
+            }
+
+            if (context.isFinished()) {
+                archive.put(context.getRunId(), ArchivedRun.of(context));
+                continue;
+            }
+            storage.put(context.getRunId(), context);
+            track(context);
+
+            context.addStateListener(this);
+            if (record.isResumable() && record.getWorkflowStatus() == WorkflowStatus.PARTIALLY_SUSPENDED) {
+                registerCallbacks(context);
+                suspended++;
+            } else {
+                markInterrupted(context);
+                interrupted++;
+            }
+        }
+
+        log.info("Recovered workflows: total={}, suspended={}, interrupted={}", storage.size() + archive.size(),
+                suspended, interrupted);
+    }
+
+    /**
+     * 由持久化状态重建上下文
+     *
+     * 非挂起点状态的调度数组不可信，此时只恢复节点状态与结果
+     */
+    private WorkflowContext restore(RunRecord record) {
+        CompiledGraph graph = graphCompiler.compile(record.getGraph());
+        WorkflowContext context = new WorkflowContext(record.getRunId(), graph,
+                concurrencyLimiter.newRunPermits(), record.getStartTimeMs());
+
+        boolean resumable = record.isResumable();
+        context.restoreState(record.getNodeStatuses(), record.getResults(),
+                resumable ? record.getCallbacks() : new HashMap<>(),
+                resumable ? record.getIndegrees() : null,
+                resumable ? record.getAnyTriggered() : null,
+                resumable ? record.getSkipMarks() : null,
+                record.getWorkflowStatus(), record.getFinishTimeMs());
+        return context;
+    }
+
+    /**
+     * 将恢复的等待中回调重新登记到全局索引 (超时从节点进入等待的时间起算)
+     */
+    private void registerCallbacks(WorkflowContext context) {
+        context.getCallbackMap().forEach((callbackId, nodeId) -> {
+            if (context.getNodeStatus().get(nodeId) != NodeStatus.WAITING_CALLBACK) {
+                return;
+            }
+            NodeResult result = context.getResults().get(nodeId);
+            long registeredAtMs = result != null && result.getStartTime() != null
+                    ? result.getStartTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : System.currentTimeMillis();
+            callbackRegistry.register(callbackId, context.getRunId(),
+                    context.getGraph().node(context.getGraph().indexOf(nodeId)), registeredAtMs);
+        });
+    }
+
+    /**
+     * 将被重启中断的执行标记为失败 (监听器已挂上，变化会写入持久化)
+     */
+    private void markInterrupted(WorkflowContext context) {
+        context.getNodeStatus().forEach((nodeId, status) -> {
+            if (status == NodeStatus.RUNNING || status == NodeStatus.WAITING_CALLBACK) {
+                context.putResult(nodeId, NodeResult.builder()
+                        .statusCode(0)
+                        .errorMessage(INTERRUPTED_MESSAGE)
+                        .endTime(LocalDateTime.now())
+                        .build());
+                context.updateNodeStatus(nodeId, NodeStatus.FAILED);
+            }
+        });
+        context.setWorkflowStatus(WorkflowStatus.FAILED);
+
+        log.warn("Workflow {} was interrupted by restart, marked as FAILED", context.getRunId());
+    }
+
+    private static int[] toArray(AtomicIntegerArray array) {
+        int[] copy = new int[array.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = array.get(i);
+        }
+        return copy;
     }
 }
@@ -0,0 +1,141 @@
+package com.gengzi.workflow.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 时间轮到期时机 (由测试推进时钟，不启动轮转线程)
+ *
+ * @author gengzi
+ */
+class TimerWheelTest {
+
+    private static final long START_MS = 1_700_000_000_000L;
+
+    private static final long TICK_MS = 10;
+
+    /**
+     * 8 个槽位，一圈 80ms
+     */
+    private static final int WHEEL_SIZE = 8;
+
+    private final AtomicLong clock = new AtomicLong(START_MS);
+
+    private final TimerWheel wheel = new TimerWheel(TICK_MS, WHEEL_SIZE, clock::get);
+
+    @Test
+    void deadlineSeveralRevolutionsOutWaitsForItsRound() {
+        List<String> fired = new ArrayList<>();
+        // 同一槽位: 第 2 个刻度与 3 圈之后的第 26 个刻度
+        wheel.schedule(() -> fired.add("near"), START_MS + 25);
+        wheel.schedule(() -> fired.add("far"), START_MS + 3 * 80 + 25);
+
+        advanceTo(START_MS + 30);
+        assertEquals(List.of("near"), fired);
+        assertEquals(1, wheel.size());
+
+        advanceTo(START_MS + 3 * 80 + 20);
+        assertEquals(List.of("near"), fired, "far deadline must not fire on an earlier revolution");
+
+        advanceTo(START_MS + 3 * 80 + 30);
+        assertEquals(List.of("near", "far"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void neverFiresBeforeDeadlineAndAtMostOneTickLate() {
+        List<Long> lateness = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long deadline = START_MS + 1 + (i * 37L) % 1000;
+            wheel.schedule(() -> lateness.add(clock.get() - deadline), deadline);
+        }
+
+        while (clock.get() < START_MS + 1100) {
+            clock.addAndGet(1);
+            wheel.advance();
+        }
+
+        assertEquals(200, lateness.size());
+        for (long late : lateness) {
+            assertTrue(late >= 0 && late < TICK_MS, "fired " + late + " ms after its deadline");
+        }
+    }
+
+    @Test
+    void catchesUpMissedTicksInDeadlineOrder() {
+        List<Integer> fired = new ArrayList<>();
+        for (int i = 9; i >= 0; i--) {
+            int order = i;
+            wheel.schedule(() -> fired.add(order), START_MS + 50 + order * 45L);
+        }
+
+        // 轮转停滞: 时钟直接跳过多圈
+        clock.set(START_MS + 2000);
+        assertEquals(200, wheel.advance());
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), fired);
+        assertEquals(0, wheel.advance());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        advanceTo(START_MS + 500);
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(() -> fired.add("late"), START_MS);
+
+        wheel.advance();
+        assertTrue(fired.isEmpty());
+
+        advanceTo(START_MS + 510);
+        assertEquals(List.of("late"), fired);
+    }
+
+    @Test
+    void cancelledTimeoutDoesNotFire() {
+        List<String> fired = new ArrayList<>();
+        TimerWheel.Timeout cancelled = wheel.schedule(() -> fired.add("cancelled"), START_MS + 100);
+        wheel.schedule(() -> fired.add("kept"), START_MS + 100);
+        advanceTo(START_MS + 50);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, wheel.size());
+
+        advanceTo(START_MS + 200);
+        assertEquals(List.of("kept"), fired);
+        assertTrue(cancelled.isCancelled());
+    }
+
+    @Test
+    void failingTaskDoesNotStopLaterTasks() {
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, START_MS + 10);
+        wheel.schedule(() -> fired.add("after"), START_MS + 10);
+
+        advanceTo(START_MS + 10);
+        assertEquals(List.of("after"), fired);
+    }
+
+    @Test
+    void stoppedWheelRejectsTasks() {
+        wheel.stop();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> { }, START_MS + 10));
+        clock.set(START_MS + 100);
+        assertEquals(0, wheel.advance());
+    }
+
+    private void advanceTo(long nowMs) {
+        clock.set(nowMs);
+        wheel.advance();
+    }
+}
@@ -0,0 +1,209 @@
+package com.gengzi.workflow.engine;
+
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.dto.TriggerRequest;
+import com.gengzi.workflow.model.HttpConfig;
+import com.gengzi.workflow.model.MisfirePolicy;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.WorkflowStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 定时触发: 触发时间、停滞后的补触发与重叠抑制 (由测试推进时钟)
+ *
+ * @author gengzi
+ */
+class TriggerSchedulerTest {
+
+    private static final long START_MS = 1_700_000_000_000L;
+
+    private static final long TICK_MS = 10;
+
+    private static final long INTERVAL_MS = 100;
+
+    private static final long MISFIRE_THRESHOLD_MS = 50;
+
+    private final AtomicLong clock = new AtomicLong(START_MS);
+
+    private final TimerWheel wheel = new TimerWheel(TICK_MS, 8, clock::get);
+
+    private final WorkflowTemplateRegistry templates = new WorkflowTemplateRegistry(new GraphCompiler(4));
+
+    private final TriggerScheduler scheduler = new TriggerScheduler(templates, wheel, MISFIRE_THRESHOLD_MS,
+            clock::get);
+
+    /**
+     * 启动的执行 (保持 RUNNING，直到测试将其结束)
+     */
+    private final List<WorkflowContext> runs = new ArrayList<>();
+
+    private final List<Long> launchedAt = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        templates.register("tpl", new GraphRequest(List.of(Node.builder().id("a")
+                .config(HttpConfig.builder().url("http://localhost/a").build()).build()), List.of()));
+        scheduler.setLauncher((name, graph) -> {
+            WorkflowContext context = new WorkflowContext(name + "-" + runs.size(), graph, null);
+            context.setWorkflowStatus(WorkflowStatus.RUNNING);
+            runs.add(context);
+            launchedAt.add(clock.get());
+            return context;
+        });
+    }
+
+    @Test
+    void intervalFiresOnSchedule() {
+        TriggerScheduler.Trigger trigger = scheduler.register("t", interval(MisfirePolicy.FIRE_ONCE, true));
+        assertEquals(START_MS + INTERVAL_MS, trigger.getNextFireTimeMs());
+
+        stepTo(START_MS + 350);
+
+        assertEquals(List.of(START_MS + 100, START_MS + 200, START_MS + 300), launchedAt);
+        assertEquals(3, trigger.getFireCount());
+        assertEquals(START_MS + 400, trigger.getNextFireTimeMs());
+        assertEquals("t-2", trigger.getLastRunId());
+    }
+
+    @Test
+    void deadlineSeveralRevolutionsOut() {
+        // 间隔 1s 远超一圈 (8 x 10ms)，中间各圈经过同一槽位时不触发
+        TriggerRequest request = interval(MisfirePolicy.FIRE_ONCE, true);
+        request.setIntervalMs(1000L);
+        scheduler.register("t", request);
+
+        stepTo(START_MS + 990);
+        assertTrue(runs.isEmpty());
+
+        stepTo(START_MS + 2000);
+        assertEquals(List.of(START_MS + 1000, START_MS + 2000), launchedAt);
+    }
+
+    @Test
+    void fireOnceCatchesUpOnceAfterStall() {
+        TriggerScheduler.Trigger trigger = scheduler.register("t", interval(MisfirePolicy.FIRE_ONCE, true));
+
+        // 停滞 550ms: 错过 100 ~ 500 共 5 个触发点
+        clock.set(START_MS + 550);
+        wheel.advance();
+
+        assertEquals(List.of(START_MS + 550), launchedAt, "missed fire times collapse into one launch");
+        assertEquals(0, trigger.getMisfireCount());
+        assertEquals(START_MS + 600, trigger.getNextFireTimeMs(), "schedule keeps its original phase");
+
+        stepTo(START_MS + 600);
+        assertEquals(List.of(START_MS + 550, START_MS + 600), launchedAt);
+    }
+
+    @Test
+    void skipPolicyDropsMissedFireAfterStall() {
+        TriggerScheduler.Trigger trigger = scheduler.register("t", interval(MisfirePolicy.SKIP, true));
+
+        clock.set(START_MS + 550);
+        wheel.advance();
+
+        assertTrue(runs.isEmpty());
+        assertEquals(1, trigger.getMisfireCount());
+        assertEquals(START_MS + 600, trigger.getNextFireTimeMs());
+
+        stepTo(START_MS + 600);
+        assertEquals(List.of(START_MS + 600), launchedAt);
+        assertEquals(1, trigger.getMisfireCount());
+    }
+
+    @Test
+    void lateWithinThresholdStillFires() {
+        TriggerScheduler.Trigger trigger = scheduler.register("t", interval(MisfirePolicy.SKIP, true));
+
+        clock.set(START_MS + INTERVAL_MS + MISFIRE_THRESHOLD_MS);
+        wheel.advance();
+
+        assertEquals(1, runs.size());
+        assertEquals(0, trigger.getMisfireCount());
+    }
+
+    @Test
+    void overlapSuppressedWhilePreviousRunIsActive() {
+        TriggerScheduler.Trigger trigger = scheduler.register("t", interval(MisfirePolicy.FIRE_ONCE, false));
+
+        stepTo(START_MS + 300);
+        assertEquals(List.of(START_MS + 100), launchedAt);
+        assertEquals(2, trigger.getOverlapSkipCount());
+
+        runs.get(0).setWorkflowStatus(WorkflowStatus.COMPLETED);
+        stepTo(START_MS + 400);
+        assertEquals(List.of(START_MS + 100, START_MS + 400), launchedAt);
+        assertEquals(2, trigger.getOverlapSkipCount());
+        assertEquals(2, trigger.getFireCount());
+
+        stepTo(START_MS + 500);
+        assertEquals(2, runs.size(), "second run is still active");
+        assertEquals(3, trigger.getOverlapSkipCount());
+    }
+
+    @Test
+    void overlapAllowedLaunchesEveryFire() {
+        TriggerScheduler.Trigger trigger = scheduler.register("t", interval(MisfirePolicy.FIRE_ONCE, true));
+
+        stepTo(START_MS + 300);
+
+        assertEquals(3, runs.size());
+        assertEquals(0, trigger.getOverlapSkipCount());
+    }
+
+    @Test
+    void removedTriggerStopsFiring() {
+        scheduler.register("t", interval(MisfirePolicy.FIRE_ONCE, true));
+        stepTo(START_MS + 100);
+
+        assertTrue(scheduler.remove("t"));
+        stepTo(START_MS + 500);
+
+        assertEquals(1, runs.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void invalidTriggersAreRejected() {
+        TriggerRequest both = interval(MisfirePolicy.FIRE_ONCE, true);
+        both.setCron("0 * * * * *");
+        assertThrows(IllegalArgumentException.class, () -> scheduler.register("t", both));
+
+        TriggerRequest missingTemplate = interval(MisfirePolicy.FIRE_ONCE, true);
+        missingTemplate.setTemplate("missing");
+        assertThrows(IllegalArgumentException.class, () -> scheduler.register("t", missingTemplate));
+
+        TriggerRequest badInterval = interval(MisfirePolicy.FIRE_ONCE, true);
+        badInterval.setIntervalMs(0L);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.register("t", badInterval));
+    }
+
+    private static TriggerRequest interval(MisfirePolicy misfirePolicy, boolean allowOverlap) {
+        return TriggerRequest.builder()
+                .template("tpl")
+                .intervalMs(INTERVAL_MS)
+                .misfirePolicy(misfirePolicy)
+                .allowOverlap(allowOverlap)
+                .build();
+    }
+
+    /**
+     * 按刻度推进时钟，每个刻度都处理一次 (没有停滞)
+     */
+    private void stepTo(long nowMs) {
+        while (clock.get() < nowMs) {
+            clock.set(Math.min(nowMs, clock.get() + TICK_MS));
+            wheel.advance();
+        }
+    }
+}
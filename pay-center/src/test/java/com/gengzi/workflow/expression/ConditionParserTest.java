@@ -0,0 +1,174 @@
+package com.gengzi.workflow.expression;
+
+import com.gengzi.workflow.model.NodeResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 条件表达式解析与求值
+ *
+ * @author gengzi
+ */
+class ConditionParserTest {
+
+    private static final String BODY = "{\"code\":0,\"count\":10,\"ok\":true,\"flag\":false,"
+            + "\"data\":{\"status\":\"DONE\",\"amount\":\"12.5\"},\"items\":[{\"id\":\"a\"},{\"id\":\"b\"}],"
+            + "\"a/b\":\"slash\"}";
+
+    @Test
+    void andBindsTighterThanOr() {
+        assertTrue(eval("true || false && false"));
+        assertTrue(eval("false && false || true"));
+        assertFalse(eval("(true || false) && false"));
+        assertFalse(eval("false && (false || true)"));
+    }
+
+    @Test
+    void notAppliesToWholeComparison() {
+        // '!' 的操作数是比较表达式: !statusCode == 200 等价于 !(statusCode == 200)
+        assertFalse(eval("!statusCode == 200"));
+        assertTrue(eval("!statusCode == 500"));
+        assertTrue(eval("!!true"));
+        assertTrue(eval("!(body.$.code != 0) && statusCode == 200"));
+        assertTrue(eval("!false || false"));
+    }
+
+    @Test
+    void numberComparisons() {
+        assertTrue(eval("statusCode >= 200 && statusCode < 300"));
+        assertFalse(eval("statusCode > 200"));
+        assertTrue(eval("statusCode <= 200"));
+        assertTrue(eval("statusCode != 201"));
+        assertTrue(eval("durationMs == 35 && attempts == 2"));
+        assertTrue(eval("body.$.count > 9"), "numbers compare numerically, not as text");
+        assertTrue(eval("body.$.data.amount > 3"), "numeric strings compare as numbers");
+        assertTrue(eval("body.$.data.amount == 12.5"));
+        assertTrue(eval("statusCode == '200'"));
+        assertTrue(eval("-1 < body.$.code"));
+        assertTrue(eval("body.$.items.size() == 2"));
+    }
+
+    @Test
+    void stringComparisons() {
+        assertTrue(eval("body.$.data.status == 'DONE'"));
+        assertTrue(eval("body.$.data.status == \"DONE\""));
+        assertFalse(eval("body.$.data.status == 'done'"));
+        assertTrue(eval("'abc' < 'abd'"));
+        assertTrue(eval("body.$.items[1].id == 'b'"));
+        assertTrue(eval("body.$['a/b'] == 'slash'"));
+        assertTrue(eval("'it\\'s' == \"it's\""));
+        assertTrue(eval("headers['Content-Type'].contains('json')"));
+        assertTrue(eval("headers.content-type.startsWith('application/')"));
+        assertTrue(eval("body.$.data.status.endsWith('NE') && body.matches('\"code\":\\\\s*0')"));
+        assertTrue(eval("errorMessage.contains('retry')"));
+    }
+
+    @Test
+    void booleanComparisons() {
+        assertTrue(eval("body.$.ok == true"));
+        assertTrue(eval("body.$.flag == false"));
+        assertTrue(eval("body.$.ok"));
+        assertFalse(eval("body.$.flag"));
+        assertFalse(eval("body.$.ok != true"));
+        assertTrue(eval("body.$.items"), "non-empty arrays are truthy");
+    }
+
+    @Test
+    void missingPathsEvaluateToNull() {
+        assertTrue(eval("body.$.missing == null"));
+        assertTrue(eval("body.$.data.missing.deeper == null"));
+        assertTrue(eval("body.$.items[5].id == null"));
+        assertTrue(eval("body.$.missing != 'x'"));
+        assertFalse(eval("body.$.missing"));
+        assertFalse(eval("body.$.missing > 0"), "null never takes part in ordering");
+        assertFalse(eval("body.$.missing <= 0"));
+        assertFalse(eval("body.$.missing.contains('x')"));
+        assertTrue(eval("body.$.missing.size() == 0"));
+        assertTrue(eval("headers.X-Missing == null"));
+    }
+
+    @Test
+    void bodyThatIsNotJsonHasNoPaths() {
+        NodeResult result = NodeResult.builder().statusCode(500).build();
+        assertTrue(Condition.compile("body.$.code == null").test(ConditionContext.of(result, () -> "oops")));
+        assertTrue(Condition.compile("body == 'oops'").test(ConditionContext.of(result, () -> "oops")));
+        assertTrue(Condition.compile("body == null && body.$.code == null")
+                .test(ConditionContext.of(result, () -> null)));
+        assertTrue(Condition.compile("headers.anything == null").test(ConditionContext.of(result, () -> null)));
+    }
+
+    @Test
+    void bodyIsLoadedOnlyWhenReferenced() {
+        AtomicInteger loads = new AtomicInteger();
+        ConditionContext context = ConditionContext.of(result(), () -> {
+            loads.incrementAndGet();
+            return BODY;
+        });
+
+        assertTrue(Condition.compile("statusCode == 200").test(context));
+        assertEquals(0, loads.get());
+
+        assertTrue(Condition.compile("body.$.code == 0 && body.contains('DONE')").test(context));
+        assertTrue(Condition.compile("body.$.count == 10").test(context));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void malformedConditionsAreRejectedAtCompileTime() {
+        String[] malformed = {
+                "",
+                "   ",
+                "statusCode ==",
+                "statusCode == 200 &&",
+                "|| statusCode == 200",
+                "(statusCode == 200",
+                "statusCode == 200)",
+                "statusCode 200",
+                "unknown == 1",
+                "headers == 'x'",
+                "body.$.items[x] == 1",
+                "body.$.items[0 == 1",
+                "'unterminated",
+                "body.contains('x'",
+                "body.foo('x')",
+                "body.matches(statusCode)",
+                "body.matches('[')",
+                "1.2.3 == 1",
+                "statusCode == #",
+        };
+        for (String source : malformed) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> Condition.compile(source), source);
+            assertTrue(e.getMessage().startsWith("Invalid condition '" + source + "'"), e.getMessage());
+        }
+        assertThrows(IllegalArgumentException.class, () -> Condition.compile(null));
+    }
+
+    @Test
+    void compiledConditionKeepsSource() {
+        Condition condition = Condition.compile("statusCode == 200");
+        assertEquals("statusCode == 200", condition.getSource());
+        assertEquals("statusCode == 200", condition.toString());
+    }
+
+    private static boolean eval(String source) {
+        return Condition.compile(source).test(ConditionContext.of(result(), () -> BODY));
+    }
+
+    private static NodeResult result() {
+        return NodeResult.builder()
+                .statusCode(200)
+                .durationMs(35)
+                .attempts(2)
+                .errorMessage("will retry")
+                .headers(Map.of("Content-Type", "application/json"))
+                .build();
+    }
+}
@@ -0,0 +1,248 @@
+package com.gengzi.workflow.storage;
+
+import com.gengzi.workflow.context.WorkflowContext;
+import com.gengzi.workflow.dto.Edge;
+import com.gengzi.workflow.dto.GraphRequest;
+import com.gengzi.workflow.engine.GraphCompiler;
+import com.gengzi.workflow.model.BodyRef;
+import com.gengzi.workflow.model.HttpConfig;
+import com.gengzi.workflow.model.Node;
+import com.gengzi.workflow.model.NodeResult;
+import com.gengzi.workflow.model.NodeStatus;
+import com.gengzi.workflow.model.WorkflowStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 执行归档: 冻结、二进制写出与读取，以及截断或损坏文件的拒绝
+ *
+ * @author gengzi
+ */
+class ArchivedRunTest {
+
+    private static final String RUN_ID = "archived-run";
+
+    private final GraphCompiler compiler = new GraphCompiler(16);
+
+    @Test
+    void freezeKeepsStatusesResultsAndTimings() {
+        WorkflowContext context = finishedContext();
+
+        ArchivedRun archive = ArchivedRun.of(context);
+
+        assertArchiveMatches(context, archive);
+    }
+
+    @Test
+    void writeThenReadRoundTrips() throws IOException {
+        WorkflowContext context = finishedContext();
+        ArchivedRun archive = ArchivedRun.of(context);
+
+        ArchivedRun read = read(write(archive));
+
+        assertArchiveMatches(context, read);
+        assertEquals(archive.getResults(), read.getResults());
+    }
+
+    @Test
+    void childArchivesRoundTrip() throws IOException {
+        WorkflowContext context = finishedContext();
+
+        ArchivedRun read = read(write(ArchivedRun.of(context)));
+
+        WorkflowContext child = context.getChildren().get("b");
+        ArchivedRun childArchive = read.findDescendant(child.getRunId());
+        assertNotNull(childArchive);
+        assertArchiveMatches(child, childArchive);
+        assertNull(read.findDescendant(RUN_ID + WorkflowContext.CHILD_SEPARATOR + "missing"));
+    }
+
+    @Test
+    void unfinishedRunIsNotArchived() {
+        WorkflowContext context = new WorkflowContext(RUN_ID, compiler.compile(fourNodes()), null);
+        context.setWorkflowStatus(WorkflowStatus.RUNNING);
+
+        assertThrows(IllegalStateException.class, () -> ArchivedRun.of(context));
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        byte[] bytes = write(ArchivedRun.of(finishedContext()));
+
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(EOFException.class, () -> read(truncated), "truncated to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void corruptHeaderIsRejected() throws IOException {
+        byte[] bytes = write(ArchivedRun.of(finishedContext()));
+
+        byte[] badMagic = bytes.clone();
+        badMagic[0] ^= 0x01;
+        assertEquals("Not a workflow archive", assertThrows(IOException.class, () -> read(badMagic)).getMessage());
+
+        byte[] badVersion = bytes.clone();
+        badVersion[4] = 9;
+        assertEquals("Unsupported workflow archive version: 9",
+                assertThrows(IOException.class, () -> read(badVersion)).getMessage());
+
+        byte[] badGraph = bytes.clone();
+        badGraph[9] = '#';
+        assertThrows(IOException.class, () -> read(badGraph));
+
+        byte[] negativeLength = bytes.clone();
+        ByteBuffer.wrap(negativeLength).putInt(5, -1);
+        assertThrows(IOException.class, () -> read(negativeLength));
+    }
+
+    @Test
+    void corruptBodyIsRejected() throws IOException {
+        byte[] bytes = write(ArchivedRun.of(finishedContext()));
+        int workflowStatusAt = workflowStatusOffset(bytes);
+        // 工作流状态后依次为 5 个 long、取消原因 (null 只占 1 字节)、节点数与各节点状态
+        int nodeCountAt = workflowStatusAt + 1 + 5 * Long.BYTES + 1;
+        assertEquals(4, ByteBuffer.wrap(bytes).getInt(nodeCountAt));
+
+        byte[] badWorkflowStatus = bytes.clone();
+        badWorkflowStatus[workflowStatusAt] = (byte) WorkflowStatus.values().length;
+        assertTrue(assertThrows(IOException.class, () -> read(badWorkflowStatus)).getMessage()
+                .contains("unknown workflow status"));
+
+        byte[] badNodeCount = bytes.clone();
+        ByteBuffer.wrap(badNodeCount).putInt(nodeCountAt, 5);
+        assertTrue(assertThrows(IOException.class, () -> read(badNodeCount)).getMessage()
+                .contains("has 5 nodes, graph has 4"));
+
+        byte[] badNodeStatus = bytes.clone();
+        badNodeStatus[nodeCountAt + Integer.BYTES + 2] = (byte) NodeStatus.values().length;
+        assertTrue(assertThrows(IOException.class, () -> read(badNodeStatus)).getMessage()
+                .contains("unknown status"));
+    }
+
+    /**
+     * a -> b -> d, a -> c；a 成功 (带响应头与溢写引用)，b 为子执行且失败，c 跳过，d 未执行
+     */
+    private WorkflowContext finishedContext() {
+        WorkflowContext context = new WorkflowContext(RUN_ID, compiler.compile(fourNodes()), null,
+                1_700_000_000_000L);
+        context.setWorkflowStatus(WorkflowStatus.RUNNING);
+
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0, 0, 123_000_000);
+        context.putResult("a", NodeResult.builder()
+                .statusCode(200)
+                .body("{\"ok\":true,\"text\":\"中文\"}")
+                .bodySize(31)
+                .headers(new HashMap<>(Map.of("Content-Type", "application/json", "X-Trace", "t-1")))
+                .startTime(start)
+                .endTime(start.plusNanos(45_000_000))
+                .durationMs(45)
+                .queueWaitMs(3)
+                .requestMs(40)
+                .requestSentAtMs(1_700_000_000_010L)
+                .attempts(2)
+                .build());
+        context.updateNodeStatus("a", NodeStatus.RUNNING);
+        context.updateNodeStatus("a", NodeStatus.SUCCESS);
+
+        context.putResult("b", NodeResult.builder()
+                .statusCode(502)
+                .bodyRef(new BodyRef("/tmp/results/b.bin", 4096, true, "UTF-8"))
+                .bodySize(65536)
+                .startTime(start.plusSeconds(1))
+                .endTime(start.plusSeconds(3))
+                .durationMs(2000)
+                .attempts(3)
+                .errorMessage("Bad gateway")
+                .callbackId("cb-1")
+                .childRunId(RUN_ID + WorkflowContext.CHILD_SEPARATOR + "b")
+                .itemCount(10)
+                .failedItems(4)
+                .build());
+        context.updateNodeStatus("b", NodeStatus.FAILED);
+        context.updateNodeStatus("c", NodeStatus.SKIPPED);
+
+        WorkflowContext child = context.newChild("b", compiler.compile(graph(List.of("x", "y"), List.of(new Edge("x", "y")))));
+        child.setWorkflowStatus(WorkflowStatus.RUNNING);
+        child.putResult("x", NodeResult.builder().statusCode(201).body("").durationMs(7).build());
+        child.updateNodeStatus("x", NodeStatus.SUCCESS);
+        child.updateNodeStatus("y", NodeStatus.CANCELLED);
+        child.setWorkflowStatus(WorkflowStatus.FAILED);
+
+        context.setWorkflowStatus(WorkflowStatus.FAILED);
+        return context;
+    }
+
+    private static GraphRequest fourNodes() {
+        return graph(List.of("a", "b", "c", "d"),
+                List.of(new Edge("a", "b"), new Edge("a", "c"), new Edge("b", "d")));
+    }
+
+    private static GraphRequest graph(List<String> nodeIds, List<Edge> edges) {
+        List<Node> nodes = nodeIds.stream()
+                .map(id -> Node.builder().id(id).config(HttpConfig.builder().url("http://localhost/" + id).build())
+                        .build())
+                .toList();
+        return new GraphRequest(nodes, edges);
+    }
+
+    private static void assertArchiveMatches(WorkflowContext context, ArchivedRun archive) {
+        assertEquals(context.getRunId(), archive.getRunId());
+        assertEquals(context.getWorkflowStatus(), archive.getWorkflowStatus());
+        assertEquals(context.getStartTimeMs(), archive.getStartTimeMs());
+        assertEquals(context.getFinishTimeMs(), archive.getFinishTimeMs());
+        assertEquals(context.getTotalDurationMs(), archive.getTotalDurationMs());
+        assertEquals(context.getSequence(), archive.getSequence());
+        assertEquals(context.getResultMemoryBytes().get(), archive.getResultMemoryBytes());
+        assertEquals(context.getResultSpilledBytes().get(), archive.getResultSpilledBytes());
+        assertEquals(context.getCancelReason(), archive.getCancelReason());
+
+        assertEquals(context.getNodeStatus(), archive.getNodeStatuses());
+        assertEquals(context.getResults(), archive.getResults());
+        for (int i = 0; i < context.getGraph().size(); i++) {
+            assertEquals(context.getNodeSequence(i), archive.nodeSequence(i));
+        }
+    }
+
+    /**
+     * 魔数 (4) + 版本 (1) + 图定义 (长度 + JSON) + runId (writeUTF) 之后为工作流状态
+     */
+    private static int workflowStatusOffset(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int graphLength = buffer.getInt(5);
+        int runIdAt = 9 + graphLength;
+        assertEquals(RUN_ID.length(), buffer.getShort(runIdAt));
+        assertEquals(RUN_ID, new String(bytes, runIdAt + 2, RUN_ID.length(), StandardCharsets.UTF_8));
+        return runIdAt + 2 + RUN_ID.length();
+    }
+
+    private static byte[] write(ArchivedRun archive) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        archive.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private ArchivedRun read(byte[] bytes) throws IOException {
+        return ArchivedRun.readFrom(new DataInputStream(new ByteArrayInputStream(bytes)), compiler::compile);
+    }
+}